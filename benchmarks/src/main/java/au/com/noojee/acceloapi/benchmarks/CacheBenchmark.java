@@ -0,0 +1,98 @@
+package au.com.noojee.acceloapi.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.AcceloFieldList;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.cache.AcceloCache;
+import au.com.noojee.acceloapi.cache.CacheKey;
+import au.com.noojee.acceloapi.dao.ActivityDao;
+import au.com.noojee.acceloapi.entities.AcceloEntity;
+import au.com.noojee.acceloapi.entities.Activity;
+import au.com.noojee.acceloapi.entities.meta.Activity_;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.transport.HttpClientTransport;
+
+/**
+ * AcceloCache.get for a query returning size activities. A hit costs the defensive copy of the cached list. A miss
+ * (forced with refreshCache) costs the query against the fixture transport, the decode and re-populating the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark
+{
+	@Param({ "50", "5000" })
+	private int size;
+
+	private CacheKey<Activity> hitKey;
+	private CacheKey<Activity> missKey;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		Fixtures.connect(new FixtureTransport(Fixtures.ACTIVITIES, size / AcceloApi.PAGE_SIZE));
+		AcceloCache.getInstance().flushCache();
+
+		hitKey = key(false);
+		missKey = key(true);
+
+		// prime the cache
+		if (AcceloCache.getInstance().get(hitKey).size() != size)
+			throw new IllegalStateException("Expected " + size + " activities");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		AcceloCache.getInstance().flushCache();
+		AcceloApi.getInstance().setTransport(new HttpClientTransport());
+	}
+
+	private CacheKey<Activity> key(boolean refresh)
+	{
+		AcceloFilter<Activity> filter = new AcceloFilter<>();
+		filter.where(filter.eq(Activity_.staff, 7));
+		filter.noLimit();
+		if (refresh)
+			filter.refreshCache();
+
+		return new CacheKey<>(EndPoint.activities, filter, new AcceloFieldList(AcceloFieldList._ALL),
+				ActivityDao.ResponseList.class, Activity.class);
+	}
+
+	// AcceloCache.get returns raw entities.
+	@SuppressWarnings("rawtypes")
+	@Benchmark
+	public List<? extends AcceloEntity> hit()
+	{
+		return AcceloCache.getInstance().get(hitKey);
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Benchmark
+	public List<? extends AcceloEntity> miss()
+	{
+		return AcceloCache.getInstance().get(missKey);
+	}
+}
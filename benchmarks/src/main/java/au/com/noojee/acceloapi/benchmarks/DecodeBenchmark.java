@@ -0,0 +1,85 @@
+package au.com.noojee.acceloapi.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import au.com.noojee.acceloapi.dao.ActivityDao;
+import au.com.noojee.acceloapi.dao.TicketDao;
+import au.com.noojee.acceloapi.dao.gson.GsonForAccelo;
+import au.com.noojee.acceloapi.entities.Activity;
+import au.com.noojee.acceloapi.entities.Ticket;
+
+/**
+ * Decoding a page of entities the way AcceloApi does (straight off the response stream) and encoding an entity the way
+ * inserts and updates do. decodeTicketPageFreshGson is the same decode with a Gson built per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark
+{
+	private byte[] ticketPage;
+	private byte[] activityPage;
+	private Ticket ticket;
+
+	@Setup
+	public void setup() throws IOException
+	{
+		ticketPage = Fixtures.load(Fixtures.TICKETS);
+		activityPage = Fixtures.load(Fixtures.ACTIVITIES);
+		ticket = decodeTicketPage().getList().get(0);
+	}
+
+	@Benchmark
+	public TicketDao.ResponseList decodeTicketPage()
+	{
+		return GsonForAccelo.fromJson(reader(ticketPage), TicketDao.ResponseList.class);
+	}
+
+	/**
+	 * The baseline: a new Gson for each decode, as GsonForAccelo used to build, so every type adapter is created again.
+	 */
+	@Benchmark
+	public TicketDao.ResponseList decodeTicketPageFreshGson()
+	{
+		Gson gson = GsonForAccelo.newGson();
+		return gson.fromJson(reader(ticketPage), TicketDao.ResponseList.class);
+	}
+
+	@Benchmark
+	public ActivityDao.ResponseList decodeActivityPage()
+	{
+		return GsonForAccelo.fromJson(reader(activityPage), ActivityDao.ResponseList.class);
+	}
+
+	@Benchmark
+	public String encodeTicket()
+	{
+		return GsonForAccelo.toJson(ticket);
+	}
+
+	private static JsonReader reader(byte[] json)
+	{
+		return new JsonReader(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,90 @@
+package au.com.noojee.acceloapi.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import au.com.noojee.acceloapi.AcceloFieldList;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.cache.CacheKey;
+import au.com.noojee.acceloapi.dao.TicketDao;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.entities.meta.Ticket_;
+import au.com.noojee.acceloapi.entities.types.AgainstType;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+
+/**
+ * The per query filter work: rendering the filter for the request and hashing and copying it for the cache key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark
+{
+	private AcceloFilter<Ticket> simple;
+	private AcceloFilter<Ticket> nested;
+	private CacheKey<Ticket> cacheKey;
+
+	@Setup
+	public void setup()
+	{
+		simple = new AcceloFilter<>();
+		simple.where(simple.eq(Ticket_.contract, 42));
+
+		// the shape of the queries used by the reporting jobs: (a and (b or c) and d) or (e and f)
+		LocalDateTime lastMonth = LocalDateTime.of(2018, 1, 1, 0, 0);
+		nested = new AcceloFilter<>();
+		nested.where(nested.eq(Ticket_.contract, 42)
+				.and(nested.after(Ticket_.date_closed, lastMonth).or(nested.before(Ticket_.date_opened, lastMonth)))
+				.and(nested.against(AgainstType.company, 1, 2, 3))
+				.or(nested.eq(Ticket_.assignee, 7).and(nested.greaterThan(Ticket_.issue_type, 2))));
+		nested.noLimit();
+
+		cacheKey = new CacheKey<>(EndPoint.tickets, nested, new AcceloFieldList(AcceloFieldList._ALL),
+				TicketDao.ResponseList.class, Ticket.class);
+	}
+
+	@Benchmark
+	public String simpleToJson()
+	{
+		return simple.toJson();
+	}
+
+	@Benchmark
+	public String nestedToJson()
+	{
+		return nested.toJson();
+	}
+
+	// a copy has nothing rendered yet so this measures the rendering rather than the memoised json.
+	@Benchmark
+	public String nestedRender()
+	{
+		return nested.copy().toJson();
+	}
+
+	@Benchmark
+	public int nestedHashCode()
+	{
+		return nested.hashCode();
+	}
+
+	@Benchmark
+	public CacheKey<Ticket> cacheKeyCopy()
+	{
+		return cacheKey.copy();
+	}
+}
@@ -0,0 +1,94 @@
+package au.com.noojee.acceloapi.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.HTTPResponse;
+import au.com.noojee.acceloapi.ratelimit.AcceloRateLimiter;
+import au.com.noojee.acceloapi.transport.AcceloTransport;
+import au.com.noojee.acceloapi.transport.ResponseReader;
+import au.com.noojee.acceloapi.transport.Streams;
+
+/**
+ * A transport that answers every query with pages rendered from a fixture so the benchmarks measure the library rather
+ * than the network. Pages past the end of the data set are empty.
+ */
+class FixtureTransport implements AcceloTransport
+{
+	private static final Pattern PAGE = Pattern.compile("_page=(\\d+)");
+
+	private static final byte[] TOKEN = "{\"access_token\":\"token\"}".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] EMPTY = "{\"response\":[]}".getBytes(StandardCharsets.UTF_8);
+
+	// An effectively unlimited budget so the rate limiter doesn't hold the benchmark back.
+	private static final Map<String, List<String>> HEADERS = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	static
+	{
+		HEADERS.put(AcceloRateLimiter.LIMIT_HEADER, Arrays.asList("1000000000"));
+		HEADERS.put(AcceloRateLimiter.REMAINING_HEADER, Arrays.asList("1000000000"));
+		HEADERS.put(AcceloRateLimiter.RESET_HEADER, Arrays.asList("3600"));
+	}
+
+	private final byte[][] pages;
+
+	final AtomicLong requests = new AtomicLong();
+
+	/**
+	 * @param fixture the fixture each page is rendered from.
+	 * @param pageCount the no. of pages in the data set.
+	 */
+	FixtureTransport(String fixture, int pageCount) throws IOException
+	{
+		pages = new byte[pageCount][];
+		for (int i = 0; i < pageCount; i++)
+			pages[i] = Fixtures.page(fixture, i);
+	}
+
+	@Override
+	public <R> R send(HTTPMethod method, URL url, Map<String, String> headers, byte[] body, ResponseReader<R> reader)
+			throws IOException
+	{
+		return reader.read(200, "OK", HEADERS, new ByteArrayInputStream(respond(url)));
+	}
+
+	@Override
+	public CompletableFuture<HTTPResponse> sendAsync(HTTPMethod method, URL url, Map<String, String> headers,
+			byte[] body)
+	{
+		try
+		{
+			return CompletableFuture.completedFuture(new HTTPResponse(200, "OK", HEADERS,
+					Streams.fastStreamReader(new ByteArrayInputStream(respond(url)))));
+		}
+		catch (IOException e)
+		{
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	private byte[] respond(URL url)
+	{
+		if (url.getPath().startsWith("/oauth2"))
+			return TOKEN;
+
+		requests.incrementAndGet();
+
+		int pageNo = 0;
+		Matcher matcher = PAGE.matcher(url.toString());
+		if (matcher.find())
+			pageNo = Integer.parseInt(matcher.group(1));
+
+		return (pageNo < pages.length ? pages[pageNo] : EMPTY);
+	}
+}
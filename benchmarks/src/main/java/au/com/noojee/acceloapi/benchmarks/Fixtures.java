@@ -0,0 +1,75 @@
+package au.com.noojee.acceloapi.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.AcceloSecret;
+import au.com.noojee.acceloapi.transport.AcceloTransport;
+
+/**
+ * Loads the checked in fixtures so the benchmarks run without an Accelo account.
+ * 
+ * tickets.json and activities.json each hold a single page (50 entities) in the form returned by Accelo with _fields
+ * set to _ALL.
+ */
+class Fixtures
+{
+	static final String TICKETS = "tickets.json";
+	static final String ACTIVITIES = "activities.json";
+
+	private static final double MAX_RATE = 1_000_000;
+
+	static byte[] load(String fixture) throws IOException
+	{
+		try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + fixture))
+		{
+			if (in == null)
+				throw new IOException("Missing fixture " + fixture);
+			return in.readAllBytes();
+		}
+	}
+
+	/**
+	 * Renders page pageNo of a larger data set by offsetting the fixture's ids so every page holds distinct entities.
+	 */
+	static byte[] page(String fixture, int pageNo) throws IOException
+	{
+		JsonObject page = new JsonParser().parse(new String(load(fixture), StandardCharsets.UTF_8)).getAsJsonObject();
+
+		JsonArray entities = page.getAsJsonArray("response");
+		for (JsonElement entity : entities)
+		{
+			JsonObject object = entity.getAsJsonObject();
+			int id = object.get("id").getAsInt() + pageNo * AcceloApi.PAGE_SIZE;
+			object.addProperty("id", String.valueOf(id));
+		}
+
+		return page.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Connects the api to the transport using dummy credentials and lifts the rate limiter's cap so the benchmarks
+	 * measure the library rather than the rate limiter.
+	 */
+	static void connect(AcceloTransport transport) throws IOException
+	{
+		File file = File.createTempFile("accelosecrets", ".json");
+		file.deleteOnExit();
+		Files.write(file.toPath(), "{\"fqdn\":\"localhost\", \"client_id\":\"id\", \"client_secret\":\"secret\"}"
+				.getBytes(StandardCharsets.UTF_8));
+
+		AcceloApi api = AcceloApi.getInstance();
+		api.getRateLimiter().setMaxRate(MAX_RATE);
+		api.setTransport(transport);
+		api.connect(AcceloSecret.load(file), "http://localhost");
+	}
+}
@@ -0,0 +1,88 @@
+package au.com.noojee.acceloapi.benchmarks;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.AcceloFieldList;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.dao.TicketDao;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.entities.meta.Ticket_;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.mock.MockAcceloServer;
+import au.com.noojee.acceloapi.mock.SyntheticTickets;
+import au.com.noojee.acceloapi.ratelimit.AcceloRateLimiter;
+
+/**
+ * AcceloApi.getAll over http against the mock Accelo server. Compares fetching pages one at a time with fetching
+ * several pages in parallel when each response takes latencyMillis to arrive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PagingBenchmark
+{
+	@Param({ "1", "4" })
+	private int pagesInFlight;
+
+	@Param({ "20" })
+	private int latencyMillis;
+
+	@Param({ "1000" })
+	private int tickets;
+
+	private MockAcceloServer server;
+	private AcceloFilter<Ticket> filter;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		server = new MockAcceloServer();
+		server.register(EndPoint.tickets, Ticket_.class, new SyntheticTickets(1, tickets));
+		server.setLatency(Duration.ofMillis(latencyMillis), Duration.ZERO);
+		server.setHourlyLimit(Integer.MAX_VALUE);
+		server.start();
+		server.connect();
+
+		AcceloApi.getInstance().getRateLimiter().setMaxRate(1_000_000);
+		AcceloApi.getInstance().setMaxPagesInFlight(pagesInFlight);
+
+		filter = new AcceloFilter<>();
+		filter.noLimit();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		AcceloApi.getInstance().setMaxPagesInFlight(1);
+		AcceloApi.getInstance().getRateLimiter().setMaxRate(AcceloRateLimiter.DEFAULT_MAX_RATE);
+		server.stop();
+	}
+
+	@Benchmark
+	public List<Ticket> getAll()
+	{
+		return AcceloApi.getInstance().getAll(EndPoint.tickets, filter, new AcceloFieldList(AcceloFieldList._ALL),
+				TicketDao.ResponseList.class);
+	}
+}
@@ -0,0 +1,290 @@
+package au.com.noojee.acceloapi.mock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Compiles an Accelo _filters object into a predicate over the json entities.
+ * 
+ * The filter is read straight from the stream as Accelo filters often repeat a key within an object (e.g. an _OR of
+ * two emails) which a json object can't hold.
+ * 
+ * The top level object and _AND objects match if every clause matches, _OR objects if any clause matches. A clause is
+ * one of:
+ * <ul>
+ * <li>field: [values] - the field equals one of the values</li>
+ * <li>field_after, field_before, field_greater_than, field_less_than, field_greater_than_or_equal,
+ * field_less_than_or_equal: [value]</li>
+ * <li>against: [{type: [ids]}]</li>
+ * <li>empty: [fields]</li>
+ * <li>order_by_asc, order_by_desc: [field]</li>
+ * </ul>
+ * Fields must be one of the entity's filter fields (from its meta class) otherwise the request is rejected as Accelo
+ * would.
+ */
+class FilterParser
+{
+	private enum Operator
+	{
+		// longest suffix first so _greater_than_or_equal isn't taken for _greater_than.
+		GREATER_THAN_OR_EQUAL("_greater_than_or_equal"), LESS_THAN_OR_EQUAL("_less_than_or_equal"),
+		GREATER_THAN("_greater_than"), LESS_THAN("_less_than"), AFTER("_after"), BEFORE("_before");
+
+		final String suffix;
+
+		Operator(String suffix)
+		{
+			this.suffix = suffix;
+		}
+
+		boolean matches(JsonElement value, double operand)
+		{
+			double field = number(value);
+
+			switch (this)
+			{
+				case GREATER_THAN_OR_EQUAL:
+					return field >= operand;
+				case LESS_THAN_OR_EQUAL:
+					return field <= operand;
+				case GREATER_THAN:
+				case AFTER:
+					return field > operand;
+				case LESS_THAN:
+					return field < operand;
+				case BEFORE:
+					// Accelo's recommended way to find an unset date is date_before 0.
+					return operand == 0 ? field == 0 : field < operand;
+				default:
+					return false;
+			}
+		}
+	}
+
+	private final Set<String> fieldNames;
+
+	private Comparator<JsonObject> order = null;
+	private Set<Integer> ids = null;
+
+	FilterParser(Set<String> fieldNames)
+	{
+		this.fieldNames = fieldNames;
+	}
+
+	/**
+	 * Parses the _filters object at the reader's current position.
+	 */
+	Predicate<JsonObject> parse(JsonReader reader) throws IOException
+	{
+		return group(reader, true, true);
+	}
+
+	Comparator<JsonObject> getOrder()
+	{
+		return order;
+	}
+
+	/**
+	 * @return the only ids the filter can match (from a top level id clause) or null if it can match any id.
+	 */
+	Set<Integer> getIds()
+	{
+		return ids;
+	}
+
+	private Predicate<JsonObject> group(JsonReader reader, boolean and, boolean topLevel) throws IOException
+	{
+		List<Predicate<JsonObject>> clauses = new ArrayList<>();
+
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			String name = reader.nextName();
+			switch (name)
+			{
+				case "_AND":
+					clauses.add(group(reader, true, false));
+					break;
+				case "_OR":
+					clauses.add(group(reader, false, false));
+					break;
+				case "against":
+					clauses.add(against(reader));
+					break;
+				case "empty":
+					clauses.add(empty(reader));
+					break;
+				case "order_by_asc":
+					order = orderBy(reader);
+					break;
+				case "order_by_desc":
+					order = orderBy(reader).reversed();
+					break;
+				default:
+					clauses.add(field(name, values(reader), topLevel));
+			}
+		}
+		reader.endObject();
+
+		if (and)
+			return entity -> clauses.stream().allMatch(clause -> clause.test(entity));
+		return entity -> clauses.stream().anyMatch(clause -> clause.test(entity));
+	}
+
+	private Predicate<JsonObject> field(String name, List<String> values, boolean topLevel)
+	{
+		for (Operator operator : Operator.values())
+		{
+			if (name.endsWith(operator.suffix))
+			{
+				String field = name.substring(0, name.length() - operator.suffix.length());
+				if (isField(field))
+				{
+					double operand = number(values.get(0));
+					return entity -> operator.matches(entity.get(field), operand);
+				}
+			}
+		}
+
+		checkField(name);
+
+		if (topLevel && name.equals("id"))
+		{
+			ids = new HashSet<>();
+			for (String id : values)
+				ids.add((int) number(id));
+		}
+
+		return entity -> equalsAny(entity.get(name), values);
+	}
+
+	private Predicate<JsonObject> against(JsonReader reader) throws IOException
+	{
+		List<Predicate<JsonObject>> types = new ArrayList<>();
+
+		reader.beginArray();
+		while (reader.hasNext())
+		{
+			reader.beginObject();
+			while (reader.hasNext())
+			{
+				String type = reader.nextName();
+				List<String> againstIds = values(reader);
+				types.add(entity -> equalsAny(entity.get("against_type"), List.of(type))
+						&& equalsAny(entity.get("against_id"), againstIds));
+			}
+			reader.endObject();
+		}
+		reader.endArray();
+
+		return entity -> types.stream().anyMatch(type -> type.test(entity));
+	}
+
+	private Predicate<JsonObject> empty(JsonReader reader) throws IOException
+	{
+		List<String> fields = values(reader);
+		fields.forEach(this::checkField);
+
+		return entity -> fields.stream().allMatch(field -> isEmpty(entity.get(field)));
+	}
+
+	private Comparator<JsonObject> orderBy(JsonReader reader) throws IOException
+	{
+		String field = values(reader).get(0);
+		checkField(field);
+
+		return Comparator.comparing((JsonObject entity) -> number(entity.get(field)))
+				.thenComparing(entity -> string(entity.get(field)));
+	}
+
+	private boolean isField(String name)
+	{
+		return name.equals("id") || fieldNames.contains(name);
+	}
+
+	private void checkField(String name)
+	{
+		if (!isField(name))
+			throw new MockException(400, "invalid_request", "Invalid filter field: " + name);
+	}
+
+	/**
+	 * Reads either a single value or an array of values.
+	 */
+	private static List<String> values(JsonReader reader) throws IOException
+	{
+		List<String> values = new ArrayList<>();
+
+		if (reader.peek() != JsonToken.BEGIN_ARRAY)
+		{
+			values.add(reader.nextString());
+			return values;
+		}
+
+		reader.beginArray();
+		while (reader.hasNext())
+			values.add(reader.nextString());
+		reader.endArray();
+
+		if (values.isEmpty())
+			throw new MockException(400, "invalid_request", "Filter without a value");
+
+		return values;
+	}
+
+	private static boolean equalsAny(JsonElement value, List<String> operands)
+	{
+		String field = string(value);
+		for (String operand : operands)
+		{
+			if (operand.equals(field))
+				return true;
+
+			// "5" matches 5.0
+			double number = number(operand);
+			if (!Double.isNaN(number) && number == number(value))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean isEmpty(JsonElement value)
+	{
+		String field = string(value);
+		return field.isEmpty() || field.equals("0");
+	}
+
+	private static String string(JsonElement value)
+	{
+		return (value == null || !value.isJsonPrimitive()) ? "" : value.getAsString();
+	}
+
+	// missing and empty values (e.g. an unset date) are treated as 0.
+	private static double number(JsonElement value)
+	{
+		String field = string(value);
+		return field.isEmpty() ? 0 : number(field);
+	}
+
+	private static double number(String value)
+	{
+		try
+		{
+			return Double.parseDouble(value);
+		}
+		catch (NumberFormatException e)
+		{
+			return Double.NaN;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package au.com.noojee.acceloapi.mock;
+
+import java.util.TreeMap;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * A data set holding the entities from a json page in the form returned by Accelo e.g. {"response": [ {...}, {...} ]}.
+ */
+public class FixtureDataSet implements MockDataSet
+{
+	private final TreeMap<Integer, JsonObject> entities = new TreeMap<>();
+
+	public FixtureDataSet(String json)
+	{
+		JsonObject page = new JsonParser().parse(json).getAsJsonObject();
+
+		for (JsonElement entity : page.getAsJsonArray("response"))
+		{
+			JsonObject object = entity.getAsJsonObject();
+			entities.put(object.get("id").getAsInt(), object);
+		}
+	}
+
+	@Override
+	public int maxId()
+	{
+		return entities.isEmpty() ? 0 : entities.lastKey();
+	}
+
+	@Override
+	public boolean contains(int id)
+	{
+		return entities.containsKey(id);
+	}
+
+	@Override
+	public JsonObject get(int id)
+	{
+		return entities.get(id);
+	}
+}
@@ -0,0 +1,541 @@
+package au.com.noojee.acceloapi.mock;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.AcceloException;
+import au.com.noojee.acceloapi.AcceloSecret;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.entities.meta.Activity_;
+import au.com.noojee.acceloapi.entities.meta.Ticket_;
+import au.com.noojee.acceloapi.ratelimit.AcceloRateLimiter;
+
+/**
+ * An in process stand in for the Accelo REST api so throughput and latency can be measured without touching
+ * production.
+ * 
+ * The server implements the parts of the api the library uses:
+ * <ul>
+ * <li>the oauth2 client_credentials token request</li>
+ * <li>list requests (POST with _method GET) with _page/_limit pagination, _fields and _filters (see FilterParser)</li>
+ * <li>get, update (PUT) and delete by id and inserts</li>
+ * <li>the X-RateLimit headers and a 429 once the hourly limit is used</li>
+ * </ul>
+ * Each response can be delayed to simulate network latency and a proportion of responses can be replaced with 429,
+ * 502 or 503 errors.
+ * 
+ * <pre>
+ * MockAcceloServer server = new MockAcceloServer();
+ * server.register(EndPoint.tickets, Ticket_.class, new SyntheticTickets(1, 1_000_000));
+ * server.setLatency(Duration.ofMillis(50), Duration.ofMillis(10));
+ * server.start();
+ * server.connect();
+ * </pre>
+ */
+public class MockAcceloServer
+{
+	private static Logger logger = LogManager.getLogger();
+
+	static final String TOKEN = "mock-access-token";
+
+	private static final String OAUTH_PATH = "/oauth2/v0/token";
+	private static final String API_PATH = "/api/v0/";
+
+	// Accelo's pagination limits.
+	static final int DEFAULT_LIMIT = 10;
+	static final int MAX_LIMIT = 100;
+
+	private static final Gson gson = new Gson();
+
+	static
+	{
+		// Without TCP_NODELAY every response waits on the client's delayed ack which swamps the latency we simulate.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final int port;
+	private HttpServer server;
+	private ExecutorService executor;
+
+	private final Map<String, MockEndPoint> endPoints = new ConcurrentHashMap<>();
+
+	private volatile Duration latency = Duration.ZERO;
+	private volatile Duration jitter = Duration.ZERO;
+	private volatile Random random = new Random(0);
+
+	private final Map<Integer, Double> failureRates = new ConcurrentHashMap<>();
+	private final Map<Integer, AtomicInteger> failNext = new ConcurrentHashMap<>();
+
+	// the rate limit window.
+	private int hourlyLimit = AcceloRateLimiter.DEFAULT_HOURLY_LIMIT;
+	private long windowStart = 0;
+	private int windowRequests = 0;
+
+	// metrics
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+
+	/**
+	 * A server on any free port.
+	 */
+	public MockAcceloServer()
+	{
+		this(0);
+	}
+
+	public MockAcceloServer(int port)
+	{
+		this.port = port;
+	}
+
+	/**
+	 * Serves the data set at the endpoint.
+	 * 
+	 * @param metaClass the entity's meta class (e.g. Ticket_) which defines the fields that can be filtered on.
+	 */
+	public void register(EndPoint endPoint, Class<?> metaClass, MockDataSet data)
+	{
+		endPoints.put(endPoint.toString(), new MockEndPoint(endPoint, metaClass, data));
+	}
+
+	/**
+	 * Delays each response by latency plus a random amount up to jitter.
+	 */
+	public void setLatency(Duration latency, Duration jitter)
+	{
+		this.latency = latency;
+		this.jitter = jitter;
+	}
+
+	/**
+	 * Replaces the given proportion of api responses with an error.
+	 * 
+	 * @param responseCode the error to return e.g. 429, 502 or 503.
+	 * @param probability from 0 (never) to 1 (always).
+	 */
+	public void setFailureRate(int responseCode, double probability)
+	{
+		failureRates.put(responseCode, probability);
+	}
+
+	/**
+	 * Returns the error for the next count api requests.
+	 */
+	public void failNext(int responseCode, int count)
+	{
+		failNext.computeIfAbsent(responseCode, code -> new AtomicInteger()).addAndGet(count);
+	}
+
+	/**
+	 * The no. of api requests allowed each hour. Defaults to Accelo's 5000.
+	 */
+	public synchronized void setHourlyLimit(int hourlyLimit)
+	{
+		this.hourlyLimit = hourlyLimit;
+	}
+
+	/**
+	 * Seeds the random used for latency jitter and failures.
+	 */
+	public void setSeed(long seed)
+	{
+		this.random = new Random(seed);
+	}
+
+	public void start() throws IOException
+	{
+		executor = Executors.newCachedThreadPool(runnable ->
+			{
+				Thread thread = new Thread(runnable, "mock-accelo");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+
+		logger.info("Mock Accelo server listening on " + getURL());
+	}
+
+	public void stop()
+	{
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return the url to pass to AcceloApi.connect e.g. http://127.0.0.1:8080
+	 */
+	public String getURL()
+	{
+		InetSocketAddress address = server.getAddress();
+		return "http://" + address.getHostString() + ":" + address.getPort();
+	}
+
+	/**
+	 * Connects the AcceloApi to this server.
+	 */
+	public void connect()
+	{
+		try
+		{
+			File file = File.createTempFile("accelosecrets", ".json");
+			file.deleteOnExit();
+			Files.write(file.toPath(), "{\"fqdn\":\"localhost\", \"client_id\":\"mock\", \"client_secret\":\"mock\"}"
+					.getBytes(StandardCharsets.UTF_8));
+
+			AcceloApi.getInstance().connect(AcceloSecret.load(file), getURL());
+		}
+		catch (IOException e)
+		{
+			throw new AcceloException(e);
+		}
+	}
+
+	/**
+	 * @return the no. of api requests received (excluding token requests).
+	 */
+	public long getRequestCount()
+	{
+		return requests.get();
+	}
+
+	/**
+	 * @return the no. of injected failures and rate limit rejections.
+	 */
+	public long getFailureCount()
+	{
+		return failures.get();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException
+	{
+		try
+		{
+			byte[] body = exchange.getRequestBody().readAllBytes();
+			String path = exchange.getRequestURI().getPath();
+
+			delay();
+
+			if (path.equals(OAUTH_PATH))
+				respond(exchange, 200, token());
+			else if (path.startsWith(API_PATH))
+			{
+				requests.incrementAndGet();
+				respond(exchange, 200, api(exchange, path.substring(API_PATH.length()), body));
+			}
+			else
+				throw new MockException(404, "not_found", "Unknown path " + path);
+		}
+		catch (MockException e)
+		{
+			if (e.responseCode != 404 && e.responseCode != 400)
+				failures.incrementAndGet();
+			respond(exchange, e.responseCode, error(e.status, e.getMessage()));
+		}
+		catch (RuntimeException e)
+		{
+			logger.error(e, e);
+			respond(exchange, 500, error("error", e.toString()));
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	private JsonObject api(HttpExchange exchange, String path, byte[] body)
+	{
+		if (!("Bearer " + TOKEN).equals(exchange.getRequestHeaders().getFirst("Authorization")))
+			throw new MockException(401, "invalid_token", "Missing or invalid access token");
+
+		rateLimit(exchange);
+		injectFailure(exchange);
+
+		// longest match so issues/resolutions isn't taken as issue 'resolutions'.
+		MockEndPoint endPoint = endPoints.keySet().stream()
+				.filter(name -> path.equals(name) || path.startsWith(name + "/"))
+				.max(Comparator.comparingInt(String::length)).map(endPoints::get)
+				.orElseThrow(() -> new MockException(404, "not_found", "Unknown endpoint " + path));
+
+		String method = exchange.getRequestMethod();
+		String rest = path.substring(endPoint.endPoint.toString().length());
+
+		if (rest.isEmpty() || rest.equals("/"))
+		{
+			Query query = Query.parse(body, endPoint.fieldNames);
+			if (query == null && method.equals("POST"))
+				return ok(endPoint.insert(parse(body)));
+			if (query == null)
+				throw new MockException(400, "invalid_request", "Unsupported method " + method);
+
+			return list(exchange.getRequestURI(), endPoint, query);
+		}
+
+		int id;
+		try
+		{
+			id = Integer.parseInt(rest.substring(1));
+		}
+		catch (NumberFormatException e)
+		{
+			throw new MockException(404, "not_found", "Unsupported path " + path);
+		}
+
+		switch (method)
+		{
+			case "GET":
+				JsonObject entity = endPoint.get(id);
+				if (entity == null)
+					throw new MockException(404, "not_found", endPoint.endPoint + " " + id + " not found");
+				return ok(entity);
+			case "PUT":
+				return ok(endPoint.update(id, parse(body)));
+			case "DELETE":
+				endPoint.delete(id);
+				return ok(null);
+			default:
+				throw new MockException(400, "invalid_request", "Unsupported method " + method);
+		}
+	}
+
+	private JsonObject list(URI uri, MockEndPoint endPoint, Query query)
+	{
+		int page = intArg(uri, "_page", 0);
+		int limit = Math.min(MAX_LIMIT, Math.max(1, intArg(uri, "_limit", DEFAULT_LIMIT)));
+
+		JsonArray entities = new JsonArray();
+		for (JsonObject entity : endPoint.query(query, page, limit))
+			entities.add(query.project(entity));
+
+		return ok(entities);
+	}
+
+	private static int intArg(URI uri, String name, int defaultValue)
+	{
+		String query = uri.getRawQuery();
+		if (query == null)
+			return defaultValue;
+
+		for (String arg : query.split("&"))
+		{
+			if (arg.startsWith(name + "="))
+			{
+				try
+				{
+					return Integer.parseInt(arg.substring(name.length() + 1));
+				}
+				catch (NumberFormatException e)
+				{
+					throw new MockException(400, "invalid_request", "Invalid " + name);
+				}
+			}
+		}
+		return defaultValue;
+	}
+
+	private static JsonObject parse(byte[] body)
+	{
+		try
+		{
+			return new JsonParser().parse(new String(body, StandardCharsets.UTF_8)).getAsJsonObject();
+		}
+		catch (JsonSyntaxException | IllegalStateException e)
+		{
+			throw new MockException(400, "invalid_request", "Invalid json: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Counts the request against the hourly limit and adds the rate limit headers. Once the limit is used requests are
+	 * rejected with a 429 until the hour is up.
+	 */
+	private void rateLimit(HttpExchange exchange)
+	{
+		long now = System.currentTimeMillis() / 1000;
+		int limit;
+		int remaining;
+		long reset;
+		boolean exhausted;
+
+		synchronized (this)
+		{
+			if (now - windowStart >= 3600)
+			{
+				windowStart = now;
+				windowRequests = 0;
+			}
+
+			limit = hourlyLimit;
+			exhausted = windowRequests >= limit;
+			if (!exhausted)
+				windowRequests++;
+			remaining = limit - windowRequests;
+			reset = windowStart + 3600 - now;
+		}
+
+		exchange.getResponseHeaders().add(AcceloRateLimiter.LIMIT_HEADER, String.valueOf(limit));
+		exchange.getResponseHeaders().add(AcceloRateLimiter.REMAINING_HEADER, String.valueOf(remaining));
+		exchange.getResponseHeaders().add(AcceloRateLimiter.RESET_HEADER, String.valueOf(reset));
+
+		if (exhausted)
+		{
+			exchange.getResponseHeaders().add("Retry-After", String.valueOf(reset));
+			throw new MockException(429, "rate_limited", "The hourly limit of " + limit + " requests has been used");
+		}
+	}
+
+	private void injectFailure(HttpExchange exchange)
+	{
+		Integer responseCode = null;
+
+		for (Map.Entry<Integer, AtomicInteger> next : failNext.entrySet())
+		{
+			if (next.getValue().getAndUpdate(count -> Math.max(0, count - 1)) > 0)
+			{
+				responseCode = next.getKey();
+				break;
+			}
+		}
+
+		if (responseCode == null)
+		{
+			for (Map.Entry<Integer, Double> rate : failureRates.entrySet())
+			{
+				if (random.nextDouble() < rate.getValue())
+				{
+					responseCode = rate.getKey();
+					break;
+				}
+			}
+		}
+
+		if (responseCode == null)
+			return;
+
+		if (responseCode == 429)
+			exchange.getResponseHeaders().add("Retry-After", "1");
+		throw new MockException(responseCode, "injected_failure", "Injected " + responseCode);
+	}
+
+	private void delay()
+	{
+		long millis = latency.toMillis();
+		long jitterMillis = jitter.toMillis();
+		if (jitterMillis > 0)
+			millis += (long) (random.nextDouble() * jitterMillis);
+
+		if (millis <= 0)
+			return;
+
+		try
+		{
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private JsonObject token()
+	{
+		JsonObject token = new JsonObject();
+		token.addProperty("access_token", TOKEN);
+		token.addProperty("token_type", "bearer");
+		token.addProperty("expires_in", "2592000");
+		token.addProperty("deployment", "mock");
+		token.addProperty("deployment_name", "Mock Accelo");
+		token.addProperty("deployment_uri", getURL());
+		return token;
+	}
+
+	private static JsonObject ok(JsonElement response)
+	{
+		JsonObject body = new JsonObject();
+		body.add("meta", meta("ok", "Everything executed as expected."));
+		body.add("response", response);
+		return body;
+	}
+
+	private static JsonObject error(String status, String message)
+	{
+		JsonObject body = new JsonObject();
+		body.add("meta", meta(status, message));
+		return body;
+	}
+
+	private static JsonObject meta(String status, String message)
+	{
+		JsonObject meta = new JsonObject();
+		meta.addProperty("status", status);
+		meta.addProperty("message", message);
+		meta.addProperty("more_info", "https://api.accelo.com/docs/#status-codes");
+		return meta;
+	}
+
+	private static void respond(HttpExchange exchange, int responseCode, JsonObject body) throws IOException
+	{
+		byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		exchange.sendResponseHeaders(responseCode, bytes.length);
+		try (OutputStream out = exchange.getResponseBody())
+		{
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Runs a server for load testing.
+	 * 
+	 * Usage: MockAcceloServer [port [tickets [activities [latencyMillis]]]]
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		int tickets = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+		int activities = args.length > 2 ? Integer.parseInt(args[2]) : 5_000_000;
+		int latency = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+		MockAcceloServer server = new MockAcceloServer(port);
+		server.register(EndPoint.tickets, Ticket_.class, new SyntheticTickets(1, tickets));
+		server.register(EndPoint.activities, Activity_.class, new SyntheticActivities(1, activities, tickets));
+		server.setLatency(Duration.ofMillis(latency), Duration.ofMillis(latency / 5));
+		server.start();
+
+		System.out.println("Mock Accelo server listening on " + server.getURL());
+		Thread.currentThread().join();
+	}
+}
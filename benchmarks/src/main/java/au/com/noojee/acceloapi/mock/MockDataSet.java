@@ -0,0 +1,31 @@
+package au.com.noojee.acceloapi.mock;
+
+import com.google.gson.JsonObject;
+
+/**
+ * The entities served by the MockAcceloServer for a single endpoint.
+ * 
+ * Entities are in the json form returned by Accelo (ids, numbers and dates as strings). Ids run from 1 to maxId
+ * although there may be gaps.
+ */
+public interface MockDataSet
+{
+	/**
+	 * @return the largest id in the data set.
+	 */
+	int maxId();
+
+	/**
+	 * @return the entity with the given id or null if there isn't one. The server never modifies the returned object.
+	 */
+	JsonObject get(int id);
+
+	/**
+	 * @return true if the data set holds an entity with the given id. Override if this can be answered without
+	 *         building the entity.
+	 */
+	default boolean contains(int id)
+	{
+		return get(id) != null;
+	}
+}
@@ -0,0 +1,172 @@
+package au.com.noojee.acceloapi.mock;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import au.com.noojee.acceloapi.AcceloException;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.entities.meta.fieldTypes.FilterField;
+
+/**
+ * The entities for one endpoint. Inserts, updates and deletes are held over the top of the (read only) data set.
+ */
+class MockEndPoint
+{
+	final EndPoint endPoint;
+	final Set<String> fieldNames;
+
+	private final MockDataSet data;
+
+	private final Map<Integer, JsonObject> changed = new ConcurrentHashMap<>();
+	private final Set<Integer> deleted = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger nextId;
+
+	MockEndPoint(EndPoint endPoint, Class<?> metaClass, MockDataSet data)
+	{
+		this.endPoint = endPoint;
+		this.fieldNames = fieldNames(metaClass);
+		this.data = data;
+		this.nextId = new AtomicInteger(data.maxId() + 1);
+	}
+
+	/**
+	 * The filter field names declared by the meta class e.g. Ticket_.
+	 */
+	private static Set<String> fieldNames(Class<?> metaClass)
+	{
+		Set<String> names = new HashSet<>();
+		try
+		{
+			for (Field field : metaClass.getDeclaredFields())
+			{
+				if (Modifier.isStatic(field.getModifiers()) && FilterField.class.isAssignableFrom(field.getType()))
+					names.add(((FilterField<?, ?>) field.get(null)).getFieldName());
+			}
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new AcceloException(e);
+		}
+		return Collections.unmodifiableSet(names);
+	}
+
+	JsonObject get(int id)
+	{
+		if (deleted.contains(id))
+			return null;
+
+		JsonObject entity = changed.get(id);
+		return entity != null ? entity : data.get(id);
+	}
+
+	private boolean contains(int id)
+	{
+		return !deleted.contains(id) && (changed.containsKey(id) || data.contains(id));
+	}
+
+	/**
+	 * @return the requested page of matching entities in id order (or the filter's order).
+	 */
+	List<JsonObject> query(Query query, int page, int limit)
+	{
+		int skip = page * limit;
+		List<JsonObject> matches = new ArrayList<>();
+
+		if (query.ids != null)
+		{
+			query.ids.stream().sorted().map(this::get)
+					.filter(entity -> entity != null && query.filter.test(entity))
+					.forEach(matches::add);
+		}
+		else if (query.matchesAll && query.order == null)
+		{
+			// skip to the page without building the entities before it.
+			int skipped = 0;
+			int maxId = nextId.get() - 1;
+			for (int id = 1; id <= maxId && matches.size() < limit; id++)
+			{
+				if (!contains(id))
+					continue;
+				if (skipped++ < skip)
+					continue;
+				matches.add(get(id));
+			}
+			return matches;
+		}
+		else
+		{
+			// without an order we can stop as soon as we have the page.
+			int wanted = query.order == null ? skip + limit : Integer.MAX_VALUE;
+			int maxId = nextId.get() - 1;
+			for (int id = 1; id <= maxId && matches.size() < wanted; id++)
+			{
+				JsonObject entity = get(id);
+				if (entity != null && query.filter.test(entity))
+					matches.add(entity);
+			}
+		}
+
+		if (query.order != null)
+			matches.sort(query.order);
+
+		if (skip >= matches.size())
+			return Collections.emptyList();
+		return matches.subList(skip, Math.min(matches.size(), skip + limit));
+	}
+
+	JsonObject insert(JsonObject values)
+	{
+		int id = nextId.getAndIncrement();
+
+		JsonObject entity = copy(values);
+		entity.addProperty("id", String.valueOf(id));
+		changed.put(id, entity);
+
+		return entity;
+	}
+
+	JsonObject update(int id, JsonObject values)
+	{
+		JsonObject existing = get(id);
+		if (existing == null)
+			throw new MockException(404, "not_found", endPoint + " " + id + " not found");
+
+		JsonObject entity = copy(existing);
+		for (Map.Entry<String, JsonElement> value : values.entrySet())
+		{
+			if (!value.getKey().equals("id"))
+				entity.add(value.getKey(), value.getValue());
+		}
+		changed.put(id, entity);
+
+		return entity;
+	}
+
+	void delete(int id)
+	{
+		if (get(id) == null)
+			throw new MockException(404, "not_found", endPoint + " " + id + " not found");
+
+		deleted.add(id);
+		changed.remove(id);
+	}
+
+	// values are never modified in place so a shallow copy is enough.
+	private static JsonObject copy(JsonObject entity)
+	{
+		JsonObject copy = new JsonObject();
+		entity.entrySet().forEach(value -> copy.add(value.getKey(), value.getValue()));
+		return copy;
+	}
+}
@@ -0,0 +1,19 @@
+package au.com.noojee.acceloapi.mock;
+
+/**
+ * Thrown while handling a request to send an Accelo style error response.
+ */
+class MockException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+
+	final int responseCode;
+	final String status;
+
+	MockException(int responseCode, String status, String message)
+	{
+		super(message);
+		this.responseCode = responseCode;
+		this.status = status;
+	}
+}
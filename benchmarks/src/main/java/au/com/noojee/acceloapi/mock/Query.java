@@ -0,0 +1,136 @@
+package au.com.noojee.acceloapi.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * A list request parsed from the json body sent by AcceloApi:
+ * 
+ * <pre>
+ * {"_method": "GET", "_fields": ["_ALL"], "_filters": { ... }}
+ * </pre>
+ */
+class Query
+{
+	Predicate<JsonObject> filter = entity -> true;
+
+	// true if there is no _filters or _search so every entity matches.
+	boolean matchesAll = true;
+
+	// null unless the filter has an order_by clause.
+	Comparator<JsonObject> order = null;
+
+	// null unless the filter can only match these ids.
+	Set<Integer> ids = null;
+
+	// null if every field was requested.
+	List<String> fields = null;
+
+	/**
+	 * @return the query or null if the body isn't a GET (i.e. it's an insert).
+	 */
+	static Query parse(byte[] body, Set<String> fieldNames)
+	{
+		Query query = new Query();
+		if (body.length == 0)
+			return query;
+
+		try (JsonReader reader = new JsonReader(
+				new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8)))
+		{
+			reader.beginObject();
+
+			// AcceloApi always sends _method first.
+			if (!reader.hasNext() || !reader.nextName().equals("_method") || !reader.nextString().equals("GET"))
+				return null;
+
+			while (reader.hasNext())
+			{
+				String name = reader.nextName();
+				switch (name)
+				{
+					case "_fields":
+						query.fields = fields(reader);
+						break;
+					case "_filters":
+						FilterParser parser = new FilterParser(fieldNames);
+						query.filter = parser.parse(reader);
+						query.matchesAll = false;
+						query.order = parser.getOrder();
+						query.ids = parser.getIds();
+						break;
+					case "_search":
+						query.filter = search(reader.nextString());
+						query.matchesAll = false;
+						break;
+					default:
+						reader.skipValue();
+				}
+			}
+
+			return query;
+		}
+		catch (IOException | IllegalStateException e)
+		{
+			throw new MockException(400, "invalid_request", "Invalid json: " + e.getMessage());
+		}
+	}
+
+	private static List<String> fields(JsonReader reader) throws IOException
+	{
+		List<String> fields = new ArrayList<>();
+
+		reader.beginArray();
+		while (reader.hasNext())
+		{
+			// nested fields e.g. company(name) just return the field.
+			String field = reader.nextString();
+			int paren = field.indexOf('(');
+			fields.add(paren < 0 ? field : field.substring(0, paren));
+		}
+		reader.endArray();
+
+		return fields.contains("_ALL") ? null : fields;
+	}
+
+	// Accelo searches a set of text fields. We search them all.
+	private static Predicate<JsonObject> search(String text)
+	{
+		String lower = text.toLowerCase();
+
+		return entity -> entity.entrySet().stream().map(Map.Entry::getValue)
+				.filter(JsonElement::isJsonPrimitive)
+				.anyMatch(value -> value.getAsString().toLowerCase().contains(lower));
+	}
+
+	/**
+	 * @return the entity reduced to the requested fields.
+	 */
+	JsonObject project(JsonObject entity)
+	{
+		if (fields == null)
+			return entity;
+
+		JsonObject projected = new JsonObject();
+		projected.add("id", entity.get("id"));
+		for (String field : fields)
+		{
+			JsonElement value = entity.get(field);
+			if (value != null)
+				projected.add(field, value);
+		}
+		return projected;
+	}
+}
@@ -0,0 +1,63 @@
+package au.com.noojee.acceloapi.mock;
+
+import java.util.SplittableRandom;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Generated activities logged against tickets.
+ */
+public class SyntheticActivities extends SyntheticDataSet
+{
+	private final int tickets;
+
+	/**
+	 * @param tickets the no. of tickets the activities are spread across (ticket ids 1 to tickets).
+	 */
+	public SyntheticActivities(long seed, int size, int tickets)
+	{
+		super(seed, size);
+		this.tickets = tickets;
+	}
+
+	@Override
+	protected JsonObject generate(int id, SplittableRandom random)
+	{
+		long started = date(random);
+		long ended = started + 60 * (5 + random.nextInt(240));
+
+		JsonObject activity = new JsonObject();
+		activity.addProperty("medium", pick(random, "note", "email", "call", "meeting"));
+		activity.addProperty("subject", sentence(random, 5));
+		activity.addProperty("parent", "activities/0");
+		activity.addProperty("thread", "activities/" + id);
+		activity.addProperty("against_type", "issue");
+		activity.addProperty("against_id", String.valueOf(1 + random.nextInt(Math.max(1, tickets))));
+		activity.addProperty("owner_id", String.valueOf(1 + random.nextInt(SyntheticTickets.STAFF)));
+		activity.addProperty("owner_type", "staff");
+		activity.addProperty("body", sentence(random, 60));
+		activity.addProperty("visibility", "all");
+		activity.addProperty("details", "");
+		activity.addProperty("standing", pick(random, "approved", "invoiced", "unapproved", ""));
+		activity.addProperty("invoice_id", "0");
+		activity.addProperty("contract_period_id", String.valueOf(random.nextInt(100)));
+		activity.addProperty("date_created", String.valueOf(started));
+		activity.addProperty("date_started", String.valueOf(started));
+		activity.addProperty("date_ended", String.valueOf(ended));
+		activity.addProperty("date_logged", String.valueOf(ended));
+		activity.addProperty("date_modified", String.valueOf(ended + 60));
+		activity.addProperty("billable", String.valueOf(random.nextInt(9) * 900));
+		activity.addProperty("nonbillable", String.valueOf(random.nextInt(5) * 900));
+		activity.addProperty("staff", String.valueOf(1 + random.nextInt(SyntheticTickets.STAFF)));
+		activity.addProperty("priority", String.valueOf(1 + random.nextInt(5)));
+		activity.addProperty("class", String.valueOf(1 + random.nextInt(4)));
+		activity.addProperty("task", "0");
+		activity.addProperty("time_allocation", String.valueOf(random.nextInt(100)));
+		activity.addProperty("rate", String.valueOf(random.nextInt(4)));
+		activity.addProperty("rate_charged", String.valueOf(random.nextInt(200)));
+		activity.addProperty("thread_id", String.valueOf(id));
+		activity.addProperty("parent_id", "0");
+
+		return activity;
+	}
+}
@@ -0,0 +1,86 @@
+package au.com.noojee.acceloapi.mock;
+
+import java.util.SplittableRandom;
+
+import com.google.gson.JsonObject;
+
+/**
+ * A data set of generated entities. Each entity is derived from the seed and its id so the same seed always produces
+ * the same data and a data set of millions of entities costs no memory.
+ */
+public abstract class SyntheticDataSet implements MockDataSet
+{
+	// 2018-01-01 00:00:00 UTC. All generated dates fall in the following year.
+	static final long EPOCH = 1514764800L;
+	static final long DAY = 24 * 60 * 60;
+
+	private static final String[] WORDS = { "the", "a", "printer", "phone", "line", "queue", "agent", "dropped",
+			"calls", "server", "upgrade", "licence", "report", "billing", "contract", "dialler", "outage", "headset",
+			"volume", "recording", "missing", "customer" };
+
+	private final long seed;
+	private final int size;
+
+	/**
+	 * @param seed the seed the entities are generated from.
+	 * @param size the no. of entities (with ids 1 to size).
+	 */
+	protected SyntheticDataSet(long seed, int size)
+	{
+		this.seed = seed;
+		this.size = size;
+	}
+
+	@Override
+	public int maxId()
+	{
+		return size;
+	}
+
+	@Override
+	public boolean contains(int id)
+	{
+		return id >= 1 && id <= size;
+	}
+
+	@Override
+	public JsonObject get(int id)
+	{
+		if (!contains(id))
+			return null;
+
+		JsonObject entity = generate(id, new SplittableRandom(seed * 31 + id));
+		entity.addProperty("id", String.valueOf(id));
+		return entity;
+	}
+
+	/**
+	 * Generates the entity with the given id. All values must be drawn from random so the entity is repeatable.
+	 */
+	protected abstract JsonObject generate(int id, SplittableRandom random);
+
+	protected static String sentence(SplittableRandom random, int words)
+	{
+		StringBuilder sentence = new StringBuilder();
+		for (int i = 0; i < words; i++)
+		{
+			if (i > 0)
+				sentence.append(' ');
+			sentence.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return sentence.toString();
+	}
+
+	/**
+	 * @return a date (in epoch seconds) during the year after EPOCH.
+	 */
+	protected static long date(SplittableRandom random)
+	{
+		return EPOCH + random.nextLong(365 * DAY);
+	}
+
+	protected static String pick(SplittableRandom random, String... values)
+	{
+		return values[random.nextInt(values.length)];
+	}
+}
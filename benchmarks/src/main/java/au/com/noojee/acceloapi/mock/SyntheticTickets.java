@@ -0,0 +1,77 @@
+package au.com.noojee.acceloapi.mock;
+
+import java.util.SplittableRandom;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Generated tickets. A third of the tickets are still open (date_closed is 0).
+ */
+public class SyntheticTickets extends SyntheticDataSet
+{
+	// the no. of distinct companies, contracts and staff referenced by the tickets.
+	static final int COMPANIES = 500;
+	static final int CONTRACTS = 200;
+	static final int STAFF = 50;
+
+	public SyntheticTickets(long seed, int size)
+	{
+		super(seed, size);
+	}
+
+	@Override
+	protected JsonObject generate(int id, SplittableRandom random)
+	{
+		long opened = date(random);
+		boolean closed = id % 3 != 0;
+		long dateClosed = closed ? opened + random.nextLong(20 * DAY) : 0;
+		String standing = closed ? "closed" : pick(random, "submitted", "open");
+		int company = 1 + random.nextInt(COMPANIES);
+
+		JsonObject ticket = new JsonObject();
+		ticket.addProperty("title", sentence(random, 6));
+		ticket.addProperty("custom_id", "");
+		ticket.addProperty("description", sentence(random, 30));
+		ticket.addProperty("issue_type", String.valueOf(1 + random.nextInt(5)));
+		ticket.addProperty("affiliation", String.valueOf(1 + random.nextInt(COMPANIES * 4)));
+		ticket.addProperty("against_type", "company");
+		ticket.addProperty("against_id", String.valueOf(company));
+		ticket.addProperty("company", String.valueOf(company));
+		ticket.addProperty("issue_priority", String.valueOf(1 + random.nextInt(5)));
+		ticket.addProperty("class", String.valueOf(1 + random.nextInt(4)));
+		ticket.addProperty("resolution", String.valueOf(closed ? 1 + random.nextInt(6) : 0));
+
+		JsonObject status = new JsonObject();
+		status.addProperty("id", closed ? "2" : "1");
+		status.addProperty("title", closed ? "Closed" : "Open");
+		status.addProperty("color", closed ? "green" : "orange");
+		status.addProperty("standing", standing);
+		status.addProperty("start", "no");
+		ticket.add("issue_status", status);
+
+		ticket.addProperty("status", closed ? "2" : "1");
+		ticket.addProperty("referrer_type", "");
+		ticket.addProperty("referrer_id", "0");
+		ticket.addProperty("standing", standing);
+		ticket.addProperty("submitted_by", String.valueOf(1 + random.nextInt(STAFF)));
+		ticket.addProperty("date_submitted", String.valueOf(opened - 600));
+		ticket.addProperty("date_opened", String.valueOf(opened));
+		ticket.addProperty("date_resolved", String.valueOf(dateClosed));
+		ticket.addProperty("date_closed", String.valueOf(dateClosed));
+		ticket.addProperty("date_started", String.valueOf(opened));
+		ticket.addProperty("date_due", "0");
+		ticket.addProperty("opened_by", String.valueOf(1 + random.nextInt(STAFF)));
+		ticket.addProperty("closed_by", String.valueOf(closed ? 1 + random.nextInt(STAFF) : 0));
+		ticket.addProperty("resolved_by", String.valueOf(closed ? 1 + random.nextInt(STAFF) : 0));
+		ticket.addProperty("issue_object_budget", "0");
+		ticket.addProperty("assignee", String.valueOf(1 + random.nextInt(STAFF)));
+		ticket.addProperty("billable_seconds", String.valueOf(random.nextInt(50) * 360));
+		ticket.addProperty("date_last_interacted", String.valueOf(opened + random.nextLong(DAY)));
+		ticket.addProperty("date_modified", String.valueOf(Math.max(opened, dateClosed) + random.nextLong(DAY)));
+		ticket.addProperty("contract", String.valueOf(random.nextInt(CONTRACTS + 1)));
+		ticket.addProperty("resolution_detail", closed ? sentence(random, 10) : "");
+		ticket.addProperty("staff_bookmarked", "0");
+
+		return ticket;
+	}
+}
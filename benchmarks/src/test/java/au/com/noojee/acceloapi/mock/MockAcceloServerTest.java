@@ -0,0 +1,125 @@
+package au.com.noojee.acceloapi.mock;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.AcceloException;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.RetryPolicy;
+import au.com.noojee.acceloapi.cache.AcceloCache;
+import au.com.noojee.acceloapi.dao.TicketDao;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.entities.meta.Ticket_;
+import au.com.noojee.acceloapi.entities.meta.fieldTypes.FilterField;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.ratelimit.AcceloRateLimiter;
+
+public class MockAcceloServerTest
+{
+	private static final int TICKETS = 120;
+
+	private MockAcceloServer server;
+	private SyntheticTickets tickets = new SyntheticTickets(7, TICKETS);
+	private RetryPolicy retryPolicy;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		server = new MockAcceloServer();
+		server.register(EndPoint.tickets, Ticket_.class, tickets);
+		server.setHourlyLimit(Integer.MAX_VALUE);
+		server.start();
+		server.connect();
+
+		AcceloApi.getInstance().getRateLimiter().setMaxRate(1000);
+		retryPolicy = AcceloApi.getInstance().getRetryPolicy();
+		AcceloCache.getInstance().flushCache();
+	}
+
+	@After
+	public void tearDown()
+	{
+		AcceloApi.getInstance().getRateLimiter().setMaxRate(AcceloRateLimiter.DEFAULT_MAX_RATE);
+		AcceloApi.getInstance().setRetryPolicy(retryPolicy);
+		AcceloApi.getInstance().setMaxPagesInFlight(1);
+		AcceloCache.getInstance().flushCache();
+		server.stop();
+	}
+
+	@Test
+	public void testPagesAndFilters()
+	{
+		AcceloFilter<Ticket> filter = new AcceloFilter<>();
+		filter.noLimit();
+		filter.where(filter.greaterThan(Ticket_.assignee, 0));
+
+		List<Ticket> all = new TicketDao().getByFilter(filter);
+		Assert.assertEquals(TICKETS, all.size());
+		Assert.assertEquals(IntStream.rangeClosed(1, TICKETS).boxed().collect(Collectors.toList()),
+				all.stream().map(Ticket::getId).collect(Collectors.toList()));
+
+		// (assignee < 10 and contract = 0) or open
+		filter = new AcceloFilter<>();
+		filter.noLimit();
+		filter.where(filter.lessThan(Ticket_.assignee, 10).and(filter.eq(Ticket_.contract, 0))
+				.or(filter.eq(Ticket_.standing, Ticket.Standing.open)));
+
+		List<Integer> expected = IntStream.rangeClosed(1, TICKETS).filter(id ->
+			{
+				int assignee = tickets.get(id).get("assignee").getAsInt();
+				int contract = tickets.get(id).get("contract").getAsInt();
+				String standing = tickets.get(id).get("standing").getAsString();
+				return (assignee < 10 && contract == 0) || standing.equals("open");
+			}).boxed().collect(Collectors.toList());
+
+		List<Ticket> matched = new TicketDao().getByFilter(filter);
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertEquals(expected, matched.stream().map(Ticket::getId).collect(Collectors.toList()));
+
+		Assert.assertEquals(tickets.get(42).get("title").getAsString(), new TicketDao().getById(42).getTitle());
+	}
+
+	/**
+	 * The speculative pages requested after the last page must not stop the fetch completing.
+	 */
+	@Test(timeout = 30000)
+	public void testParallelPaging()
+	{
+		AcceloApi.getInstance().setMaxPagesInFlight(4);
+		server.setLatency(Duration.ofMillis(20), Duration.ofMillis(20));
+
+		AcceloFilter<Ticket> filter = new AcceloFilter<>();
+		filter.noLimit();
+		filter.where(filter.greaterThan(Ticket_.assignee, 0));
+
+		Assert.assertEquals(TICKETS, new TicketDao().getByFilter(filter).size());
+	}
+
+	@Test
+	public void testInjectedFailuresAreRetried()
+	{
+		AcceloApi.getInstance().setRetryPolicy(new RetryPolicy(5, Duration.ofMillis(10), Duration.ofSeconds(1)));
+		server.failNext(502, 2);
+
+		Assert.assertEquals(42, new TicketDao().getById(42).getId());
+		Assert.assertEquals(2, server.getFailureCount());
+		Assert.assertEquals(3, server.getRequestCount());
+	}
+
+	@Test(expected = AcceloException.class)
+	public void testUnknownFilterFieldIsRejected()
+	{
+		AcceloFilter<Ticket> filter = new AcceloFilter<>();
+		filter.where(filter.eq(new FilterField<Ticket, Integer>("no_such_field"), 1));
+
+		new TicketDao().getByFilter(filter);
+	}
+}
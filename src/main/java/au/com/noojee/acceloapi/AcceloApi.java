@@ -1,12 +1,8 @@
 package au.com.noojee.acceloapi;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
@@ -17,18 +13,29 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
-import javax.net.ssl.HttpsURLConnection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.io.CountingInputStream;
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
 
 import au.com.noojee.acceloapi.dao.gson.GsonForAccelo;
 import au.com.noojee.acceloapi.entities.AcceloEntity;
 import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.metrics.AcceloMetrics;
+import au.com.noojee.acceloapi.ratelimit.AcceloRateLimiter;
+import au.com.noojee.acceloapi.ratelimit.Priority;
+import au.com.noojee.acceloapi.transport.AcceloTransport;
+import au.com.noojee.acceloapi.transport.HttpClientTransport;
+import au.com.noojee.acceloapi.transport.Streams;
 
 public class AcceloApi
 {
@@ -36,8 +43,11 @@ public class AcceloApi
 	public static final int PAGE_SIZE = 50;
 
 	// Accelo limits api calls to 5000 per hour.
-	// We use 4900 to leave a little margin for error.
-	static final RateLimiter rateLimiter = RateLimiter.create(4900 / 3600);
+	// The limiter adjusts its rate from the rate limit headers Accelo returns with each response.
+	static final AcceloRateLimiter rateLimiter = new AcceloRateLimiter();
+
+	// The start of the json body built by buildJsonBody for a query.
+	static private final String READ_ONLY_BODY_PREFIX = "{\"_method\": \"" + HTTPMethod.GET + "\"";
 
 	static private AcceloApi self = null;;
 	/**
@@ -47,6 +57,21 @@ public class AcceloApi
 
 	private String accessToken = null;
 
+	/**
+	 * The maximum no. of page requests getAll will have in flight at one time. 1 fetches pages one after another.
+	 */
+	private volatile int maxPagesInFlight = 1;
+
+	/**
+	 * The transport used to send requests to accelo.
+	 */
+	private volatile AcceloTransport transport = new HttpClientTransport();
+
+	/**
+	 * Controls the retry of read only requests that fail with a 429, 502 or 503.
+	 */
+	private volatile RetryPolicy retryPolicy = new RetryPolicy();
+
 	public enum HTTPMethod
 	{
 		GET, POST, PUT, DELETE
@@ -62,8 +87,6 @@ public class AcceloApi
 
 	private AcceloApi()
 	{
-		System.setProperty("http.maxConnections", "8"); // set globally only
-														// once
 	}
 
 	public String getBaseURL()
@@ -76,6 +99,9 @@ public class AcceloApi
 	 * method of Accelo returns a list of entities. This method will throw an exception if you try to make a call that
 	 * causes Accelo to return a single entity (e.g. don't try to get a contact by id).
 	 * 
+	 * Each page is retried on its own (see RetryPolicy) so a transient failure part way through doesn't throw away the
+	 * pages already fetched.
+	 * 
 	 * @param filter
 	 * @param fieldList
 	 * @param clazz
@@ -121,14 +147,30 @@ public class AcceloApi
 	public <E extends AcceloEntity<E>, L extends AcceloAbstractResponseList<E>> List<E> getAll(URL url,
 			AcceloFilter<E> filter, AcceloFieldList fieldList, Class<L> responseClass)
 	{
+		if (maxPagesInFlight > 1)
+		{
+			try
+			{
+				return new ParallelPageFetcher<>(this, url, filter, fieldList, responseClass, maxPagesInFlight)
+						.fetch().join();
+			}
+			catch (CompletionException e)
+			{
+				throw (e.getCause() instanceof AcceloException ? (AcceloException) e.getCause()
+						: new AcceloException(e.getCause()));
+			}
+		}
+
 		List<E> entities = new ArrayList<>();
 		boolean more = true;
 		int page = filter.getOffset();
+		QueryBody body = buildQueryBody(filter, fieldList);
+		Priority priority = priority(filter);
 
 		// while there are more to fetch and we have fetch less than the requested limit.
 		while (more && filter.belowLimit(entities.size()))
 		{
-			L responseList = get(url, filter, fieldList, responseClass, page);
+			L responseList = get(url, body, responseClass, page, priority);
 
 			if (responseList != null)
 			{
@@ -147,6 +189,28 @@ public class AcceloApi
 		return entities;
 	}
 
+	/**
+	 * Returns a lazily paginated stream of the matching entities. Pages are only fetched as the stream is consumed so
+	 * at most a page is held in memory and short circuiting operations (e.g. limit, findFirst) stop any further pages
+	 * being fetched. The results are not cached.
+	 * 
+	 * @return a stream of the entities for the given endpoint subject to the filters limit.
+	 */
+	public <E extends AcceloEntity<E>, L extends AcceloAbstractResponseList<E>> Stream<E> stream(EndPoint endPoint,
+			AcceloFilter<E> filter, AcceloFieldList fieldList, Class<L> responseClass)
+	{
+		try
+		{
+			// copy the filter as the stream may be consumed long after the caller has changed their filter.
+			return StreamSupport.stream(new PagedSpliterator<>(this, endPoint.getURL(), filter.copy(),
+					fieldList.copy(), responseClass), false);
+		}
+		catch (MalformedURLException e)
+		{
+			throw new AcceloException(e);
+		}
+	}
+
 	/**
 	 * Send a request to get a single entity or the 'nth' page of entities. The first page is page 0.
 	 * 
@@ -161,8 +225,18 @@ public class AcceloApi
 	public <E extends AcceloEntity<E>, R> R get(URL url, AcceloFilter<E> filterMap, AcceloFieldList fieldList,
 			Class<R> clazz, int pageNo)
 	{
-		HTTPResponse response = get(url, filterMap, fieldList, pageNo);
-		return response.parseBody(clazz);
+		return get(url, filterMap, fieldList, clazz, pageNo, Priority.INTERACTIVE);
+	}
+
+	<E extends AcceloEntity<E>, R> R get(URL url, AcceloFilter<E> filterMap, AcceloFieldList fieldList,
+			Class<R> clazz, int pageNo, Priority priority)
+	{
+		return get(url, buildQueryBody(filterMap, fieldList), clazz, pageNo, priority);
+	}
+
+	<R> R get(URL url, QueryBody body, Class<R> clazz, int pageNo, Priority priority)
+	{
+		return _requestDecoded(HTTPMethod.POST, pagedURL(url, pageNo), body.json, body.bytes, clazz, priority);
 	}
 
 	public <E extends AcceloEntity<E>, R> String getRaw(EndPoint endPoint, AcceloFilter<E> filter,
@@ -182,45 +256,135 @@ public class AcceloApi
 		return response.getResponseBody();
 	}
 
-	/**
-	 * Send a request to get a single entity or the 'nth' page of entities. The first page is page 0.
-	 * 
-	 * @param url
-	 * @param filterMap
-	 * @param fieldList
-	 * @param pageNo the Page to return
-	 * @return
-	 */
-
-	private <E extends AcceloEntity<E>> HTTPResponse get(URL url, AcceloFilter<E> filterMap, AcceloFieldList fieldList,
-			int pageNo)
+	private <E extends AcceloEntity<E>> String buildGetJson(AcceloFilter<E> filterMap, AcceloFieldList fieldList)
 	{
 		String fields = GsonForAccelo.toJson(fieldList);
 		String filters = (filterMap == null) ? null : filterMap.toJson();
 
-		String json = buildJsonBody(HTTPMethod.GET, fields, filters);
+		return buildJsonBody(HTTPMethod.GET, fields, filters);
+	}
+
+	/**
+	 * The rate limiter lane for the pages of a query. A query for a bounded no. of pages (which includes every id
+	 * lookup) is usually being waited on, an unlimited query is an extract.
+	 */
+	static Priority priority(AcceloFilter<?> filter)
+	{
+		return (filter.getLimit() == AcceloFilter.UNLIMITED && !filter.isIDFilter() ? Priority.BATCH
+				: Priority.INTERACTIVE);
+	}
 
-		HTTPResponse response = null;
+	<E extends AcceloEntity<E>> QueryBody buildQueryBody(AcceloFilter<E> filterMap, AcceloFieldList fieldList)
+	{
+		return new QueryBody(buildGetJson(filterMap, fieldList));
+	}
 
-		URL pagedURL;
+	private URL pagedURL(URL url, int pageNo)
+	{
 		try
 		{
 			if (pageNo > 0)
 			{
 				logger.info("Fetching Page: " + pageNo + " for " + url);
 			}
-			pagedURL = new URL(url + "?_page=" + pageNo + "&_limit=" + PAGE_SIZE);
-			response = _request(HTTPMethod.POST, pagedURL, json);
+			return new URL(url + "?_page=" + pageNo + "&_limit=" + PAGE_SIZE);
+		}
+		catch (MalformedURLException e)
+		{
+			throw new AcceloException(e);
+		}
+	}
+
+	/**
+	 * Async version of getAll. Pages are fetched one after another but no thread is held while waiting on Accelo.
+	 * 
+	 * @return a future which completes with all entities for the given endpoint subject to the filters limit.
+	 */
+	public <E extends AcceloEntity<E>> CompletableFuture<List<E>> getAllAsync(EndPoint endPoint,
+			AcceloFilter<E> filter, AcceloFieldList fieldList, Class<? extends AcceloAbstractResponseList<E>> clazz)
+	{
+		try
+		{
+			if (maxPagesInFlight > 1)
+				return new ParallelPageFetcher<>(this, endPoint.getURL(), filter, fieldList, clazz, maxPagesInFlight)
+						.fetch();
 
+			return getAllAsync(endPoint.getURL(), filter, buildQueryBody(filter, fieldList), priority(filter), clazz,
+					filter.getOffset(), new ArrayList<>());
 		}
-		catch (IOException e)
+		catch (MalformedURLException e)
 		{
+			return CompletableFuture.failedFuture(new AcceloException(e));
+		}
+	}
 
-			throw new AcceloException(e);
+	private <E extends AcceloEntity<E>, L extends AcceloAbstractResponseList<E>> CompletableFuture<List<E>> getAllAsync(
+			URL url, AcceloFilter<E> filter, QueryBody body, Priority priority, Class<L> responseClass, int page,
+			List<E> entities)
+	{
+		return getAsync(url, body, responseClass, page, priority).thenCompose(responseList ->
+			{
+				List<E> entityList = responseList.getList();
+				entities.addAll(entityList);
+
+				// If we get less than a page we must now have everything.
+				if (entityList.size() < AcceloApi.PAGE_SIZE || !filter.belowLimit(entities.size()))
+					return CompletableFuture.completedFuture(entities);
+
+				return getAllAsync(url, filter, body, priority, responseClass, page + 1, entities);
+			});
+	}
+
+	/**
+	 * Async version of get(EndPoint...).
+	 */
+	public <E extends AcceloEntity<E>> CompletableFuture<E> getAsync(EndPoint endPoint, AcceloFilter<E> filterMap,
+			AcceloFieldList fieldList, Class<? extends AcceloResponse<E>> clazz)
+	{
+		try
+		{
+			return getAsync(endPoint.getURL(), filterMap, fieldList, clazz, 0)
+					.thenApply(response -> (response != null ? response.getEntity() : null));
+		}
+		catch (MalformedURLException e)
+		{
+			return CompletableFuture.failedFuture(new AcceloException(e));
 		}
+	}
 
-		return response;
+	/**
+	 * Async version of get(URL...). Sends a request to get a single entity or the 'nth' page of entities.
+	 */
+	public <E extends AcceloEntity<E>, R> CompletableFuture<R> getAsync(URL url, AcceloFilter<E> filterMap,
+			AcceloFieldList fieldList, Class<R> clazz, int pageNo)
+	{
+		return getAsync(url, filterMap, fieldList, clazz, pageNo, Priority.INTERACTIVE);
+	}
+
+	<E extends AcceloEntity<E>, R> CompletableFuture<R> getAsync(URL url, AcceloFilter<E> filterMap,
+			AcceloFieldList fieldList, Class<R> clazz, int pageNo, Priority priority)
+	{
+		try
+		{
+			return getAsync(url, buildQueryBody(filterMap, fieldList), clazz, pageNo, priority);
+		}
+		catch (AcceloException e)
+		{
+			return CompletableFuture.failedFuture(e);
+		}
+	}
 
+	<R> CompletableFuture<R> getAsync(URL url, QueryBody body, Class<R> clazz, int pageNo, Priority priority)
+	{
+		try
+		{
+			return _requestAsync(HTTPMethod.POST, pagedURL(url, pageNo), body.json, body.bytes, priority)
+					.thenApply(response -> response.parseBody(clazz));
+		}
+		catch (AcceloException e)
+		{
+			return CompletableFuture.failedFuture(e);
+		}
 	}
 
 	/*
@@ -281,6 +445,41 @@ public class AcceloApi
 		return response.parseBody(clazz);
 	}
 
+	/**
+	 * Async version of insert. Inserts are never retried.
+	 */
+	public <E> CompletableFuture<E> insertAsync(EndPoint endPoint, String jsonFieldValues, Class<E> clazz)
+	{
+		try
+		{
+			URL completeUrl = new URL(endPoint.getURL().toExternalForm());
+
+			return _requestAsync(HTTPMethod.POST, completeUrl, jsonFieldValues)
+					.thenApply(response -> response.parseBody(clazz));
+		}
+		catch (MalformedURLException e)
+		{
+			return CompletableFuture.failedFuture(new AcceloException(e));
+		}
+	}
+
+	/**
+	 * Async version of update.
+	 */
+	public <E> CompletableFuture<E> updateAsync(EndPoint endPoint, int id, String jsonFieldValues, Class<E> clazz)
+	{
+		URL completeUrl = buildURL(endPoint, id);
+
+		logger.error("Updating: url=" + completeUrl + " jsonFieldValues=" + jsonFieldValues);
+		return _requestAsync(HTTPMethod.PUT, completeUrl, jsonFieldValues).thenApply(response ->
+			{
+				if (response.getResponseCode() != 200)
+					throw new AcceloException("Update failed for endPoint " + endPoint + " id=" + id);
+
+				return response.parseBody(clazz);
+			});
+	}
+
 	public HTTPResponse delete(EndPoint endPoint, int id)
 	{
 		URL completeUrl = buildURL(endPoint, id);
@@ -321,114 +520,380 @@ public class AcceloApi
 	 */
 	public HTTPResponse _request(HTTPMethod method, URL url, String jsonArgs)
 	{
-		// accelo is rate limited.
-		rateLimiter.acquire();
-
-		HTTPResponse response = null;
-
-		try
-		{
+		return _request(method, url, jsonArgs, Priority.INTERACTIVE);
+	}
 
-			logger.debug(method + " url: " + url);
-			HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
+	/**
+	 * Returns a raw response string. The request waits for a rate limiter permit in the given priority lane.
+	 * 
+	 * Requests that only read from Accelo are retried according to the RetryPolicy.
+	 */
+	public HTTPResponse _request(HTTPMethod method, URL url, String jsonArgs, Priority priority)
+	{
+		RetryPolicy policy = (isReadOnly(method, jsonArgs) ? this.retryPolicy : RetryPolicy.none());
+		policy.onRequest();
 
-			// We always use post as we are using json and defining the method via
-			// _method in the json data.
-			connection.setRequestMethod(method.toString());
-			connection.setDoOutput(true);
-			connection.setAllowUserInteraction(false); // no users here so don't do
-														// anything silly.
+		byte[] body = buildBody(jsonArgs);
 
-			// connection.setRequestProperty("Content-Type",
-			// "application/x-www-form-urlencoded; charset=UTF-8");
-			connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
-			connection.setRequestProperty("Authorization", "Bearer " + accessToken);
+		for (int attempt = 1;; attempt++)
+		{
+			// accelo is rate limited.
+			RequestTimer timer = acquire(url, priority);
 
-			connection.connect();
+			HTTPResponse response;
+			try
+			{
+				logger.debug(method + " url: " + url);
 
-			// Write the json arguments if any exist.
-			if (jsonArgs != null)
+				response = transport.send(method, url, buildHeaders(), body);
+				timer.record(response);
+				rateLimiter.update(response.getHeaders());
+			}
+			catch (IOException e)
 			{
-				logger.debug("jsonArgs: " + jsonArgs);
-				try (OutputStreamWriter osw = new OutputStreamWriter(connection.getOutputStream(), "UTF-8"))
-				{
-					osw.write(jsonArgs.toString());
-					osw.flush();
-					osw.close();
-				}
+				timer.record(0, true);
+				throw new AcceloException(e);
+			}
 
+			long delay = policy.retryDelay(attempt, response);
+			if (delay < 0)
+			{
+				checkResponse(method, url, jsonArgs, response);
+				return response;
 			}
 
-			int responseCode = connection.getResponseCode();
+			backoff(delay, url);
+		}
+	}
 
-			// 404 returns HTML so no point trying to parse it.
-			if (responseCode == 404)
-				throw new AcceloException("The passed url was not found" + url.toString());
+	/**
+	 * Sends a request and decodes a successful response straight off the connection's input stream into clazz.
+	 * 
+	 * Only error responses are read into a String (so they can be logged and parsed into an AcceloErrorResponse).
+	 * 
+	 * Requests that only read from Accelo are retried according to the RetryPolicy.
+	 */
+	<R> R _requestDecoded(HTTPMethod method, URL url, String jsonArgs, Class<R> clazz, Priority priority)
+	{
+		return _requestDecoded(method, url, jsonArgs, buildBody(jsonArgs), clazz, priority);
+	}
 
-			String body = "";
-			String error = "";
+	private <R> R _requestDecoded(HTTPMethod method, URL url, String jsonArgs, byte[] body, Class<R> clazz,
+			Priority priority)
+	{
+		RetryPolicy policy = (isReadOnly(method, jsonArgs) ? this.retryPolicy : RetryPolicy.none());
+		policy.onRequest();
+
+		for (int attempt = 1;; attempt++)
+		{
+			// accelo is rate limited.
+			RequestTimer timer = acquire(url, priority);
 
-			try (InputStream streamBody = connection.getInputStream())
+			int thisAttempt = attempt;
+			try
+			{
+				logger.debug(method + " url: " + url);
+
+				return transport.send(method, url, buildHeaders(), body,
+						(responseCode, responseMessage, responseHeaders, rawBody) ->
+							{
+								CountingInputStream responseBody = new CountingInputStream(
+										rawBody == null ? InputStream.nullInputStream() : rawBody);
+								try
+								{
+									rateLimiter.update(responseHeaders);
+
+									if (responseCode < 300)
+									{
+										logger.debug(
+												"Decoding response " + responseCode + " into " + clazz.getSimpleName());
+										try
+										{
+											return GsonForAccelo.fromJson(
+													new JsonReader(new InputStreamReader(responseBody,
+															StandardCharsets.UTF_8)),
+													clazz);
+										}
+										catch (IllegalStateException | JsonSyntaxException e)
+										{
+											logger.error("Error parsing json body. Target Class: "
+													+ clazz.getSimpleName() + " EndPoint: " + url);
+											throw e;
+										}
+									}
+
+									// an error so we need the raw body.
+									HTTPResponse response = new HTTPResponse(responseCode, responseMessage,
+											responseHeaders, Streams.fastStreamReader(responseBody));
+
+									long delay = policy.retryDelay(thisAttempt, response);
+									if (delay >= 0)
+										throw new Retry(delay);
+
+									checkResponse(method, url, jsonArgs, response);
+
+									// throws an AcceloException.
+									return response.parseBody(clazz);
+								}
+								finally
+								{
+									timer.record(responseBody.getCount(), responseCode >= 300);
+								}
+							});
+			}
+			catch (Retry retry)
 			{
-				body = fastStreamReader(streamBody);
+				backoff(retry.delay, url);
 			}
 			catch (IOException e)
 			{
-				try (InputStream streamError = connection.getErrorStream())
-				{
-					error = fastStreamReader(streamError);
-				}
+				timer.record(0, true);
+				throw new AcceloException(e);
 			}
+		}
+	}
+
+	/**
+	 * Blocks until the rate limiter grants a permit.
+	 * 
+	 * @return a timer for the request that is about to be sent.
+	 */
+	private RequestTimer acquire(URL url, Priority priority)
+	{
+		long queued = System.nanoTime();
+		rateLimiter.acquire(priority);
+		return new RequestTimer(url, queued);
+	}
+
+	/**
+	 * Times a single attempt at a request from when its rate limiter permit is granted and records it in the
+	 * AcceloMetrics for the url's EndPoint.
+	 */
+	static private class RequestTimer
+	{
+		final URL url;
+		final long start;
+		boolean recorded = false;
+
+		RequestTimer(URL url, long queued)
+		{
+			this.url = url;
+			this.start = System.nanoTime();
+
+			AcceloMetrics.getInstance().recordRateLimiterWait(start - queued);
+		}
 
-			// Read the response.
-			if (responseCode < 300)
+		void record(HTTPResponse response)
+		{
+			record(utf8Length(response.getResponseBody()), response.getResponseCode() >= 300);
+		}
+
+		// an attempt is only recorded once even if reading the response fails after it has been recorded.
+		void record(long bytesRead, boolean error)
+		{
+			if (recorded)
+				return;
+			recorded = true;
+
+			EndPoint endPoint = EndPoint.fromURL(url);
+			if (endPoint != null)
+				AcceloMetrics.getInstance().getEndPoint(endPoint).record(System.nanoTime() - start, bytesRead, error);
+		}
+
+		// the no. of bytes the body was sent as without encoding it again.
+		static long utf8Length(String body)
+		{
+			if (body == null)
+				return 0;
+
+			long length = 0;
+			for (int i = 0; i < body.length(); i++)
 			{
-				// logger.error("Response body" + body);
-				response = new HTTPResponse(responseCode, connection.getResponseMessage(), body);
-				logger.debug(response);
+				char c = body.charAt(i);
+				if (c < 0x80)
+					length += 1;
+				else if (c < 0x800)
+					length += 2;
+				else if (Character.isHighSurrogate(c))
+				{
+					// the pair is encoded as 4 bytes.
+					length += 4;
+					i++;
+				}
+				else
+					length += 3;
 			}
-			else
-			{
+			return length;
+		}
+	}
 
-				response = new HTTPResponse(responseCode, connection.getResponseMessage(), error);
+	/**
+	 * The json body of a query and its UTF-8 encoding, built once so every page of the query sends the same bytes. The
+	 * page no. is passed in the url so the body doesn't change from page to page.
+	 */
+	static final class QueryBody
+	{
+		final String json;
+		final byte[] bytes;
 
-				logger.error(response);
-				logger.error("EndPoint responsible for error: " + method.toString() + " " + url);
-				logger.error("Subumitted body responsible for error: " + jsonArgs);
-			}
+		QueryBody(String json)
+		{
+			this.json = json;
+			this.bytes = json.getBytes(StandardCharsets.UTF_8);
 		}
-		catch (IOException e)
+	}
+
+	/**
+	 * Thrown out of a ResponseReader to tell _requestDecoded to retry the request after delay milliseconds.
+	 */
+	static private class Retry extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+
+		final long delay;
+
+		Retry(long delay)
 		{
-			throw new AcceloException(e);
+			super(null, null, false, false);
+			this.delay = delay;
 		}
+	}
 
-		return response;
+	private void backoff(long delay, URL url)
+	{
+		try
+		{
+			Thread.sleep(delay);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new AcceloException("Interrupted waiting to retry " + url);
+		}
+	}
+
+	/**
+	 * Async version of _request. Neither the wait for the rate limiter nor the wait for Accelo holds a thread.
+	 * 
+	 * The returned future completes exceptionally with an AcceloException if the request fails.
+	 */
+	public CompletableFuture<HTTPResponse> _requestAsync(HTTPMethod method, URL url, String jsonArgs)
+	{
+		return _requestAsync(method, url, jsonArgs, Priority.INTERACTIVE);
+	}
+
+	/**
+	 * Async version of _request(method, url, jsonArgs, priority). The wait between retries doesn't hold a thread
+	 * either.
+	 */
+	public CompletableFuture<HTTPResponse> _requestAsync(HTTPMethod method, URL url, String jsonArgs,
+			Priority priority)
+	{
+		return _requestAsync(method, url, jsonArgs, buildBody(jsonArgs), priority);
+	}
+
+	private CompletableFuture<HTTPResponse> _requestAsync(HTTPMethod method, URL url, String jsonArgs, byte[] body,
+			Priority priority)
+	{
+		RetryPolicy policy = (isReadOnly(method, jsonArgs) ? this.retryPolicy : RetryPolicy.none());
+		policy.onRequest();
+
+		return _requestAsync(method, url, jsonArgs, body, priority, policy, 1);
+	}
+
+	private CompletableFuture<HTTPResponse> _requestAsync(HTTPMethod method, URL url, String jsonArgs, byte[] body,
+			Priority priority, RetryPolicy policy, int attempt)
+	{
+		logger.debug(method + " url: " + url);
+
+		long queued = System.nanoTime();
+
+		return rateLimiter.acquireAsync(priority)
+				.thenCompose(v ->
+					{
+						RequestTimer timer = new RequestTimer(url, queued);
+						return transport.sendAsync(method, url, buildHeaders(), body).whenComplete((response, e) ->
+							{
+								if (e == null)
+									timer.record(response);
+								else
+									timer.record(0, true);
+							});
+					})
+				.handle((response, e) ->
+					{
+						if (e != null)
+						{
+							Throwable cause = (e instanceof CompletionException ? e.getCause() : e);
+							throw (cause instanceof AcceloException ? (AcceloException) cause
+									: new AcceloException(cause));
+						}
+						rateLimiter.update(response.getHeaders());
+						return response;
+					})
+				.thenCompose(response ->
+					{
+						long delay = policy.retryDelay(attempt, response);
+						if (delay >= 0)
+							return CompletableFuture
+									.runAsync(() -> {}, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+									.thenCompose(v -> _requestAsync(method, url, jsonArgs, body, priority, policy,
+											attempt + 1));
+
+						checkResponse(method, url, jsonArgs, response);
+						return CompletableFuture.completedFuture(response);
+					});
+	}
+
+	/**
+	 * True if the request doesn't change anything on the Accelo server so it is safe to retry. We always POST queries
+	 * so we have to look at the _method in the body.
+	 */
+	private boolean isReadOnly(HTTPMethod method, String jsonArgs)
+	{
+		return method == HTTPMethod.GET || (jsonArgs != null && jsonArgs.startsWith(READ_ONLY_BODY_PREFIX));
+	}
 
+	private Map<String, String> buildHeaders()
+	{
+		// We always use post as we are using json and defining the method via
+		// _method in the json data.
+		Map<String, String> headers = new HashMap<>();
+		headers.put("Content-Type", "application/json; charset=UTF-8");
+		headers.put("Authorization", "Bearer " + accessToken);
+		return headers;
 	}
 
-	String fastStreamReader(InputStream inputStream)
+	private byte[] buildBody(String jsonArgs)
 	{
-		if (inputStream != null)
+		byte[] body = null;
+		if (jsonArgs != null)
 		{
-			ByteArrayOutputStream result = new ByteArrayOutputStream();
-			byte[] buffer = new byte[4000];
-			int length;
-			try
-			{
-				while ((length = inputStream.read(buffer)) != -1)
-				{
-					result.write(buffer, 0, length);
-				}
-				return result.toString(StandardCharsets.UTF_8.name());
+			logger.debug("jsonArgs: " + jsonArgs);
+			body = jsonArgs.getBytes(StandardCharsets.UTF_8);
+		}
+		return body;
+	}
 
-			}
-			catch (IOException e)
-			{
-				throw new AcceloException(e);
-			}
+	private void checkResponse(HTTPMethod method, URL url, String jsonArgs, HTTPResponse response)
+	{
+		int responseCode = response.getResponseCode();
+
+		// 404 returns HTML so no point trying to parse it.
+		if (responseCode == 404)
+			throw new AcceloException("The passed url was not found" + url.toString());
 
+		// Read the response.
+		if (responseCode < 300)
+		{
+			logger.debug(response);
+		}
+		else
+		{
+			logger.error(response);
+			logger.error("EndPoint responsible for error: " + method.toString() + " " + url);
+			logger.error("Subumitted body responsible for error: " + jsonArgs);
 		}
-		return "";
 	}
 
 	/**
@@ -436,25 +901,29 @@ public class AcceloApi
 	 */
 	public void connect(AcceloSecret secret)
 	{
-		this.baseURL = "https://" + secret.getFQDN() + "/api/v0/";
+		connect(secret, "https://" + secret.getFQDN());
+	}
+
+	/**
+	 * Connect to an Accelo server at the given host.
+	 * 
+	 * @param secret - use AcceloSecret.load
+	 * @param hostURL - the scheme and host of the accelo server e.g. "https://myorg.api.accelo.com"
+	 * @throws AcceloException if Accelo doesn't return a token, the exception holds the response code and body.
+	 */
+	public void connect(AcceloSecret secret, String hostURL)
+	{
+		this.baseURL = hostURL + "/api/v0/";
 
 		try
 		{
-			// Enable to debug https connection
-			// sun.util.logging.PlatformLogger.getLogger("sun.net.www.protocol.http.HttpURLConnection")
-			// .setLevel(sun.util.logging.PlatformLogger.Level.ALL);
-
-			String authURL = "https://" + secret.getFQDN() + "/oauth2/v0/";
+			String authURL = hostURL + "/oauth2/v0/";
 
 			// String resource = "authorize";
 			String resource = "token";
 
 			URL url = new URL(authURL + resource);
 
-			HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
-			connection.setRequestMethod("POST");
-			connection.setDoOutput(true);
-
 			Map<String, String> arguments = new HashMap<>();
 			arguments.put("request_type", "code");
 			arguments.put("grant_type", "client_credentials");
@@ -463,30 +932,26 @@ public class AcceloApi
 
 			byte[] args = buildArgs(arguments);
 
-			connection.setFixedLengthStreamingMode(args.length);
+			Map<String, String> headers = new HashMap<>();
+			headers.put("Content-Type", "application/x-www-form-urlencoded");
 
 			logger.debug("connect");
-			connection.connect();
-			try (OutputStream os = connection.getOutputStream())
-			{
-				os.write(args);
-			}
+			HTTPResponse response = transport.send(HTTPMethod.POST, url, headers, args);
 
-			int responseCode = connection.getResponseCode();
+			int responseCode = response.getResponseCode();
 			logger.debug("Response: " + responseCode);
-			if (responseCode < 500)
+			if (responseCode < 200 || responseCode >= 300)
 			{
-				BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-
-				Gson gson = new Gson();
-				Accelo accelo = gson.fromJson(in, Accelo.class);
+				// the oauth errors aren't in Accelo's usual format so we just keep the response.
+				AcceloErrorResponse error = new AcceloErrorResponse();
+				error.setHttpResponse(response);
+				throw new AcceloException(error);
+			}
 
-				accessToken = accelo.getAccess_token();
+			Gson gson = new Gson();
+			Accelo accelo = gson.fromJson(response.getResponseBody(), Accelo.class);
 
-				in.close();
-			}
-			else
-				logger.debug("Invalid Response: " + responseCode);
+			accessToken = accelo.getAccess_token();
 		}
 		catch (IOException e)
 		{
@@ -494,6 +959,70 @@ public class AcceloApi
 		}
 	}
 
+	/**
+	 * Replaces the transport used to talk to Accelo. The existing transport is closed straight away, so requests it is
+	 * still sending may fail. Set the transport before making requests (e.g. at startup or in a test) and don't call
+	 * this while requests are in flight.
+	 * 
+	 * @param transport
+	 */
+	public synchronized void setTransport(AcceloTransport transport)
+	{
+		AcceloTransport existing = this.transport;
+		this.transport = transport;
+
+		if (existing != null && existing != transport)
+			existing.close();
+	}
+
+	public AcceloTransport getTransport()
+	{
+		return transport;
+	}
+
+	/**
+	 * The rate limiter shared by every request. Use getRateLimiter().getBudget() to see the remaining Accelo budget.
+	 */
+	public AcceloRateLimiter getRateLimiter()
+	{
+		return rateLimiter;
+	}
+
+	/**
+	 * Replaces the policy used to retry failed read only requests. Use RetryPolicy.none() to disable retries.
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy)
+	{
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * The retry policy which also holds the retry metrics.
+	 */
+	public RetryPolicy getRetryPolicy()
+	{
+		return retryPolicy;
+	}
+
+	/**
+	 * Enables parallel pagination in getAll. When greater than one, getAll keeps up to maxPagesInFlight page requests
+	 * outstanding and reassembles the results in page order. Requests still pass through the rate limiter so this
+	 * won't exceed the Accelo quota. Defaults to 1 (pages are fetched one at a time).
+	 * 
+	 * @param maxPagesInFlight
+	 */
+	public void setMaxPagesInFlight(int maxPagesInFlight)
+	{
+		if (maxPagesInFlight < 1)
+			throw new IllegalArgumentException("maxPagesInFlight must be at least 1");
+		this.maxPagesInFlight = maxPagesInFlight;
+	}
+
+	public int getMaxPagesInFlight()
+	{
+		return maxPagesInFlight;
+	}
+
 	public String buildUrlArgList(Map<String, String> urlArgMap)
 	{
 		String urlArgs = "";
@@ -515,21 +1044,15 @@ public class AcceloApi
 	String buildJsonBody(HTTPMethod method, String fields, String filters)
 	{
 		// build the full json string;
-		String json = "";
-
-		json = "{";
-		json += "\"_method\": \"" + method + "\"";
+		StringBuilder json = new StringBuilder("{\"_method\": \"").append(method).append('"');
 
 		if (fields.length() > 0)
-			json += ",\n" + fields;
+			json.append(",\n").append(fields);
 
 		if (filters != null && filters.length() > 0)
-			json += ",\n" + filters;
-
-		json += "}";
-
-		return json;
+			json.append(",\n").append(filters);
 
+		return json.append('}').toString();
 	}
 
 	static public byte[] buildArgs(Map<String, String> arguments)
@@ -13,6 +13,9 @@ public class AcceloFieldList
 	@SerializedName("_fields")
 	private List<String> fields = new ArrayList<>();
 
+	// rendered on first use and cleared when a field is added.
+	private transient volatile String json;
+
 	public AcceloFieldList(String field)
 	{
 		fields.add(field);
@@ -35,6 +38,7 @@ public class AcceloFieldList
 	public void add(String fieldName)
 	{
 		fields.add(fieldName);
+		json = null;
 	}
 
 	public String[] fields()
@@ -42,6 +46,34 @@ public class AcceloFieldList
 		return fields.toArray(new String[1]);
 	}
 
+	/**
+	 * @return true if entities loaded with this list hold the field. Accelo always returns the id.
+	 */
+	public boolean includes(String fieldName)
+	{
+		return fieldName.equals("id") || fields.contains(_ALL) || fields.contains(fieldName);
+	}
+
+	/**
+	 * @return the "_fields" json sent to Accelo, rendered once and reused until a field is added.
+	 */
+	public String toJson()
+	{
+		String result = this.json;
+		if (result == null)
+		{
+			StringBuilder json = new StringBuilder();
+			for (String field : fields())
+				json.append(json.length() == 0 ? "\"_fields\": [" : ",").append('"').append(field).append('"');
+			if (json.length() > 0)
+				json.append(']');
+
+			result = json.toString();
+			this.json = result;
+		}
+		return result;
+	}
+
 	@Override
 	public String toString()
 	{
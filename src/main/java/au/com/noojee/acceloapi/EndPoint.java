@@ -24,6 +24,9 @@ public enum EndPoint
 
 	protected String endpoint;
 
+	// values() clones the array on every call.
+	private static final EndPoint[] ALL = values();
+
 	EndPoint(String endpoint)
 	{
 		this.endpoint = endpoint;
@@ -31,6 +34,34 @@ public enum EndPoint
 
 
 	
+	/**
+	 * Finds the EndPoint a url was built from by one of the getURL methods. Where endpoints share a prefix (e.g.
+	 * issues and issues/resolutions) the longest match wins.
+	 * 
+	 * @return the EndPoint or null if the url isn't for the Accelo server we are connected to.
+	 */
+	public static EndPoint fromURL(URL url)
+	{
+		String baseURL = AcceloApi.getInstance().getBaseURL();
+		String path = url.toString();
+
+		if (baseURL == null || !path.startsWith(baseURL))
+			return null;
+
+		path = path.substring(baseURL.length());
+
+		EndPoint match = null;
+		for (EndPoint endPoint : ALL)
+		{
+			int length = endPoint.endpoint.length();
+			if (path.startsWith(endPoint.endpoint)
+					&& (path.length() == length || path.charAt(length) == '/' || path.charAt(length) == '?')
+					&& (match == null || length > match.endpoint.length()))
+				match = endPoint;
+		}
+		return match;
+	}
+
 	@Override
 	public String toString()
 	{
@@ -1,6 +1,9 @@
 package au.com.noojee.acceloapi;
 
 import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -15,11 +18,22 @@ public class HTTPResponse
 	private int responseCode;
 	private String responseMessage;
 	private String responseBody;
+	private Map<String, List<String>> headers;
 
 	public HTTPResponse(int responseCode, String responseMessage, String responseBody)
+	{
+		this(responseCode, responseMessage, Collections.emptyMap(), responseBody);
+	}
+
+	/**
+	 * @param headers the response headers. Lookups via getHeader are only case insensitive if the map is.
+	 */
+	public HTTPResponse(int responseCode, String responseMessage, Map<String, List<String>> headers,
+			String responseBody)
 	{
 		this.responseCode = responseCode;
 		this.responseMessage = responseMessage;
+		this.headers = headers;
 		this.responseBody = responseBody;
 	}
 
@@ -33,6 +47,20 @@ public class HTTPResponse
 		return responseMessage;
 	}
 
+	public Map<String, List<String>> getHeaders()
+	{
+		return headers;
+	}
+
+	/**
+	 * Returns the first value of the named header or null if the header wasn't returned.
+	 */
+	public String getHeader(String name)
+	{
+		List<String> values = headers.get(name);
+		return (values == null || values.isEmpty() ? null : values.get(0));
+	}
+
 	String getResponseBody()
 	{
 		return responseBody;
@@ -0,0 +1,88 @@
+package au.com.noojee.acceloapi;
+
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import au.com.noojee.acceloapi.entities.AcceloEntity;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.ratelimit.Priority;
+
+/**
+ * A Spliterator which lazily pages through the results of a query.
+ * 
+ * The next page is only fetched from Accelo when the consumer has used every entity from the current page so at most a
+ * single page is held in memory. Short circuiting operations (limit, findFirst, anyMatch...) stop the fetching of any
+ * further pages.
+ */
+class PagedSpliterator<E extends AcceloEntity<E>, L extends AcceloAbstractResponseList<E>>
+		extends Spliterators.AbstractSpliterator<E>
+{
+	private final AcceloApi api;
+	private final URL url;
+	private final AcceloApi.QueryBody body;
+	private final Class<L> responseClass;
+	private final Priority priority;
+
+	// the entities from the current page which haven't been consumed.
+	private final Deque<E> buffer = new ArrayDeque<>(AcceloApi.PAGE_SIZE);
+
+	private int nextPage;
+	private int pagesRemaining;
+	private boolean more = true;
+
+	PagedSpliterator(AcceloApi api, URL url, AcceloFilter<E> filter, AcceloFieldList fieldList,
+			Class<L> responseClass)
+	{
+		super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+		this.api = api;
+		this.url = url;
+		this.body = api.buildQueryBody(filter, fieldList);
+		this.responseClass = responseClass;
+		this.priority = AcceloApi.priority(filter);
+
+		this.nextPage = filter.getOffset();
+		this.pagesRemaining = filter.getLimit();
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super E> action)
+	{
+		if (buffer.isEmpty())
+			fetchNextPage();
+
+		E entity = buffer.poll();
+		if (entity == null)
+			return false;
+
+		action.accept(entity);
+		return true;
+	}
+
+	private void fetchNextPage()
+	{
+		if (!more || pagesRemaining == 0)
+			return;
+
+		L responseList = api.get(url, body, responseClass, nextPage, priority);
+
+		nextPage++;
+		if (pagesRemaining != AcceloFilter.UNLIMITED)
+			pagesRemaining--;
+
+		if (responseList == null)
+		{
+			more = false;
+			return;
+		}
+
+		buffer.addAll(responseList.getList());
+
+		// If we get less than a page we must now have everything.
+		if (responseList.getList().size() < AcceloApi.PAGE_SIZE)
+			more = false;
+	}
+}
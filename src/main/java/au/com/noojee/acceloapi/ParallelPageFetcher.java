@@ -0,0 +1,136 @@
+package au.com.noojee.acceloapi;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import au.com.noojee.acceloapi.entities.AcceloEntity;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.ratelimit.Priority;
+
+/**
+ * Fetches the pages of a query with up to maxInFlight page requests outstanding at any one time.
+ * 
+ * Pages are requested in order (offset, offset + 1 ...). As soon as a short page (less than PAGE_SIZE entities) is
+ * seen we know it is the last page so no further pages are requested and any speculative pages beyond it are
+ * discarded. The results are reassembled in page order.
+ * 
+ * Each page request goes through AcceloApi._requestAsync so the rate limiter is honoured, in the lane
+ * AcceloApi.priority picks for the filter.
+ */
+class ParallelPageFetcher<E extends AcceloEntity<E>, L extends AcceloAbstractResponseList<E>>
+{
+	private final AcceloApi api;
+	private final URL url;
+	private final AcceloApi.QueryBody body;
+	private final Class<L> responseClass;
+	private final Priority priority;
+	private final int maxInFlight;
+
+	private final CompletableFuture<List<E>> result = new CompletableFuture<>();
+
+	// the pages we have received, keyed by page no.
+	private final Map<Integer, List<E>> pages = new TreeMap<>();
+
+	private int nextPage;
+
+	// the last page we need, reduced as soon as we see a short page.
+	private int lastPage;
+
+	private int inFlight = 0;
+
+	ParallelPageFetcher(AcceloApi api, URL url, AcceloFilter<E> filter, AcceloFieldList fieldList,
+			Class<L> responseClass, int maxInFlight)
+	{
+		this.api = api;
+		this.url = url;
+		this.body = api.buildQueryBody(filter, fieldList);
+		this.responseClass = responseClass;
+		this.priority = AcceloApi.priority(filter);
+		this.maxInFlight = maxInFlight;
+
+		this.nextPage = filter.getOffset();
+		this.lastPage = (filter.getLimit() == AcceloFilter.UNLIMITED ? Integer.MAX_VALUE
+				: filter.getOffset() + filter.getLimit() - 1);
+	}
+
+	/**
+	 * Starts fetching pages.
+	 * 
+	 * @return a future which completes with the entities from every page in page order.
+	 */
+	CompletableFuture<List<E>> fetch()
+	{
+		launch();
+		return result;
+	}
+
+	/**
+	 * Launches page requests until we have maxInFlight outstanding or there are no more pages to fetch.
+	 */
+	private void launch()
+	{
+		List<Integer> toFetch = new ArrayList<>();
+
+		synchronized (this)
+		{
+			while (!result.isDone() && inFlight < maxInFlight && nextPage <= lastPage)
+			{
+				toFetch.add(nextPage++);
+				inFlight++;
+			}
+
+			if (inFlight == 0 && !result.isDone())
+			{
+				result.complete(assemble());
+				return;
+			}
+		}
+
+		// send the requests outside the lock.
+		for (int page : toFetch)
+		{
+			api.getAsync(url, body, responseClass, page, priority)
+					.whenComplete((responseList, e) -> onPage(page, responseList, e));
+		}
+	}
+
+	private void onPage(int page, L responseList, Throwable e)
+	{
+		synchronized (this)
+		{
+			inFlight--;
+
+			if (e != null)
+			{
+				result.completeExceptionally(e);
+				return;
+			}
+
+			// a speculative page beyond the last page is just dropped.
+			if (page <= lastPage)
+			{
+				List<E> entityList = (responseList == null ? new ArrayList<>() : responseList.getList());
+				pages.put(page, entityList);
+
+				// If we get less than a page we must now have everything.
+				if (entityList.size() < AcceloApi.PAGE_SIZE)
+					lastPage = page;
+			}
+		}
+
+		// even a dropped page may have been the last one we were waiting on.
+		launch();
+	}
+
+	private List<E> assemble()
+	{
+		List<E> entities = new ArrayList<>();
+		pages.entrySet().stream().filter(entry -> entry.getKey() <= lastPage)
+				.forEach(entry -> entities.addAll(entry.getValue()));
+		return entities;
+	}
+}
@@ -0,0 +1,212 @@
+package au.com.noojee.acceloapi;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Decides if and when a failed request is retried.
+ *
+ * Only requests that don't change anything on the Accelo server (a GET or a POST with _method GET) are retried and
+ * then only for 429 (too many requests), 502 (bad gateway) and 503 (service unavailable) responses. Inserts, updates
+ * and deletes are never retried as we can't tell if Accelo actioned the request before failing.
+ *
+ * The delay between attempts grows exponentially (baseDelay * 2^(attempt - 1), capped at maxDelay) with full jitter so
+ * a burst of failures doesn't come back as a burst of retries. If Accelo sends a Retry-After header we wait at least
+ * that long, but if it asks us to wait longer than maxDelay we give up.
+ *
+ * Retries are also limited by a retry budget. Each request adds BUDGET_RATIO of a token (up to BUDGET_CAPACITY) and each
+ * retry spends a whole token, so when Accelo is down we stop retrying rather than multiplying the load.
+ */
+public class RetryPolicy
+{
+	private static Logger logger = LogManager.getLogger();
+
+	public static final int DEFAULT_MAX_ATTEMPTS = 5;
+	public static final Duration DEFAULT_BASE_DELAY = Duration.ofMillis(500);
+	public static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(30);
+
+	static final double BUDGET_RATIO = 0.2;
+	static final double BUDGET_CAPACITY = 20;
+
+	public static final String RETRY_AFTER_HEADER = "Retry-After";
+
+	private final int maxAttempts;
+	private final long baseDelayMillis;
+	private final long maxDelayMillis;
+
+	private double budget = BUDGET_CAPACITY;
+
+	// metrics
+	private final Map<Integer, LongAdder> retriesByCode = new ConcurrentHashMap<>();
+	private final AtomicLong exhausted = new AtomicLong();
+	private final AtomicLong budgetDenied = new AtomicLong();
+
+	public RetryPolicy()
+	{
+		this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY);
+	}
+
+	/**
+	 * @param maxAttempts the maximum no. of times a request is sent (including the first). 1 disables retries.
+	 * @param baseDelay the delay before the first retry (before jitter is applied).
+	 * @param maxDelay the maximum delay between attempts.
+	 */
+	public RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay)
+	{
+		if (maxAttempts < 1)
+			throw new IllegalArgumentException("maxAttempts must be at least 1");
+
+		this.maxAttempts = maxAttempts;
+		this.baseDelayMillis = baseDelay.toMillis();
+		this.maxDelayMillis = maxDelay.toMillis();
+	}
+
+	/**
+	 * A policy that never retries.
+	 */
+	public static RetryPolicy none()
+	{
+		return new RetryPolicy(1, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY);
+	}
+
+	public boolean isRetryable(int responseCode)
+	{
+		return responseCode == 429 || responseCode == 502 || responseCode == 503;
+	}
+
+	/**
+	 * Called once for each new request (not for retries) to top up the retry budget.
+	 */
+	synchronized void onRequest()
+	{
+		budget = Math.min(BUDGET_CAPACITY, budget + BUDGET_RATIO);
+	}
+
+	/**
+	 * Decides if a failed attempt should be retried.
+	 *
+	 * @param attempt the attempt that just failed (the first attempt is 1).
+	 * @param response the failed response.
+	 * @return the no. of milliseconds to wait before the next attempt or -1 if we should give up.
+	 */
+	long retryDelay(int attempt, HTTPResponse response)
+	{
+		int responseCode = response.getResponseCode();
+
+		if (!isRetryable(responseCode))
+			return -1;
+
+		if (attempt >= maxAttempts)
+		{
+			exhausted.incrementAndGet();
+			return -1;
+		}
+
+		long retryAfter = retryAfterMillis(response.getHeader(RETRY_AFTER_HEADER));
+		if (retryAfter > maxDelayMillis)
+		{
+			logger.warn("Not retrying as Accelo asked us to wait " + retryAfter + "ms");
+			exhausted.incrementAndGet();
+			return -1;
+		}
+
+		synchronized (this)
+		{
+			if (budget < 1)
+			{
+				budgetDenied.incrementAndGet();
+				return -1;
+			}
+			budget -= 1;
+		}
+
+		// full jitter
+		long backoff = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+		long delay = Math.max(retryAfter, ThreadLocalRandom.current().nextLong(backoff + 1));
+
+		retriesByCode.computeIfAbsent(responseCode, code -> new LongAdder()).increment();
+		logger.warn("Retrying after " + response.getResponseMessage() + " attempt " + attempt + " in " + delay
+				+ "ms");
+
+		return delay;
+	}
+
+	/**
+	 * Retry-After is either a no. of seconds or an http date.
+	 *
+	 * @return the no. of milliseconds Accelo asked us to wait or 0 if it didn't say.
+	 */
+	static long retryAfterMillis(String retryAfter)
+	{
+		if (retryAfter == null)
+			return 0;
+
+		try
+		{
+			return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+		}
+		catch (NumberFormatException e)
+		{
+			try
+			{
+				Instant at = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+				return Math.max(0, Duration.between(Instant.now(), at).toMillis());
+			}
+			catch (DateTimeParseException e2)
+			{
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * @return the total no. of retries.
+	 */
+	public long getRetryCount()
+	{
+		return retriesByCode.values().stream().mapToLong(LongAdder::sum).sum();
+	}
+
+	/**
+	 * @return the no. of retries keyed by the response code that caused them.
+	 */
+	public Map<Integer, Long> getRetryCountsByCode()
+	{
+		Map<Integer, Long> counts = new TreeMap<>();
+		retriesByCode.forEach((code, count) -> counts.put(code, count.sum()));
+		return counts;
+	}
+
+	/**
+	 * @return the no. of requests that failed after using all of their attempts.
+	 */
+	public long getExhaustedCount()
+	{
+		return exhausted.get();
+	}
+
+	/**
+	 * @return the no. of retries that were skipped because the retry budget was empty.
+	 */
+	public long getBudgetDeniedCount()
+	{
+		return budgetDenied.get();
+	}
+
+	public int getMaxAttempts()
+	{
+		return maxAttempts;
+	}
+}
@@ -1,29 +1,51 @@
 package au.com.noojee.acceloapi.cache;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.collect.MapMaker;
 
 import au.com.noojee.acceloapi.AcceloAbstractResponseList;
 import au.com.noojee.acceloapi.AcceloApi;
 import au.com.noojee.acceloapi.AcceloException;
-import au.com.noojee.acceloapi.dao.gson.GsonForAccelo;
+import au.com.noojee.acceloapi.AcceloFieldList;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.dao.AcceloResponseMeta;
 import au.com.noojee.acceloapi.entities.AcceloEntity;
 import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.filter.FrozenFilter;
+import au.com.noojee.acceloapi.metrics.AcceloMetrics;
+import au.com.noojee.acceloapi.metrics.CacheMetrics;
 
 /**
- * Manages the caching of queries when accessing the Accelo REST API. By default we hold 10,000 queries with a 10 minute
- * expiry. When a query is run we also inject each of the individual entities that are returned into the cache so an
+ * Manages the caching of queries when accessing the Accelo REST API. By default the cached queries may use an estimated
+ * 256MB of heap and a query is dropped once it hasn't been read for 30 minutes, see CachePolicy to change this for an
+ * entity or endpoint. When a query is run we also inject each of the individual entities that are returned into the cache so an
  * access attempt by the entities id will return from cache. The cache is a singleton use AcceloCache.getInstance() to
  * access it.
  * 
@@ -36,16 +58,82 @@ public enum AcceloCache
 
 	private static Logger logger = LogManager.getLogger();
 
+	private static final int MAX_REFRESHERS = 2;
+	private static final int MAX_QUEUED_REFRESHES = 100;
+
+	public static final int DEFAULT_HEAP_BUDGET_MB = 256;
+
+	private static final long MB = 1024L * 1024L;
+
 	// We cache queries and the set of entities that are returned.
 	// We also create extra entries for each id so that
 	// any subsequent queries by the entities id will find that entity.
-	private LoadingCache<CacheKey, List> queryCache;
+	// Bounded by the estimated bytes the lists hold, see setHeapBudgetMB.
+	private volatile Cache<CacheKey, List> queryCache;
+
+	private volatile int heapBudgetMB = DEFAULT_HEAP_BUDGET_MB;
+
+	// Reverse index of (entity class, id) to the keys of every cached query that contains the entity.
+	// Maintained as lists are loaded into and evicted from the queryCache so that updating or flushing
+	// an entity only touches the queries it actually appears in.
+	private final ConcurrentHashMap<EntityRef, Set<CacheKey>> entityIndex = new ConcurrentHashMap<>();
+
+	// The keys of the cached list queries grouped by endpoint, entity class and fields so that fromBroaderQuery only
+	// looks at the queries that could answer a miss.
+	private final ConcurrentHashMap<ListGroup, Set<CacheKey>> listIndex = new ConcurrentHashMap<>();
+
+	// The Accelo request currently running for each key. Any other caller that wants the same key (including a forced
+	// refresh) waits on the same future rather than sending an identical request.
+	private final ConcurrentHashMap<CacheKey, CompletableFuture<List<AcceloEntity>>> inFlight = new ConcurrentHashMap<>();
 
 	/*
 	 * counts the no. of times we get a cache misses since the last resetMissCounter call.
 	 */
 	private int missCounter = 0;
 
+	/*
+	 * counts the no. of requests that were served by waiting on an identical in flight request.
+	 */
+	private final LongAdder coalescedCounter = new LongAdder();
+
+	/*
+	 * the optional on disk tier consulted after a miss and before going to Accelo.
+	 */
+	private volatile DiskCacheTier diskTier = null;
+
+	// the policy for each entity class and endpoint, see setPolicy. An entity class's policy wins over its endpoint's.
+	private final ConcurrentHashMap<Class<?>, CachePolicy> classPolicies = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<EndPoint, CachePolicy> endPointPolicies = new ConcurrentHashMap<>();
+
+	// When and under which policy each cached list was loaded and its weight. Keyed by the list instance (weak keys
+	// compare by identity) so the details go with the list when it is replaced and need no clean up when it is removed.
+	private final ConcurrentMap<List, Held> held = new MapMaker().weakKeys().makeMap();
+
+	// the estimated bytes held by the queries of each policy.
+	private final ConcurrentHashMap<CachePolicy, AtomicLong> policyWeights = new ConcurrentHashMap<>();
+
+	// the lists held under each policy, oldest first, so enforceMaxWeight can drop the oldest without a sort.
+	private final ConcurrentHashMap<CachePolicy, ConcurrentSkipListSet<Held>> policyLists = new ConcurrentHashMap<>();
+
+	private final AtomicLong heldSequence = new AtomicLong();
+
+	// Every change to the queryCache holds the read lock. setHeapBudgetMB takes the write lock so no put or
+	// invalidation is lost while the queries are moved to the resized cache.
+	private final ReentrantReadWriteLock resizeLock = new ReentrantReadWriteLock();
+
+	// the keys with a background refresh queued or running.
+	private final Set<CacheKey> refreshing = ConcurrentHashMap.newKeySet();
+
+	// Runs the background refreshes. Bounded so a burst of stale reads can't queue up an unbounded no. of reloads, a
+	// refresh that is rejected is tried again on the next read.
+	private final ThreadPoolExecutor refreshExecutor = new ThreadPoolExecutor(MAX_REFRESHERS, MAX_REFRESHERS, 30,
+			TimeUnit.SECONDS, new LinkedBlockingQueue<>(MAX_QUEUED_REFRESHES), runnable ->
+				{
+					Thread thread = new Thread(runnable, "accelo-cache-refresh");
+					thread.setDaemon(true);
+					return thread;
+				});
+
 	synchronized static public AcceloCache getInstance()
 	{
 		return SELF;
@@ -53,29 +141,47 @@ public enum AcceloCache
 
 	private AcceloCache()
 	{
-		LoadingCache<CacheKey, List> tmp = CacheBuilder.newBuilder()
-				.maximumSize(100000)
-				.expireAfterAccess(30, TimeUnit.MINUTES)
-				.removalListener(notification ->
+		queryCache = buildQueryCache(DEFAULT_HEAP_BUDGET_MB);
+
+		refreshExecutor.allowCoreThreadTimeOut(true);
+
+		// reference data that rarely changes.
+		endPointPolicies.put(EndPoint.staff, CachePolicy.PINNED);
+		endPointPolicies.put(EndPoint.priority, CachePolicy.PINNED);
+		endPointPolicies.put(EndPoint.resolutions, CachePolicy.DEFAULT.withExpireAfterAccess(Duration.ofHours(12)));
+		endPointPolicies.put(EndPoint.statuses, CachePolicy.DEFAULT.withExpireAfterAccess(Duration.ofHours(12)));
+	}
+
+	/**
+	 * Misses are loaded by get/getAsync (rather than a CacheLoader) so that they can be coalesced with forced refreshes
+	 * of the same key. Expiry is checked by cached() as it depends on each query's policy.
+	 */
+	private Cache<CacheKey, List> buildQueryCache(int heapBudgetMB)
+	{
+		return CacheBuilder.newBuilder()
+				.maximumWeight(heapBudgetMB * MB)
+				// pinned lists weigh nothing so are never dropped to make room.
+				.<CacheKey, List> weigher((key, list) ->
 					{
-						// if (!(notification.getKey() instanceof SingleEntityCacheKey))
-//						if (notification.getCause() != RemovalCause.REPLACED)
-//							logger.error(
-//									"Cache eviction of " + notification.getKey() + " because: "
-//											+ notification.getCause());
+						Held h = held.get(list);
+						return h == null || h.policy.isPinned() ? 0 : h.weight;
 					})
-				.build(new CacheLoader<CacheKey, List>()
-				{
-					@Override
-					public List<AcceloEntity> load(CacheKey key) throws AcceloException
+				.<CacheKey, List> removalListener(notification ->
 					{
-						AcceloCache.this.missCounter++;
-						return AcceloCache.this.runAccelQuery(key);
-					}
+						if (notification.wasEvicted())
+							metrics(notification.getKey()).evicted();
 
-				});
+						Held h = held.get(notification.getValue());
+						if (h != null)
+						{
+							policyWeight(h.policy).addAndGet(-h.weight);
+							policyLists(h.policy).remove(h);
+						}
 
-		queryCache = tmp;
+						unindex(notification.getKey(), notification.getValue());
+						unindexList(notification.getKey());
+					})
+				.build();
 	}
 
 	/**
@@ -113,7 +219,7 @@ public enum AcceloCache
 
 		// We now insert the list of ids back into the cache to maximize hits
 		// when getById is called.
-		populateIds(key, list);
+		populateIds(key, list, true);
 
 		return list;
 	}
@@ -123,27 +229,27 @@ public enum AcceloCache
 	 * 
 	 * @param originalKey
 	 * @param list
+	 * @param persist true if the entities came from Accelo and so should also be written to the disk tier.
 	 * @throws AcceloException
 	 */
 	@SuppressWarnings("unchecked")
-	private void populateIds(CacheKey originalKey, List<AcceloEntity> list) throws AcceloException
+	private void populateIds(CacheKey originalKey, List<AcceloEntity> list, boolean persist) throws AcceloException
 	{
 		CacheKey idKey;
 
 		// Check if the filter was already for an id, in which case we do
 		// nothing.
-		if (!originalKey.getFilter().isIDFilter())
+		if (!originalKey.getFrozenFilter().isIDFilter())
 		{
 
 			for (AcceloEntity entity : list)
 			{
-				AcceloFilter filter = new AcceloFilter();
-				filter.where(filter.eq(entity.getIdFilterField(), entity.getId()));
-
-				idKey = new SingleEntityCacheKey(originalKey.getEndPoint(), filter, originalKey.getFields(),
+				idKey = new SingleEntityCacheKey(originalKey.getEndPoint(), originalKey.getFields(),
 						originalKey.getMetaResponseClass(), entity.getClass(), entity.getId());
 
 				put(idKey, Arrays.asList(entity));
+				if (persist)
+					persist(idKey, Arrays.asList(entity));
 			}
 		}
 	}
@@ -156,79 +262,695 @@ public enum AcceloCache
 
 		long startTime = System.nanoTime();
 
+		List<AcceloEntity> cachedList = cached(cacheKey);
+		if (cachedList == null || cacheKey.getFrozenFilter().isRefreshCache())
+		{
+			list = singleFlight(cacheKey, this::runAccelQueryNow);
+		}
+		else
+		{
+			returnedFromCache = true;
+			list = cachedList;
+			metrics(cacheKey).hit();
+			refreshIfStale(cacheKey, cachedList);
+		}
+
+		// We always return a cloned list as we don't want anyone changing the data in the cache accidentally.
+		List<AcceloEntity> listCopy = copyList(list);
+
+		long elapsedTime = System.nanoTime() - startTime;
+
+		logger.debug("Returned from cache: " + returnedFromCache + " " + cacheKey + " entities returned: " + list.size()
+				+ " Misses: "
+				+ this.missCounter
+				+ " timer: " + elapsedTime / 1000000 + "(ms)");
+
+		return listCopy;
+	}
+
+	/**
+	 * Runs the query on the calling thread, returning its result (or failure) as a completed future so a failure can't
+	 * escape before singleFlightAsync has cleared the flight.
+	 */
+	private CompletableFuture<List<AcceloEntity>> runAccelQueryNow(CacheKey key)
+	{
+		CompletableFuture<List<AcceloEntity>> query = new CompletableFuture<>();
 		try
 		{
+			query.complete(runAccelQuery(key));
+		}
+		catch (Throwable e)
+		{
+			query.completeExceptionally(e);
+		}
+		return query;
+	}
 
-			List<AcceloEntity> cachedList = queryCache.getIfPresent(cacheKey);
-			if (cachedList == null || cacheKey.getFilter().isRefreshCache())
-			{
-				if (cachedList != null)
-					queryCache.invalidate(cacheKey);
+	/**
+	 * Runs the query for the key unless an identical query is already in flight in which case we wait for its result.
+	 */
+	private List<AcceloEntity> singleFlight(CacheKey cacheKey,
+			Function<CacheKey, CompletableFuture<List<AcceloEntity>>> query)
+	{
+		try
+		{
+			return singleFlightAsync(cacheKey, query).join();
+		}
+		catch (CompletionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new AcceloException(e.getCause());
+		}
+	}
+
+	/**
+	 * Starts the query for the key unless an identical query is already in flight in which case we return its future.
+	 * Once the query completes its results replace any list cached against the key.
+	 */
+	private CompletableFuture<List<AcceloEntity>> singleFlightAsync(CacheKey cacheKey,
+			Function<CacheKey, CompletableFuture<List<AcceloEntity>>> query)
+	{
+		// The key's filter is frozen but its field list isn't, so we copy the (small) field list to keep the key
+		// invariant while it is held by the cache.
+		CacheKey immutableKey = cacheKey.copy();
+
+		CompletableFuture<List<AcceloEntity>> flight = new CompletableFuture<>();
+		CompletableFuture<List<AcceloEntity>> existing = inFlight.putIfAbsent(immutableKey, flight);
+		CacheMetrics metrics = metrics(immutableKey);
+
+		if (existing != null)
+		{
+			metrics.miss();
+			coalescedCounter.increment();
+			logger.debug("Waiting on in flight request for " + immutableKey);
+			return existing;
+		}
+
+		// We keep serving the old list (if any) to other readers until the new one arrives.
+		@SuppressWarnings("unchecked")
+		List<AcceloEntity> cachedList = cached(immutableKey);
+
+		// the previous flight for the key may have finished since our caller checked the cache.
+		if (cachedList != null && !immutableKey.getFrozenFilter().isRefreshCache())
+		{
+			inFlight.remove(immutableKey, flight);
+			flight.complete(cachedList);
+			metrics.hit();
+			return flight;
+		}
+
+		List<AcceloEntity> storedList = fromDisk(immutableKey);
+		if (storedList != null)
+		{
+			inFlight.remove(immutableKey, flight);
+			flight.complete(storedList);
+			metrics.diskHit();
+			return flight;
+		}
 
-				// We need to clone the key as it must be invariant
-				// We have had instances where the filter contained in the
-				// key is modified after being passed to us which breaks the key.
-				CacheKey immutableKey = cacheKey.copy();
+		List<AcceloEntity> derivedList = fromBroaderQuery(immutableKey);
+		if (derivedList != null)
+		{
+			inFlight.remove(immutableKey, flight);
+			flight.complete(derivedList);
+			metrics.hit();
+			return flight;
+		}
+
+		this.missCounter++;
+		metrics.miss();
+
+		long startTime = System.nanoTime();
 
-				// Now go out and fetch the new list.
-				list = queryCache.get(immutableKey);
+		query.apply(immutableKey).whenComplete((list, e) ->
+			{
+				metrics.load(System.nanoTime() - startTime);
+				try
+				{
+					if (e == null)
+					{
+						put(immutableKey, list);
+						persist(immutableKey, list);
 
-				// delete any ids that no longer exist in the list returned by the query.
-				if (cachedList != null)
+						// delete any ids that no longer exist in the list returned by the query.
+						if (cachedList != null)
+							evictMissing(cachedList, list);
+					}
+				}
+				finally
 				{
+					// remove before completing so a caller woken by the completion doesn't find the finished flight.
+					inFlight.remove(immutableKey, flight);
+				}
+
+				if (e == null)
+					flight.complete(list);
+				else
+					flight.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+			});
 
-					List<AcceloEntity> badEntities = cachedList.stream().filter(entity -> !list.contains(entity))
-							.collect(Collectors.toList());
+		return flight;
+	}
+
+	/**
+	 * Async version of get. A cache hit completes immediately. On a miss the query is sent to Accelo without holding a
+	 * thread and the results are added to the cache when they arrive.
+	 * 
+	 * @param cacheKey
+	 * @return a future which completes with a copy of the cached list.
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<? extends AcceloEntity>> getAsync(CacheKey cacheKey)
+	{
+		List<AcceloEntity> cachedList = cached(cacheKey);
+		if (cachedList != null && !cacheKey.getFrozenFilter().isRefreshCache())
+		{
+			metrics(cacheKey).hit();
+			refreshIfStale(cacheKey, cachedList);
+			return CompletableFuture.completedFuture(copyList(cachedList));
+		}
+
+		return singleFlightAsync(cacheKey, this::runAccelQueryAsync).thenApply(list -> copyList(list));
+	}
 
-					// evict any of the badEntities
-					badEntities.stream().forEach(entity ->
+	/**
+	 * Async version of runAccelQuery.
+	 */
+	@SuppressWarnings("unchecked")
+	private CompletableFuture<List<AcceloEntity>> runAccelQueryAsync(CacheKey key)
+	{
+		CompletableFuture<List<AcceloEntity>> query;
+
+		if (AcceloAbstractResponseList.class.isAssignableFrom(key.getMetaResponseClass()))
+		{
+			// its a request for a list.
+			query = AcceloApi.getInstance().getAllAsync(key.getEndPoint(), key.getFilter(), key.getFields(),
+					key.getMetaResponseClass());
+		}
+		else
+		{
+			// its a request for a single entity.
+			query = AcceloApi.getInstance()
+					.getAsync(key.getEndPoint(), key.getFilter(), key.getFields(), key.getMetaResponseClass())
+					.thenApply(entity ->
 						{
-							queryCache.invalidate(entity);
-							logger.debug("Evicting: " + entity);
+							List<AcceloEntity> list = new ArrayList<>();
+							if (entity != null)
+								list.add((AcceloEntity) entity);
+							return list;
 						});
-				}
-			}
-			else
-			{
-				returnedFromCache = true;
-				list = cachedList;
-			}
 		}
-		catch (ExecutionException e)
+
+		return query.thenApply(list ->
+			{
+				populateIds(key, list, true);
+				return list;
+			});
+	}
+
+	/**
+	 * Called when a query is reloaded. The id entries of any entity that has dropped out of the query's list (it has
+	 * been deleted or no longer matches the filter) are evicted as they are out of date.
+	 */
+	private void evictMissing(List<AcceloEntity> cachedList, List<AcceloEntity> list)
+	{
+		List<AcceloEntity> badEntities = cachedList.stream().filter(entity -> !list.contains(entity))
+				.collect(Collectors.toList());
+
+		// evict any of the badEntities
+		badEntities.stream().forEach(entity ->
+			{
+				for (CacheKey k : keysFor(new EntityRef(entity)))
+				{
+					if (k instanceof SingleEntityCacheKey)
+						invalidate(k);
+				}
+				logger.debug("Evicting: " + entity);
+			});
+	}
+
+	/**
+	 * Loads the key from the disk tier (if there is one) into the heap.
+	 * 
+	 * @return the stored list or null if the disk tier doesn't have a current copy.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<AcceloEntity> fromDisk(CacheKey key)
+	{
+		DiskCacheTier tier = this.diskTier;
+		if (tier == null || key.getFrozenFilter().isRefreshCache() || !tier.accepts(key.getEntityClass()))
+			return null;
+
+		List<AcceloEntity> list = tier.get(key);
+		if (list != null)
 		{
-			throw (AcceloException) e.getCause();
+			put(key, list);
+			populateIds(key, list, false);
 		}
+		return list;
+	}
 
-		// We always return a cloned list as we don't want anyone changing the data in the cache accidentally.
-		List<AcceloEntity> listCopy = list.stream().map(e -> copy(e)).collect(Collectors.toList());
+	/**
+	 * Answers a list query from the complete result of a broader query that is already cached, e.g. the open tickets
+	 * for a contract can be taken from a cached list of all open tickets. See AcceloFilter.isSubsumedBy and
+	 * AcceloFilter.toPredicate for when this is possible. The predicate may only read fields in the key's field list.
+	 * 
+	 * @return the narrower list (which is added to the cache) or null if no cached query can answer the key.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<AcceloEntity> fromBroaderQuery(CacheKey key)
+	{
+		FrozenFilter filter = key.getFrozenFilter();
+		if (filter.isRefreshCache() || filter.getOffset() != 0 || !isList(key))
+			return null;
 
-		long elapsedTime = System.nanoTime() - startTime;
+		Set<CacheKey> candidates = listIndex.get(new ListGroup(key));
+		if (candidates == null)
+			return null;
 
-		logger.debug("Returned from cache: " + returnedFromCache + " " + cacheKey + " entities returned: " + list.size()
-				+ " Misses: "
-				+ this.missCounter
-				+ " timer: " + elapsedTime / 1000000 + "(ms)");
+		Optional<Predicate<AcceloEntity>> predicate = null;
 
-		return listCopy;
+		for (CacheKey broader : candidates)
+		{
+			List<AcceloEntity> broaderList = queryCache.asMap().get(broader);
+
+			if (broaderList == null
+					|| broader.getFrozenFilter().getOffset() != 0
+					|| !broader.getFrozenFilter().belowLimit(broaderList.size())
+					|| isExpired(broader, broaderList)
+					|| !filter.isSubsumedBy(broader.getFrozenFilter()))
+				continue;
+
+			if (predicate == null)
+				predicate = filter.toPredicate(key.getEntityClass(), key.getFields());
+			if (!predicate.isPresent())
+				return null;
+
+			List<AcceloEntity> list = broaderList.stream().filter(predicate.get()).collect(Collectors.toList());
+
+			// Accelo would have cut the list short and we can't know which entities it would have returned.
+			if (filter.getLimit() != AcceloFilter.UNLIMITED && list.size() > filter.getLimit() * AcceloApi.PAGE_SIZE)
+				return null;
+
+			logger.debug("Answered " + key + " from " + broader);
+			put(key, list, held(broaderList).loadedAt);
+			return list;
+		}
+		return null;
+	}
+
+	private boolean isList(CacheKey key)
+	{
+		return AcceloAbstractResponseList.class.isAssignableFrom(key.getMetaResponseClass());
 	}
 
 	@SuppressWarnings("unchecked")
+	private void persist(CacheKey key, List<AcceloEntity> list)
+	{
+		DiskCacheTier tier = this.diskTier;
+		if (tier != null && tier.accepts(key.getEntityClass()))
+			tier.put(key, list);
+	}
+
+	private CacheMetrics metrics(CacheKey key)
+	{
+		return AcceloMetrics.getInstance().getCache(key.getEntityClass());
+	}
+
+	private List<AcceloEntity> copyList(List<AcceloEntity> list)
+	{
+		return list.stream().map(e -> copy(e)).collect(Collectors.toList());
+	}
+
 	private AcceloEntity copy(AcceloEntity rhs)
 	{
 		AcceloEntity copy = null;
 
+		// a structural copy is much cheaper than the json round trip we used to do.
 		if (rhs != null)
-		{
-			String json = GsonForAccelo.toJson(rhs);
-			copy = GsonForAccelo.fromJson(json, rhs.getClass());
-		}
+			copy = (AcceloEntity) rhs.copy();
 
 		return copy;
 	}
 
 	private void put(CacheKey key, List<AcceloEntity> list)
 	{
-		queryCache.put(key, list);
+		put(key, list, System.nanoTime());
+	}
+
+	/**
+	 * Adds the list to the cache, replacing any list already cached against the key in a single step so readers see
+	 * either the old or the new list. The list is weighed as it is added so a cached list must never be changed.
+	 * 
+	 * @param loadedAt the System.nanoTime at which the list was loaded from Accelo.
+	 */
+	private void put(CacheKey key, List<AcceloEntity> list, long loadedAt)
+	{
+		CachePolicy policy = policy(key);
+		Held h = new Held(policy, key, loadedAt, EntityWeigher.weigh(list), heldSequence.incrementAndGet());
+		held.put(list, h);
+		policyWeight(policy).addAndGet(h.weight);
+		policyLists(policy).add(h);
+
+		resizeLock.readLock().lock();
+		try
+		{
+			index(key, list);
+			queryCache.put(key, list);
+			indexList(key);
+		}
+		finally
+		{
+			resizeLock.readLock().unlock();
+		}
+
+		enforceMaxWeight(policy);
+	}
+
+	private void invalidate(CacheKey key)
+	{
+		resizeLock.readLock().lock();
+		try
+		{
+			queryCache.invalidate(key);
+		}
+		finally
+		{
+			resizeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the key only if the given list is still cached against it.
+	 */
+	private boolean remove(CacheKey key, List list)
+	{
+		resizeLock.readLock().lock();
+		try
+		{
+			return queryCache.asMap().remove(key, list);
+		}
+		finally
+		{
+			resizeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Swaps an updated copy of a cached list in for the original. Readers may be iterating the original so a cached
+	 * list is never changed in place. The copy keeps the original's load time and is weighed afresh.
+	 */
+	private void replace(CacheKey key, List<AcceloEntity> list, List<AcceloEntity> updated)
+	{
+		put(key, updated, held(list).loadedAt);
+	}
+
+	/**
+	 * If the policy's queries now weigh more than it allows drops its longest held queries until they fit.
+	 */
+	private void enforceMaxWeight(CachePolicy policy)
+	{
+		if (!policy.isWeightLimited() || policyWeight(policy).get() <= policy.getMaxWeight())
+			return;
+
+		for (Held h : policyLists(policy))
+		{
+			if (policyWeight(policy).get() <= policy.getMaxWeight())
+				break;
+
+			// the list may already have been replaced or removed and not yet dropped from the policy's lists.
+			List list = queryCache.asMap().get(h.key);
+			if (list != null && held.get(list) == h && remove(h.key, list))
+				metrics(h.key).evicted();
+		}
+	}
+
+	/**
+	 * Returns the list cached against the key or null if there isn't one or it has expired under its policy.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<AcceloEntity> cached(CacheKey key)
+	{
+		List<AcceloEntity> list = queryCache.getIfPresent(key);
+		if (list != null)
+		{
+			if (isExpired(key, list))
+			{
+				remove(key, list);
+				metrics(key).evicted();
+				list = null;
+			}
+			else
+				held(list).lastRead = System.nanoTime();
+		}
+		return list;
+	}
+
+	private boolean isExpired(CacheKey key, List list)
+	{
+		Held h = held(list);
+		long now = System.nanoTime();
+		return policy(key).isExpired(now - h.loadedAt, now - h.lastRead);
+	}
+
+	private long age(List list)
+	{
+		return System.nanoTime() - held(list).loadedAt;
+	}
+
+	// lists put in the cache before we tracked them are treated as just loaded.
+	private Held held(List list)
+	{
+		Held h = held.get(list);
+		return h == null ? new Held(CachePolicy.DEFAULT, null, System.nanoTime(), 0, 0) : h;
+	}
+
+	private AtomicLong policyWeight(CachePolicy policy)
+	{
+		return policyWeights.computeIfAbsent(policy, p -> new AtomicLong());
+	}
+
+	private ConcurrentSkipListSet<Held> policyLists(CachePolicy policy)
+	{
+		return policyLists.computeIfAbsent(policy, p -> new ConcurrentSkipListSet<>(
+				Comparator.<Held> comparingLong(h -> h.loadedAt).thenComparingLong(h -> h.sequence)));
+	}
+
+	/**
+	 * If the list we just served is due for a refresh under its entity's policy reloads it in the background. Readers
+	 * keep getting the stale list until the new one replaces it.
+	 * 
+	 * Id entries are refreshed by the queries that loaded them (see evictMissing) rather than on their own.
+	 */
+	private void refreshIfStale(CacheKey key, List<AcceloEntity> list)
+	{
+		if (key instanceof SingleEntityCacheKey || !policy(key).isStale(age(list))
+				|| inFlight.containsKey(key) || !refreshing.add(key))
+			return;
+
+		CacheKey refreshKey = key.refreshing();
+		try
+		{
+			refreshExecutor.execute(() ->
+				{
+					try
+					{
+						singleFlight(refreshKey, this::runAccelQueryNow);
+					}
+					catch (RuntimeException e)
+					{
+						logger.warn("Background refresh of " + key + " failed, the stale list is still served. "
+								+ e.getMessage());
+					}
+					finally
+					{
+						refreshing.remove(key);
+					}
+				});
+		}
+		catch (RejectedExecutionException e)
+		{
+			refreshing.remove(key);
+			logger.debug("Refresh queue full, not refreshing " + key);
+		}
+	}
+
+	/**
+	 * @return true while any background refresh is queued or running.
+	 */
+	boolean isRefreshing()
+	{
+		return !refreshing.isEmpty();
+	}
+
+	/**
+	 * Sets how long the queries for the entity class are served before being refreshed or expired and how much of the
+	 * heap they may use. See CachePolicy. Takes precedence over the policy of the entity's endpoint. Expiry and refresh
+	 * apply to queries already in the cache, the weight limits only to queries loaded from now on.
+	 */
+	public void setPolicy(Class<? extends AcceloEntity> entityClass, CachePolicy policy)
+	{
+		classPolicies.put(entityClass, policy);
+	}
+
+	/**
+	 * Sets the policy for the queries sent to the endpoint. By default staff and priorities are pinned and resolutions
+	 * and statuses are kept for 12 hours since they were last read.
+	 */
+	public void setPolicy(EndPoint endPoint, CachePolicy policy)
+	{
+		endPointPolicies.put(endPoint, policy);
+	}
+
+	/**
+	 * @return the policy set for the entity class or the default policy.
+	 */
+	public CachePolicy getPolicy(Class<? extends AcceloEntity> entityClass)
+	{
+		return classPolicies.getOrDefault(entityClass, CachePolicy.DEFAULT);
+	}
+
+	public CachePolicy getPolicy(EndPoint endPoint)
+	{
+		return endPointPolicies.getOrDefault(endPoint, CachePolicy.DEFAULT);
+	}
+
+	@SuppressWarnings("unchecked")
+	private CachePolicy policy(CacheKey key)
+	{
+		CachePolicy policy = classPolicies.get(key.getEntityClass());
+		return policy != null ? policy : getPolicy(key.getEndPoint());
+	}
+
+	/**
+	 * Sets the (estimated) no. of megabytes the cached queries may use, pinned queries aren't counted. The queries
+	 * already cached are kept as far as they fit within the new budget. Reads carry on while the queries are moved, a
+	 * query that hasn't been moved yet is a miss.
+	 */
+	public void setHeapBudgetMB(int heapBudgetMB)
+	{
+		if (heapBudgetMB <= 0)
+			throw new IllegalArgumentException("heapBudgetMB must be positive");
+
+		resizeLock.writeLock().lock();
+		try
+		{
+			// swap first so the queries dropped to fit the new budget are unindexed against the new cache.
+			Cache<CacheKey, List> previous = this.queryCache;
+			this.queryCache = buildQueryCache(heapBudgetMB);
+			this.heapBudgetMB = heapBudgetMB;
+
+			this.queryCache.putAll(previous.asMap());
+		}
+		finally
+		{
+			resizeLock.writeLock().unlock();
+		}
+	}
+
+	public int getHeapBudgetMB()
+	{
+		return heapBudgetMB;
+	}
+
+	/**
+	 * @return the estimated no. of bytes held by the cached queries including pinned queries.
+	 */
+	public long getEstimatedBytes()
+	{
+		return policyWeights.values().stream().mapToLong(AtomicLong::get).sum();
+	}
+
+	/**
+	 * Records that each entity in the list is contained in the query identified by key.
+	 */
+	private void index(CacheKey key, List<AcceloEntity> list)
+	{
+		for (AcceloEntity entity : list)
+			index(new EntityRef(entity), key);
+	}
+
+	private void index(EntityRef ref, CacheKey key)
+	{
+		entityIndex.compute(ref, (r, keys) ->
+			{
+				if (keys == null)
+					keys = ConcurrentHashMap.newKeySet();
+				keys.add(key);
+				return keys;
+			});
+	}
+
+	/**
+	 * Called when a list is removed from the queryCache. If the list was replaced then any entity that is still in the
+	 * current list for the key stays indexed.
+	 */
+	private void unindex(CacheKey key, List<?> list)
+	{
+		if (key == null || list == null)
+			return;
+
+		List<?> current = queryCache.asMap().get(key);
+
+		for (Object entity : list)
+		{
+			if (current == null || !current.contains(entity))
+				unindex(new EntityRef((AcceloEntity<?>) entity), key);
+		}
+	}
+
+	private void unindex(EntityRef ref, CacheKey key)
+	{
+		entityIndex.computeIfPresent(ref, (r, keys) ->
+			{
+				keys.remove(key);
+				return keys.isEmpty() ? null : keys;
+			});
+	}
+
+	/**
+	 * Adds a list query to its group, called after it is put in the queryCache.
+	 */
+	private void indexList(CacheKey key)
+	{
+		if (!isList(key))
+			return;
+
+		listIndex.compute(new ListGroup(key), (group, keys) ->
+			{
+				if (keys == null)
+					keys = ConcurrentHashMap.newKeySet();
+				keys.add(key);
+				return keys;
+			});
+	}
+
+	/**
+	 * Called when a list is removed from the queryCache. The key stays in its group if it has been put again.
+	 */
+	private void unindexList(CacheKey key)
+	{
+		if (key == null || !isList(key))
+			return;
+
+		listIndex.computeIfPresent(new ListGroup(key), (group, keys) ->
+			{
+				if (!queryCache.asMap().containsKey(key))
+					keys.remove(key);
+				return keys.isEmpty() ? null : keys;
+			});
+	}
+
+	/**
+	 * Returns a snapshot of the keys of the cached queries that contain the given entity.
+	 */
+	private List<CacheKey> keysFor(EntityRef ref)
+	{
+		Set<CacheKey> keys = entityIndex.get(ref);
+		return keys == null ? new ArrayList<>() : new ArrayList<>(keys);
 	}
 
 	public void resetMissCounter()
@@ -236,6 +958,14 @@ public enum AcceloCache
 		this.missCounter = 0;
 	}
 
+	/**
+	 * Returns the no. of requests that didn't go to Accelo because an identical request was already in flight.
+	 */
+	public long getCoalescedCount()
+	{
+		return coalescedCounter.sum();
+	}
+
 	/**
 	 * Returns the no. of cache misses since the last call to resetMissCounter;
 	 * 
@@ -251,8 +981,23 @@ public enum AcceloCache
 	 */
 	public void flushCache()
 	{
-		queryCache.invalidateAll();
+		DiskCacheTier tier = this.diskTier;
+		if (tier != null)
+			tier.clear();
+
+		resizeLock.readLock().lock();
+		try
+		{
+			queryCache.invalidateAll();
+		}
+		finally
+		{
+			resizeLock.readLock().unlock();
+		}
+		entityIndex.clear();
+		listIndex.clear();
 		this.missCounter = 0;
+		coalescedCounter.reset();
 	}
 
 	/*
@@ -270,7 +1015,11 @@ public enum AcceloCache
 	 */
 	public void flushQuery(CacheKey key)
 	{
-		queryCache.invalidate(key);
+		DiskCacheTier tier = this.diskTier;
+		if (tier != null)
+			tier.remove(key);
+
+		invalidate(key);
 	}
 
 	public void flushEntity(AcceloEntity entity)
@@ -279,98 +1028,172 @@ public enum AcceloCache
 	}
 
 	/*
-	 * Flushes the given entity from the cache. search the cache for any CacheKeys that are the same type as entity.
-	 * This should find both single entities inserted by populateIds as well as entities contained as part of a queries
-	 * list. If flushQueries is true then we will also flush any queries that contain the entity.
+	 * Flushes the given entity from the cache. We use the reverse index to find both single entities inserted by
+	 * populateIds as well as the queries whose list contains the entity. If flushQueries is true then we will also
+	 * flush any queries that contain the entity.
 	 */
-	@SuppressWarnings("unchecked")
 	public void flushEntity(AcceloEntity entity, boolean flushQueries)
 	{
-		queryCache.asMap().keySet().stream().filter(k -> k.getEntityClass() == entity.getClass())
-				.forEach(k ->
-					{
-						// For a single entity added by populateid then we want to remove it.
-						if (k instanceof SingleEntityCacheKey)
-						{
-							SingleEntityCacheKey seck = (SingleEntityCacheKey) k;
-							if (seck.getId() == entity.getId())
-								queryCache.invalidate(k);
-						}
-						else
-						{
-							// For a query we want to prune out the deleted entity.
-							// Get the list from the cache for the key.
-							// this could be a list of 0, 1 or many
-							List<? extends AcceloEntity> list;
-							try
-							{
-								if (flushQueries)
-									queryCache.invalidate(k); // we have been instructed to take out the whole query.
-								else
-								{
-									list = queryCache.get(k);
-									list.remove(entity);
-									// Even if the list is now empty we don't invalidate the cache key as we support
-									// negative caching. i.e. if a query returns zero results don't run it again.
-								}
-							}
-							catch (ExecutionException e)
-							{
-								logger.error(e, e);
-							}
-						}
+		flushEntity(entity.getClass(), entity.getId(), flushQueries);
+	}
+
+	/**
+	 * Flushes the entity with the given type and id. Used when we only know the id of an entity, e.g. one that has been
+	 * deleted from Accelo.
+	 */
+	public void flushEntity(Class<? extends AcceloEntity> entityClass, int id)
+	{
+		flushEntity(entityClass, id, false);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void flushEntity(Class<? extends AcceloEntity> entityClass, int id, boolean flushQueries)
+	{
+		invalidateOnDisk(entityClass, id);
+
+		EntityRef ref = new EntityRef(entityClass, id);
+
+		for (CacheKey k : keysFor(ref))
+		{
+			// For a single entity added by populateid then we want to remove it.
+			// If we have been instructed to take out the whole query then we also invalidate it.
+			if (k instanceof SingleEntityCacheKey || flushQueries)
+				invalidate(k);
+			else
+			{
+				// For a query we want to prune out the deleted entity.
+				// this could be a list of 0, 1 or many
+				List<AcceloEntity> list = queryCache.getIfPresent(k);
+				if (list != null)
+				{
+					// Accelo would have returned another entity in its place.
+					if (!k.getFrozenFilter().belowLimit(list.size()))
+						invalidate(k);
+					else
+						replace(k, list, list.stream().filter(e -> e.getId() != id).collect(Collectors.toList()));
+				}
+				// Even if the list is now empty we don't invalidate the cache key as we support
+				// negative caching. i.e. if a query returns zero results don't run it again.
+				unindex(ref, k);
+			}
+		}
+	}
 
-					});
+	/**
+	 * The disk tier may hold queries that are no longer in the heap so we can't patch them like we do the heap.
+	 * Instead the tier ignores any stored query that contains an older copy of the entity.
+	 */
+	private void invalidateOnDisk(Class<? extends AcceloEntity> entityClass, int id)
+	{
+		DiskCacheTier tier = this.diskTier;
+		if (tier != null && tier.accepts(entityClass))
+			tier.invalidate(entityClass, id);
+	}
 
+	/**
+	 * Returns the id of every entity of the given type that is held in the heap, either on its own or as part of a
+	 * query.
+	 */
+	public Set<Integer> getCachedIds(Class<? extends AcceloEntity> entityClass)
+	{
+		return entityIndex.keySet().stream()
+				.filter(ref -> ref.getEntityClass() == entityClass)
+				.map(EntityRef::getId)
+				.collect(Collectors.toSet());
 	}
 
 	/**
-	 * Finds the entity (by its id and type) any where in the cache and updates it.
+	 * Finds the entity (by its id and type) any where in the cache and updates it. An entity that isn't cached is
+	 * ignored. The entity is dropped from any query it no longer matches and a query whose filter can't be tested
+	 * locally against the fields it loaded (see FrozenFilter.toPredicate) is flushed.
 	 * 
 	 * @param entity
 	 */
 	@SuppressWarnings("unchecked")
 	public void updateEntity(AcceloEntity entity)
 	{
-		queryCache.asMap().keySet().stream().filter(k -> k.getEntityClass() == entity.getClass())
-				.forEach(k ->
-					{
-						// For a single entity added by populateid then we want to remove it.
-						if (k instanceof SingleEntityCacheKey)
-						{
-							SingleEntityCacheKey seck = (SingleEntityCacheKey) k;
-							if (seck.getId() == entity.getId())
-							{
-								// replace the entity with the new one.
-								queryCache.put(k, Arrays.asList(entity));
-							}
-						}
-						else
-						{
-							// For a query we want to prune out the deleted entity.
-							// Get the list from the cache for the key.
-							// this could be a list of 0, 1 or many
-							List<AcceloEntity> list;
-							try
-							{
-								list = queryCache.get(k);
-
-								// find and remove the old version of the entity.
-								list.stream().filter(e -> e.getId() == entity.getId())
-										.findFirst()
-										.ifPresent(element -> list.remove(element));
-
-								// add the new version of the entity.
-								list.add(entity);
-							}
-							catch (ExecutionException e)
-							{
-								logger.error(e, e);
-							}
-						}
+		invalidateOnDisk(entity.getClass(), entity.getId());
+
+		for (CacheKey k : keysFor(new EntityRef(entity)))
+		{
+			if (k instanceof SingleEntityCacheKey)
+			{
+				// replace the entity with the new one.
+				put(k, Arrays.asList(entity));
+				continue;
+			}
+
+			// Queries that have since been evicted are dropped from the index by the removal listener
+			// so we never trigger a reload here.
+			List<AcceloEntity> list = queryCache.getIfPresent(k);
+			if (list == null)
+				continue;
+
+			Optional<Predicate<AcceloEntity>> predicate = k.getFrozenFilter().toPredicate(k.getEntityClass(),
+					k.getFields());
+			boolean matches = predicate.isPresent() && predicate.get().test(entity);
+
+			// we can't tell if the entity still matches or Accelo would have returned another entity in its place.
+			if (!predicate.isPresent() || (!matches && !k.getFrozenFilter().belowLimit(list.size())))
+			{
+				invalidate(k);
+				continue;
+			}
+
+			// replace the old version of the entity or drop it if it no longer matches.
+			List<AcceloEntity> updated = new ArrayList<>(list.size());
+			for (AcceloEntity e : list)
+			{
+				if (e.getId() != entity.getId())
+					updated.add(e);
+				else if (matches)
+					updated.add(entity);
+			}
+			replace(k, list, updated);
+		}
+	}
+
+	/**
+	 * Returns a copy of the entity with the given id if it is in the cache either from a getById or as one of the id
+	 * entries added when a query returned it. Never goes to Accelo.
+	 * 
+	 * @return the entity or null if it isn't cached.
+	 */
+	@SuppressWarnings("unchecked")
+	public <E extends AcceloEntity<E>> E getEntityIfPresent(EndPoint endPoint, AcceloFieldList fields,
+			Class<? extends AcceloResponseMeta<E>> responseClass, Class<E> entityClass, int id)
+	{
+		SingleEntityCacheKey<E> idKey = new SingleEntityCacheKey<>(endPoint, fields, responseClass, entityClass, id);
+
+		List<AcceloEntity> list = cached(idKey);
+		if (list == null)
+			list = cached(new CacheKey<>(endPoint, idKey.getFrozenFilter(), fields, responseClass, entityClass));
+
+		if (list == null)
+		{
+			list = fromDisk(idKey);
+			if (list != null && !list.isEmpty())
+				AcceloMetrics.getInstance().getCache(entityClass).diskHit();
+		}
+		else if (!list.isEmpty())
+			AcceloMetrics.getInstance().getCache(entityClass).hit();
+
+		// a miss isn't counted here as the caller goes on to load the entity which counts the miss.
+		return (list == null || list.isEmpty() ? null : (E) copy(list.get(0)));
+	}
 
-					});
+	/**
+	 * Adds a second cache tier that keeps queries on disk so they survive a restart. Pass null to remove the tier. The
+	 * caller remains responsible for closing the tier.
+	 */
+	public void setDiskTier(DiskCacheTier diskTier)
+	{
+		this.diskTier = diskTier;
+	}
 
+	public DiskCacheTier getDiskTier()
+	{
+		return diskTier;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -379,4 +1202,28 @@ public enum AcceloCache
 		return this.queryCache.getIfPresent(key);
 	}
 
+	/**
+	 * What we know about a cached list.
+	 */
+	private static class Held
+	{
+		final CachePolicy policy;
+		final CacheKey key;
+		final long loadedAt;
+		final int weight;
+		// orders lists loaded at the same time.
+		final long sequence;
+		volatile long lastRead;
+
+		Held(CachePolicy policy, CacheKey key, long loadedAt, int weight, long sequence)
+		{
+			this.policy = policy;
+			this.key = key;
+			this.loadedAt = loadedAt;
+			this.weight = weight;
+			this.sequence = sequence;
+			this.lastRead = System.nanoTime();
+		}
+	}
+
 }
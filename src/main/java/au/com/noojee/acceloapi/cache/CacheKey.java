@@ -1,25 +1,41 @@
 package au.com.noojee.acceloapi.cache;
 
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.hash.Hashing;
+
 import au.com.noojee.acceloapi.AcceloFieldList;
 import au.com.noojee.acceloapi.EndPoint;
 import au.com.noojee.acceloapi.dao.AcceloResponseMeta;
 import au.com.noojee.acceloapi.entities.AcceloEntity;
 import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.filter.FrozenFilter;
 
 @SuppressWarnings("rawtypes")
 public class CacheKey<E extends AcceloEntity<E>>
 {
 	EndPoint endPoint;
-	AcceloFilter<E> filter;
+	// frozen so later changes to the caller's filter can't change the key.
+	FrozenFilter<E> filter;
 	private AcceloFieldList fields;
 	
 	// The following two don't form part of the key as the endPoint implies these.
 	private transient Class<? extends AcceloResponseMeta<E>> responseClass;
 	private transient Class<E> entityClass;
 
+	// worked out on first use, then kept as the disk tier asks for them on every read and write and hashCode uses
+	// the fingerprint. Most id keys are only ever put so never need them.
+	private volatile String canonical;
+	private volatile long fingerprint;
 	
 	public CacheKey(EndPoint endPoint, AcceloFilter<E> filter, AcceloFieldList fields,
 			Class<? extends AcceloResponseMeta<E>> responseClass, Class<E> entityClass)
+	{
+		this(endPoint, filter.freeze(), fields, responseClass, entityClass);
+	}
+
+	public CacheKey(EndPoint endPoint, FrozenFilter<E> filter, AcceloFieldList fields,
+			Class<? extends AcceloResponseMeta<E>> responseClass, Class<E> entityClass)
 	{
 		this.endPoint = endPoint;
 		this.filter = filter;
@@ -33,7 +49,15 @@ public class CacheKey<E extends AcceloEntity<E>>
 		return this.entityClass;
 	}
 
+	/**
+	 * @return a filter over the key's filter, changing it doesn't change the key.
+	 */
 	public AcceloFilter<E> getFilter()
+	{
+		return new AcceloFilter<>(filter);
+	}
+
+	public FrozenFilter<E> getFrozenFilter()
 	{
 		return filter;
 	}
@@ -55,25 +79,67 @@ public class CacheKey<E extends AcceloEntity<E>>
 		return responseClass;
 	}
 	
+	/**
+	 * The filter is immutable so only the field list needs to be copied.
+	 */
 	public CacheKey<E> copy()
 	{
-		AcceloFilter<E> filter = this.filter.copy();
 		AcceloFieldList fields = this.fields.copy();
 		
-		CacheKey<E> newKey = new CacheKey<>(this.endPoint, filter, fields, this.responseClass, this.entityClass);
+		CacheKey<E> newKey = new CacheKey<>(this.endPoint, this.filter, fields, this.responseClass, this.entityClass);
 		
 		return newKey;
 	}
 
+	/**
+	 * @return a copy of the key whose filter forces the query to be reloaded from Accelo. The copy is equal to this key
+	 *         so the reloaded list replaces the cached one.
+	 */
+	public CacheKey<E> refreshing()
+	{
+		return new CacheKey<>(this.endPoint, this.filter.refreshCache(), this.fields.copy(), this.responseClass,
+				this.entityClass);
+	}
+
+	/**
+	 * The key in a canonical form (see AcceloFilter.toCanonicalString) so it can be persisted and compared across
+	 * runs.
+	 */
+	public String toCanonicalString()
+	{
+		String result = canonical;
+		if (result == null)
+		{
+			result = entityClass.getName() + "|" + endPoint.name() + "|" + fields + "|" + filter.toCanonicalString();
+			this.fingerprint = fingerprint(result);
+			// written last so a thread that sees the canonical form also sees its fingerprint.
+			this.canonical = result;
+		}
+		return result;
+	}
+
+	/**
+	 * @return a stable 64 bit hash of the canonical form of the key.
+	 */
+	public long fingerprint()
+	{
+		if (canonical == null)
+			toCanonicalString();
+		return fingerprint;
+	}
+
+	static long fingerprint(String canonical)
+	{
+		return Hashing.murmur3_128().hashString(canonical, StandardCharsets.UTF_8).asLong();
+	}
+
+	/**
+	 * Keys that are equal have the same canonical form so the same fingerprint.
+	 */
 	@Override
 	public int hashCode()
 	{
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((endPoint == null) ? 0 : endPoint.hashCode());
-		result = prime * result + ((fields == null) ? 0 : fields.hashCode());
-		result = prime * result + ((filter == null) ? 0 : filter.hashCode());
-		return result;
+		return Long.hashCode(fingerprint());
 	}
 
 	@Override
@@ -87,7 +153,7 @@ public class CacheKey<E extends AcceloEntity<E>>
 			return false;
 		@SuppressWarnings({ })
 		CacheKey other = (CacheKey) obj;
-		if (endPoint != other.endPoint)
+		if (endPoint != other.endPoint || fingerprint() != other.fingerprint())
 			return false;
 		if (fields == null)
 		{
@@ -0,0 +1,150 @@
+package au.com.noojee.acceloapi.cache;
+
+import java.time.Duration;
+
+/**
+ * Controls how long the AcceloCache serves the queries for an entity class or endpoint and how much of the heap they
+ * may use. Set with AcceloCache.setPolicy.
+ *
+ * Once a query is older than refreshAfterWrite the next read is still answered from the cache but also starts a reload
+ * in the background which replaces the cached list when it arrives (stale while revalidate). A query older than
+ * expireAfterWrite (its ttl) is never served, the read waits on Accelo. Setting both, with the expiry a few refresh
+ * periods longer, means a query that is read regularly is reloaded before it expires (refresh ahead) so its readers
+ * never wait. A query that hasn't been read for expireAfterAccess (30 minutes unless changed) is also dropped.
+ *
+ * maxWeight caps the estimated bytes (see EntityWeigher) held by the policy's queries, the longest held are dropped
+ * first. All unpinned queries also share the cache's heap budget (AcceloCache.setHeapBudgetMB). A pinned query is never
+ * expired or dropped to make room, use it for small lists that rarely change.
+ *
+ * Policies are immutable, the with methods return a new policy.
+ */
+public class CachePolicy
+{
+	private static final long NEVER = Long.MAX_VALUE;
+
+	public static final Duration DEFAULT_EXPIRE_AFTER_ACCESS = Duration.ofMinutes(30);
+
+	/**
+	 * Drops a query that hasn't been read for 30 minutes.
+	 */
+	public static final CachePolicy DEFAULT = new CachePolicy(null, null);
+
+	/**
+	 * Never expires or drops a query.
+	 */
+	public static final CachePolicy PINNED = new CachePolicy(NEVER, NEVER, NEVER, NEVER, true);
+
+	private final long refreshAfterNanos;
+	private final long expireAfterNanos;
+	private final long expireAfterAccessNanos;
+	private final long maxWeight;
+	private final boolean pinned;
+
+	/**
+	 * @param refreshAfterWrite the age at which a query is reloaded in the background, null to never reload.
+	 * @param expireAfterWrite the age at which a query is no longer served, null for no hard expiry.
+	 */
+	public CachePolicy(Duration refreshAfterWrite, Duration expireAfterWrite)
+	{
+		this(nanos(refreshAfterWrite), nanos(expireAfterWrite), DEFAULT_EXPIRE_AFTER_ACCESS.toNanos(), NEVER, false);
+	}
+
+	private CachePolicy(long refreshAfterNanos, long expireAfterNanos, long expireAfterAccessNanos, long maxWeight,
+			boolean pinned)
+	{
+		if (refreshAfterNanos != NEVER && refreshAfterNanos >= expireAfterNanos)
+			throw new IllegalArgumentException("refreshAfterWrite must be shorter than expireAfterWrite");
+		if (maxWeight <= 0)
+			throw new IllegalArgumentException("maxWeight must be positive");
+
+		this.refreshAfterNanos = refreshAfterNanos;
+		this.expireAfterNanos = expireAfterNanos;
+		this.expireAfterAccessNanos = expireAfterAccessNanos;
+		this.maxWeight = maxWeight;
+		this.pinned = pinned;
+	}
+
+	/**
+	 * A policy that reloads a query in the background once it is older than refreshAfterWrite and never expires it.
+	 */
+	public static CachePolicy refreshAfterWrite(Duration refreshAfterWrite)
+	{
+		return new CachePolicy(refreshAfterWrite, null);
+	}
+
+	/**
+	 * A policy that stops serving a query once it is older than expireAfterWrite.
+	 */
+	public static CachePolicy expireAfterWrite(Duration expireAfterWrite)
+	{
+		return new CachePolicy(null, expireAfterWrite);
+	}
+
+	/**
+	 * @return a copy of the policy that drops a query once it hasn't been read for expireAfterAccess, null to keep
+	 *         queries however long they go unread.
+	 */
+	public CachePolicy withExpireAfterAccess(Duration expireAfterAccess)
+	{
+		return new CachePolicy(refreshAfterNanos, expireAfterNanos, nanos(expireAfterAccess), maxWeight, pinned);
+	}
+
+	/**
+	 * @return a copy of the policy whose queries may hold at most maxWeight (estimated) bytes.
+	 */
+	public CachePolicy withMaxWeight(long maxWeight)
+	{
+		return new CachePolicy(refreshAfterNanos, expireAfterNanos, expireAfterAccessNanos, maxWeight, pinned);
+	}
+
+	/**
+	 * @return a copy of the policy whose queries may hold at most maxWeightMB (estimated) megabytes.
+	 */
+	public CachePolicy withMaxWeightMB(int maxWeightMB)
+	{
+		return withMaxWeight(maxWeightMB * 1024L * 1024L);
+	}
+
+	boolean isStale(long ageNanos)
+	{
+		return ageNanos >= refreshAfterNanos;
+	}
+
+	boolean isExpired(long ageNanos, long idleNanos)
+	{
+		return !pinned && (ageNanos >= expireAfterNanos || idleNanos >= expireAfterAccessNanos);
+	}
+
+	long getMaxWeight()
+	{
+		return maxWeight;
+	}
+
+	boolean isWeightLimited()
+	{
+		return maxWeight != NEVER;
+	}
+
+	public boolean isPinned()
+	{
+		return pinned;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "CachePolicy [refreshAfterWrite=" + describe(refreshAfterNanos) + ", expireAfterWrite="
+				+ describe(expireAfterNanos) + ", expireAfterAccess=" + describe(expireAfterAccessNanos)
+				+ ", maxWeight=" + (isWeightLimited() ? maxWeight : "none") + ", pinned=" + pinned + "]";
+	}
+
+	private static long nanos(Duration duration)
+	{
+		return duration == null ? NEVER : duration.toNanos();
+	}
+
+	private static String describe(long nanos)
+	{
+		return nanos == NEVER ? "never" : Duration.ofNanos(nanos).toString();
+	}
+}
@@ -0,0 +1,612 @@
+package au.com.noojee.acceloapi.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import au.com.noojee.acceloapi.dao.gson.GsonForAccelo;
+import au.com.noojee.acceloapi.entities.AcceloEntity;
+
+/**
+ * An optional second cache tier that keeps the results of queries on disk so they survive a restart. AcceloCache
+ * consults the tier after an in-heap miss and before going to Accelo:
+ *
+ * <pre>
+ * AcceloCache.getInstance().setDiskTier(new DiskCacheTier(Paths.get("accelo.cache"), Duration.ofHours(12),
+ * 		Company.class, Contact.class, Staff.class, Priority.class));
+ * </pre>
+ *
+ * The tier is a single memory-mapped, append-only file. Each record holds the entities returned for a CacheKey as json,
+ * when the record expires and a CRC. A record is written body first and its length last so a crash part way through a
+ * write leaves a record that fails its CRC check. When the file is reopened we replay the records up to the first bad
+ * record and carry on appending from there.
+ *
+ * Updated and deleted entities are recorded as invalidations so a stored query containing an older copy of the entity
+ * is ignored. Superseded, expired and invalidated records are dropped when the file is compacted, which happens when
+ * more than half of the file is garbage or the file reaches its maximum size. Compaction writes a new file and
+ * atomically renames it over the old one.
+ */
+public class DiskCacheTier implements Closeable
+{
+	private static Logger logger = LogManager.getLogger();
+
+	public static final Duration DEFAULT_TTL = Duration.ofHours(24);
+	public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+	static final int MAGIC = 0x41434332; // ACC2, keys are CacheKey.toCanonicalString
+	static final int HEADER_SIZE = 8;
+
+	// the length and the crc that precede each record's body.
+	static final int RECORD_HEADER_SIZE = 8;
+
+	static final int INITIAL_CAPACITY = 1024 * 1024;
+	static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+	static final byte PUT = 1;
+	static final byte REMOVE = 2;
+	static final byte INVALIDATE = 3;
+
+	private final Path file;
+	private final long ttlMillis;
+	private final Set<Class<?>> entityClasses;
+	private long maxBytes = DEFAULT_MAX_BYTES;
+
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+
+	// where the next record is written.
+	private int end;
+
+	// the offset of the current record for each key hash.
+	private final Map<Long, Integer> index = new HashMap<>();
+
+	// updated or deleted entities (class name#id) and the sequence no. at which they changed.
+	private final Map<String, Invalidation> invalidations = new HashMap<>();
+
+	// the no. of bytes in the records that are still current.
+	private long liveBytes = 0;
+
+	private long nextSequence = 1;
+
+	/**
+	 * Opens (or creates) a tier that keeps every entity class for DEFAULT_TTL.
+	 */
+	public DiskCacheTier(Path file) throws IOException
+	{
+		this(file, DEFAULT_TTL);
+	}
+
+	/**
+	 * Opens (or creates) the tier stored in file.
+	 *
+	 * @param ttl how long a stored query is served for.
+	 * @param entityClasses the entity classes to keep on disk. If none are passed every entity class is kept.
+	 */
+	public DiskCacheTier(Path file, Duration ttl, Class<?>... entityClasses) throws IOException
+	{
+		this.file = file;
+		this.ttlMillis = ttl.toMillis();
+		this.entityClasses = new HashSet<>(Arrays.asList(entityClasses));
+
+		// a compaction that didn't finish.
+		Files.deleteIfExists(compactFile());
+
+		open();
+	}
+
+	/**
+	 * Limits the size of the file. When the file is full it is compacted and if that doesn't free enough space new
+	 * queries aren't stored.
+	 */
+	public synchronized void setMaxBytes(long maxBytes)
+	{
+		this.maxBytes = Math.min(maxBytes, MAX_CAPACITY);
+	}
+
+	/**
+	 * @return true if queries for the entityClass are kept on disk.
+	 */
+	public boolean accepts(Class<?> entityClass)
+	{
+		return entityClasses.isEmpty() || entityClasses.contains(entityClass);
+	}
+
+	/**
+	 * @return the entities stored for the key or null if nothing current is stored.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	List<AcceloEntity> get(CacheKey key)
+	{
+		String keyString = key.toCanonicalString();
+		long hash = key.fingerprint();
+
+		byte[] json;
+		long sequence;
+
+		synchronized (this)
+		{
+			Integer offset = index.get(hash);
+			if (offset == null)
+				return null;
+
+			ByteBuffer record = body(offset);
+			record.get(); // type
+			sequence = record.getLong();
+			record.getLong(); // written
+			long expires = record.getLong();
+
+			if (!keyString.equals(readString(record)))
+				return null;
+
+			if (expires <= System.currentTimeMillis())
+			{
+				drop(hash);
+				return null;
+			}
+
+			json = new byte[record.getInt()];
+			record.get(json);
+		}
+
+		JsonArray array = new JsonParser().parse(new String(json, StandardCharsets.UTF_8)).getAsJsonArray();
+		List<AcceloEntity> list = new ArrayList<>(array.size());
+		for (JsonElement element : array)
+			list.add((AcceloEntity) GsonForAccelo.getGson().fromJson(element, key.getEntityClass()));
+
+		synchronized (this)
+		{
+			// an entity in the list has changed since the list was stored.
+			for (AcceloEntity entity : list)
+			{
+				Invalidation invalidation = invalidations.get(entityKey(entity.getClass(), entity.getId()));
+				if (invalidation != null && invalidation.sequence > sequence)
+				{
+					drop(hash);
+					return null;
+				}
+			}
+		}
+
+		return list;
+	}
+
+	/**
+	 * Stores the entities returned by the query, replacing anything already stored for the key.
+	 */
+	@SuppressWarnings("rawtypes")
+	void put(CacheKey key, List<? extends AcceloEntity> list)
+	{
+		String keyString = key.toCanonicalString();
+		byte[] json = GsonForAccelo.getGson().toJson(list).getBytes(StandardCharsets.UTF_8);
+
+		synchronized (this)
+		{
+			long now = System.currentTimeMillis();
+			int offset = append(PUT, keyString, json, now + ttlMillis);
+
+			long hash = key.fingerprint();
+			if (offset < 0)
+			{
+				// the file is full, the record we couldn't replace would come back when the file is next opened.
+				if (index.containsKey(hash))
+					clear();
+				return;
+			}
+
+			drop(hash);
+
+			index.put(hash, offset);
+			liveBytes += recordSize(offset);
+		}
+	}
+
+	/**
+	 * Removes anything stored for the key.
+	 */
+	@SuppressWarnings("rawtypes")
+	synchronized void remove(CacheKey key)
+	{
+		String keyString = key.toCanonicalString();
+		long hash = key.fingerprint();
+
+		if (index.containsKey(hash))
+		{
+			// append first as appending may compact the file which rebuilds the index.
+			if (append(REMOVE, keyString, new byte[0], 0) < 0)
+			{
+				// we couldn't record the removal so the stored query would come back when the file is next opened.
+				clear();
+				return;
+			}
+			drop(hash);
+		}
+	}
+
+	/**
+	 * Records that the entity has changed so any stored query containing an older copy is ignored.
+	 */
+	synchronized void invalidate(Class<?> entityClass, int id)
+	{
+		String entityKey = entityKey(entityClass, id);
+		long expires = System.currentTimeMillis() + ttlMillis;
+
+		int offset = append(INVALIDATE, entityKey, new byte[0], expires);
+		if (offset < 0)
+		{
+			// we couldn't record the change so we can't trust anything stored.
+			clear();
+			return;
+		}
+
+		Invalidation previous = invalidations.put(entityKey, new Invalidation(offset, nextSequence - 1));
+		if (previous != null)
+			liveBytes -= recordSize(previous.offset);
+		liveBytes += recordSize(offset);
+	}
+
+	/**
+	 * Removes everything from the tier.
+	 */
+	public synchronized void clear()
+	{
+		try
+		{
+			buffer = null;
+			channel.truncate(0);
+			channel.close();
+			open();
+		}
+		catch (IOException e)
+		{
+			logger.error("Unable to clear the disk cache " + file, e);
+		}
+	}
+
+	/**
+	 * Rewrites the file keeping only the current records.
+	 */
+	public synchronized void compact()
+	{
+		Path compactFile = compactFile();
+		long now = System.currentTimeMillis();
+
+		try (FileChannel out = FileChannel.open(compactFile, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(0).flip();
+			out.write(header);
+
+			List<Integer> offsets = new ArrayList<>(index.values());
+			invalidations.values().forEach(invalidation -> offsets.add(invalidation.offset));
+			offsets.sort(null);
+
+			for (int offset : offsets)
+			{
+				ByteBuffer body = body(offset);
+				body.position(body.position() + 1 + 8 + 8);
+				if (body.getLong() <= now)
+					continue;
+
+				ByteBuffer record = buffer.duplicate();
+				record.position(offset).limit(offset + recordSize(offset));
+				while (record.hasRemaining())
+					out.write(record);
+			}
+			out.force(true);
+		}
+		catch (IOException e)
+		{
+			logger.error("Unable to compact the disk cache " + file, e);
+			return;
+		}
+
+		try
+		{
+			buffer.force();
+			channel.close();
+			buffer = null;
+
+			Files.move(compactFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			open();
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("Unable to reopen the disk cache " + file, e);
+		}
+	}
+
+	/**
+	 * @return the no. of queries stored.
+	 */
+	public synchronized int size()
+	{
+		return index.size();
+	}
+
+	/**
+	 * @return the no. of bytes used by the records (current or not) in the file.
+	 */
+	public synchronized long getUsedBytes()
+	{
+		return end;
+	}
+
+	@Override
+	public synchronized void close()
+	{
+		try
+		{
+			if (buffer != null)
+				buffer.force();
+			buffer = null;
+			channel.close();
+		}
+		catch (IOException e)
+		{
+			logger.error("Unable to close the disk cache " + file, e);
+		}
+	}
+
+	/**
+	 * Maps the file and replays its records to rebuild the index.
+	 */
+	private void open() throws IOException
+	{
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+
+		index.clear();
+		invalidations.clear();
+		liveBytes = 0;
+		nextSequence = 1;
+
+		long size = channel.size();
+		if (size > MAX_CAPACITY)
+			throw new IOException("The disk cache " + file + " is too large");
+
+		map((int) Math.max(INITIAL_CAPACITY, size));
+
+		end = HEADER_SIZE;
+
+		if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+		{
+			if (size != 0)
+			{
+				logger.warn("Discarding the disk cache " + file + " as it isn't in a format we understand");
+				channel.truncate(0);
+				map(INITIAL_CAPACITY);
+			}
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, 0);
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		while (isValid(end))
+		{
+			replay(end, now);
+			end += recordSize(end);
+		}
+
+		logger.debug("Opened the disk cache " + file + " with " + index.size() + " queries");
+	}
+
+	private void map(int capacity) throws IOException
+	{
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+	}
+
+	/**
+	 * @return true if a complete record starts at offset.
+	 */
+	private boolean isValid(int offset)
+	{
+		if (offset + RECORD_HEADER_SIZE > buffer.capacity())
+			return false;
+
+		int length = buffer.getInt(offset);
+		if (length <= 0 || length > buffer.capacity() - offset - RECORD_HEADER_SIZE)
+			return false;
+
+		return buffer.getInt(offset + 4) == crc(offset + RECORD_HEADER_SIZE, length);
+	}
+
+	private void replay(int offset, long now)
+	{
+		ByteBuffer record = body(offset);
+		byte type = record.get();
+		long sequence = record.getLong();
+		record.getLong(); // written
+		long expires = record.getLong();
+		String key = readString(record);
+
+		nextSequence = Math.max(nextSequence, sequence + 1);
+
+		if (type == INVALIDATE)
+		{
+			if (expires > now)
+			{
+				invalidations.put(key, new Invalidation(offset, sequence));
+				liveBytes += recordSize(offset);
+			}
+			return;
+		}
+
+		long hash = hash(key);
+		drop(hash);
+
+		if (type == PUT && expires > now)
+		{
+			index.put(hash, offset);
+			liveBytes += recordSize(offset);
+		}
+	}
+
+	/**
+	 * Appends a record.
+	 *
+	 * @return the offset of the record or -1 if there is no room for it.
+	 */
+	private int append(byte type, String key, byte[] value, long expires)
+	{
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		int length = 1 + 8 + 8 + 8 + 4 + keyBytes.length + 4 + value.length;
+
+		if (!ensureRoom(RECORD_HEADER_SIZE + length))
+		{
+			logger.debug("The disk cache " + file + " is full");
+			return -1;
+		}
+
+		int offset = end;
+
+		ByteBuffer body = buffer.duplicate();
+		body.position(offset + RECORD_HEADER_SIZE);
+		body.put(type);
+		body.putLong(nextSequence++);
+		body.putLong(System.currentTimeMillis());
+		body.putLong(expires);
+		body.putInt(keyBytes.length);
+		body.put(keyBytes);
+		body.putInt(value.length);
+		body.put(value);
+
+		// the length goes last so the record only becomes visible once it is complete.
+		buffer.putInt(offset + 4, crc(offset + RECORD_HEADER_SIZE, length));
+		buffer.putInt(offset, length);
+
+		end = offset + RECORD_HEADER_SIZE + length;
+
+		return offset;
+	}
+
+	private boolean ensureRoom(int needed)
+	{
+		if ((long) end + needed <= buffer.capacity())
+			return true;
+
+		// mostly garbage so compacting will free up more than growing.
+		if (end - HEADER_SIZE > 2 * liveBytes)
+			compact();
+
+		long required = (long) end + needed;
+		if (required <= buffer.capacity())
+			return true;
+
+		if (required > maxBytes)
+		{
+			compact();
+			required = (long) end + needed;
+			if (required > maxBytes)
+				return false;
+			if (required <= buffer.capacity())
+				return true;
+		}
+
+		try
+		{
+			map((int) Math.min(maxBytes, Math.max(required, 2L * buffer.capacity())));
+			return true;
+		}
+		catch (IOException e)
+		{
+			logger.error("Unable to grow the disk cache " + file, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Removes the current record for the hash from the index.
+	 */
+	private void drop(long hash)
+	{
+		Integer previous = index.remove(hash);
+		if (previous != null)
+			liveBytes -= recordSize(previous);
+	}
+
+	private ByteBuffer body(int offset)
+	{
+		ByteBuffer body = buffer.duplicate();
+		body.position(offset + RECORD_HEADER_SIZE);
+		body.limit(offset + recordSize(offset));
+		return body;
+	}
+
+	private int recordSize(int offset)
+	{
+		return RECORD_HEADER_SIZE + buffer.getInt(offset);
+	}
+
+	private int crc(int offset, int length)
+	{
+		ByteBuffer body = buffer.duplicate();
+		body.position(offset).limit(offset + length);
+
+		CRC32C crc = new CRC32C();
+		crc.update(body);
+		return (int) crc.getValue();
+	}
+
+	private static String readString(ByteBuffer record)
+	{
+		byte[] bytes = new byte[record.getInt()];
+		record.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private Path compactFile()
+	{
+		return file.resolveSibling(file.getFileName() + ".compact");
+	}
+
+	/**
+	 * The key must be the same from one run to the next so (unlike CacheKey.hashCode) it can't depend on identity
+	 * hash codes. A SingleEntityCacheKey has the same key as the equivalent getById query.
+	 */
+	static long hash(String keyString)
+	{
+		return CacheKey.fingerprint(keyString);
+	}
+
+	static String entityKey(Class<?> entityClass, int id)
+	{
+		return entityClass.getName() + "#" + id;
+	}
+
+	static private class Invalidation
+	{
+		final int offset;
+		final long sequence;
+
+		Invalidation(int offset, long sequence)
+		{
+			this.offset = offset;
+			this.sequence = sequence;
+		}
+	}
+}
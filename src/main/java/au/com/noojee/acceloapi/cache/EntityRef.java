@@ -0,0 +1,58 @@
+package au.com.noojee.acceloapi.cache;
+
+import au.com.noojee.acceloapi.entities.AcceloEntity;
+
+/**
+ * Identifies an entity in the cache by its type and id. Used as the key of the cache's reverse index.
+ *
+ * @author bsutton
+ */
+final class EntityRef
+{
+	private final Class<?> entityClass;
+	private final int id;
+
+	EntityRef(AcceloEntity<?> entity)
+	{
+		this(entity.getClass(), entity.getId());
+	}
+
+	EntityRef(Class<?> entityClass, int id)
+	{
+		this.entityClass = entityClass;
+		this.id = id;
+	}
+
+	Class<?> getEntityClass()
+	{
+		return entityClass;
+	}
+
+	int getId()
+	{
+		return id;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return 31 * entityClass.hashCode() + id;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof EntityRef))
+			return false;
+		EntityRef other = (EntityRef) obj;
+		return this.id == other.id && this.entityClass == other.entityClass;
+	}
+
+	@Override
+	public String toString()
+	{
+		return entityClass.getSimpleName() + "[" + id + "]";
+	}
+}
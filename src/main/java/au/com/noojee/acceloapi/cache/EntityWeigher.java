@@ -0,0 +1,180 @@
+package au.com.noojee.acceloapi.cache;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import au.com.noojee.acceloapi.AcceloException;
+
+/**
+ * Estimates the no. of bytes a cached list of entities holds on the heap so the AcceloCache can be bounded in bytes
+ * rather than entries.
+ *
+ * The estimate walks the entity's fields by reflection assuming a 64 bit JVM with compressed references: a 12 byte
+ * object header, 4 byte references, objects padded to 8 bytes and strings stored one byte per char. Enums are shared so
+ * cost nothing. Objects from outside this library are given a flat size rather than walked. It is meant to rank and
+ * bound lists against each other, not to match a heap dump.
+ */
+final class EntityWeigher
+{
+	private static final int HEADER = 12;
+	private static final int ARRAY_HEADER = 16;
+	private static final int REFERENCE = 4;
+
+	// the size we assume for an object we don't walk.
+	private static final int OPAQUE = 32;
+
+	// how far we follow references from an entity.
+	private static final int MAX_DEPTH = 4;
+
+	private static final Map<Class<?>, ClassLayout> layouts = new ConcurrentHashMap<>();
+
+	private EntityWeigher()
+	{
+	}
+
+	/**
+	 * @return the estimated size of the list and the entities it holds, capped at Integer.MAX_VALUE.
+	 */
+	static int weigh(List<?> list)
+	{
+		long bytes = align(HEADER + 8) + align(ARRAY_HEADER + (long) REFERENCE * list.size());
+		for (Object entity : list)
+			bytes += estimate(entity, MAX_DEPTH);
+
+		return (int) Math.min(bytes, Integer.MAX_VALUE);
+	}
+
+	static long estimate(Object value, int depth)
+	{
+		if (value == null || value instanceof Enum)
+			return 0;
+
+		if (value instanceof String)
+			return align(HEADER + 12) + align(ARRAY_HEADER + ((String) value).length());
+
+		if (value instanceof Number || value instanceof Boolean || value instanceof Character)
+			return 16;
+
+		if (value instanceof LocalDate)
+			return 24;
+
+		if (value instanceof LocalDateTime)
+			return 24 + 24 + 24;
+
+		Class<?> type = value.getClass();
+		if (type.isArray())
+			return estimateArray(value, depth);
+
+		if (value instanceof Collection)
+		{
+			// roughly a node (or slot) per element plus the collection itself.
+			long bytes = 48;
+			for (Object element : (Collection<?>) value)
+				bytes += 24 + (depth > 0 ? estimate(element, depth - 1) : 0);
+			return bytes;
+		}
+
+		if (value instanceof Map)
+		{
+			long bytes = 48;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+				bytes += 32 + (depth > 0 ? estimate(entry.getKey(), depth - 1) + estimate(entry.getValue(), depth - 1)
+						: 0);
+			return bytes;
+		}
+
+		if (!type.getName().startsWith("au.com.noojee."))
+			return OPAQUE;
+
+		ClassLayout layout = layouts.computeIfAbsent(type, ClassLayout::new);
+		long bytes = layout.shallowSize;
+		if (depth > 0)
+		{
+			for (Field field : layout.references)
+			{
+				try
+				{
+					bytes += estimate(field.get(value), depth - 1);
+				}
+				catch (IllegalAccessException e)
+				{
+					throw new AcceloException(e);
+				}
+			}
+		}
+		return bytes;
+	}
+
+	private static long estimateArray(Object array, int depth)
+	{
+		Class<?> componentType = array.getClass().getComponentType();
+		int length = Array.getLength(array);
+
+		if (componentType.isPrimitive())
+			return align(ARRAY_HEADER + (long) primitiveSize(componentType) * length);
+
+		long bytes = align(ARRAY_HEADER + (long) REFERENCE * length);
+		if (depth > 0)
+		{
+			for (int i = 0; i < length; i++)
+				bytes += estimate(Array.get(array, i), depth - 1);
+		}
+		return bytes;
+	}
+
+	private static int primitiveSize(Class<?> type)
+	{
+		if (type == long.class || type == double.class)
+			return 8;
+		if (type == int.class || type == float.class)
+			return 4;
+		if (type == short.class || type == char.class)
+			return 2;
+		return 1;
+	}
+
+	private static long align(long bytes)
+	{
+		return (bytes + 7) & ~7L;
+	}
+
+	/**
+	 * The shallow size of a class and the fields that refer to other objects.
+	 */
+	private static class ClassLayout
+	{
+		final long shallowSize;
+		final List<Field> references = new ArrayList<>();
+
+		ClassLayout(Class<?> type)
+		{
+			long size = HEADER;
+			for (Class<?> t = type; t != Object.class; t = t.getSuperclass())
+			{
+				for (Field field : t.getDeclaredFields())
+				{
+					if (Modifier.isStatic(field.getModifiers()))
+						continue;
+
+					if (field.getType().isPrimitive())
+						size += primitiveSize(field.getType());
+					else
+					{
+						size += REFERENCE;
+						field.setAccessible(true);
+						references.add(field);
+					}
+				}
+			}
+			this.shallowSize = align(size);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package au.com.noojee.acceloapi.cache;
+
+import java.util.Objects;
+
+import au.com.noojee.acceloapi.AcceloFieldList;
+import au.com.noojee.acceloapi.EndPoint;
+
+/**
+ * The endpoint, entity class and fields shared by the list queries that can answer each other. Used as the key of the
+ * cache's index of list queries.
+ *
+ * @author bsutton
+ */
+final class ListGroup
+{
+	private final EndPoint endPoint;
+	private final Class<?> entityClass;
+	private final AcceloFieldList fields;
+
+	ListGroup(CacheKey<?> key)
+	{
+		this.endPoint = key.getEndPoint();
+		this.entityClass = key.getEntityClass();
+		this.fields = key.getFields();
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Objects.hash(endPoint, entityClass, fields);
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ListGroup))
+			return false;
+		ListGroup other = (ListGroup) obj;
+		return this.endPoint == other.endPoint && this.entityClass == other.entityClass
+				&& this.fields.equals(other.fields);
+	}
+
+	@Override
+	public String toString()
+	{
+		return endPoint + " " + entityClass.getSimpleName() + " " + fields;
+	}
+}
@@ -5,6 +5,7 @@ import au.com.noojee.acceloapi.EndPoint;
 import au.com.noojee.acceloapi.dao.AcceloResponseMeta;
 import au.com.noojee.acceloapi.entities.AcceloEntity;
 import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.filter.FrozenFilter;
 
 /**
  * This class is used to differentiate between a cache entry for a single id verses a full query.
@@ -25,6 +26,17 @@ public class SingleEntityCacheKey<E extends AcceloEntity<E>> extends CacheKey<E>
 		this.id = id;
 	}
 	
+	/**
+	 * A key for the entity with the given id, see FrozenFilter.forId.
+	 */
+	public SingleEntityCacheKey(EndPoint endPoint, AcceloFieldList fields,
+			Class<? extends AcceloResponseMeta<E>> responseListClass, Class<E> entityClass, int id)
+	{
+		super(endPoint, FrozenFilter.forId(id), fields, responseListClass, entityClass);
+
+		this.id = id;
+	}
+
 	int getId()
 	{
 		return this.id;
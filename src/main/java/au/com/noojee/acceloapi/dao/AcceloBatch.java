@@ -0,0 +1,379 @@
+package au.com.noojee.acceloapi.dao;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.AcceloException;
+import au.com.noojee.acceloapi.AcceloFieldList;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.entities.AcceloEntity;
+import au.com.noojee.acceloapi.ratelimit.AcceloRateLimiter;
+
+/**
+ * Batches the getById lookups made by code running within a batch so that a loop over hundreds of tickets doesn't
+ * turn into hundreds of requests.
+ *
+ * Within a batch getById and getByIdAsync calls that miss the cache are queued rather than sent. The queue is sent as
+ * one multi-id request per endpoint (see AcceloDao.getByIds) when:
+ * <ul>
+ * <li>every thread in the batch is blocked waiting on a getById</li>
+ * <li>the batch window (10ms by default) has passed since the first id was queued</li>
+ * <li>the batch ends</li>
+ * </ul>
+ * Each caller then receives its own entity. The existing Dao methods (e.g. TicketDao.getContact) batch without change:
+ *
+ * <pre>
+ * List&lt;Contact&gt; contacts = AcceloBatch.run(tickets, ticket -&gt; new TicketDao().getContact(ticket));
+ * </pre>
+ *
+ * The tickets are shared between up to 50 worker threads so the affiliations of 50 tickets are fetched in one request,
+ * then their contacts in another.
+ *
+ * A single threaded batch only sends its queue when the batch ends or when a (blocking) getById is called, so use
+ * getByIdAsync to queue the lookups:
+ *
+ * <pre>
+ * AcceloBatch.run(() -&gt; tickets.forEach(ticket -&gt; affiliations.add(affiliationDao.getByIdAsync(ticket.getAffiliation()))));
+ * </pre>
+ */
+public class AcceloBatch
+{
+	private static Logger logger = LogManager.getLogger();
+
+	public static final Duration DEFAULT_WINDOW = Duration.ofMillis(10);
+
+	// The maximum no. of worker threads used by run(items, work).
+	static final int MAX_WORKERS = AcceloApi.PAGE_SIZE;
+
+	private static final ThreadLocal<AcceloBatch> current = new ThreadLocal<>();
+
+	// used to send the queue once the window has passed. The timer only hands the send to the sender so one slow
+	// request can't hold up the windows of other batches.
+	static private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "accelo-batch");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+	// The rate limiter won't let more than DEFAULT_MAX_RATE requests a second through so more senders than that would
+	// just sit blocked on it. Windows that close while every sender is busy queue for the next free one.
+	static final int MAX_SENDERS = (int) Math.ceil(AcceloRateLimiter.DEFAULT_MAX_RATE);
+
+	static private final ThreadPoolExecutor sender = new ThreadPoolExecutor(MAX_SENDERS, MAX_SENDERS, 60,
+			TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable ->
+				{
+					Thread thread = new Thread(runnable, "accelo-batch-send");
+					thread.setDaemon(true);
+					return thread;
+				});
+
+	static
+	{
+		sender.allowCoreThreadTimeOut(true);
+	}
+
+	static private volatile Duration window = DEFAULT_WINDOW;
+
+	// The queued ids for each dao/endpoint/field list.
+	private Map<String, PendingLoad<?>> pending = new LinkedHashMap<>();
+
+	// the no. of threads running in the batch and how many of them are blocked on a getById that hasn't been sent.
+	private int participants = 0;
+	private int waiting = 0;
+
+	private boolean windowScheduled = false;
+
+	private AcceloBatch()
+	{
+	}
+
+	/**
+	 * Runs work within a batch. Nested batches join the outer batch.
+	 */
+	public static void run(Runnable work)
+	{
+		run(() ->
+			{
+				work.run();
+				return null;
+			});
+	}
+
+	/**
+	 * Runs work within a batch and returns its result. Nested batches join the outer batch.
+	 */
+	public static <R> R run(Supplier<R> work)
+	{
+		if (current.get() != null)
+			return work.get();
+
+		AcceloBatch batch = new AcceloBatch();
+		batch.enter();
+		try
+		{
+			return work.get();
+		}
+		finally
+		{
+			batch.exit();
+			batch.dispatch();
+		}
+	}
+
+	/**
+	 * Applies work to each item within a single batch. The items are shared between up to MAX_WORKERS worker threads.
+	 *
+	 * @return the results in the same order as the items.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T, R> List<R> run(Collection<T> items, Function<T, R> work)
+	{
+		if (items.isEmpty())
+			return new ArrayList<>();
+
+		List<T> todo = new ArrayList<>(items);
+		Object[] results = new Object[todo.size()];
+		AtomicInteger next = new AtomicInteger();
+
+		int workerCount = Math.min(todo.size(), MAX_WORKERS);
+		AcceloBatch batch = new AcceloBatch();
+
+		// every worker is a participant from the start so we don't send the queue just because the first workers are
+		// waiting before the rest have started. A worker stays a participant until it runs out of items.
+		batch.participants = workerCount;
+
+		ExecutorService workers = Executors.newFixedThreadPool(workerCount, runnable ->
+			{
+				Thread thread = new Thread(runnable, "accelo-batch-worker");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+		try
+		{
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < workerCount; i++)
+			{
+				futures.add(workers.submit(() ->
+					{
+						current.set(batch);
+						try
+						{
+							int item;
+							while ((item = next.getAndIncrement()) < todo.size())
+								results[item] = work.apply(todo.get(item));
+						}
+						finally
+						{
+							batch.exit();
+						}
+					}));
+			}
+
+			for (Future<?> future : futures)
+				future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new AcceloException(e);
+		}
+		catch (ExecutionException e)
+		{
+			throw unwrap(e.getCause());
+		}
+		finally
+		{
+			workers.shutdownNow();
+
+			// send anything the workers queued with getByIdAsync rather than leaving it for the window.
+			batch.dispatch();
+		}
+
+		List<R> resultList = new ArrayList<>(results.length);
+		for (Object result : results)
+			resultList.add((R) result);
+		return resultList;
+	}
+
+	/**
+	 * Changes how long ids are held in a batch's queue before being sent.
+	 */
+	public static void setWindow(Duration window)
+	{
+		AcceloBatch.window = window;
+	}
+
+	/**
+	 * @return the batch the current thread is running in or null if it isn't in a batch.
+	 */
+	static AcceloBatch current()
+	{
+		return current.get();
+	}
+
+	private void enter()
+	{
+		current.set(this);
+		synchronized (this)
+		{
+			participants++;
+		}
+	}
+
+	private void exit()
+	{
+		current.remove();
+
+		boolean dispatchNow;
+		synchronized (this)
+		{
+			participants--;
+			dispatchNow = participants > 0 && waiting >= participants;
+		}
+
+		// the remaining threads are all waiting on us.
+		if (dispatchNow)
+			dispatch();
+	}
+
+	/**
+	 * Queues the id and returns a future which completes with the entity (or null if it doesn't exist) once the queue
+	 * has been sent.
+	 */
+	@SuppressWarnings("unchecked")
+	<E extends AcceloEntity<E>> CompletableFuture<E> load(AcceloDao<E> dao, EndPoint endPoint, AcceloFieldList fields,
+			int id)
+	{
+		CompletableFuture<E> entity;
+		boolean scheduleWindow;
+
+		synchronized (this)
+		{
+			PendingLoad<E> load = (PendingLoad<E>) pending.computeIfAbsent(
+					dao.getClass().getName() + ":" + endPoint + ":" + fields,
+					key -> new PendingLoad<>(dao, endPoint, fields));
+
+			entity = load.ids.computeIfAbsent(id, key -> new CompletableFuture<>());
+
+			scheduleWindow = !windowScheduled;
+			windowScheduled = true;
+		}
+
+		if (scheduleWindow)
+			timer.schedule(() -> sender.execute(this::dispatch), window.toNanos(), TimeUnit.NANOSECONDS);
+
+		// callers asking for the same id each get their own copy.
+		return entity.thenApply(e -> (e == null ? null : e.copy()));
+	}
+
+	/**
+	 * Queues the id then blocks until the entity arrives.
+	 */
+	<E extends AcceloEntity<E>> E get(AcceloDao<E> dao, EndPoint endPoint, AcceloFieldList fields, int id)
+	{
+		CompletableFuture<E> entity;
+		boolean dispatchNow;
+		synchronized (this)
+		{
+			entity = load(dao, endPoint, fields, id);
+			waiting++;
+			dispatchNow = waiting >= participants;
+		}
+
+		try
+		{
+			// every thread in the batch is now waiting so nothing else is going to be queued.
+			if (dispatchNow)
+				dispatch();
+
+			return entity.join();
+		}
+		catch (CompletionException e)
+		{
+			throw unwrap(e.getCause());
+		}
+	}
+
+	/**
+	 * Sends every queued id. One request is sent for each endpoint (and each PAGE_SIZE ids).
+	 */
+	void dispatch()
+	{
+		Map<String, PendingLoad<?>> toSend;
+		synchronized (this)
+		{
+			toSend = pending;
+			pending = new LinkedHashMap<>();
+			windowScheduled = false;
+
+			// the waiting threads are released as the loads complete so they no longer count as waiting.
+			waiting = 0;
+		}
+
+		toSend.values().forEach(PendingLoad::send);
+	}
+
+	private static RuntimeException unwrap(Throwable e)
+	{
+		if (e instanceof RuntimeException)
+			return (RuntimeException) e;
+		if (e instanceof Error)
+			throw (Error) e;
+		return new AcceloException(e);
+	}
+
+	/**
+	 * The ids queued for a single dao/endpoint/field list.
+	 */
+	static private class PendingLoad<E extends AcceloEntity<E>>
+	{
+		final AcceloDao<E> dao;
+		final EndPoint endPoint;
+		final AcceloFieldList fields;
+		final Map<Integer, CompletableFuture<E>> ids = new LinkedHashMap<>();
+
+		PendingLoad(AcceloDao<E> dao, EndPoint endPoint, AcceloFieldList fields)
+		{
+			this.dao = dao;
+			this.endPoint = endPoint;
+			this.fields = fields;
+		}
+
+		void send()
+		{
+			logger.debug("Sending batch of " + ids.size() + " ids to " + endPoint);
+			try
+			{
+				Map<Integer, E> entities = dao.getByIds(endPoint, fields, ids.keySet());
+				ids.forEach((id, entity) -> entity.complete(entities.get(id)));
+			}
+			catch (Throwable e)
+			{
+				ids.values().forEach(entity -> entity.completeExceptionally(e));
+			}
+		}
+	}
+}
@@ -1,14 +1,22 @@
 package au.com.noojee.acceloapi.dao;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.google.common.collect.Lists;
 import com.google.gson.Gson;
 
 import au.com.noojee.acceloapi.AcceloAbstractResponseList;
@@ -68,7 +76,9 @@ public abstract class AcceloDao<E extends AcceloEntity<E>>
 	@SuppressWarnings("unchecked")
 	public List<E> getByFilter(AcceloFilter<E> filter, AcceloFieldList fields) throws AcceloException
 	{
-		List<E> entities = new ArrayList<>();
+		List<E> entities = AcceloReplica.getInstance().query(getEntityClass(), filter, fields);
+		if (entities != null)
+			return entities;
 
 		CacheKey<E> key = new CacheKey<>(getEndPoint(), filter, fields, getResponseListClass(), this.getEntityClass());
 		entities = (List<E>) AcceloCache.getInstance().get(key);
@@ -76,6 +86,50 @@ public abstract class AcceloDao<E extends AcceloEntity<E>>
 		return entities;
 	}
 
+	/**
+	 * Async version of getByFilter. No thread is held while waiting on Accelo.
+	 * 
+	 * @param filter the filter defining the entities to be returned.
+	 * @return a future which completes with the matching entities.
+	 */
+	public CompletableFuture<List<E>> getByFilterAsync(AcceloFilter<E> filter)
+	{
+		return getByFilterAsync(filter, getFieldList());
+	}
+
+	/**
+	 * Async version of getByFilter.
+	 * 
+	 * @param filter the filter defining the entities to be returned.
+	 * @param fields - the set of fields to return
+	 * @return a future which completes with the matching entities.
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<E>> getByFilterAsync(AcceloFilter<E> filter, AcceloFieldList fields)
+	{
+		List<E> entities = AcceloReplica.getInstance().query(getEntityClass(), filter, fields);
+		if (entities != null)
+			return CompletableFuture.completedFuture(entities);
+
+		CacheKey<E> key = new CacheKey<>(getEndPoint(), filter, fields, getResponseListClass(), this.getEntityClass());
+		return AcceloCache.getInstance().getAsync(key).thenApply(list -> (List<E>) list);
+	}
+
+	/**
+	 * Returns a lazily paginated stream of the entities that match the passed filter.
+	 * 
+	 * Unlike getByFilter the stream fetches each page from Accelo only when the consumer needs it, so you can work
+	 * through a very large (e.g. noLimit) query in a small fixed heap. Use limit or findFirst to stop early without
+	 * fetching the remaining pages. Streamed results bypass the cache.
+	 * 
+	 * @param filter the filter defining the entities to be returned.
+	 * @return a stream of the matching entities.
+	 */
+	public Stream<E> stream(AcceloFilter<E> filter)
+	{
+		return AcceloApi.getInstance().stream(getEndPoint(), filter, getFieldList(), getResponseListClass());
+	}
+
 	@SuppressWarnings("unchecked")
 	protected Optional<E> getSingleByFilter(AcceloFilter<E> filter, AcceloFieldList fields) throws AcceloException
 	{
@@ -109,6 +163,19 @@ public abstract class AcceloDao<E extends AcceloEntity<E>>
 		E entity = null;
 		if (id != 0)
 		{
+			if (!refreshCache)
+			{
+				// the entity may have been cached by a query or a batch.
+				entity = AcceloCache.getInstance().getEntityIfPresent(endpoint, fields, getResponseListClass(),
+						getEntityClass(), id);
+				if (entity != null)
+					return entity;
+
+				AcceloBatch batch = AcceloBatch.current();
+				if (batch != null)
+					return batch.get(this, endpoint, fields, id);
+			}
+
 			AcceloFilter<E> filter = new AcceloFilter<>();
 			if (refreshCache)
 				filter.refreshCache();
@@ -125,6 +192,87 @@ public abstract class AcceloDao<E extends AcceloEntity<E>>
 		return entity;
 	}
 
+	/**
+	 * Fetches a set of entities by id. Entities already in the cache are returned from the cache and the rest are
+	 * fetched with one request per PAGE_SIZE ids rather than one request per id.
+	 * 
+	 * @param ids the ids to fetch. null and 0 ids are ignored.
+	 * @return the entities keyed by id in the order the ids were passed. Ids that don't exist in Accelo are absent
+	 *         from the map.
+	 */
+	public Map<Integer, E> getByIds(Collection<Integer> ids) throws AcceloException
+	{
+		return getByIds(getEndPoint(), getFieldList(), ids);
+	}
+
+	Map<Integer, E> getByIds(EndPoint endPoint, AcceloFieldList fields, Collection<Integer> ids)
+			throws AcceloException
+	{
+		AcceloCache cache = AcceloCache.getInstance();
+
+		Map<Integer, E> found = new HashMap<>();
+		List<Integer> misses = new ArrayList<>();
+
+		Set<Integer> uniqueIds = new LinkedHashSet<>(ids);
+		uniqueIds.remove(null);
+		uniqueIds.remove(0);
+
+		for (Integer id : uniqueIds)
+		{
+			E entity = cache.getEntityIfPresent(endPoint, fields, getResponseListClass(), getEntityClass(), id);
+			if (entity != null)
+				found.put(id, entity);
+			else
+				misses.add(id);
+		}
+
+		for (List<Integer> chunk : Lists.partition(misses, AcceloApi.PAGE_SIZE))
+		{
+			AcceloFilter<E> filter = new AcceloFilter<>();
+			FilterField<E, String[]> idField = new FilterField<>("id");
+			filter.where(filter.eq(idField, chunk.stream().map(String::valueOf).toArray(String[]::new)));
+
+			@SuppressWarnings("unchecked")
+			List<E> entities = (List<E>) cache
+					.get(new CacheKey<>(endPoint, filter, fields, getResponseListClass(), getEntityClass()));
+			entities.forEach(entity -> found.put(entity.getId(), entity));
+		}
+
+		Map<Integer, E> entities = new LinkedHashMap<>();
+		uniqueIds.stream().filter(found::containsKey).forEach(id -> entities.put(id, found.get(id)));
+
+		return entities;
+	}
+
+	/**
+	 * Async version of getById. Within an AcceloBatch the id is queued and sent with the other ids in the batch.
+	 * 
+	 * @return a future which completes with the entity or null if no entity exists with the given id.
+	 */
+	public CompletableFuture<E> getByIdAsync(Integer id)
+	{
+		id = (id == null ? 0 : id);
+		if (id == 0)
+			return CompletableFuture.completedFuture(null);
+
+		AcceloBatch batch = AcceloBatch.current();
+		if (batch != null)
+		{
+			E entity = AcceloCache.getInstance().getEntityIfPresent(getEndPoint(), getFieldList(),
+					getResponseListClass(), getEntityClass(), id);
+			if (entity != null)
+				return CompletableFuture.completedFuture(entity);
+
+			return batch.load(this, getEndPoint(), getFieldList(), id);
+		}
+
+		AcceloFilter<E> filter = new AcceloFilter<>();
+		FilterField<E, Integer> idField = new FilterField<>("id");
+		filter.where(filter.eq(idField, id));
+
+		return getByFilterAsync(filter).thenApply(entities -> (entities.size() > 0 ? entities.get(0) : null));
+	}
+
 	public E getByIdIfPresent(int id) throws AcceloException
 	{
 		return getByIdIfPresent(getEndPoint(), id, getFieldList(), false);
@@ -164,11 +312,13 @@ public abstract class AcceloDao<E extends AcceloEntity<E>>
 	@SuppressWarnings("unchecked")
 	public List<E> getAll() throws AcceloException
 	{
-		List<E> entities = new ArrayList<>();
-
 		// pass in an empty filter
 		AcceloFilter<E> filter = new AcceloFilter<>();
 
+		List<E> entities = AcceloReplica.getInstance().query(getEntityClass(), filter, getFieldList());
+		if (entities != null)
+			return entities;
+
 		CacheKey<E> key = new CacheKey<>(getEndPoint(), filter, getFieldList(), getResponseListClass(),
 				this.getEntityClass());
 
@@ -199,6 +349,24 @@ public abstract class AcceloDao<E extends AcceloEntity<E>>
 		return (response != null ? response.getEntity() : null);
 	}
 
+	/**
+	 * Async version of insert.
+	 * 
+	 * @param entity
+	 * @return a future which completes with the newly inserted entity as returned from Accelo.
+	 */
+	public CompletableFuture<E> insertAsync(E entity)
+	{
+		entity.setFieldList(getFieldList());
+
+		preInsertValidation(entity);
+
+		String fieldValues = toJson(entity, DaoOperation.INSERT);
+
+		return AcceloApi.getInstance().insertAsync(this.getEndPoint(), fieldValues, this.getResponseClass())
+				.thenApply(response -> (response != null ? response.getEntity() : null));
+	}
+
 	/**
 	 * Updated an existing entity. Any instances in the cache will be updated.
 	 * 
@@ -229,6 +397,36 @@ public abstract class AcceloDao<E extends AcceloEntity<E>>
 		return response.getEntity();
 	}
 
+	/**
+	 * Async version of update. Any instances in the cache will be updated once Accelo confirms the update.
+	 * 
+	 * @param entity to update
+	 * @return a future which completes with the updated entity as returned from Accelo.
+	 */
+	public CompletableFuture<E> updateAsync(E entity)
+	{
+		entity.setFieldList(getFieldList());
+
+		preUpdateValidation(entity);
+
+		String fieldValues = toJson(entity, DaoOperation.UPDATE);
+
+		return AcceloApi.getInstance()
+				.updateAsync(this.getEndPoint(), entity.getId(), fieldValues, this.getResponseClass())
+				.thenApply(response ->
+					{
+						if (response == null || response.getEntity() == null)
+						{
+							throw new AcceloException("Failed to update " + entity.getClass().getSimpleName() + ":"
+									+ entity.getId() + " details:" + this.toString());
+						}
+
+						AcceloCache.getInstance().updateEntity(response.getEntity());
+
+						return response.getEntity();
+					});
+	}
+
 	protected String toJson(E entity, DaoOperation operation)
 	{
 
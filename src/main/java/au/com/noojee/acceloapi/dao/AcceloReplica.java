@@ -0,0 +1,251 @@
+package au.com.noojee.acceloapi.dao;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.AcceloException;
+import au.com.noojee.acceloapi.AcceloFieldList;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.entities.AcceloEntity;
+import au.com.noojee.acceloapi.entities.meta.fieldTypes.FilterField;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+
+/**
+ * Mirrors selected endpoints into memory so reporting queries can be answered without going to Accelo. The replica is
+ * a singleton use AcceloReplica.getInstance() to access it.
+ *
+ * Each mirrored endpoint is fully loaded once and then kept up to date by a DeltaSync:
+ *
+ * <pre>
+ * DeltaSync sync = new DeltaSync();
+ * sync.track(new ActivityDao(), Activity_.date_modified);
+ * sync.addListener(AcceloReplica.getInstance());
+ *
+ * AcceloReplica.getInstance().mirror(new ActivityDao(), Activity_.against_id, Activity_.staff);
+ * sync.start(Duration.ofMinutes(5), Duration.ofMinutes(15));
+ * </pre>
+ *
+ * Track the endpoint before mirroring it so the first poll covers any changes made during the load. Track it by a
+ * field that moves on every change, the sync doesn't report an endpoint tracked by date_last_interacted as synced so
+ * its table is only fresh just after a load.
+ *
+ * Accelo doesn't report deletions, they are found by DeltaSync.reconcile, so a table is fresh while both its last
+ * sync and its last reconcile (or load) were less than 15 minutes ago by default. Reconcile at least that often or the
+ * table is only used for a while after each reconcile. While a table is fresh AcceloDao.getByFilter and getAll answer
+ * from the table, rather than the cache or Accelo, when:
+ * <ul>
+ * <li>the filter can be evaluated locally (see AcceloFilter.toPredicate), with no order by or offset</li>
+ * <li>the dao's default field list is requested and the filter isn't refreshing the cache</li>
+ * <li>the result fits within the filter's limit</li>
+ * </ul>
+ * Anything else goes to Accelo as normal. Filters which only use eq and and look up the indexed fields and check the
+ * rest, other filters scan the whole table.
+ */
+public enum AcceloReplica implements SyncListener
+{
+	SELF;
+
+	private static Logger logger = LogManager.getLogger();
+
+	public static final Duration DEFAULT_MAX_STALENESS = Duration.ofMinutes(15);
+
+	private final Map<Class<?>, ReplicaTable<?>> tables = new ConcurrentHashMap<>();
+
+	// an enum constant can't refer to DEFAULT_MAX_STALENESS while it is being constructed.
+	private volatile Duration maxStaleness = Duration.ofMinutes(15);
+
+	public static AcceloReplica getInstance()
+	{
+		return SELF;
+	}
+
+	/**
+	 * Loads every entity from the dao's endpoint and keeps them indexed by the given fields. Replaces any existing
+	 * table for the entity.
+	 *
+	 * @return the table.
+	 */
+	@SafeVarargs
+	public final <E extends AcceloEntity<E>> ReplicaTable<E> mirror(AcceloDao<E> dao, FilterField<E, ?>... indexes)
+	{
+		ReplicaTable<E> table = new ReplicaTable<>(dao, Arrays.asList(indexes));
+
+		// registered before the load so it gets the changes made while loading. It isn't fresh, so isn't used for
+		// queries, until the load completes.
+		tables.put(dao.getEntityClass(), table);
+		try
+		{
+			table.load();
+		}
+		catch (RuntimeException e)
+		{
+			tables.remove(dao.getEntityClass(), table);
+			throw e;
+		}
+
+		logger.info("Mirrored " + table.size() + " " + dao.getEntityClass().getSimpleName() + " entities");
+		return table;
+	}
+
+	/**
+	 * Reloads every entity for a mirrored endpoint. Use it if the DeltaSync has been stopped for a while.
+	 */
+	public void reload(Class<? extends AcceloEntity<?>> entityClass)
+	{
+		ReplicaTable<?> table = tables.get(entityClass);
+		if (table == null)
+			throw new AcceloException(entityClass.getSimpleName() + " isn't mirrored.");
+		table.load();
+	}
+
+	/**
+	 * Stops mirroring the entity and frees its table.
+	 */
+	public void drop(Class<? extends AcceloEntity<?>> entityClass)
+	{
+		tables.remove(entityClass);
+	}
+
+	public void dropAll()
+	{
+		tables.clear();
+	}
+
+	/**
+	 * @return the table for the entity or null if it isn't mirrored.
+	 */
+	@SuppressWarnings("unchecked")
+	public <E extends AcceloEntity<E>> ReplicaTable<E> getTable(Class<E> entityClass)
+	{
+		return (ReplicaTable<E>) tables.get(entityClass);
+	}
+
+	/**
+	 * How long after its last sync or reconcile a table can still be used to answer queries.
+	 */
+	public void setMaxStaleness(Duration maxStaleness)
+	{
+		this.maxStaleness = maxStaleness;
+	}
+
+	public Duration getMaxStaleness()
+	{
+		return maxStaleness;
+	}
+
+	@Override
+	public void onChange(SyncEvent<?> event)
+	{
+		apply(event);
+	}
+
+	private <E extends AcceloEntity<E>> void apply(SyncEvent<E> event)
+	{
+		ReplicaTable<E> table = getTable(event.getEntityClass());
+		if (table == null)
+			return;
+
+		if (event.getType() == SyncEvent.Type.DELETED)
+			table.remove(event.getId());
+		else
+			table.put(event.getEntity());
+	}
+
+	/**
+	 * The table is only fresh if the poll carried on from where the table's last load or sync stopped, otherwise we
+	 * may have missed a change.
+	 */
+	@Override
+	public void synced(EndPoint endPoint, LocalDateTime since, LocalDateTime until)
+	{
+		for (ReplicaTable<?> table : tables.values())
+		{
+			if (table.getEndPoint() == endPoint && toMillis(since) <= table.getFreshAsOf())
+				table.setFreshAsOf(Math.max(table.getFreshAsOf(), toMillis(until)));
+		}
+	}
+
+	/**
+	 * Deletions made before the reconcile started have now been removed from the table.
+	 */
+	@Override
+	public void reconciled(EndPoint endPoint, LocalDateTime asOf)
+	{
+		for (ReplicaTable<?> table : tables.values())
+		{
+			if (table.getEndPoint() == endPoint)
+				table.setReconciledAsOf(Math.max(table.getReconciledAsOf(), toMillis(asOf)));
+		}
+	}
+
+	/**
+	 * The sync only knows about the entities it has seen change so we pass it the rest of the table to reconcile.
+	 */
+	@Override
+	public Set<Integer> getHeldIds(EndPoint endPoint)
+	{
+		Set<Integer> ids = new HashSet<>();
+		for (ReplicaTable<?> table : tables.values())
+		{
+			if (table.getEndPoint() == endPoint)
+				ids.addAll(table.getIds());
+		}
+		return ids;
+	}
+
+	/**
+	 * Answers the filter from the replica.
+	 *
+	 * @return the matching entities or null if the filter must be sent to Accelo.
+	 */
+	<E extends AcceloEntity<E>> List<E> query(Class<E> entityClass, AcceloFilter<E> filter, AcceloFieldList fields)
+	{
+		ReplicaTable<E> table = getTable(entityClass);
+		if (table == null || filter.isRefreshCache() || filter.getOffset() != 0
+				|| !fields.equals(table.getFieldList()))
+			return null;
+
+		long freshAsOf = Math.min(table.getFreshAsOf(), table.getReconciledAsOf());
+		if (System.currentTimeMillis() - freshAsOf > maxStaleness.toMillis())
+			return null;
+
+		List<E> entities;
+
+		Map<String, List<Object>> equalities = filter.getEqualities();
+		if (equalities != null)
+			entities = table.query(equalities);
+		else
+		{
+			// anything else we can evaluate is answered by scanning the whole table.
+			Optional<Predicate<E>> predicate = filter.toPredicate(entityClass);
+			if (filter.isOrdered() || !predicate.isPresent())
+				return null;
+			entities = table.scan(predicate.get());
+		}
+
+		// Accelo would have cut the list short and we can't know which entities it would have returned.
+		if (entities == null || (filter.getLimit() != AcceloFilter.UNLIMITED
+				&& entities.size() > filter.getLimit() * AcceloApi.PAGE_SIZE))
+			return null;
+
+		return entities;
+	}
+
+	private static long toMillis(LocalDateTime dateTime)
+	{
+		return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+}
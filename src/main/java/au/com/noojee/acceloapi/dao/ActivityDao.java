@@ -142,13 +142,15 @@ public class ActivityDao extends AcceloDao<Activity>
 	 * @param extractionDate return all activities from this date.
 	 * @return
 	 */
-	private List<Activity> getRecentTicketActivities(AcceloFilter<Activity> filter, LocalDate extractionDate)
+	private List<Activity> getRecentTicketActivities(AcceloFilter<Activity> base, LocalDate extractionDate)
 	{
 		List<Activity> list = null;
 		try
 		{
+			// each query starts from a copy of the base so both get its limit and offset.
 
 			// customer generated activities
+			AcceloFilter<Activity> filter = base.copy();
 			filter.where(filter.eq(Activity_.against_type, AgainstType.issue))
 					.and(filter.eq(Activity_.owner_type, ActivityOwnerType.affiliation))
 					.and(filter.eq(Activity_.staff, 0))
@@ -159,6 +161,7 @@ public class ActivityDao extends AcceloDao<Activity>
 			// staff and system generated activities
 			// we need system activities as we miss some tickets if no activity ever taken (goes straight to closed).
 			// system generated activities have a '0' value for the staff field.
+			filter = base.copy();
 			filter.where(filter.eq(Activity_.against_type, AgainstType.issue))
 					.and(filter.eq(Activity_.owner_type, ActivityOwnerType.staff))
 					// .and(filter.greaterThan(Activity_.staff, 0))
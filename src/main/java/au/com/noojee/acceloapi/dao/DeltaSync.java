@@ -0,0 +1,462 @@
+package au.com.noojee.acceloapi.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.AcceloException;
+import au.com.noojee.acceloapi.AcceloFieldList;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.cache.AcceloCache;
+import au.com.noojee.acceloapi.dao.gson.GsonForAccelo;
+import au.com.noojee.acceloapi.entities.AcceloEntity;
+import au.com.noojee.acceloapi.entities.meta.fieldTypes.FilterField;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.filter.Expression;
+
+/**
+ * Keeps the cache up to date by asking Accelo for just the entities that have changed rather than re-running whole
+ * queries such as TicketDao.getAllOpen.
+ *
+ * Each tracked endpoint has a high-water mark. A poll fetches the entities whose modified date is on or after the mark
+ * (less an overlap to allow for clock skew) and then moves the mark to the time the poll started. Each entity that has
+ * actually changed is merged into the cache (see AcceloCache.updateEntity) and passed to the listeners.
+ *
+ * <pre>
+ * DeltaSync sync = new DeltaSync();
+ * sync.track(new ActivityDao(), Activity_.date_modified);
+ * sync.trackByDay(new TicketDao(), Ticket_.date_last_interacted);
+ * sync.addListener(event -&gt; logger.info(event));
+ * sync.start(Duration.ofMinutes(5));
+ * </pre>
+ *
+ * Accelo doesn't report deletions so reconcile() (run hourly by start) asks for the ids of every entity the sync has
+ * seen or the cache holds and flushes those that no longer exist. The request only returns the id field so it is much
+ * cheaper than a full sweep.
+ *
+ * Limitations:
+ * <ul>
+ * <li>the poll only sees changes that move the modified field. e.g. date_last_interacted isn't moved by every change
+ * to a ticket so an endpoint tracked by it is never reported to SyncListener.synced.</li>
+ * <li>a LocalDate field (trackByDay) is only accurate to the day so each poll re-fetches the whole day. Unchanged
+ * entities are filtered out by comparing a hash of each entity with the previous poll.</li>
+ * <li>only entities that are already cached are updated. A new entity isn't added to the cache, by id or to the
+ * cached queries that it now matches, they pick it up when they expire.</li>
+ * <li>the hash of an entity that no poll has returned since the previous reconcile is dropped, so if it changes later
+ * it is reported as ADDED rather than CHANGED.</li>
+ * </ul>
+ */
+public class DeltaSync implements Closeable
+{
+	private static Logger logger = LogManager.getLogger();
+
+	public static final Duration DEFAULT_OVERLAP = Duration.ofMinutes(5);
+
+	public static final Duration DEFAULT_RECONCILE_INTERVAL = Duration.ofHours(1);
+
+	// Accelo only moves these fields when someone interacts with the entity so a poll on them misses other changes.
+	private static final Set<String> INTERACTION_FIELDS = Set.of("date_last_interacted");
+
+	private final Map<EndPoint, Source<?>> sources = new LinkedHashMap<>();
+
+	private final List<SyncListener> listeners = new CopyOnWriteArrayList<>();
+
+	private Duration overlap = DEFAULT_OVERLAP;
+
+	// the marks loaded from the state file for endpoints that haven't been tracked yet.
+	private final Properties state = new Properties();
+
+	private Path stateFile = null;
+
+	private ScheduledExecutorService scheduler = null;
+
+	/**
+	 * Tracks the dao's endpoint using a date time field such as Activity_.date_modified. Only changes made from now
+	 * on are reported unless the mark is moved back with setHighWaterMark or restored from the state file.
+	 */
+	public synchronized <E extends AcceloEntity<E>> void track(AcceloDao<E> dao, FilterField<E, LocalDateTime> modified)
+	{
+		track(dao, modified.getFieldName(), (filter, mark) -> filter.afterOrEq(modified, mark));
+	}
+
+	/**
+	 * Tracks the dao's endpoint using a date field such as Ticket_.date_last_interacted.
+	 */
+	public synchronized <E extends AcceloEntity<E>> void trackByDay(AcceloDao<E> dao,
+			FilterField<E, LocalDate> modified)
+	{
+		track(dao, modified.getFieldName(), (filter, mark) -> filter.afterOrEq(modified, mark.toLocalDate()));
+	}
+
+	private <E extends AcceloEntity<E>> void track(AcceloDao<E> dao, String fieldName,
+			BiFunction<AcceloFilter<E>, LocalDateTime, Expression> since)
+	{
+		EndPoint endPoint = dao.getEndPoint();
+		if (sources.containsKey(endPoint))
+			throw new AcceloException("The endpoint " + endPoint + " is already tracked.");
+
+		boolean complete = !INTERACTION_FIELDS.contains(fieldName);
+		if (!complete)
+			logger.warn("The " + fieldName + " field of " + endPoint + " only moves when the entity is interacted with"
+					+ " so polls will miss other changes. Listeners such as AcceloReplica won't treat " + endPoint
+					+ " as synced.");
+
+		Source<E> source = new Source<>(dao, since, complete);
+		String saved = state.getProperty(endPoint.name());
+		source.mark = (saved == null ? LocalDateTime.now() : LocalDateTime.parse(saved));
+		sources.put(endPoint, source);
+	}
+
+	public void addListener(SyncListener listener)
+	{
+		listeners.add(listener);
+	}
+
+	public void removeListener(SyncListener listener)
+	{
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return the time from which the next poll of the endPoint will fetch changes.
+	 */
+	public synchronized LocalDateTime getHighWaterMark(EndPoint endPoint)
+	{
+		return source(endPoint).mark;
+	}
+
+	/**
+	 * Moves the endPoint's high-water mark. e.g. move it back a day to have the next poll load every entity changed
+	 * in the last day.
+	 */
+	public synchronized void setHighWaterMark(EndPoint endPoint, LocalDateTime mark)
+	{
+		source(endPoint).mark = mark;
+	}
+
+	/**
+	 * How far before the high-water mark each poll starts. Defaults to 5 minutes.
+	 */
+	public synchronized void setOverlap(Duration overlap)
+	{
+		this.overlap = overlap;
+	}
+
+	/**
+	 * Saves the high-water marks to the given file after each poll so a restarted process carries on from where it
+	 * stopped rather than missing changes. Any marks already in the file are loaded.
+	 */
+	public synchronized void setStateFile(Path stateFile) throws IOException
+	{
+		this.stateFile = stateFile;
+
+		if (Files.exists(stateFile))
+		{
+			try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8))
+			{
+				state.load(reader);
+			}
+		}
+
+		sources.forEach((endPoint, source) ->
+			{
+				String saved = state.getProperty(endPoint.name());
+				if (saved != null)
+					source.mark = LocalDateTime.parse(saved);
+			});
+	}
+
+	/**
+	 * Polls every tracked endpoint once.
+	 *
+	 * @return the changes that were found, which have also been passed to the listeners.
+	 */
+	public synchronized List<SyncEvent<?>> poll() throws AcceloException
+	{
+		List<SyncEvent<?>> events = new ArrayList<>();
+
+		for (Source<?> source : sources.values())
+		{
+			LocalDateTime since = source.mark.minus(overlap);
+			LocalDateTime started = LocalDateTime.now();
+
+			events.addAll(publish(source.poll(since)));
+			source.mark = started;
+			saveState();
+
+			if (source.complete)
+			{
+				for (SyncListener listener : listeners)
+					listener.synced(source.dao.getEndPoint(), since, started);
+			}
+		}
+
+		return events;
+	}
+
+	/**
+	 * Checks that the entities the sync has seen, and those in the cache or held by a listener, still exist in Accelo.
+	 * Those that don't are flushed from the cache and reported as DELETED.
+	 *
+	 * @return the deletions that were found.
+	 */
+	public synchronized List<SyncEvent<?>> reconcile() throws AcceloException
+	{
+		List<SyncEvent<?>> events = new ArrayList<>();
+
+		for (Source<?> source : sources.values())
+		{
+			LocalDateTime started = LocalDateTime.now();
+			events.addAll(publish(source.reconcile()));
+
+			for (SyncListener listener : listeners)
+				listener.reconciled(source.dao.getEndPoint(), started);
+		}
+
+		return events;
+	}
+
+	/**
+	 * Starts polling on a background thread every pollInterval and reconciling deletions every hour.
+	 */
+	public void start(Duration pollInterval)
+	{
+		start(pollInterval, DEFAULT_RECONCILE_INTERVAL);
+	}
+
+	public synchronized void start(Duration pollInterval, Duration reconcileInterval)
+	{
+		if (scheduler != null)
+			throw new AcceloException("The sync has already been started.");
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+			{
+				Thread thread = new Thread(runnable, "accelo-sync");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+		scheduler.scheduleWithFixedDelay(() -> run(this::poll), 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+		scheduler.scheduleWithFixedDelay(() -> run(this::reconcile), reconcileInterval.toMillis(),
+				reconcileInterval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the background polling. A poll that is running is allowed to finish.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		if (scheduler != null)
+		{
+			scheduler.shutdown();
+			scheduler = null;
+		}
+	}
+
+	private void run(Runnable task)
+	{
+		try
+		{
+			task.run();
+		}
+		catch (Throwable e)
+		{
+			// an exception would cancel the schedule and the marks haven't moved so we simply try again next time.
+			logger.error("Delta sync failed", e);
+		}
+	}
+
+	/**
+	 * Merges the events into the cache and then passes them to the listeners.
+	 */
+	private <E extends AcceloEntity<E>> List<SyncEvent<E>> publish(List<SyncEvent<E>> events)
+	{
+		AcceloCache cache = AcceloCache.getInstance();
+
+		for (SyncEvent<E> event : events)
+		{
+			if (event.getType() == SyncEvent.Type.DELETED)
+				cache.flushEntity(event.getEntityClass(), event.getId());
+			else
+				cache.updateEntity(event.getEntity().copy());
+
+			for (SyncListener listener : listeners)
+			{
+				try
+				{
+					listener.onChange(event);
+				}
+				catch (RuntimeException e)
+				{
+					// one broken listener mustn't stop the others or the sync.
+					logger.error("Sync listener failed on " + event, e);
+				}
+			}
+		}
+		return events;
+	}
+
+	private void saveState()
+	{
+		if (stateFile == null)
+			return;
+
+		sources.forEach((endPoint, source) -> state.setProperty(endPoint.name(), source.mark.toString()));
+
+		try (Writer writer = Files.newBufferedWriter(stateFile, StandardCharsets.UTF_8))
+		{
+			state.store(writer, "DeltaSync high-water marks");
+		}
+		catch (IOException e)
+		{
+			throw new AcceloException(e);
+		}
+	}
+
+	private Source<?> source(EndPoint endPoint)
+	{
+		Source<?> source = sources.get(endPoint);
+		if (source == null)
+			throw new AcceloException("The endpoint " + endPoint + " isn't tracked.");
+		return source;
+	}
+
+	private class Source<E extends AcceloEntity<E>>
+	{
+		private final AcceloDao<E> dao;
+		private final BiFunction<AcceloFilter<E>, LocalDateTime, Expression> since;
+		private LocalDateTime mark;
+
+		// false if the modified field doesn't move on every change.
+		private final boolean complete;
+
+		// a hash of each entity we have seen so we only report the entities that have actually changed.
+		private final Map<Integer, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+
+		// when the previous reconcile started (epoch millis).
+		private long reconciled = System.currentTimeMillis();
+
+		Source(AcceloDao<E> dao, BiFunction<AcceloFilter<E>, LocalDateTime, Expression> since, boolean complete)
+		{
+			this.dao = dao;
+			this.since = since;
+			this.complete = complete;
+		}
+
+		List<SyncEvent<E>> poll(LocalDateTime from)
+		{
+			AcceloFilter<E> filter = new AcceloFilter<>();
+			filter.where(since.apply(filter, from));
+			filter.noLimit();
+
+			List<E> entities = AcceloApi.getInstance().getAll(dao.getEndPoint(), filter, dao.getFieldList(),
+					dao.getResponseListClass());
+
+			List<SyncEvent<E>> events = new ArrayList<>();
+			for (E entity : entities)
+			{
+				Fingerprint fingerprint = new Fingerprint(entity);
+				Fingerprint previous = fingerprints.put(entity.getId(), fingerprint);
+
+				if (previous == null)
+					events.add(event(SyncEvent.Type.ADDED, entity.getId(), entity));
+				else if (previous.hash != fingerprint.hash)
+					events.add(event(SyncEvent.Type.CHANGED, entity.getId(), entity));
+			}
+
+			logger.debug("Delta sync of " + dao.getEndPoint() + " since " + from + " returned " + entities.size()
+					+ " entities of which " + events.size() + " changed");
+
+			return events;
+		}
+
+		/**
+		 * Also forgets the entities that no poll has returned since the previous reconcile so the fingerprints only
+		 * hold those that are still changing.
+		 */
+		List<SyncEvent<E>> reconcile()
+		{
+			long started = System.currentTimeMillis();
+
+			Set<Integer> ids = new TreeSet<>(fingerprints.keySet());
+			ids.addAll(AcceloCache.getInstance().getCachedIds(dao.getEntityClass()));
+			for (SyncListener listener : listeners)
+				ids.addAll(listener.getHeldIds(dao.getEndPoint()));
+
+			List<SyncEvent<E>> events = new ArrayList<>();
+			for (List<Integer> chunk : Lists.partition(new ArrayList<>(ids), AcceloApi.PAGE_SIZE))
+			{
+				AcceloFilter<E> filter = new AcceloFilter<>();
+				FilterField<E, String[]> idField = new FilterField<>("id");
+				filter.where(filter.eq(idField, chunk.stream().map(String::valueOf).toArray(String[]::new)));
+
+				Set<Integer> found = new TreeSet<>();
+				AcceloApi.getInstance()
+						.getAll(dao.getEndPoint(), filter, new AcceloFieldList("id"), dao.getResponseListClass())
+						.forEach(entity -> found.add(entity.getId()));
+
+				for (Integer id : chunk)
+				{
+					if (!found.contains(id))
+					{
+						fingerprints.remove(id);
+						events.add(event(SyncEvent.Type.DELETED, id, null));
+					}
+				}
+			}
+
+			long previous = reconciled;
+			fingerprints.values().removeIf(fingerprint -> fingerprint.seen < previous);
+			reconciled = started;
+
+			return events;
+		}
+
+		private SyncEvent<E> event(SyncEvent.Type type, int id, E entity)
+		{
+			return new SyncEvent<>(type, dao.getEndPoint(), dao.getEntityClass(), id, entity);
+		}
+	}
+
+	/**
+	 * A hash of an entity and when a poll last returned it.
+	 */
+	private static class Fingerprint
+	{
+		private final long hash;
+		private final long seen = System.currentTimeMillis();
+
+		<E extends AcceloEntity<E>> Fingerprint(E entity)
+		{
+			hash = Hashing.murmur3_128().hashString(GsonForAccelo.toJson(entity), StandardCharsets.UTF_8).asLong();
+		}
+	}
+}
@@ -0,0 +1,370 @@
+package au.com.noojee.acceloapi.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.AcceloException;
+import au.com.noojee.acceloapi.AcceloFieldList;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.entities.AcceloEntity;
+import au.com.noojee.acceloapi.entities.meta.fieldTypes.FilterField;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.filter.FieldReader;
+
+/**
+ * The local copy of every entity for one endpoint, keyed by id, with an index for each of the requested filter fields.
+ * Created by AcceloReplica.mirror.
+ *
+ * Field values are compared in the form they are sent to Accelo (see FieldReader) so a filter matches the same
+ * entities locally as it does in Accelo.
+ */
+public class ReplicaTable<E extends AcceloEntity<E>>
+{
+	private final AcceloDao<E> dao;
+
+	private final FieldReader reader;
+
+	private final Map<Integer, E> entities = new HashMap<>();
+
+	// field name -> field value -> the ids of the entities with that value.
+	private final Map<String, Map<String, Set<Integer>>> indexes = new HashMap<>();
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// the changes made while a load is fetching, null when there is no load. Guarded by the write lock.
+	private List<Runnable> pending = null;
+
+	// the time (epoch millis) up to which we know every change has been applied.
+	private volatile long freshAsOf = 0;
+
+	// the time (epoch millis) up to which we know every deletion has been applied.
+	private volatile long reconciledAsOf = 0;
+
+	ReplicaTable(AcceloDao<E> dao, Collection<FilterField<E, ?>> indexedFields)
+	{
+		this.dao = dao;
+		this.reader = FieldReader.forClass(dao.getEntityClass());
+
+		for (FilterField<E, ?> indexedField : indexedFields)
+		{
+			String name = indexedField.getFieldName();
+			if (!reader.canRead(name))
+				throw new AcceloException("The field " + name + " of " + dao.getEntityClass().getSimpleName()
+						+ " can't be indexed.");
+			indexes.put(name, new HashMap<>());
+		}
+	}
+
+	public EndPoint getEndPoint()
+	{
+		return dao.getEndPoint();
+	}
+
+	public Class<E> getEntityClass()
+	{
+		return dao.getEntityClass();
+	}
+
+	AcceloFieldList getFieldList()
+	{
+		return dao.getFieldList();
+	}
+
+	/**
+	 * Replaces the contents of the table with every entity from Accelo. Changes put or removed while the entities are
+	 * being fetched are applied again once they have been swapped in, as the fetch may have read the older version.
+	 */
+	synchronized void load()
+	{
+		long started = System.currentTimeMillis();
+
+		lock.writeLock().lock();
+		try
+		{
+			pending = new ArrayList<>();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+
+		try
+		{
+			AcceloFilter<E> filter = new AcceloFilter<>();
+			filter.noLimit();
+			List<E> all = AcceloApi.getInstance().getAll(dao.getEndPoint(), filter, dao.getFieldList(),
+					dao.getResponseListClass());
+
+			lock.writeLock().lock();
+			try
+			{
+				entities.clear();
+				indexes.values().forEach(Map::clear);
+				all.forEach(this::add);
+
+				List<Runnable> changes = pending;
+				pending = null;
+				changes.forEach(Runnable::run);
+
+				freshAsOf = started;
+				reconciledAsOf = started;
+			}
+			finally
+			{
+				lock.writeLock().unlock();
+			}
+		}
+		finally
+		{
+			lock.writeLock().lock();
+			try
+			{
+				pending = null;
+			}
+			finally
+			{
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	void put(E entity)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			E copy = entity.copy();
+			replace(copy);
+			if (pending != null)
+				pending.add(() -> replace(copy));
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	void remove(int id)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			unindex(entities.remove(id));
+			if (pending != null)
+				pending.add(() -> unindex(entities.remove(id)));
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	long getFreshAsOf()
+	{
+		return freshAsOf;
+	}
+
+	void setFreshAsOf(long freshAsOf)
+	{
+		this.freshAsOf = freshAsOf;
+	}
+
+	long getReconciledAsOf()
+	{
+		return reconciledAsOf;
+	}
+
+	void setReconciledAsOf(long reconciledAsOf)
+	{
+		this.reconciledAsOf = reconciledAsOf;
+	}
+
+	/**
+	 * @return the ids of the entities in the table.
+	 */
+	Set<Integer> getIds()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return new HashSet<>(entities.keySet());
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return a copy of the entity or null if the table doesn't hold it.
+	 */
+	public E get(int id)
+	{
+		lock.readLock().lock();
+		try
+		{
+			E entity = entities.get(id);
+			return entity == null ? null : entity.copy();
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return a copy of each entity whose field has the given value ordered by id.
+	 */
+	public <T> List<E> find(FilterField<E, T> field, T value)
+	{
+		List<E> found = query(Map.of(field.getFieldName(), List.of(value)));
+		if (found == null)
+			throw new AcceloException("The field " + field.getFieldName() + " can't be read from "
+					+ getEntityClass().getSimpleName());
+		return found;
+	}
+
+	public int size()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return entities.size();
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns a copy of each entity where every field has one of its listed values, ordered by id. Indexed fields are
+	 * used to find the candidates, which are then checked against the remaining fields.
+	 *
+	 * @return the matching entities or null if one of the fields can't be read from the entity.
+	 */
+	List<E> query(Map<String, List<Object>> equalities)
+	{
+		Map<String, Set<String>> unindexed = new HashMap<>();
+
+		lock.readLock().lock();
+		try
+		{
+			Set<Integer> candidates = null;
+
+			for (Map.Entry<String, List<Object>> equality : equalities.entrySet())
+			{
+				String name = equality.getKey();
+				if (!reader.canRead(name))
+					return null;
+
+				Set<String> values = equality.getValue().stream().map(FieldReader::normalise)
+						.collect(Collectors.toSet());
+
+				Set<Integer> ids;
+				Map<String, Set<Integer>> index = indexes.get(name);
+				if (index != null)
+					ids = values.stream().flatMap(value -> index.getOrDefault(value, Set.of()).stream())
+							.collect(Collectors.toSet());
+				else if (name.equals("id"))
+					ids = values.stream().filter(value -> value.matches("\\d+")).map(Integer::valueOf)
+							.filter(entities::containsKey).collect(Collectors.toSet());
+				else
+				{
+					unindexed.put(name, values);
+					continue;
+				}
+
+				if (candidates == null)
+					candidates = ids;
+				else
+					candidates.retainAll(ids);
+			}
+
+			Stream<E> matches = (candidates == null ? entities.values().stream()
+					: candidates.stream().map(entities::get));
+
+			return matches.filter(entity -> unindexed.entrySet().stream()
+					.allMatch(equality -> equality.getValue().contains(read(entity, equality.getKey()))))
+					.sorted(Comparator.comparingInt(E::getId))
+					.map(E::copy)
+					.collect(Collectors.toList());
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return a copy of each entity that matches the predicate ordered by id.
+	 */
+	List<E> scan(Predicate<E> predicate)
+	{
+		lock.readLock().lock();
+		try
+		{
+			return entities.values().stream().filter(predicate).sorted(Comparator.comparingInt(E::getId))
+					.map(E::copy).collect(Collectors.toList());
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	// must hold the write lock.
+	private void replace(E entity)
+	{
+		unindex(entities.get(entity.getId()));
+		add(entity);
+	}
+
+	// must hold the write lock.
+	private void add(E entity)
+	{
+		entities.put(entity.getId(), entity);
+		indexes.forEach((name, index) ->
+			{
+				String value = read(entity, name);
+				if (value != null)
+					index.computeIfAbsent(value, v -> new HashSet<>()).add(entity.getId());
+			});
+	}
+
+	// must hold the write lock.
+	private void unindex(E entity)
+	{
+		if (entity == null)
+			return;
+
+		indexes.forEach((name, index) ->
+			{
+				String value = read(entity, name);
+				Set<Integer> ids = (value == null ? null : index.get(value));
+				if (ids != null)
+				{
+					ids.remove(entity.getId());
+					if (ids.isEmpty())
+						index.remove(value);
+				}
+			});
+	}
+
+	private String read(E entity, String name)
+	{
+		return reader.read(entity, name);
+	}
+}
@@ -0,0 +1,69 @@
+package au.com.noojee.acceloapi.dao;
+
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.entities.AcceloEntity;
+
+/**
+ * Describes a change to a single entity found by DeltaSync.
+ */
+public class SyncEvent<E extends AcceloEntity<E>>
+{
+	public enum Type
+	{
+		/** the first time the sync has seen the entity. */
+		ADDED,
+		/** the entity has changed since the sync last saw it. */
+		CHANGED,
+		/** the entity no longer exists in Accelo. */
+		DELETED
+	}
+
+	private final Type type;
+	private final EndPoint endPoint;
+	private final Class<E> entityClass;
+	private final int id;
+	private final E entity;
+
+	SyncEvent(Type type, EndPoint endPoint, Class<E> entityClass, int id, E entity)
+	{
+		this.type = type;
+		this.endPoint = endPoint;
+		this.entityClass = entityClass;
+		this.id = id;
+		this.entity = entity;
+	}
+
+	public Type getType()
+	{
+		return type;
+	}
+
+	public EndPoint getEndPoint()
+	{
+		return endPoint;
+	}
+
+	public Class<E> getEntityClass()
+	{
+		return entityClass;
+	}
+
+	public int getId()
+	{
+		return id;
+	}
+
+	/**
+	 * @return the current version of the entity or null if it was deleted.
+	 */
+	public E getEntity()
+	{
+		return entity;
+	}
+
+	@Override
+	public String toString()
+	{
+		return type + " " + entityClass.getSimpleName() + "[" + id + "]";
+	}
+}
@@ -0,0 +1,41 @@
+package au.com.noojee.acceloapi.dao;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Set;
+
+import au.com.noojee.acceloapi.EndPoint;
+
+/**
+ * Subscribes to the changes found by DeltaSync. Listeners are called on the sync thread, after the change has been
+ * merged into the cache, so they should hand any slow work off to another thread.
+ */
+@FunctionalInterface
+public interface SyncListener
+{
+	void onChange(SyncEvent<?> event);
+
+	/**
+	 * Called after each successful poll of an endPoint. Every change made between since and until has now been passed
+	 * to onChange.
+	 */
+	default void synced(EndPoint endPoint, LocalDateTime since, LocalDateTime until)
+	{
+	}
+
+	/**
+	 * Called after each reconcile of an endPoint. Every entity the sync knew about, or getHeldIds returned, that had
+	 * been deleted before asOf has now been passed to onChange.
+	 */
+	default void reconciled(EndPoint endPoint, LocalDateTime asOf)
+	{
+	}
+
+	/**
+	 * @return the ids of the endPoint's entities held by the listener so that reconcile can check they still exist.
+	 */
+	default Set<Integer> getHeldIds(EndPoint endPoint)
+	{
+		return Collections.emptySet();
+	}
+}
@@ -18,6 +18,7 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
+import com.google.gson.stream.JsonReader;
 
 import au.com.noojee.acceloapi.AcceloFieldList;
 import au.com.noojee.acceloapi.dao.ActivityOwnerType;
@@ -30,24 +31,45 @@ import au.com.noojee.acceloapi.util.Conversions;
 public class GsonForAccelo
 {
 	static Logger logger = LogManager.getLogger();
+
+	/**
+	 * Gson is immutable and thread safe and caches the type adapter for each class the first time the class is seen, so
+	 * we build a single instance and share it. Building a new Gson for each call throws that cache away.
+	 */
+	static private final Gson gson = newGson();
+
 	static public <E extends AcceloEntity<E>> String toJson(AcceloEntity<E> e)
 	{
-		Gson gson = create();
 		return gson.toJson(e);
 	}
 
 	static public <E extends AcceloEntity<E>> E fromJson(String json, Class<E> entityClass)
 	{
-		Gson gson = create();
 		return gson.fromJson(json, entityClass);
 	}
 
 	static public <R> R fromJson(StringReader json, Class<R> responseClass)
 	{
-		Gson gson = create();
 		return gson.fromJson(json, responseClass);
 	}
 
+	/**
+	 * Decodes the response directly from the reader (typically wrapping the connection's input stream) so the body is
+	 * never held as a String.
+	 */
+	static public <R> R fromJson(JsonReader json, Class<R> responseClass)
+	{
+		return gson.fromJson(json, responseClass);
+	}
+
+	/**
+	 * @return the shared Gson instance configured with the Accelo type adaptors.
+	 */
+	static public Gson getGson()
+	{
+		return gson;
+	}
+
 	/**
 	 * takes a list of field names and formats them into a json list. e.g. "_fields": ["status.title", "status.id",
 	 * "status.color", "mobile"]
@@ -57,35 +79,20 @@ public class GsonForAccelo
 	 */
 	public static String toJson(AcceloFieldList fieldList)
 	{
-		String json = "";
-		boolean firstField = true;
-
-		for (String field : fieldList.fields())
-		{
-			if (firstField)
-			{
-				json += "\"_fields\": [";
-				firstField = false;
-			}
-			else
-				json += ",";
-
-			json += "\"" + field + "\"";
-
-		}
-		if (!firstField)
-			json += "]";
-		return json;
+		return fieldList.toJson();
 	}
 	
 	public static String toJson(List<Object> operands)
 	{
-		Gson gson = create();
 		return gson.toJson(operands);
 	}
 
 
-	static private Gson create()
+	/**
+	 * @return a new Gson configured with the Accelo type adaptors. It starts with an empty type adapter cache, so use
+	 *         getGson unless a separate instance is really needed.
+	 */
+	static public Gson newGson()
 	{
 		// Register type adaptors for special conversions and enums requiring a conversion.
 		GsonBuilder builder = new GsonBuilder()
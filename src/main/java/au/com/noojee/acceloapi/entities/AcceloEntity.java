@@ -35,6 +35,39 @@ public abstract class AcceloEntity<E extends AcceloEntity<E>> implements Compara
 	}
 
 
+	/**
+	 * Returns a copy of this entity. The copy is made via clone so all immutable fields (Strings, dates, enums...) are
+	 * shared with this entity. Entities which contain mutable members must override copyMutableFields.
+	 * 
+	 * Used by the AcceloCache so that callers can't change the cached data.
+	 * 
+	 * @return a copy of this entity.
+	 */
+	@SuppressWarnings("unchecked")
+	public E copy()
+	{
+		try
+		{
+			AcceloEntity<E> copy = (AcceloEntity<E>) super.clone();
+			copy.copyMutableFields();
+			return (E) copy;
+		}
+		catch (CloneNotSupportedException e)
+		{
+			// should never happen as we implement Cloneable.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Called on a newly cloned entity. Override this method to replace any mutable members (lists, arrays and other
+	 * objects with setters) with copies so the clone and the original don't share them.
+	 */
+	protected void copyMutableFields()
+	{
+		// _fields is only ever replaced, never modified, so it is safe to share.
+	}
+
 	/**
 	 * Special - used by the AcceloCache. Don't go there.
 	 * 
@@ -140,6 +140,34 @@ public class Activity extends AcceloEntity<Activity>
 		@SuppressWarnings("hiding")
 		List<Integer> staff = new ArrayList<>();
 		List<String> emails = new ArrayList<>();
+
+		Interactions copy()
+		{
+			Interactions copy = new Interactions();
+			if (affiliation != null)
+				copy.affiliation.addAll(affiliation);
+			if (staff != null)
+				copy.staff.addAll(staff);
+			if (emails != null)
+				copy.emails.addAll(emails);
+			return copy;
+		}
+	}
+
+	@Override
+	protected void copyMutableFields()
+	{
+		super.copyMutableFields();
+
+		// Tags are immutable so a new list is enough.
+		if (tag != null)
+			tag = new ArrayList<>(tag);
+		if (to != null)
+			to = to.copy();
+		if (cc != null)
+			cc = cc.copy();
+		if (bcc != null)
+			bcc = bcc.copy();
 	}
 
 	@SuppressWarnings("unused")
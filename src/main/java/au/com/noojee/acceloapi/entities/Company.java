@@ -5,6 +5,7 @@ import java.net.URL;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import au.com.noojee.acceloapi.AcceloApi;
 import au.com.noojee.acceloapi.AcceloException;
@@ -74,6 +75,15 @@ public class Company extends AcceloEntity<Company>
 	{
 	}
 
+	@Override
+	protected void copyMutableFields()
+	{
+		super.copyMutableFields();
+
+		if (customFields != null)
+			customFields = customFields.stream().map(CustomField::copy).collect(Collectors.toList());
+	}
+
 	public void retrieveCustomFields() throws AcceloException
 	{
 
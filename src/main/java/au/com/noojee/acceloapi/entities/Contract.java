@@ -23,6 +23,7 @@ public class Contract extends AcceloEntity<Contract>
 	@DateFilterField
 	private LocalDate date_expires;
 	
+	@DateFilterField
 	private LocalDateTime date_last_interacted;
 	private int renew_days;
 	@BasicFilterField
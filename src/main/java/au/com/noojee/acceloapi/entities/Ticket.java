@@ -143,6 +143,7 @@ public class Ticket extends AcceloEntity<Ticket>
 	 */
 	private int billable_seconds;
 
+	@DateFilterField
 	@OrderByField
 	private LocalDate date_last_interacted ;
 
@@ -24,6 +24,7 @@ public class Contract_
 	public static FilterField<Contract, Integer> billable_affiliation = new FilterField<>("billable_affiliation"); 
 	public static FilterField<Contract,LocalDateTime>date_created = new FilterField<>("date_created"); 
 	public static FilterField<Contract,LocalDate>date_expires = new FilterField<>("date_expires"); 
+	public static FilterField<Contract,LocalDateTime>date_last_interacted = new FilterField<>("date_last_interacted"); 
 	public static FilterField<Contract,LocalDate>date_period_expires = new FilterField<>("date_period_expires"); 
 	public static FilterField<Contract,LocalDate>date_started = new FilterField<>("date_started"); 
 	public static FilterField<Contract, Integer> id = new FilterField<>("id"); 
@@ -32,6 +32,7 @@ public class Ticket_
 	public static FilterField<Ticket, String> custom_id = new FilterField<>("custom_id"); 
 	public static FilterField<Ticket,LocalDateTime>date_closed = new FilterField<>("date_closed"); 
 	public static FilterField<Ticket,LocalDate>date_due = new FilterField<>("date_due"); 
+	public static FilterField<Ticket,LocalDate>date_last_interacted = new FilterField<>("date_last_interacted"); 
 	public static FilterField<Ticket,LocalDateTime>date_opened = new FilterField<>("date_opened"); 
 	public static FilterField<Ticket,LocalDateTime>date_started = new FilterField<>("date_started"); 
 	public static FilterField<Ticket,LocalDateTime>date_submitted = new FilterField<>("date_submitted"); 
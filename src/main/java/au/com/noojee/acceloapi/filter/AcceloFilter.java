@@ -2,18 +2,25 @@ package au.com.noojee.acceloapi.filter;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Predicate;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import au.com.noojee.acceloapi.AcceloApi;
 import au.com.noojee.acceloapi.AcceloException;
 import au.com.noojee.acceloapi.entities.AcceloEntity;
 import au.com.noojee.acceloapi.entities.meta.fieldTypes.FilterField;
 import au.com.noojee.acceloapi.entities.meta.fieldTypes.OrderByField.Order;
 import au.com.noojee.acceloapi.entities.types.AgainstType;
 
+/**
+ * Builds the filter for a query. The filter's state is held in an immutable FrozenFilter which each of the mutators
+ * replaces, so a query (or a cache key) that has taken the filter with freeze() isn't affected by later changes and
+ * copy() costs nothing.
+ */
 public class AcceloFilter<E extends AcceloEntity<E>>
 {
 	public static Logger logger = LogManager.getLogger();
@@ -23,95 +30,65 @@ public class AcceloFilter<E extends AcceloEntity<E>>
 	// no. of rows returned.
 	public static final int UNLIMITED = -1;
 
-	private Optional<Expression> expression = Optional.empty();
+	private volatile FrozenFilter<E> frozen;
 
-	private Optional<Search> search = Optional.empty();
+	public AcceloFilter()
+	{
+		this.frozen = FrozenFilter.empty();
+	}
 
-	private boolean refreshCache = false;
+	public AcceloFilter(FrozenFilter<E> frozen)
+	{
+		this.frozen = frozen;
+	}
 
 	public AcceloFilter<E> copy()
 	{
-		AcceloFilter<E> filter = new AcceloFilter<>();
-
-		this.expression.ifPresent(e -> filter.expression = Optional.of(e.copy()));
-		this.expression = this.expression.map(Expression::copy);
-		// this.search = this.search.map(Search::copy);/
-		this.search.ifPresent(s -> filter.search = Optional.of(s.copy()));
-		filter.refreshCache = this.refreshCache;
-		filter.limit = this.limit;
-		filter.offset = this.offset;
-		filter.orderBy = this.orderBy.map(OrderBy::copy);
-		return filter;
+		return new AcceloFilter<>(this.frozen);
 	}
 
 	/**
-	 * Limits the no. of pages returned during a query. A page can contain up to 50 rows. We default to 1 page (50 rows)
-	 * unless the caller explicitly over-rides the default.
+	 * @return the current state of the filter which later changes to this filter won't affect.
 	 */
-	private int limit = 1;
-
-	/**
-	 * Used with limit to iterate through a large list of entities. Defaults to 0 so we get the first page. The offset
-	 * is the page to start from (0 based). Increment the offset each time you call getByFilter to move forward a page
-	 * at a time.
-	 */
-	private int offset = 0;
-
-	/**
-	 * List of order by clauses.
-	 */
-	// private List<OrderBy<E>> orderByList = new ArrayList<>();
-
-	@SuppressWarnings("rawtypes")
-	private Optional<OrderBy> orderBy = Optional.empty();
+	public FrozenFilter<E> freeze()
+	{
+		return this.frozen;
+	}
 
 	public void where(Search search) throws AcceloException
 	{
-		if (expression.isPresent())
-			throw new AcceloException("You may not combine filters and searches");
-
-		this.search = Optional.of(search);
-
+		this.frozen = frozen.where(search);
 	}
 
 	public AcceloFilter<E> where(Expression expression) throws AcceloException
 	{
-		if (search.isPresent())
-			throw new AcceloException("You may not combine filters and searches");
-
-		this.expression = Optional.of(expression);
+		this.frozen = frozen.where(expression);
 
 		return this;
 	}
 
 	public void orderBy(FilterField<E, Integer> field, Order order)
 	{
-		// this.orderByList.add(new OrderBy<E>(field, order));
-		this.orderBy = Optional.of(new OrderBy<>(field, order));
-
+		this.frozen = frozen.orderBy(field, order);
 	}
 
 	public Search search(String searchValue)
 	{
-		if (expression.isPresent())
-			throw new AcceloException("You may not combine filters and searches");
-
-		this.search = Optional.of(new Search(searchValue));
+		this.frozen = frozen.search(searchValue);
 
-		return this.search.orElseThrow(() -> new IllegalStateException());
+		return this.frozen.getSearch().orElseThrow(() -> new IllegalStateException());
 	}
 	
 	public AcceloFilter<E> and(Expression child) throws IllegalStateException
 	{
-		
-		this.expression = Optional.of(new And(this.expression.orElseThrow(() -> new IllegalStateException()), child));
+		this.frozen = frozen.and(child);
 
 		return this;
 	}
 
 	public AcceloFilter<E> or(Expression child)
 	{
-		this.expression = Optional.of(new Or(this.expression.orElseThrow(() -> new IllegalStateException()), child));
+		this.frozen = frozen.or(child);
 
 		return this;
 	}
@@ -244,73 +221,58 @@ public class AcceloFilter<E extends AcceloEntity<E>>
 	 */
 	public void refreshCache()
 	{
-		this.refreshCache = true;
+		this.frozen = frozen.refreshCache();
 	}
 
 	public boolean isRefreshCache()
 	{
-		return refreshCache;
+		return frozen.isRefreshCache();
 	}
 
 	/**
 	 * Returns the accelo json expression for this filter. "_filters": { "_OR" : { "email": "pepper@test.com", "email" :
 	 * "salt@test.com" } }
-	 * 
-	 * @param filterMap
-	 * @return
-	 * @return
 	 */
 	public String toJson()
 	{
-		Optional<String> result = Optional.empty();
-
-		// this.expression.ifPresent(e -> filter.expression = Optional.of(e.copy()));
-		result = expression.map(exp ->
-			{
-
-				String json = "\"_filters\": {\n";
-
-				json += exp.toJson();
-
-				json += this.orderBy.map(ob -> "," + ob.toJson()).orElse("");
-
-				json += "}";
-				return json;
-			});
-
-		if (!result.isPresent())
-		{
-			result = search.map(s ->
-				{
-					String json = "\"_search\": ";
-					json += "\"" + s.getOperand() + "\"";
-
-					return json;
-				});
-		}
-
-		return result.orElse("");
+		return frozen.toJson();
 	}
 
 	@Override
 	public String toString()
 	{
-		return toJson().replaceAll("\n", " ") + " limit: " + this.limit + " offset: " + this.offset;
+		return frozen.toString();
+	}
+
+	/**
+	 * Returns the filter in a canonical form: the expression's ands and ors are flattened, their parts sorted and
+	 * duplicates removed, as are the operands of each part. Filters that only differ in the order they were built
+	 * (a.and(b) and b.and(a)) have the same canonical form so they share a cache entry.
+	 * 
+	 * refreshCache isn't part of the canonical form so a refresh replaces the cached result of the same filter.
+	 */
+	public String toCanonicalString()
+	{
+		return frozen.toCanonicalString();
+	}
+
+	/**
+	 * @return a 64 bit hash of the canonical form of the filter.
+	 */
+	public long fingerprint()
+	{
+		return frozen.fingerprint();
 	}
 
 	@Override
 	public int hashCode()
 	{
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((expression == null) ? 0 : expression.hashCode());
-		result = prime * result + limit;
-		result = prime * result + offset;
-		result = prime * result + ((orderBy == null) ? 0 : orderBy.hashCode());
-		result = prime * result + ((search == null) ? 0 : search.hashCode());
-		return result;
+		return frozen.hashCode();
 	}
 
+	/**
+	 * Two filters are equal if they have the same canonical form.
+	 */
 	@Override
 	public boolean equals(Object obj)
 	{
@@ -322,43 +284,64 @@ public class AcceloFilter<E extends AcceloEntity<E>>
 			return false;
 		@SuppressWarnings("rawtypes")
 		AcceloFilter other = (AcceloFilter) obj;
-		if (expression == null)
-		{
-			if (other.expression != null)
-				return false;
-		}
-		else if (!expression.equals(other.expression))
-			return false;
-		if (limit != other.limit)
-			return false;
-		if (offset != other.offset)
-			return false;
-		if (orderBy == null)
-		{
-			if (other.orderBy != null)
-				return false;
-		}
-		else if (!orderBy.equals(other.orderBy))
-			return false;
-		if (search == null)
-		{
-			if (other.search != null)
-				return false;
-		}
-		else if (!search.equals(other.search))
-			return false;
-		return true;
+		return frozen.equals(other.frozen);
 	}
 
 	/**
-	 * Returns true if the filter is for a simple id match.
-	 * 
-	 * @return
+	 * If the filter only matches fields against values (eq joined by and) returns the values each field must have, any
+	 * one of the listed values will do. An empty map matches every entity. Returns null for any other filter (a
+	 * search, or, before, order by...). Used by the AcceloReplica to answer a filter locally.
+	 */
+	public Map<String, List<Object>> getEqualities()
+	{
+		return frozen.getEqualities();
+	}
+
+	/**
+	 * Compiles the filter to a predicate which matches the same entities as Accelo would, so the filter can be run
+	 * against entities we already hold. The order by, limit and offset are ignored.
+	 *
+	 * The predicate is only as faithful as the entity's fields allow:
+	 * <ul>
+	 * <li>searches and not can't be evaluated</li>
+	 * <li>only fields holding a single value (numbers, strings, enums, dates) can be read, a filter on any other field
+	 * (or one the entity doesn't have) can't be evaluated</li>
+	 * <li>strings are compared exactly where Accelo may ignore case</li>
+	 * <li>dates are compared to the second, in the local time zone, with an empty date treated as 0</li>
+	 * <li>greater/less than compare numbers numerically and anything else as a string</li>
+	 * </ul>
+	 *
+	 * @return the predicate or empty if the filter can't be evaluated locally.
+	 */
+	public Optional<Predicate<E>> toPredicate(Class<E> entityClass)
+	{
+		return frozen.toPredicate(entityClass);
+	}
+
+	/**
+	 * Returns true if every entity this filter matches is also matched by the broader filter and both return their
+	 * entities in the same order, so this filter's result can be taken from the broader filter's result with
+	 * toPredicate. Limits and offsets are not considered.
+	 *
+	 * The check is conservative: each and'ed part of the broader filter must be implied by a part of this filter (e.g.
+	 * contract = X and standing = open is subsumed by standing = open). A false result only means we can't tell.
+	 */
+	public boolean isSubsumedBy(AcceloFilter<E> broader)
+	{
+		return frozen.isSubsumedBy(broader.frozen);
+	}
+
+	public boolean isOrdered()
+	{
+		return frozen.isOrdered();
+	}
+
+	/**
+	 * True if the filter selects a single entity by its id. A filter for a list of ids is not an id filter.
 	 */
 	public boolean isIDFilter()
 	{
-		return expression.filter(Eq.class::isInstance).map(Eq.class::cast).filter(ex -> ex.isFieldName("id"))
-				.isPresent();
+		return frozen.isIDFilter();
 	}
 
 	/**
@@ -367,7 +350,7 @@ public class AcceloFilter<E extends AcceloEntity<E>>
 	 */
 	public void limit(int limit)
 	{
-		this.limit = limit;
+		this.frozen = frozen.limit(limit);
 	}
 
 	// removes the limit on the no. of entities returned.
@@ -381,36 +364,38 @@ public class AcceloFilter<E extends AcceloEntity<E>>
 	/**
 	 * @return the maximum no. of pages (default is 50 entities per page) the filter will return.
 	 */
-	private int getLimit()
+	public int getLimit()
 	{
-		return this.limit;
+		return frozen.getLimit();
 	}
 
+	/**
+	 * Used with limit to iterate through a large list of entities. Defaults to 0 so we get the first page. The offset
+	 * is the page to start from (0 based). Increment the offset each time you call getByFilter to move forward a page
+	 * at a time.
+	 */
 	public void offset(int offset)
 	{
-		this.offset = offset;
+		this.frozen = frozen.offset(offset);
 	}
 
 	public int getOffset()
 	{
-		return this.offset;
+		return frozen.getOffset();
 	}
 
 	public void showHashCode()
 	{
 		logger.error("Filter hashcode=" + this.hashCode());
 
-		logger.error("Expression: " + expression.hashCode());
-
-		logger.error("OrderBy: " + orderBy.hashCode());
-
+		logger.error("Filter: " + frozen.toCanonicalString());
 	}
 
 	// returns true of no. of entities retrieved is less than the
 	// limit imposed by this filter.
 	public boolean belowLimit(int entitiesRetrieved)
 	{
-		 return limit == UNLIMITED || (entitiesRetrieved < (getLimit() * AcceloApi.PAGE_SIZE));
+		return frozen.belowLimit(entitiesRetrieved);
 	}
 
 
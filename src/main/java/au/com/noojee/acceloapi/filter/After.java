@@ -1,7 +1,6 @@
 package au.com.noojee.acceloapi.filter;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.util.function.Predicate;
 
 import au.com.noojee.acceloapi.entities.AcceloEntity;
 import au.com.noojee.acceloapi.entities.meta.fieldTypes.FilterField;
@@ -25,20 +24,29 @@ class After<E extends AcceloEntity<E>, DT> extends Expression
 	}
 
 	@Override
-	public String toJson()
+	Predicate<AcceloEntity<?>> toPredicate(FieldReader reader)
 	{
-		String nameAndOperator = this.field.getFieldName() + "_after";
+		String fieldName = field.getFieldName();
+		if (!reader.canRead(fieldName) || !reader.isDate(fieldName))
+			return null;
 
-		String json = "\"" + nameAndOperator + "\": [";
-		
-		if (operand instanceof LocalDate)
-			json += "\"" + formatDateAsFilterOperand((LocalDate)operand) + "\"";
-		else
-			json += "\"" + formatDateTimeAsFilterOperand((LocalDateTime)operand) + "\"";
+		long epoch = toEpoch(operand);
+		return entity -> reader.readEpoch(entity, fieldName) > epoch;
+	}
 
-		json += "]";
+	@Override
+	boolean implies(Expression other)
+	{
+		// a later bound on the same field is narrower.
+		if (other instanceof After && field.equals(((After<?, ?>) other).field))
+			return toEpoch(operand) >= toEpoch(((After<?, ?>) other).operand);
+		return super.implies(other);
+	}
 
-		return json;
+	@Override
+	void writeJson(StringBuilder json)
+	{
+		json.append('"').append(field.getFieldName()).append("_after\": [\"").append(toEpoch(operand)).append("\"]");
 	}
 
 	@Override
@@ -2,6 +2,7 @@ package au.com.noojee.acceloapi.filter;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.function.Predicate;
 
 import au.com.noojee.acceloapi.entities.AcceloEntity;
 import au.com.noojee.acceloapi.entities.meta.fieldTypes.FilterField;
@@ -18,16 +19,38 @@ class AfterOrEq<E extends AcceloEntity<E>, DT> extends Expression
 		this.operand = localDate;
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
-	public String toJson()
+	void writeJson(StringBuilder json)
+	{
+		expand().writeJson(json);
+	}
+
+	@Override
+	Predicate<AcceloEntity<?>> toPredicate(FieldReader reader)
+	{
+		return expand().toPredicate(reader);
+	}
+
+	@Override
+	Expression canonical()
+	{
+		return expand().canonical();
+	}
+
+	@Override
+	boolean implies(Expression other)
+	{
+		return expand().implies(other) || super.implies(other);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Expression expand()
 	{
 		if (operand instanceof LocalDate)
-			return (new After<>(field, operand)
-					.or(new Eq<>((FilterField<E, LocalDate>) field, (LocalDate) operand))).toJson();
+			return new After<>(field, operand).or(new Eq<>((FilterField<E, LocalDate>) field, (LocalDate) operand));
 
-		return (new After<>(field, operand)
-					.or(new Eq<>((FilterField<E, LocalDateTime>) field, (LocalDateTime) operand))).toJson();
+		return new After<>(field, operand)
+				.or(new Eq<>((FilterField<E, LocalDateTime>) field, (LocalDateTime) operand));
 	}
 
 	@Override
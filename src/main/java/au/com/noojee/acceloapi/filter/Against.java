@@ -3,7 +3,9 @@ package au.com.noojee.acceloapi.filter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Predicate;
 
+import au.com.noojee.acceloapi.entities.AcceloEntity;
 import au.com.noojee.acceloapi.entities.types.AgainstType;
 
 class Against extends Expression
@@ -41,13 +43,30 @@ class Against extends Expression
 	}
 
 	@Override
-	public String toJson()
+	Expression canonical()
 	{
-		String json = "";
-		
-		json += "\"against\":[{";
+		Against against = new Against(type);
+		matchIds.stream().distinct().sorted().forEach(against.matchIds::add);
+		return against;
+	}
 
-		json += "\"" + type.getName() + "\": [";
+	@Override
+	Predicate<AcceloEntity<?>> toPredicate(FieldReader reader)
+	{
+		if (matchIds.isEmpty() || !reader.canRead("against_type") || !reader.canRead("against_id"))
+			return null;
+
+		List<String> ids = new ArrayList<>();
+		matchIds.forEach(id -> ids.add(id.toString()));
+
+		return entity -> type.getName().equals(reader.read(entity, "against_type"))
+				&& ids.contains(reader.read(entity, "against_id"));
+	}
+
+	@Override
+	void writeJson(StringBuilder json)
+	{
+		json.append("\"against\":[{\"").append(type.getName()).append("\": [");
 
 		boolean firstOperand = true;
 		for (Integer matchId : matchIds)
@@ -55,15 +74,11 @@ class Against extends Expression
 			if (firstOperand)
 				firstOperand = false;
 			else
-				json += ",";
+				json.append(',');
 
-			json += "\"" + matchId + "\"";
+			json.append('"').append(matchId).append('"');
 		}
-		json += "]}";
-		json += "]";
-
-		return json;
-
+		json.append("]}]");
 	}
 
 	@Override
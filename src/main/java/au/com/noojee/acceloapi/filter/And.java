@@ -1,5 +1,13 @@
 package au.com.noojee.acceloapi.filter;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import au.com.noojee.acceloapi.entities.AcceloEntity;
+
 class And extends Expression
 {
 
@@ -22,18 +30,77 @@ class And extends Expression
 	@Override
 	public Expression copy()
 	{
-		And and = new And(this.parent, this.child);
+		And and = new And(this.parent.copy(), this.child.copy());
 		
 		return and;
 	}
 
 	@Override
-	public String toJson()
+	Map<String, List<Object>> equalities()
+	{
+		Map<String, List<Object>> parentEqualities = parent.equalities();
+		Map<String, List<Object>> childEqualities = child.equalities();
+		if (parentEqualities == null || childEqualities == null)
+			return null;
+
+		Map<String, List<Object>> equalities = new HashMap<>(parentEqualities);
+		childEqualities.forEach((fieldName, operands) -> equalities.merge(fieldName, operands, (lhs, rhs) ->
+			{
+				// both sides match the same field so only the common values can match.
+				List<Object> common = new ArrayList<>(lhs);
+				common.retainAll(rhs);
+				return common;
+			}));
+		return equalities;
+	}
+
+	@Override
+	Predicate<AcceloEntity<?>> toPredicate(FieldReader reader)
+	{
+		Predicate<AcceloEntity<?>> parentPredicate = parent.toPredicate(reader);
+		Predicate<AcceloEntity<?>> childPredicate = child.toPredicate(reader);
+		if (parentPredicate == null || childPredicate == null)
+			return null;
+
+		return parentPredicate.and(childPredicate);
+	}
+
+	@Override
+	boolean implies(Expression other)
+	{
+		return parent.implies(other) || child.implies(other) || super.implies(other);
+	}
+
+
+	@Override
+	void flatten(Class<? extends Expression> type, List<Expression> parts)
 	{
-		String expression = "\"_AND\": {\n" + parent.toJson() + "," + child.toJson() + "\n}";
+		if (type != And.class)
+		{
+			super.flatten(type, parts);
+			return;
+		}
 
-		return expression;
+		parent.flatten(type, parts);
+		child.flatten(type, parts);
+	}
 
+	@Override
+	Expression canonical()
+	{
+		List<Expression> parts = new ArrayList<>();
+		flatten(And.class, parts);
+		return canonical(parts, And.class, And::new);
+	}
+
+	@Override
+	void writeJson(StringBuilder json)
+	{
+		json.append("\"_AND\": {\n");
+		parent.writeJson(json);
+		json.append(',');
+		child.writeJson(json);
+		json.append("\n}");
 	}
 
 	@Override
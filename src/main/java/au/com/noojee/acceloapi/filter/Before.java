@@ -1,7 +1,6 @@
 package au.com.noojee.acceloapi.filter;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.util.function.Predicate;
 
 import au.com.noojee.acceloapi.entities.AcceloEntity;
 import au.com.noojee.acceloapi.entities.meta.fieldTypes.FilterField;
@@ -28,20 +27,34 @@ class Before<E extends AcceloEntity<E>, DT> extends Expression
 	}
 
 	@Override
-	public String toJson()
+	Predicate<AcceloEntity<?>> toPredicate(FieldReader reader)
 	{
-		String nameAndOperator = this.field.getFieldName() + "_before";
+		String fieldName = field.getFieldName();
+		if (!reader.canRead(fieldName) || !reader.isDate(fieldName))
+			return null;
 
-		String json = "\"" + nameAndOperator + "\": [";
-		if (operand instanceof LocalDate)
-			json += "\"" + formatDateAsFilterOperand((LocalDate)operand) + "\"";
-		else
-			json += "\"" + formatDateTimeAsFilterOperand((LocalDateTime)operand) + "\"";
-
-		json += "]";
+		// DATEZERO is sent as 0 which Accelo treats as matching empty dates.
+		long epoch = toEpoch(operand);
+		return entity ->
+			{
+				long value = reader.readEpoch(entity, fieldName);
+				return value < epoch || (value == 0 && epoch == 0);
+			};
+	}
 
-		return json;
+	@Override
+	boolean implies(Expression other)
+	{
+		// an earlier bound on the same field is narrower.
+		if (other instanceof Before && field.equals(((Before<?, ?>) other).field))
+			return toEpoch(operand) <= toEpoch(((Before<?, ?>) other).operand);
+		return super.implies(other);
+	}
 
+	@Override
+	void writeJson(StringBuilder json)
+	{
+		json.append('"').append(field.getFieldName()).append("_before\": [\"").append(toEpoch(operand)).append("\"]");
 	}
 
 	@Override
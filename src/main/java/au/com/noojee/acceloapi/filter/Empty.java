@@ -1,6 +1,7 @@
 package au.com.noojee.acceloapi.filter;
 
 import java.time.LocalDate;
+import java.util.function.Predicate;
 
 import au.com.noojee.acceloapi.entities.AcceloEntity;
 import au.com.noojee.acceloapi.entities.meta.fieldTypes.FilterField;
@@ -24,14 +25,19 @@ class Empty<E extends AcceloEntity<E>> extends Expression
 
 
 	@Override
-	public String toJson()
+	Predicate<AcceloEntity<?>> toPredicate(FieldReader reader)
 	{
-		String json = "\"empty\": [";
-		json += "\"" + field.getFieldName() + "\"";
+		String fieldName = field.getFieldName();
+		if (!reader.canRead(fieldName) || !reader.isDate(fieldName))
+			return null;
 
-		json += "]";
+		return entity -> reader.readEpoch(entity, fieldName) == 0;
+	}
 
-		return json;
+	@Override
+	void writeJson(StringBuilder json)
+	{
+		json.append("\"empty\": [\"").append(field.getFieldName()).append("\"]");
 	}
 
 	@Override
@@ -4,9 +4,14 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
-import au.com.noojee.acceloapi.dao.gson.GsonForAccelo;
 import au.com.noojee.acceloapi.entities.AcceloEntity;
 import au.com.noojee.acceloapi.entities.meta.fieldTypes.FilterField;
 import au.com.noojee.acceloapi.util.Constants;
@@ -84,12 +89,77 @@ class Eq<E extends AcceloEntity<E>> extends Expression
 		return this.fieldName.compareTo(fieldName) == 0;
 	}
 
+	boolean isSingleOperand()
+	{
+		return operands.size() == 1;
+	}
+
 	@Override
-	public String toJson()
+	Map<String, List<Object>> equalities()
 	{
-		String json =  "\"" + fieldName + "\":";
-		json += GsonForAccelo.toJson(operands);
-		return json;
+		return Collections.singletonMap(fieldName, operands);
+	}
+
+	@Override
+	Predicate<AcceloEntity<?>> toPredicate(FieldReader reader)
+	{
+		// Accelo's recommended hack for matching an empty date (see the constructors).
+		if (fieldName.endsWith("_before") && !reader.canRead(fieldName))
+		{
+			String dateField = fieldName.substring(0, fieldName.length() - "_before".length());
+			if (!reader.canRead(dateField) || !reader.isDate(dateField) || !operands.equals(Arrays.asList("0")))
+				return null;
+			return entity -> reader.readEpoch(entity, dateField) == 0;
+		}
+
+		if (!reader.canRead(fieldName))
+			return null;
+
+		Set<String> values = normalisedOperands();
+		return entity -> values.contains(reader.read(entity, fieldName));
+	}
+
+	@Override
+	boolean implies(Expression other)
+	{
+		// matching fewer values of the same field is narrower.
+		if (other instanceof Eq)
+		{
+			Eq<?> eq = (Eq<?>) other;
+			if (fieldName.equals(eq.fieldName))
+				return eq.normalisedOperands().containsAll(normalisedOperands());
+		}
+		return super.implies(other);
+	}
+
+	@Override
+	Expression canonical()
+	{
+		Eq<E> eq = new Eq<>();
+		eq.fieldName = fieldName;
+		operands.stream().map(FieldReader::normalise).distinct()
+				.sorted(Comparator.nullsFirst(Comparator.naturalOrder())).forEach(eq.operands::add);
+		return eq;
+	}
+
+	private Set<String> normalisedOperands()
+	{
+		return operands.stream().map(FieldReader::normalise).collect(Collectors.toSet());
+	}
+
+	@Override
+	void writeJson(StringBuilder json)
+	{
+		json.append('"').append(fieldName).append("\":[");
+		for (int i = 0; i < operands.size(); i++)
+		{
+			if (i > 0)
+				json.append(',');
+
+			Object operand = operands.get(i);
+			writeString(json, operand instanceof String ? (String) operand : FieldReader.normalise(operand));
+		}
+		json.append(']');
 	}
 
 	@Override
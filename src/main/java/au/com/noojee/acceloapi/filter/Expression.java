@@ -2,13 +2,91 @@ package au.com.noojee.acceloapi.filter;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
 
+import au.com.noojee.acceloapi.entities.AcceloEntity;
 import au.com.noojee.acceloapi.util.Constants;
 import au.com.noojee.acceloapi.util.Conversions;
 
 public abstract class Expression
 {
-	public abstract String toJson();
+	/**
+	 * @return the expression as it is sent to Accelo.
+	 */
+	public String toJson()
+	{
+		StringBuilder json = new StringBuilder();
+		writeJson(json);
+		return json.toString();
+	}
+
+	/**
+	 * Appends the json for the expression so a whole tree is rendered into one buffer.
+	 */
+	abstract void writeJson(StringBuilder json);
+
+	/**
+	 * Appends the value as a json string escaped the same way Gson escapes it.
+	 */
+	static void writeString(StringBuilder json, String value)
+	{
+		if (value == null)
+		{
+			json.append("null");
+			return;
+		}
+
+		json.append('"');
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			switch (c)
+			{
+				case '"':
+					json.append("\\\"");
+					break;
+				case '\\':
+					json.append("\\\\");
+					break;
+				case '\t':
+					json.append("\\t");
+					break;
+				case '\b':
+					json.append("\\b");
+					break;
+				case '\n':
+					json.append("\\n");
+					break;
+				case '\r':
+					json.append("\\r");
+					break;
+				case '\f':
+					json.append("\\f");
+					break;
+				case '<':
+				case '>':
+				case '&':
+				case '=':
+				case '\'':
+				case '\u2028':
+				case '\u2029':
+					json.append(String.format("\\u%04x", (int) c));
+					break;
+				default:
+					if (c < 0x20)
+						json.append(String.format("\\u%04x", (int) c));
+					else
+						json.append(c);
+			}
+		}
+		json.append('"');
+	}
 
 	@Override
 	public abstract int hashCode();
@@ -33,6 +111,116 @@ public abstract class Expression
 		return new Or(this, child);
 	}
 
+	/**
+	 * Returns the values each field must have (any one of the listed values) if the expression is only made up of eq
+	 * and and. Otherwise returns null.
+	 */
+	Map<String, List<Object>> equalities()
+	{
+		return null;
+	}
+
+	/**
+	 * Returns an equivalent expression in a canonical form so that expressions which match the same entities, but were
+	 * built in a different order, are equal. Nested ands and ors are flattened, their parts sorted and duplicates
+	 * removed, as are the operands of each part.
+	 */
+	Expression canonical()
+	{
+		return this;
+	}
+
+	/**
+	 * Adds the parts of nested expressions of the given type (And or Or) to the list.
+	 */
+	void flatten(Class<? extends Expression> type, List<Expression> parts)
+	{
+		parts.add(this);
+	}
+
+	/**
+	 * Joins the canonical form of each part, sorted by its json with duplicates removed, back into a tree of the given
+	 * type.
+	 */
+	static Expression canonical(List<Expression> parts, Class<? extends Expression> type,
+			BinaryOperator<Expression> join)
+	{
+		Map<String, Expression> sorted = new TreeMap<>();
+		for (Expression part : parts)
+		{
+			List<Expression> flattened = new ArrayList<>();
+			part.canonical().flatten(type, flattened);
+			flattened.forEach(expression -> sorted.putIfAbsent(expression.toJson(), expression));
+		}
+
+		return sorted.values().stream().reduce(join).get();
+	}
+
+	/**
+	 * Compiles the expression to a predicate which evaluates it in process against an entity's fields. See
+	 * AcceloFilter.toPredicate for how closely the predicate follows Accelo.
+	 *
+	 * @return the predicate or null if the expression can't be evaluated in process.
+	 */
+	Predicate<AcceloEntity<?>> toPredicate(FieldReader reader)
+	{
+		return null;
+	}
+
+	/**
+	 * True if every entity matched by this expression must also be matched by the other expression. A false result
+	 * only means we can't tell.
+	 */
+	boolean implies(Expression other)
+	{
+		if (other instanceof Or)
+			return ((Or) other).isImpliedBy(this);
+
+		return equals(other);
+	}
+
+	/**
+	 * Compiles a comparison of a field against an operand. Values are compared as numbers when both are numbers
+	 * otherwise as strings. An empty field never matches.
+	 */
+	static Predicate<AcceloEntity<?>> compare(FieldReader reader, String fieldName, Object operand,
+			IntPredicate test)
+	{
+		if (!reader.canRead(fieldName))
+			return null;
+
+		String operandValue = FieldReader.normalise(operand);
+		return entity ->
+			{
+				String value = reader.read(entity, fieldName);
+				return value != null && test.test(compare(value, operandValue));
+			};
+	}
+
+	private static int compare(String value, String operand)
+	{
+		try
+		{
+			return Long.compare(Long.parseLong(value), Long.parseLong(operand));
+		}
+		catch (NumberFormatException e)
+		{
+			return value.compareTo(operand);
+		}
+	}
+
+	/**
+	 * @return the date as a unix timestamp in the same way the date is sent to Accelo.
+	 */
+	long toEpoch(Object date)
+	{
+		if (date == Constants.DATEZERO || date == Constants.DATETIMEZERO)
+			return 0;
+		if (date instanceof LocalDate)
+			return Conversions.toLong((LocalDate) date);
+		return Conversions.toLong((LocalDateTime) date);
+	}
+
 	// Accelo expects date filters to be a unix timestamp.
 	public String formatDateAsFilterOperand(LocalDate date)
 	{
@@ -0,0 +1,194 @@
+package au.com.noojee.acceloapi.filter;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.gson.JsonElement;
+import com.google.gson.annotations.SerializedName;
+
+import au.com.noojee.acceloapi.AcceloException;
+import au.com.noojee.acceloapi.dao.gson.GsonForAccelo;
+import au.com.noojee.acceloapi.entities.AcceloEntity;
+import au.com.noojee.acceloapi.entities.meta.fieldTypes.BasicFilterField;
+import au.com.noojee.acceloapi.entities.meta.fieldTypes.DateFilterField;
+import au.com.noojee.acceloapi.util.Conversions;
+
+/**
+ * Reads the fields of an entity by the name Accelo uses in a filter so that filters can be evaluated in process.
+ *
+ * Values are normalised to the form they take in a filter sent to Accelo (ints as strings, dates as unix timestamps,
+ * enums by their accelo name) so they can be compared directly with a filter's operands. Only fields that hold a
+ * single value can be read.
+ */
+public class FieldReader
+{
+	private static final Map<Class<?>, FieldReader> readers = new ConcurrentHashMap<>();
+
+	// a date within a day of the epoch is how Accelo represents an empty date.
+	private static final long EMPTY_DATE_SECONDS = 24 * 60 * 60;
+
+	private final Map<String, Field> fields;
+
+	// the fields found by canRead, only kept by a reader returned from recording.
+	private final Set<Field> used;
+
+	public static FieldReader forClass(Class<?> entityClass)
+	{
+		return readers.computeIfAbsent(entityClass, FieldReader::new);
+	}
+
+	private FieldReader(Class<?> entityClass)
+	{
+		this.fields = new HashMap<>();
+		this.used = null;
+
+		Map<String, Field> byJavaName = new HashMap<>();
+
+		for (Class<?> type = entityClass; type != Object.class; type = type.getSuperclass())
+		{
+			for (Field field : type.getDeclaredFields())
+			{
+				if (Modifier.isStatic(field.getModifiers()) || !isComparable(field.getType()))
+					continue;
+
+				field.setAccessible(true);
+
+				String name = filterName(field);
+				if (name != null)
+					fields.putIfAbsent(name, field);
+				byJavaName.putIfAbsent(field.getName(), field);
+			}
+		}
+
+		// fields that aren't filter fields (e.g. against_type) can still be read by their java name.
+		byJavaName.forEach(fields::putIfAbsent);
+	}
+
+	private FieldReader(FieldReader reader, Set<Field> used)
+	{
+		this.fields = reader.fields;
+		this.used = used;
+	}
+
+	/**
+	 * @return a reader over the same class that adds each field that canRead finds to used. Compiling a predicate with
+	 *         it collects the fields the predicate reads.
+	 */
+	FieldReader recording(Set<Field> used)
+	{
+		return new FieldReader(this, used);
+	}
+
+	public boolean canRead(String name)
+	{
+		Field field = fields.get(name);
+		if (field != null && used != null)
+			used.add(field);
+		return field != null;
+	}
+
+	/**
+	 * @return the raw value of the field.
+	 */
+	public Object get(AcceloEntity<?> entity, String name)
+	{
+		Field field = fields.get(name);
+		if (field == null)
+			throw new AcceloException("The field " + name + " can't be read from " + entity.getClass().getSimpleName());
+
+		try
+		{
+			return field.get(entity);
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new AcceloException(e);
+		}
+	}
+
+	/**
+	 * @return the value of the field as it would appear in a filter or null if the field is null.
+	 */
+	public String read(AcceloEntity<?> entity, String name)
+	{
+		return normalise(get(entity, name));
+	}
+
+	/**
+	 * @return the value of a date field as a unix timestamp with an empty date returned as 0.
+	 */
+	long readEpoch(AcceloEntity<?> entity, String name)
+	{
+		Object value = get(entity, name);
+
+		long epoch = 0;
+		if (value instanceof LocalDate)
+			epoch = Conversions.toLong((LocalDate) value);
+		else if (value instanceof LocalDateTime)
+			epoch = Conversions.toLong((LocalDateTime) value);
+
+		return Math.abs(epoch) < EMPTY_DATE_SECONDS ? 0 : epoch;
+	}
+
+	boolean isDate(String name)
+	{
+		Class<?> type = fields.get(name).getType();
+		return type == LocalDate.class || type == LocalDateTime.class;
+	}
+
+	/**
+	 * Converts a value to the form it takes in a filter sent to Accelo.
+	 */
+	public static String normalise(Object value)
+	{
+		if (value == null)
+			return null;
+
+		JsonElement json = GsonForAccelo.getGson().toJsonTree(value);
+		return json.isJsonPrimitive() ? json.getAsString() : null;
+	}
+
+	/**
+	 * @return the names Accelo may use for the field in a response.
+	 */
+	static List<String> responseNames(Field field)
+	{
+		List<String> names = new ArrayList<>();
+		SerializedName serializedName = field.getAnnotation(SerializedName.class);
+		if (serializedName == null)
+			names.add(field.getName());
+		else
+		{
+			names.add(serializedName.value());
+			names.addAll(Arrays.asList(serializedName.alternate()));
+		}
+		return names;
+	}
+
+	private static String filterName(Field field)
+	{
+		String name = null;
+		if (field.isAnnotationPresent(BasicFilterField.class))
+			name = field.getAnnotation(BasicFilterField.class).name();
+		else if (field.isAnnotationPresent(DateFilterField.class))
+			name = field.getAnnotation(DateFilterField.class).name();
+
+		return (name == null || !name.isEmpty() ? name : field.getName());
+	}
+
+	// only fields with a single value can be compared with a filter operand.
+	private static boolean isComparable(Class<?> type)
+	{
+		return type.isPrimitive() || type.isEnum() || type == String.class || Number.class.isAssignableFrom(type)
+				|| type == Boolean.class || type == LocalDate.class || type == LocalDateTime.class;
+	}
+}
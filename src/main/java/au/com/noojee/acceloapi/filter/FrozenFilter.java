@@ -0,0 +1,373 @@
+package au.com.noojee.acceloapi.filter;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.google.common.hash.Hashing;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.AcceloException;
+import au.com.noojee.acceloapi.AcceloFieldList;
+import au.com.noojee.acceloapi.entities.AcceloEntity;
+import au.com.noojee.acceloapi.entities.meta.fieldTypes.FilterField;
+import au.com.noojee.acceloapi.entities.meta.fieldTypes.OrderByField.Order;
+
+/**
+ * An immutable filter. Each of the builder methods returns a new filter, so a FrozenFilter can be shared between
+ * threads and held by a cache key without being copied. The json sent to Accelo, the canonical form and its
+ * fingerprint are computed the first time they are asked for and then kept.
+ *
+ * AcceloFilter is the mutable adapter most code builds filters with, freeze() returns its current state:
+ *
+ * <pre>
+ * AcceloFilter&lt;Ticket&gt; filter = new AcceloFilter&lt;&gt;();
+ * FrozenFilter&lt;Ticket&gt; open = filter.where(filter.eq(Ticket_.standing, Standing.open)).freeze();
+ * FrozenFilter&lt;Ticket&gt; firstTwoPages = open.limit(2);
+ * </pre>
+ */
+public final class FrozenFilter<E extends AcceloEntity<E>>
+{
+	private final Optional<Expression> expression;
+
+	private final Optional<Search> search;
+
+	@SuppressWarnings("rawtypes")
+	private final Optional<OrderBy> orderBy;
+
+	// the no. of pages to return, see AcceloFilter.limit.
+	private final int limit;
+
+	// the page to start from, see AcceloFilter.offset.
+	private final int offset;
+
+	private final boolean refreshCache;
+
+	// shared by the id filters, see forId.
+	@SuppressWarnings("rawtypes")
+	private static final FilterField ID_FIELD = new FilterField<>("id");
+
+	// rendered on first use, a filter that is only built up or used as an id key never needs them.
+	private volatile String json;
+	private volatile String canonical;
+	private volatile long fingerprint;
+
+	/**
+	 * @return a filter which matches every entity, returning the first page.
+	 */
+	public static <E extends AcceloEntity<E>> FrozenFilter<E> empty()
+	{
+		return new FrozenFilter<>(Optional.empty(), Optional.empty(), Optional.empty(), 1, 0, false);
+	}
+
+	/**
+	 * @return the filter for a single entity by its id, the same as filter.where(filter.eq(entity.getIdFilterField(),
+	 *         id)) without building an AcceloFilter. The cache builds one of these for every entity a query returns.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E extends AcceloEntity<E>> FrozenFilter<E> forId(int id)
+	{
+		return new FrozenFilter<>(Optional.of(new Eq<>(ID_FIELD, id)), Optional.empty(), Optional.empty(), 1, 0,
+				false);
+	}
+
+	@SuppressWarnings("rawtypes")
+	private FrozenFilter(Optional<Expression> expression, Optional<Search> search, Optional<OrderBy> orderBy,
+			int limit, int offset, boolean refreshCache)
+	{
+		this.expression = expression;
+		this.search = search;
+		this.orderBy = orderBy;
+		this.limit = limit;
+		this.offset = offset;
+		this.refreshCache = refreshCache;
+	}
+
+	public FrozenFilter<E> where(Expression expression) throws AcceloException
+	{
+		if (search.isPresent())
+			throw new AcceloException("You may not combine filters and searches");
+
+		return new FrozenFilter<>(Optional.of(expression), search, orderBy, limit, offset, refreshCache);
+	}
+
+	public FrozenFilter<E> where(Search search) throws AcceloException
+	{
+		if (expression.isPresent())
+			throw new AcceloException("You may not combine filters and searches");
+
+		return new FrozenFilter<>(expression, Optional.of(search), orderBy, limit, offset, refreshCache);
+	}
+
+	public FrozenFilter<E> search(String searchValue) throws AcceloException
+	{
+		return where(new Search(searchValue));
+	}
+
+	public FrozenFilter<E> and(Expression child) throws IllegalStateException
+	{
+		return new FrozenFilter<>(Optional.of(new And(expression.orElseThrow(() -> new IllegalStateException()), child)),
+				search, orderBy, limit, offset, refreshCache);
+	}
+
+	public FrozenFilter<E> or(Expression child) throws IllegalStateException
+	{
+		return new FrozenFilter<>(Optional.of(new Or(expression.orElseThrow(() -> new IllegalStateException()), child)),
+				search, orderBy, limit, offset, refreshCache);
+	}
+
+	public FrozenFilter<E> orderBy(FilterField<E, Integer> field, Order order)
+	{
+		return new FrozenFilter<>(expression, search, Optional.of(new OrderBy<>(field, order)), limit, offset,
+				refreshCache);
+	}
+
+	/**
+	 * @return a filter which returns at most limit pages (default is 50 entities per page).
+	 */
+	public FrozenFilter<E> limit(int limit)
+	{
+		return new FrozenFilter<>(expression, search, orderBy, limit, offset, refreshCache);
+	}
+
+	public FrozenFilter<E> noLimit()
+	{
+		return limit(AcceloFilter.UNLIMITED);
+	}
+
+	public FrozenFilter<E> offset(int offset)
+	{
+		return new FrozenFilter<>(expression, search, orderBy, limit, offset, refreshCache);
+	}
+
+	/**
+	 * @return a filter which re-fetches its data from Accelo rather than using the cache.
+	 */
+	public FrozenFilter<E> refreshCache()
+	{
+		return new FrozenFilter<>(expression, search, orderBy, limit, offset, true);
+	}
+
+	Optional<Search> getSearch()
+	{
+		return search;
+	}
+
+	public boolean isRefreshCache()
+	{
+		return refreshCache;
+	}
+
+	public int getLimit()
+	{
+		return limit;
+	}
+
+	public int getOffset()
+	{
+		return offset;
+	}
+
+	public boolean isOrdered()
+	{
+		return orderBy.isPresent();
+	}
+
+	/**
+	 * Returns the accelo json expression for this filter. "_filters": { "_OR" : { "email": "pepper@test.com", "email" :
+	 * "salt@test.com" } }
+	 */
+	public String toJson()
+	{
+		String result = json;
+		if (result == null)
+		{
+			result = renderJson();
+			this.json = result;
+		}
+		return result;
+	}
+
+	private String renderJson()
+	{
+		StringBuilder json = new StringBuilder();
+		if (expression.isPresent())
+		{
+			json.append("\"_filters\": {\n");
+			expression.get().writeJson(json);
+			orderBy.ifPresent(ob -> json.append(',').append(ob.toJson()));
+			json.append('}');
+		}
+		else
+			search.ifPresent(s -> s.writeJson(json));
+
+		return json.toString();
+	}
+
+	/**
+	 * Returns the filter in a canonical form: the expression's ands and ors are flattened, their parts sorted and
+	 * duplicates removed, as are the operands of each part. Filters that only differ in the order they were built
+	 * (a.and(b) and b.and(a)) have the same canonical form so they share a cache entry.
+	 *
+	 * refreshCache isn't part of the canonical form so a refresh replaces the cached result of the same filter.
+	 */
+	public String toCanonicalString()
+	{
+		String result = canonical;
+		if (result == null)
+		{
+			result = renderCanonical();
+			this.fingerprint = Hashing.murmur3_128().hashString(result, StandardCharsets.UTF_8).asLong();
+			// written last so a thread that sees the canonical form also sees its fingerprint.
+			this.canonical = result;
+		}
+		return result;
+	}
+
+	private String renderCanonical()
+	{
+		return expression.map(e -> e.canonical().toJson()).orElse("")
+				+ "|" + search.map(Search::getOperand).orElse("")
+				+ "|" + orderBy.map(OrderBy::toJson).orElse("")
+				+ "|" + limit + "|" + offset;
+	}
+
+	/**
+	 * @return a 64 bit hash of the canonical form of the filter.
+	 */
+	public long fingerprint()
+	{
+		if (canonical == null)
+			toCanonicalString();
+		return fingerprint;
+	}
+
+	@Override
+	public String toString()
+	{
+		return toJson().replaceAll("\n", " ") + " limit: " + this.limit + " offset: " + this.offset;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Long.hashCode(fingerprint());
+	}
+
+	/**
+	 * Two filters are equal if they have the same canonical form.
+	 */
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		@SuppressWarnings("rawtypes")
+		FrozenFilter other = (FrozenFilter) obj;
+		return fingerprint() == other.fingerprint() && toCanonicalString().equals(other.toCanonicalString());
+	}
+
+	/**
+	 * See AcceloFilter.getEqualities.
+	 */
+	public Map<String, List<Object>> getEqualities()
+	{
+		if (search.isPresent() || orderBy.isPresent())
+			return null;
+
+		if (!expression.isPresent())
+			return Collections.emptyMap();
+
+		return expression.get().equalities();
+	}
+
+	/**
+	 * See AcceloFilter.toPredicate.
+	 */
+	public Optional<Predicate<E>> toPredicate(Class<E> entityClass)
+	{
+		if (search.isPresent())
+			return Optional.empty();
+
+		if (!expression.isPresent())
+			return Optional.of(entity -> true);
+
+		Predicate<AcceloEntity<?>> predicate = expression.get().toPredicate(FieldReader.forClass(entityClass));
+		return Optional.ofNullable(predicate).map(p -> p::test);
+	}
+
+	/**
+	 * As toPredicate but only for entities loaded with the given fields. A field that wasn't loaded reads as null and
+	 * never matches so if the predicate reads a field that isn't in the list we can't evaluate the filter in process.
+	 */
+	public Optional<Predicate<E>> toPredicate(Class<E> entityClass, AcceloFieldList fields)
+	{
+		if (search.isPresent())
+			return Optional.empty();
+
+		if (!expression.isPresent())
+			return Optional.of(entity -> true);
+
+		Set<Field> read = new HashSet<>();
+		Predicate<AcceloEntity<?>> predicate = expression.get()
+				.toPredicate(FieldReader.forClass(entityClass).recording(read));
+		if (predicate == null || !read.stream()
+				.allMatch(field -> FieldReader.responseNames(field).stream().anyMatch(fields::includes)))
+			return Optional.empty();
+
+		return Optional.of(predicate::test);
+	}
+
+	/**
+	 * See AcceloFilter.isSubsumedBy.
+	 */
+	public boolean isSubsumedBy(FrozenFilter<E> broader)
+	{
+		if (search.isPresent() || broader.search.isPresent() || !orderBy.equals(broader.orderBy))
+			return false;
+
+		if (!broader.expression.isPresent())
+			return true;
+
+		if (!expression.isPresent())
+			return false;
+
+		List<Expression> narrowParts = conjuncts(expression.get());
+		return conjuncts(broader.expression.get()).stream()
+				.allMatch(broad -> narrowParts.stream().anyMatch(narrow -> narrow.implies(broad)));
+	}
+
+	private static List<Expression> conjuncts(Expression expression)
+	{
+		List<Expression> conjuncts = new ArrayList<>();
+		expression.flatten(And.class, conjuncts);
+		return conjuncts;
+	}
+
+	/**
+	 * True if the filter selects a single entity by its id. A filter for a list of ids is not an id filter.
+	 */
+	public boolean isIDFilter()
+	{
+		return expression.filter(Eq.class::isInstance).map(Eq.class::cast)
+				.filter(ex -> ex.isFieldName("id") && ex.isSingleOperand()).isPresent();
+	}
+
+	// returns true of no. of entities retrieved is less than the
+	// limit imposed by this filter.
+	public boolean belowLimit(int entitiesRetrieved)
+	{
+		return limit == AcceloFilter.UNLIMITED || (entitiesRetrieved < (limit * AcceloApi.PAGE_SIZE));
+	}
+}
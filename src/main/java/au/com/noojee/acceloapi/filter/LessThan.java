@@ -1,5 +1,7 @@
 package au.com.noojee.acceloapi.filter;
 
+import java.util.function.Predicate;
+
 import au.com.noojee.acceloapi.entities.AcceloEntity;
 import au.com.noojee.acceloapi.entities.meta.fieldTypes.FilterField;
 
@@ -33,13 +35,15 @@ class LessThan<E extends AcceloEntity<E>> extends Expression
 	}
 
 	@Override
-	public String toJson()
+	Predicate<AcceloEntity<?>> toPredicate(FieldReader reader)
 	{
-		String json = "\"" + field.getFieldName() + "less_than\" : ";
-
-		json +=  "[" + operand  + "]";
+		return compare(reader, field.getFieldName(), operand, c -> c < 0);
+	}
 
-		return json;
+	@Override
+	void writeJson(StringBuilder json)
+	{
+		json.append('"').append(field.getFieldName()).append("_less_than\" : [").append(operand).append(']');
 	}
 
 	@Override
@@ -14,7 +14,7 @@ class Not extends Expression
 
 	
 	@Override
-	public String toJson()
+	void writeJson(StringBuilder json)
 	{
 		throw new RuntimeException("Not is not supported :)");
 	}
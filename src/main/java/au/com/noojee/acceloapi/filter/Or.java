@@ -1,5 +1,11 @@
 package au.com.noojee.acceloapi.filter;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import au.com.noojee.acceloapi.entities.AcceloEntity;
+
 class Or extends Expression
 {
 
@@ -16,19 +22,66 @@ class Or extends Expression
 	@Override
 	public Expression copy()
 	{
-		Or exp = new Or(this.parent, this.child);
+		Or exp = new Or(this.parent.copy(), this.child.copy());
 		
 		return exp;
 	}
 
 
 	@Override
-	public String toJson()
+	Predicate<AcceloEntity<?>> toPredicate(FieldReader reader)
+	{
+		Predicate<AcceloEntity<?>> parentPredicate = parent.toPredicate(reader);
+		Predicate<AcceloEntity<?>> childPredicate = child.toPredicate(reader);
+		if (parentPredicate == null || childPredicate == null)
+			return null;
+
+		return parentPredicate.or(childPredicate);
+	}
+
+	@Override
+	boolean implies(Expression other)
 	{
-		String expression = "\"_OR\": {\n" + parent.toJson() + "," + child.toJson() + "\n}";
+		return (parent.implies(other) && child.implies(other)) || super.implies(other);
+	}
 
-		return expression;
+	/**
+	 * True if every entity matched by the expression is matched by one side of this or.
+	 */
+	boolean isImpliedBy(Expression expression)
+	{
+		return expression.equals(this) || expression.implies(parent) || expression.implies(child);
+	}
 
+	@Override
+	void flatten(Class<? extends Expression> type, List<Expression> parts)
+	{
+		if (type != Or.class)
+		{
+			super.flatten(type, parts);
+			return;
+		}
+
+		parent.flatten(type, parts);
+		child.flatten(type, parts);
+	}
+
+	@Override
+	Expression canonical()
+	{
+		List<Expression> parts = new ArrayList<>();
+		flatten(Or.class, parts);
+		return canonical(parts, Or.class, Or::new);
+	}
+
+	@Override
+	void writeJson(StringBuilder json)
+	{
+		json.append("\"_OR\": {\n");
+		parent.writeJson(json);
+		json.append(',');
+		child.writeJson(json);
+		json.append("\n}");
 	}
 
 	@Override
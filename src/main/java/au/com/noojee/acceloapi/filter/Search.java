@@ -20,15 +20,9 @@ public class Search extends Expression
 	}
 
 	@Override
-	public String toJson()
+	void writeJson(StringBuilder json)
 	{
-		String json = "";
-
-		json += "\"_search\": ";
-
-		json += "\"" + operand + "\"";
-
-		return json;
+		json.append("\"_search\": \"").append(operand).append('"');
 	}
 
 	public String getOperand()
@@ -0,0 +1,183 @@
+package au.com.noojee.acceloapi.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.cache.AcceloCache;
+
+/**
+ * Collects the metrics for every request sent to Accelo and every cache lookup. The registry is a singleton use
+ * AcceloMetrics.getInstance() to access it.
+ *
+ * The metrics are pulled rather than pushed, either directly:
+ *
+ * <pre>
+ * EndPointMetrics tickets = AcceloMetrics.getInstance().getEndPoint(EndPoint.tickets);
+ * double p99 = tickets.getLatency().getP99Millis();
+ * </pre>
+ *
+ * or over JMX as au.com.noojee.acceloapi:type=Metrics (see AcceloMetricsMXBean). Nothing is sent anywhere.
+ */
+public class AcceloMetrics implements AcceloMetricsMXBean
+{
+	private static Logger logger = LogManager.getLogger();
+
+	public static final String OBJECT_NAME = "au.com.noojee.acceloapi:type=Metrics";
+
+	static private AcceloMetrics self = null;
+
+	private final ConcurrentHashMap<EndPoint, EndPointMetrics> endPoints = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Class<?>, CacheMetrics> caches = new ConcurrentHashMap<>();
+	private final LatencyHistogram rateLimiterWait = new LatencyHistogram();
+
+	static synchronized public AcceloMetrics getInstance()
+	{
+		if (self == null)
+		{
+			self = new AcceloMetrics();
+			self.register();
+		}
+
+		return self;
+	}
+
+	private AcceloMetrics()
+	{
+	}
+
+	private void register()
+	{
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+		}
+		catch (JMException | SecurityException e)
+		{
+			// the metrics are still available via the pull api.
+			logger.warn("Unable to register the metrics MBean " + OBJECT_NAME, e);
+		}
+	}
+
+	/**
+	 * @return the metrics for the endPoint, created on first use.
+	 */
+	public EndPointMetrics getEndPoint(EndPoint endPoint)
+	{
+		return endPoints.computeIfAbsent(endPoint, EndPointMetrics::new);
+	}
+
+	/**
+	 * @return the cache metrics for the entityClass, created on first use.
+	 */
+	public CacheMetrics getCache(Class<?> entityClass)
+	{
+		return caches.computeIfAbsent(entityClass, CacheMetrics::new);
+	}
+
+	/**
+	 * Records how long a request waited for a rate limiter permit.
+	 */
+	public void recordRateLimiterWait(long nanos)
+	{
+		rateLimiterWait.record(nanos);
+	}
+
+	/**
+	 * @return every endpoint that has been used, busiest first.
+	 */
+	@Override
+	public List<EndPointMetrics> getEndPoints()
+	{
+		List<EndPointMetrics> list = new ArrayList<>(endPoints.values());
+		list.sort(Comparator.comparingLong(EndPointMetrics::getRequestCount).reversed());
+		return list;
+	}
+
+	/**
+	 * @return every entity class that has been looked up in the cache, most looked up first.
+	 */
+	@Override
+	public List<CacheMetrics> getCaches()
+	{
+		List<CacheMetrics> list = new ArrayList<>(caches.values());
+		list.sort(Comparator
+				.comparingLong((CacheMetrics cache) -> cache.getHitCount() + cache.getDiskHitCount()
+						+ cache.getMissCount())
+				.reversed());
+		return list;
+	}
+
+	@Override
+	public LatencySnapshot getRateLimiterWait()
+	{
+		return rateLimiterWait.snapshot();
+	}
+
+	@Override
+	public long getRequestCount()
+	{
+		return endPoints.values().stream().mapToLong(EndPointMetrics::getRequestCount).sum();
+	}
+
+	@Override
+	public long getErrorCount()
+	{
+		return endPoints.values().stream().mapToLong(EndPointMetrics::getErrorCount).sum();
+	}
+
+	@Override
+	public long getBytesRead()
+	{
+		return endPoints.values().stream().mapToLong(EndPointMetrics::getBytesRead).sum();
+	}
+
+	@Override
+	public long getRetryCount()
+	{
+		return AcceloApi.getInstance().getRetryPolicy().getRetryCount();
+	}
+
+	@Override
+	public long getCoalescedCount()
+	{
+		return AcceloCache.getInstance().getCoalescedCount();
+	}
+
+	@Override
+	public double getRateLimitPermitsPerSecond()
+	{
+		return AcceloApi.getInstance().getRateLimiter().getRate();
+	}
+
+	/**
+	 * Zeros every metric. The retry and coalesced counts belong to the RetryPolicy and AcceloCache so aren't reset.
+	 */
+	@Override
+	public void reset()
+	{
+		endPoints.values().forEach(EndPointMetrics::reset);
+		caches.values().forEach(CacheMetrics::reset);
+		rateLimiterWait.reset();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		getEndPoints().forEach(endPoint -> sb.append(endPoint).append('\n'));
+		getCaches().forEach(cache -> sb.append(cache).append('\n'));
+		sb.append("rate limiter wait ").append(getRateLimiterWait());
+		return sb.toString();
+	}
+}
@@ -0,0 +1,30 @@
+package au.com.noojee.acceloapi.metrics;
+
+import java.util.List;
+
+/**
+ * The JMX view of AcceloMetrics. Registered with the platform MBean server as au.com.noojee.acceloapi:type=Metrics so
+ * any JMX client (jconsole, VisualVM, a Prometheus JMX exporter) can read it.
+ */
+public interface AcceloMetricsMXBean
+{
+	List<EndPointMetrics> getEndPoints();
+
+	List<CacheMetrics> getCaches();
+
+	LatencySnapshot getRateLimiterWait();
+
+	long getRequestCount();
+
+	long getErrorCount();
+
+	long getBytesRead();
+
+	long getRetryCount();
+
+	long getCoalescedCount();
+
+	double getRateLimitPermitsPerSecond();
+
+	void reset();
+}
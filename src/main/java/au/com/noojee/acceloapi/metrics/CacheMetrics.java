@@ -0,0 +1,126 @@
+package au.com.noojee.acceloapi.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The AcceloCache lookups for a single entity class.
+ *
+ * A miss is any lookup that had to wait on Accelo, including one that joined an identical request already in flight
+ * and a forced refresh. Only the misses that actually sent a request are counted as loads.
+ */
+public class CacheMetrics
+{
+	private final Class<?> entityClass;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder diskHits = new LongAdder();
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LatencyHistogram loadTime = new LatencyHistogram();
+
+	CacheMetrics(Class<?> entityClass)
+	{
+		this.entityClass = entityClass;
+	}
+
+	public void hit()
+	{
+		hits.increment();
+	}
+
+	public void miss()
+	{
+		misses.increment();
+	}
+
+	/**
+	 * Records a lookup that missed the heap but was served by the DiskCacheTier.
+	 */
+	public void diskHit()
+	{
+		diskHits.increment();
+	}
+
+	/**
+	 * Records a query that was sent to Accelo to fill the cache.
+	 */
+	public void load(long nanos)
+	{
+		loads.increment();
+		loadTime.record(nanos);
+	}
+
+	/**
+	 * Records an entry removed because the cache was full or the entry expired (not an explicit flush).
+	 */
+	public void evicted()
+	{
+		evictions.increment();
+	}
+
+	/**
+	 * @return the simple name of the entity class.
+	 */
+	public String getEntityName()
+	{
+		return entityClass.getSimpleName();
+	}
+
+	public long getHitCount()
+	{
+		return hits.sum();
+	}
+
+	public long getMissCount()
+	{
+		return misses.sum();
+	}
+
+	public long getDiskHitCount()
+	{
+		return diskHits.sum();
+	}
+
+	/**
+	 * @return (hits + disk hits) / (hits + disk hits + misses) or 0 if there haven't been any lookups.
+	 */
+	public double getHitRatio()
+	{
+		long hits = getHitCount() + getDiskHitCount();
+		long lookups = hits + getMissCount();
+		return (lookups == 0 ? 0 : hits / (double) lookups);
+	}
+
+	public long getLoadCount()
+	{
+		return loads.sum();
+	}
+
+	public LatencySnapshot getLoadTime()
+	{
+		return loadTime.snapshot();
+	}
+
+	public long getEvictionCount()
+	{
+		return evictions.sum();
+	}
+
+	void reset()
+	{
+		hits.reset();
+		misses.reset();
+		diskHits.reset();
+		loads.reset();
+		evictions.reset();
+		loadTime.reset();
+	}
+
+	@Override
+	public String toString()
+	{
+		return getEntityName() + String.format(" hitRatio=%.2f", getHitRatio()) + " hits=" + getHitCount()
+				+ " diskHits=" + getDiskHitCount() + " misses=" + getMissCount() + " evictions=" + getEvictionCount() + " load " + getLoadTime();
+	}
+}
@@ -0,0 +1,82 @@
+package au.com.noojee.acceloapi.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import au.com.noojee.acceloapi.EndPoint;
+
+/**
+ * The requests sent to a single EndPoint. Every attempt is counted so a retried request counts once per attempt.
+ *
+ * Latency is measured from when the rate limiter grants a permit until the response has been read, so it doesn't
+ * include the time spent waiting on the rate limiter (see AcceloMetrics.getRateLimiterWait).
+ */
+public class EndPointMetrics
+{
+	private final EndPoint endPoint;
+
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder bytesRead = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	EndPointMetrics(EndPoint endPoint)
+	{
+		this.endPoint = endPoint;
+	}
+
+	/**
+	 * Records a completed request.
+	 *
+	 * @param nanos how long the request took.
+	 * @param bytes the size of the response body.
+	 * @param error true if the request failed (an error response or an IOException).
+	 */
+	public void record(long nanos, long bytes, boolean error)
+	{
+		requests.increment();
+		if (error)
+			errors.increment();
+		bytesRead.add(bytes);
+		latency.record(nanos);
+	}
+
+	public EndPoint getEndPoint()
+	{
+		return endPoint;
+	}
+
+	public long getRequestCount()
+	{
+		return requests.sum();
+	}
+
+	public long getErrorCount()
+	{
+		return errors.sum();
+	}
+
+	public long getBytesRead()
+	{
+		return bytesRead.sum();
+	}
+
+	public LatencySnapshot getLatency()
+	{
+		return latency.snapshot();
+	}
+
+	void reset()
+	{
+		requests.reset();
+		errors.reset();
+		bytesRead.reset();
+		latency.reset();
+	}
+
+	@Override
+	public String toString()
+	{
+		return endPoint.name() + " requests=" + getRequestCount() + " errors=" + getErrorCount() + " bytesRead="
+				+ getBytesRead() + " " + getLatency();
+	}
+}
@@ -0,0 +1,94 @@
+package au.com.noojee.acceloapi.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of durations in the style of HdrHistogram.
+ *
+ * Values are recorded (in nanoseconds) into log-linear buckets. Each power of two is split into 16 linear sub buckets
+ * so any percentile is reported to within 1/16 (6.25%) of the true value over the full range of a long, in a fixed 7KB
+ * of counters. The maximum is tracked exactly.
+ */
+public class LatencyHistogram
+{
+	static final int SUB_BUCKET_BITS = 4;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	// enough buckets for Long.MAX_VALUE.
+	static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS);
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a single duration. Negative durations are recorded as 0.
+	 */
+	public void record(long nanos)
+	{
+		long value = Math.max(0, nanos);
+
+		counts.incrementAndGet(index(value));
+		total.add(value);
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * @return a consistent copy of the histogram.
+	 */
+	public LatencySnapshot snapshot()
+	{
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			copy[i] = counts.get(i);
+
+		return new LatencySnapshot(copy, total.sum(), max.get());
+	}
+
+	public void reset()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+		total.reset();
+		max.set(0);
+	}
+
+	/**
+	 * The bucket a value is counted in. Values below SUB_BUCKETS each have their own bucket, above that the leading
+	 * one bit picks the power of two and the next SUB_BUCKET_BITS bits pick the sub bucket.
+	 */
+	static int index(long value)
+	{
+		if (value < SUB_BUCKETS)
+			return (int) value;
+
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+
+		return SUB_BUCKETS * (shift + 1) + subBucket;
+	}
+
+	/**
+	 * @return the smallest value counted in the bucket.
+	 */
+	static long lowestValue(int index)
+	{
+		if (index < SUB_BUCKETS)
+			return index;
+
+		int shift = index / SUB_BUCKETS - 1;
+		int subBucket = index % SUB_BUCKETS;
+
+		return (long) (SUB_BUCKETS + subBucket) << shift;
+	}
+
+	/**
+	 * @return the largest value counted in the bucket.
+	 */
+	static long highestValue(int index)
+	{
+		return (index == BUCKETS - 1 ? Long.MAX_VALUE : lowestValue(index + 1) - 1);
+	}
+}
@@ -0,0 +1,101 @@
+package au.com.noojee.acceloapi.metrics;
+
+/**
+ * A point in time copy of a LatencyHistogram. Durations are reported in milliseconds.
+ */
+public class LatencySnapshot
+{
+	private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+	private final long[] counts;
+	private final long count;
+	private final long total;
+	private final long max;
+
+	LatencySnapshot(long[] counts, long total, long max)
+	{
+		this.counts = counts;
+		this.total = total;
+		this.max = max;
+
+		long count = 0;
+		for (long bucket : counts)
+			count += bucket;
+		this.count = count;
+	}
+
+	/**
+	 * @return the no. of durations recorded.
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+
+	public double getMeanMillis()
+	{
+		return (count == 0 ? 0 : total / (double) count / NANOS_PER_MILLI);
+	}
+
+	public double getP50Millis()
+	{
+		return getPercentileMillis(50);
+	}
+
+	public double getP90Millis()
+	{
+		return getPercentileMillis(90);
+	}
+
+	public double getP99Millis()
+	{
+		return getPercentileMillis(99);
+	}
+
+	public double getP999Millis()
+	{
+		return getPercentileMillis(99.9);
+	}
+
+	public double getMaxMillis()
+	{
+		return max / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * @param percentile between 0 and 100.
+	 * @return the duration that percentile of the recorded durations are less than or equal to. Accurate to within
+	 *         6.25%.
+	 */
+	public double getPercentileMillis(double percentile)
+	{
+		return getPercentileNanos(percentile) / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * @param percentile between 0 and 100.
+	 */
+	public long getPercentileNanos(double percentile)
+	{
+		if (count == 0)
+			return 0;
+
+		long target = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * count));
+
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++)
+		{
+			seen += counts[i];
+			if (seen >= target)
+				return Math.min(max, LatencyHistogram.highestValue(i));
+		}
+		return max;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("count=%d mean=%.1fms p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms", count,
+				getMeanMillis(), getP50Millis(), getP90Millis(), getP99Millis(), getMaxMillis());
+	}
+}
@@ -0,0 +1,299 @@
+package au.com.noojee.acceloapi.ratelimit;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Controls the rate at which we send requests to Accelo.
+ *
+ * Accelo limits api calls to 5000 per hour, shared by every process using the same credentials. Each response carries
+ * the remaining budget and when the budget resets. We feed those headers back via update() and spread the remaining
+ * budget evenly over the time left in the window, so we speed up when the budget is under used and slow down (or stop
+ * until the reset) when other processes have used it.
+ *
+ * Requests wait for a permit in one of two lanes (see Priority). Waiting INTERACTIVE requests are always granted a
+ * permit before waiting BATCH requests. Waiting doesn't hold a thread.
+ */
+public class AcceloRateLimiter
+{
+	private static Logger logger = LogManager.getLogger();
+
+	public static final int DEFAULT_HOURLY_LIMIT = 5000;
+
+	// We hold back 2% of the budget (100 calls per hour) to leave a little margin for error.
+	static final double RESERVE = 0.02;
+
+	// The rate we use until Accelo tells us otherwise.
+	static final double DEFAULT_RATE = DEFAULT_HOURLY_LIMIT * (1 - RESERVE) / 3600.0;
+
+	// Never drop below one call a minute unless the budget is exhausted.
+	static final double MIN_RATE = 1.0 / 60;
+
+	public static final double DEFAULT_MAX_RATE = 10;
+
+	public static final String LIMIT_HEADER = "X-RateLimit-Limit";
+	public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+	public static final String RESET_HEADER = "X-RateLimit-Reset";
+
+	// A reset header larger than this is an epoch second otherwise it is the no. of seconds until the reset.
+	private static final long EPOCH_THRESHOLD = 1_000_000_000L;
+
+	// used to wait on the rate limiter without holding a thread.
+	static private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "accelo-rate-limiter");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+	private final Clock clock;
+	private double maxRate;
+
+	private double permitsPerSecond = DEFAULT_RATE;
+
+	// the System.nanoTime at which the next permit may be issued.
+	private long nextPermitNanos = System.nanoTime();
+
+	private final Map<Priority, Queue<CompletableFuture<Void>>> lanes = new EnumMap<>(Priority.class);
+	private boolean dispatchScheduled = false;
+
+	// The budget as last reported by Accelo.
+	private int limit = -1;
+	private int remaining = -1;
+	private Instant reset = null;
+
+	public AcceloRateLimiter()
+	{
+		this(DEFAULT_MAX_RATE);
+	}
+
+	/**
+	 * @param maxRate the maximum no. of permits per second we issue no matter how much budget is left.
+	 */
+	public AcceloRateLimiter(double maxRate)
+	{
+		this(maxRate, Clock.systemUTC());
+	}
+
+	AcceloRateLimiter(double maxRate, Clock clock)
+	{
+		if (maxRate <= 0)
+			throw new IllegalArgumentException("maxRate must be greater than 0");
+
+		this.maxRate = maxRate;
+		this.clock = clock;
+
+		for (Priority priority : Priority.values())
+			lanes.put(priority, new ArrayDeque<>());
+	}
+
+	/**
+	 * Blocks until a permit is granted.
+	 *
+	 * @return the time spent waiting in seconds.
+	 */
+	public double acquire(Priority priority)
+	{
+		long start = System.nanoTime();
+
+		acquireAsync(priority).join();
+
+		return (System.nanoTime() - start) / 1_000_000_000.0;
+	}
+
+	/**
+	 * Returns a future which completes once a permit has been granted.
+	 */
+	public CompletableFuture<Void> acquireAsync(Priority priority)
+	{
+		CompletableFuture<Void> permit = new CompletableFuture<>();
+
+		synchronized (this)
+		{
+			lanes.get(priority).add(permit);
+		}
+
+		dispatch();
+
+		return permit;
+	}
+
+	/**
+	 * Grants a permit to the next waiting request if one is due and schedules the next dispatch.
+	 */
+	private void dispatch()
+	{
+		CompletableFuture<Void> next = null;
+
+		synchronized (this)
+		{
+			long now = System.nanoTime();
+
+			if (now - nextPermitNanos >= 0)
+			{
+				next = nextWaiting();
+				if (next != null)
+					nextPermitNanos = now + (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+			}
+
+			if (!dispatchScheduled && hasWaiting())
+			{
+				dispatchScheduled = true;
+				scheduler.schedule(() ->
+					{
+						synchronized (this)
+						{
+							dispatchScheduled = false;
+						}
+						dispatch();
+					}, Math.max(0, nextPermitNanos - now), TimeUnit.NANOSECONDS);
+			}
+		}
+
+		// complete outside the lock as this starts the request.
+		if (next != null)
+			next.complete(null);
+	}
+
+	// Interactive requests are always served first. Skips any request that was cancelled while waiting.
+	private CompletableFuture<Void> nextWaiting()
+	{
+		for (Priority priority : Priority.values())
+		{
+			Queue<CompletableFuture<Void>> lane = lanes.get(priority);
+			CompletableFuture<Void> next;
+			while ((next = lane.poll()) != null)
+			{
+				if (!next.isDone())
+					return next;
+			}
+		}
+		return null;
+	}
+
+	private boolean hasWaiting()
+	{
+		return lanes.values().stream().anyMatch(lane -> !lane.isEmpty());
+	}
+
+	/**
+	 * Adjusts the rate from the rate limit headers returned by Accelo. Responses without the headers are ignored.
+	 *
+	 * @param headers the response headers keyed case insensitively.
+	 */
+	public void update(Map<String, List<String>> headers)
+	{
+		String remainingHeader = first(headers, REMAINING_HEADER);
+		String resetHeader = first(headers, RESET_HEADER);
+
+		if (remainingHeader == null || resetHeader == null)
+			return;
+
+		try
+		{
+			String limitHeader = first(headers, LIMIT_HEADER);
+			int limit = (limitHeader == null ? DEFAULT_HOURLY_LIMIT : Integer.parseInt(limitHeader.trim()));
+
+			long resetValue = Long.parseLong(resetHeader.trim());
+			Instant reset = (resetValue > EPOCH_THRESHOLD ? Instant.ofEpochSecond(resetValue)
+					: clock.instant().plusSeconds(resetValue));
+
+			update(limit, Integer.parseInt(remainingHeader.trim()), reset);
+		}
+		catch (NumberFormatException e)
+		{
+			logger.warn("Ignoring invalid rate limit headers: " + headers);
+		}
+	}
+
+	/**
+	 * Adjusts the rate so the remaining budget (less our reserve) is spread evenly until the reset.
+	 *
+	 * @param limit the no. of calls allowed in the window.
+	 * @param remaining the no. of calls left in the window.
+	 * @param reset when the window resets.
+	 */
+	public void update(int limit, int remaining, Instant reset)
+	{
+		synchronized (this)
+		{
+			// Responses can arrive out of order so ignore any that report more budget than we already know about.
+			if (reset.equals(this.reset) && remaining > this.remaining)
+				return;
+
+			this.limit = limit;
+			this.remaining = remaining;
+			this.reset = reset;
+
+			long secondsToReset = Math.max(1, Duration.between(clock.instant(), reset).getSeconds());
+			double usable = remaining - limit * RESERVE;
+
+			if (usable < 1)
+			{
+				// The budget is gone so hold every request until the window resets.
+				permitsPerSecond = DEFAULT_RATE;
+				nextPermitNanos = Math.max(nextPermitNanos,
+						System.nanoTime() + TimeUnit.SECONDS.toNanos(secondsToReset));
+				logger.warn("Accelo api budget exhausted. Requests are paused until " + reset);
+			}
+			else
+				permitsPerSecond = Math.max(MIN_RATE, Math.min(maxRate, usable / secondsToReset));
+
+			logger.debug("Rate limit remaining: " + remaining + " reset: " + reset + " permits/s: "
+					+ permitsPerSecond);
+		}
+
+		// the next permit may now be due sooner or later than we thought.
+		dispatch();
+	}
+
+	private String first(Map<String, List<String>> headers, String name)
+	{
+		List<String> values = headers.get(name);
+		return (values == null || values.isEmpty() ? null : values.get(0));
+	}
+
+	/**
+	 * Changes the maximum no. of permits per second we issue no matter how much budget is left. Lowering the maximum
+	 * takes effect immediately, raising it takes effect from the next update.
+	 */
+	public synchronized void setMaxRate(double maxRate)
+	{
+		if (maxRate <= 0)
+			throw new IllegalArgumentException("maxRate must be greater than 0");
+
+		this.maxRate = maxRate;
+		permitsPerSecond = Math.min(permitsPerSecond, maxRate);
+	}
+
+	/**
+	 * @return the no. of permits per second currently being issued.
+	 */
+	public synchronized double getRate()
+	{
+		return permitsPerSecond;
+	}
+
+	/**
+	 * @return the current api budget.
+	 */
+	public synchronized RateLimitBudget getBudget()
+	{
+		return new RateLimitBudget(limit, remaining, reset, permitsPerSecond,
+				lanes.get(Priority.INTERACTIVE).size(), lanes.get(Priority.BATCH).size());
+	}
+}
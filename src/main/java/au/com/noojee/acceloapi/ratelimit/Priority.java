@@ -0,0 +1,19 @@
+package au.com.noojee.acceloapi.ratelimit;
+
+/**
+ * The lanes that requests wait in for a rate limiter permit. When permits are scarce every waiting INTERACTIVE request
+ * is served before any BATCH request.
+ */
+public enum Priority
+{
+	/**
+	 * Single entity lookups, queries for a limited no. of pages, inserts, updates and deletes - typically a user is
+	 * waiting on these.
+	 */
+	INTERACTIVE,
+
+	/**
+	 * Extracts, i.e. queries (getAll, stream) with noLimit.
+	 */
+	BATCH
+}
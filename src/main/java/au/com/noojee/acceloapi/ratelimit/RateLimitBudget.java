@@ -0,0 +1,76 @@
+package au.com.noojee.acceloapi.ratelimit;
+
+import java.time.Instant;
+
+/**
+ * A point in time snapshot of the Accelo api budget as last reported by Accelo and the rate we are currently issuing
+ * permits at.
+ */
+public class RateLimitBudget
+{
+	private final int limit;
+	private final int remaining;
+	private final Instant reset;
+	private final double permitsPerSecond;
+	private final int interactiveWaiting;
+	private final int batchWaiting;
+
+	RateLimitBudget(int limit, int remaining, Instant reset, double permitsPerSecond, int interactiveWaiting,
+			int batchWaiting)
+	{
+		this.limit = limit;
+		this.remaining = remaining;
+		this.reset = reset;
+		this.permitsPerSecond = permitsPerSecond;
+		this.interactiveWaiting = interactiveWaiting;
+		this.batchWaiting = batchWaiting;
+	}
+
+	/**
+	 * @return the no. of calls allowed in the current window or -1 if Accelo hasn't told us yet.
+	 */
+	public int getLimit()
+	{
+		return limit;
+	}
+
+	/**
+	 * @return the no. of calls left in the current window (across every process using our credentials) or -1 if
+	 *         Accelo hasn't told us yet.
+	 */
+	public int getRemaining()
+	{
+		return remaining;
+	}
+
+	/**
+	 * @return when the current window resets or null if Accelo hasn't told us yet.
+	 */
+	public Instant getReset()
+	{
+		return reset;
+	}
+
+	public double getPermitsPerSecond()
+	{
+		return permitsPerSecond;
+	}
+
+	public int getInteractiveWaiting()
+	{
+		return interactiveWaiting;
+	}
+
+	public int getBatchWaiting()
+	{
+		return batchWaiting;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "RateLimitBudget [limit=" + limit + ", remaining=" + remaining + ", reset=" + reset
+				+ ", permitsPerSecond=" + permitsPerSecond + ", interactiveWaiting=" + interactiveWaiting
+				+ ", batchWaiting=" + batchWaiting + "]";
+	}
+}
@@ -0,0 +1,68 @@
+package au.com.noojee.acceloapi.transport;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.HTTPResponse;
+
+/**
+ * The wire level transport used by AcceloApi to talk to the Accelo servers.
+ * 
+ * A transport is only responsible for moving bytes. Rate limiting, authentication and the interpretation of the
+ * response are all handled by AcceloApi.
+ * 
+ * Use AcceloApi.getInstance().setTransport() to change the transport. By default we use the HttpClientTransport.
+ */
+public interface AcceloTransport
+{
+	/**
+	 * Sends a single request and returns the response. A response with an error code (300 or greater) must be
+	 * returned (not thrown) with the error body as the response body.
+	 * 
+	 * @param method the http method
+	 * @param url the complete url including any query arguments.
+	 * @param headers the request headers (e.g. Content-Type, Authorization)
+	 * @param body the request body or null if there is no body.
+	 * @return the response.
+	 * @throws IOException if the request could not be sent or the response could not be read.
+	 */
+	default HTTPResponse send(HTTPMethod method, URL url, Map<String, String> headers, byte[] body) throws IOException
+	{
+		return send(method, url, headers, body,
+				(responseCode, responseMessage, responseHeaders, responseBody) -> new HTTPResponse(responseCode,
+						responseMessage, responseHeaders, Streams.fastStreamReader(responseBody)));
+	}
+
+	/**
+	 * Sends a single request and passes the response stream to the reader as soon as the response headers arrive. This
+	 * allows the body to be decoded as it is read from the connection.
+	 * 
+	 * @param method the http method
+	 * @param url the complete url including any query arguments.
+	 * @param headers the request headers (e.g. Content-Type, Authorization)
+	 * @param body the request body or null if there is no body.
+	 * @param reader consumes the response stream.
+	 * @return the value returned by the reader.
+	 * @throws IOException if the request could not be sent or the response could not be read.
+	 */
+	<R> R send(HTTPMethod method, URL url, Map<String, String> headers, byte[] body, ResponseReader<R> reader)
+			throws IOException;
+
+	/**
+	 * Sends a single request without blocking the calling thread.
+	 * 
+	 * The returned future completes with the response (including error responses) or completes exceptionally with an
+	 * IOException if the request could not be sent.
+	 */
+	CompletableFuture<HTTPResponse> sendAsync(HTTPMethod method, URL url, Map<String, String> headers, byte[] body);
+
+	/**
+	 * Releases any resources (connections, threads) held by the transport.
+	 */
+	default void close()
+	{
+	}
+}
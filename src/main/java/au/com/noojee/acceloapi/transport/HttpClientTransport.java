@@ -0,0 +1,234 @@
+package au.com.noojee.acceloapi.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.HTTPResponse;
+
+/**
+ * The default transport which is built on java.net.http.HttpClient.
+ * 
+ * The HttpClient keeps a pool of keep-alive connections which are shared by every request so we only pay the TLS and
+ * connection setup costs once per connection rather than once per request. Where the server supports it HTTP/2 is used
+ * and requests are multiplexed over a single connection.
+ * 
+ * The no. of concurrent requests (and hence the no. of open HTTP/1.1 connections) is limited to maxConnections.
+ * Requests beyond that limit are queued (without holding a thread) until a connection is released.
+ */
+public class HttpClientTransport implements AcceloTransport
+{
+	public static final int DEFAULT_MAX_CONNECTIONS = 8;
+
+	static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+	static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2);
+
+	private final HttpClient client;
+	private final ExecutorService executor;
+
+	// the no. of requests that may still be started before we have to queue.
+	private int availableConnections;
+
+	// requests waiting for a connection.
+	private final Queue<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+
+	public HttpClientTransport()
+	{
+		this(DEFAULT_MAX_CONNECTIONS);
+	}
+
+	/**
+	 * @param maxConnections the maximum no. of requests that may be in flight at any one time.
+	 */
+	public HttpClientTransport(int maxConnections)
+	{
+		if (maxConnections < 1)
+			throw new IllegalArgumentException("maxConnections must be at least 1");
+
+		this.executor = Executors.newFixedThreadPool(maxConnections, runnable ->
+			{
+				Thread thread = new Thread(runnable, "accelo-http");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(CONNECT_TIMEOUT)
+				.executor(executor)
+				.build();
+
+		this.availableConnections = maxConnections;
+	}
+
+	@Override
+	public <R> R send(HTTPMethod method, URL url, Map<String, String> headers, byte[] body, ResponseReader<R> reader)
+			throws IOException
+	{
+		HttpRequest request = buildRequest(method, url, headers, body);
+
+		CompletableFuture<Void> connection = acquireConnection();
+		try
+		{
+			connection.get();
+		}
+		catch (InterruptedException | ExecutionException e)
+		{
+			// we may still be granted the connection so make certain it goes back to the pool.
+			connection.thenRun(this::releaseConnection);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for a connection to " + url);
+		}
+
+		try
+		{
+			HttpResponse<InputStream> response = client.send(request, BodyHandlers.ofInputStream());
+			try (InputStream responseBody = response.body())
+			{
+				return reader.read(response.statusCode(), response.version() + " " + response.statusCode(),
+						ResponseHeaders.of(response.headers().map()), responseBody);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted during request to " + url);
+		}
+		finally
+		{
+			releaseConnection();
+		}
+	}
+
+	@Override
+	public HTTPResponse send(HTTPMethod method, URL url, Map<String, String> headers, byte[] body) throws IOException
+	{
+		try
+		{
+			return sendAsync(method, url, headers, body).get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted during request to " + url);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	@Override
+	public CompletableFuture<HTTPResponse> sendAsync(HTTPMethod method, URL url, Map<String, String> headers,
+			byte[] body)
+	{
+		HttpRequest request;
+		try
+		{
+			request = buildRequest(method, url, headers, body);
+		}
+		catch (IOException e)
+		{
+			return CompletableFuture.failedFuture(e);
+		}
+
+		CompletableFuture<HTTPResponse> response = acquireConnection()
+				.thenCompose(v -> client.sendAsync(request, BodyHandlers.ofString(StandardCharsets.UTF_8)))
+				.thenApply(r -> new HTTPResponse(r.statusCode(), r.version() + " " + r.statusCode(),
+						ResponseHeaders.of(r.headers().map()), r.body()));
+
+		// the connection is released however the request completes.
+		response.whenComplete((r, e) -> releaseConnection());
+
+		return response;
+	}
+
+	HttpRequest buildRequest(HTTPMethod method, URL url, Map<String, String> headers, byte[] body)
+			throws IOException
+	{
+		HttpRequest.Builder builder;
+		try
+		{
+			builder = HttpRequest.newBuilder(url.toURI());
+		}
+		catch (URISyntaxException e)
+		{
+			throw new IOException(e);
+		}
+
+		builder.timeout(REQUEST_TIMEOUT);
+		builder.method(method.toString(),
+				(body == null ? BodyPublishers.noBody() : BodyPublishers.ofByteArray(body)));
+
+		headers.forEach(builder::header);
+
+		return builder.build();
+	}
+
+	/**
+	 * Returns a future that completes once a connection is available.
+	 */
+	private synchronized CompletableFuture<Void> acquireConnection()
+	{
+		if (availableConnections > 0)
+		{
+			availableConnections--;
+			return CompletableFuture.completedFuture(null);
+		}
+
+		CompletableFuture<Void> permit = new CompletableFuture<>();
+		waiting.add(permit);
+		return permit;
+	}
+
+	/**
+	 * Hands the connection to the next waiting request or returns it to the pool.
+	 */
+	private void releaseConnection()
+	{
+		CompletableFuture<Void> next;
+		synchronized (this)
+		{
+			next = waiting.poll();
+			if (next == null)
+				availableConnections++;
+		}
+
+		// complete outside the lock as this will start the next request.
+		if (next != null)
+			next.complete(null);
+	}
+
+	HttpClient getClient()
+	{
+		return client;
+	}
+
+	@Override
+	public void close()
+	{
+		executor.shutdown();
+	}
+
+}
@@ -0,0 +1,33 @@
+package au.com.noojee.acceloapi.transport;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Normalises the response headers returned by the underlying http libraries.
+ */
+final class ResponseHeaders
+{
+	private ResponseHeaders()
+	{
+	}
+
+	/**
+	 * Returns an unmodifiable copy of the headers keyed case insensitively. HttpURLConnection reports the status line
+	 * under a null key which is dropped.
+	 */
+	static Map<String, List<String>> of(Map<String, List<String>> headers)
+	{
+		Map<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+		headers.forEach((name, values) ->
+			{
+				if (name != null)
+					copy.put(name, values);
+			});
+
+		return Collections.unmodifiableMap(copy);
+	}
+}
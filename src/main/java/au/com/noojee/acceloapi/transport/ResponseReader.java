@@ -0,0 +1,28 @@
+package au.com.noojee.acceloapi.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consumes a response directly from the connection's input stream.
+ * 
+ * Used to decode a response as it arrives rather than first buffering the whole body into memory.
+ * 
+ * @param <R> the type the response is decoded into.
+ */
+@FunctionalInterface
+public interface ResponseReader<R>
+{
+	/**
+	 * @param responseCode the http response code
+	 * @param responseMessage the http response message
+	 * @param headers the response headers keyed case insensitively.
+	 * @param body the response body (or the error body if the responseCode is 300 or greater). The stream is closed by
+	 *            the transport once this method returns.
+	 * @return the decoded response
+	 */
+	R read(int responseCode, String responseMessage, Map<String, List<String>> headers, InputStream body)
+			throws IOException;
+}
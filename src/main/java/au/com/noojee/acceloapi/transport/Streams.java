@@ -0,0 +1,35 @@
+package au.com.noojee.acceloapi.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers for reading response bodies.
+ */
+public class Streams
+{
+	private Streams()
+	{
+	}
+
+	/**
+	 * Reads the entire stream into a UTF-8 string. Returns an empty string if the stream is null.
+	 */
+	public static String fastStreamReader(InputStream inputStream) throws IOException
+	{
+		if (inputStream != null)
+		{
+			ByteArrayOutputStream result = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4000];
+			int length;
+			while ((length = inputStream.read(buffer)) != -1)
+			{
+				result.write(buffer, 0, length);
+			}
+			return result.toString(StandardCharsets.UTF_8.name());
+		}
+		return "";
+	}
+}
@@ -0,0 +1,118 @@
+package au.com.noojee.acceloapi.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.HTTPResponse;
+
+/**
+ * The original transport built on HttpsURLConnection. A new connection is opened for each request and connection reuse
+ * is left to the JVM wide http.keepAlive/http.maxConnections settings.
+ * 
+ * Retained as a fallback for environments where the HttpClientTransport misbehaves.
+ * 
+ * HttpsURLConnection is inherently blocking so async requests are run on a dedicated thread pool.
+ */
+public class UrlConnectionTransport implements AcceloTransport
+{
+	private final ExecutorService executor;
+
+	public UrlConnectionTransport()
+	{
+		this(HttpClientTransport.DEFAULT_MAX_CONNECTIONS);
+	}
+
+	/**
+	 * @param maxConnections is applied globally via the http.maxConnections system property.
+	 */
+	public UrlConnectionTransport(int maxConnections)
+	{
+		System.setProperty("http.maxConnections", "" + maxConnections);
+
+		this.executor = Executors.newFixedThreadPool(maxConnections, runnable ->
+			{
+				Thread thread = new Thread(runnable, "accelo-url-connection");
+				thread.setDaemon(true);
+				return thread;
+			});
+	}
+
+	@Override
+	public CompletableFuture<HTTPResponse> sendAsync(HTTPMethod method, URL url, Map<String, String> headers,
+			byte[] body)
+	{
+		return CompletableFuture.supplyAsync(() ->
+			{
+				try
+				{
+					return send(method, url, headers, body);
+				}
+				catch (IOException e)
+				{
+					throw new CompletionException(e);
+				}
+			}, executor);
+	}
+
+	@Override
+	public void close()
+	{
+		executor.shutdown();
+	}
+
+	@Override
+	public <R> R send(HTTPMethod method, URL url, Map<String, String> headers, byte[] body, ResponseReader<R> reader)
+			throws IOException
+	{
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+		connection.setRequestMethod(method.toString());
+		connection.setDoOutput(body != null);
+		connection.setAllowUserInteraction(false); // no users here so don't do
+													// anything silly.
+
+		headers.forEach(connection::setRequestProperty);
+
+		if (body != null)
+			connection.setFixedLengthStreamingMode(body.length);
+
+		connection.connect();
+
+		// Write the body if one exists.
+		if (body != null)
+		{
+			try (OutputStream os = connection.getOutputStream())
+			{
+				os.write(body);
+			}
+		}
+
+		int responseCode = connection.getResponseCode();
+
+		InputStream responseBody;
+		try
+		{
+			responseBody = connection.getInputStream();
+		}
+		catch (IOException e)
+		{
+			responseBody = connection.getErrorStream();
+		}
+
+		try (InputStream stream = (responseBody == null ? InputStream.nullInputStream() : responseBody))
+		{
+			return reader.read(responseCode, connection.getResponseMessage(),
+					ResponseHeaders.of(connection.getHeaderFields()), stream);
+		}
+	}
+
+}
@@ -18,12 +18,23 @@ module acceloapi
 	exports au.com.noojee.acceloapi.entities;
 	exports au.com.noojee.acceloapi.entities.meta.fieldTypes;
 	exports au.com.noojee.acceloapi.entities.types;
+	exports au.com.noojee.acceloapi.transport;
+	exports au.com.noojee.acceloapi.ratelimit;
+	exports au.com.noojee.acceloapi.metrics;
+
+	// gson populates the entities and responses via reflection.
+	opens au.com.noojee.acceloapi to gson;
+	opens au.com.noojee.acceloapi.dao to gson;
+	opens au.com.noojee.acceloapi.entities to gson;
+	opens au.com.noojee.acceloapi.entities.types to gson;
 
 	requires com.github.spotbugs.annotations;
 	requires com.google.common;
 	requires commons.lang3;
 	requires gson;
 	requires java.desktop;
+	requires java.management;
+	requires java.net.http;
 	requires transitive joda.money;
 	requires jsr305;
 	requires log4j.api;
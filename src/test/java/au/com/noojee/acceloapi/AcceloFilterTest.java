@@ -1,15 +1,24 @@
 package au.com.noojee.acceloapi;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 
+import org.junit.Assert;
 import org.junit.Test;
 
+import au.com.noojee.acceloapi.dao.gson.GsonForAccelo;
 import au.com.noojee.acceloapi.entities.Company;
 import au.com.noojee.acceloapi.entities.Contract;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.entities.Ticket.Standing;
 import au.com.noojee.acceloapi.entities.meta.Company_;
 import au.com.noojee.acceloapi.entities.meta.Contract_;
+import au.com.noojee.acceloapi.entities.meta.Ticket_;
+import au.com.noojee.acceloapi.entities.meta.fieldTypes.OrderByField.Order;
 import au.com.noojee.acceloapi.entities.types.AgainstType;
 import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.util.Conversions;
 
 public class AcceloFilterTest
 {
@@ -64,4 +73,31 @@ public class AcceloFilterTest
 
 	}
 
+	@Test
+	public void testJson() throws AcceloException
+	{
+		LocalDateTime started = LocalDateTime.of(2017, 3, 1, 0, 0);
+		long epoch = Conversions.toLong(started);
+
+		AcceloFilter<Ticket> filter = new AcceloFilter<>();
+		filter.where(filter.eq(Ticket_.contract, 1)
+				.and(filter.eq(Ticket_.standing, Standing.open).or(filter.after(Ticket_.date_started, started)))
+				.and(filter.against(AgainstType.company, 1, 2)));
+
+		Assert.assertEquals("\"_filters\": {\n\"_AND\": {\n\"_AND\": {\n\"contract\":[\"1\"],\"_OR\": {\n"
+				+ "\"standing\":[\"open\"],\"date_started_after\": [\"" + epoch + "\"]\n}\n},"
+				+ "\"against\":[{\"company\": [\"1\",\"2\"]}]\n}}", filter.toJson());
+
+		// the rendered json is reused until the filter changes.
+		Assert.assertSame(filter.toJson(), filter.toJson());
+		filter.orderBy(Ticket_.id, Order.DESC);
+		Assert.assertTrue(filter.toJson().endsWith(",\"order_by_desc\": [\"id\"]}"));
+
+		// strings are escaped as Gson would.
+		String awkward = "a \"b\" <c> & 'd' = \\e\n\u0001";
+		filter.where(filter.eq(Ticket_.custom_id, awkward));
+		Assert.assertEquals("\"_filters\": {\n\"custom_id\":" + GsonForAccelo.toJson(Arrays.asList(awkward))
+				+ ",\"order_by_desc\": [\"id\"]}", filter.toJson());
+	}
+
 }
@@ -0,0 +1,104 @@
+package au.com.noojee.acceloapi;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.dao.TicketDao;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+import au.com.noojee.acceloapi.transport.StubTransport;
+
+public class PagedSpliteratorTest
+{
+	/**
+	 * A short circuiting operation stops the fetching of further pages.
+	 */
+	@Test
+	public void testLimitStopsFetching() throws Exception
+	{
+		PagedTransport transport = new PagedTransport(1000);
+		StubAccelo.run(transport, () ->
+			{
+				AcceloFilter<Ticket> filter = new AcceloFilter<>();
+				filter.noLimit();
+
+				Assert.assertEquals(AcceloApi.PAGE_SIZE + 10, stream(filter).limit(AcceloApi.PAGE_SIZE + 10).count());
+				Assert.assertEquals(List.of("0", "1"), transport.pages);
+
+				transport.pages.clear();
+				Assert.assertEquals(1, stream(filter).findFirst().get().getId());
+				Assert.assertEquals(List.of("0"), transport.pages);
+			});
+	}
+
+	/**
+	 * The stream starts at the filter's offset, stops at its limit or at the first short page.
+	 */
+	@Test
+	public void testPageLimits() throws Exception
+	{
+		PagedTransport transport = new PagedTransport(AcceloApi.PAGE_SIZE * 3 + 5);
+		StubAccelo.run(transport, () ->
+			{
+				AcceloFilter<Ticket> filter = new AcceloFilter<>();
+				filter.offset(1);
+				filter.limit(2);
+
+				List<Integer> ids = stream(filter).map(Ticket::getId).collect(Collectors.toList());
+				Assert.assertEquals(IntStream.rangeClosed(AcceloApi.PAGE_SIZE + 1, AcceloApi.PAGE_SIZE * 3).boxed()
+						.collect(Collectors.toList()), ids);
+				Assert.assertEquals(List.of("1", "2"), transport.pages);
+
+				transport.pages.clear();
+				filter = new AcceloFilter<>();
+				filter.noLimit();
+				Assert.assertEquals(AcceloApi.PAGE_SIZE * 3 + 5, stream(filter).count());
+				Assert.assertEquals(List.of("0", "1", "2", "3"), transport.pages);
+			});
+	}
+
+	private Stream<Ticket> stream(AcceloFilter<Ticket> filter) throws IOException
+	{
+		return StreamSupport.stream(new PagedSpliterator<>(AcceloApi.getInstance(),
+				new URL("http://localhost/api/v0/tickets"), filter, AcceloFieldList.ALL, TicketDao.ResponseList.class),
+				false);
+	}
+
+	/**
+	 * Serves count tickets (ids from 1) a page at a time.
+	 */
+	static class PagedTransport extends StubTransport
+	{
+		final List<String> pages = Collections.synchronizedList(new ArrayList<>());
+
+		private final int count;
+
+		PagedTransport(int count)
+		{
+			this.count = count;
+		}
+
+		@Override
+		protected String respond(HTTPMethod method, URL url, String body)
+		{
+			String page = page(url);
+			pages.add(page);
+
+			int first = Integer.parseInt(page) * AcceloApi.PAGE_SIZE + 1;
+			return response(IntStream.rangeClosed(first, Math.min(count, first + AcceloApi.PAGE_SIZE - 1))
+					.mapToObj(StubTransport::entity));
+		}
+	}
+}
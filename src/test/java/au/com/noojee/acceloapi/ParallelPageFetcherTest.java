@@ -0,0 +1,76 @@
+package au.com.noojee.acceloapi;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.dao.TicketDao;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+import au.com.noojee.acceloapi.transport.StubTransport;
+
+public class ParallelPageFetcherTest
+{
+	/**
+	 * The short first page arrives while the speculative pages after it are still outstanding. The fetch must complete
+	 * once they are dropped.
+	 */
+	@Test
+	public void testShortPageBeforeSpeculativePages() throws Exception
+	{
+		AcceloApi api = AcceloApi.getInstance();
+		ShortFirstPageTransport transport = new ShortFirstPageTransport();
+
+		StubAccelo.run(transport, () ->
+			{
+				AcceloFilter<Ticket> filter = new AcceloFilter<>();
+				filter.noLimit();
+
+				List<Ticket> tickets = new ParallelPageFetcher<>(api, new URL("http://localhost/api/v0/tickets"),
+						filter, AcceloFieldList.ALL, TicketDao.ResponseList.class, 4).fetch().get(10, TimeUnit.SECONDS);
+
+				Assert.assertEquals(List.of(1, 2, 3), tickets.stream().map(Ticket::getId).collect(Collectors.toList()));
+				Assert.assertEquals(List.of("0", "1", "2", "3"), transport.pages);
+			});
+	}
+
+	/**
+	 * Page 0 holds three tickets and is answered at once. Every other page is a full page answered after a delay.
+	 */
+	static class ShortFirstPageTransport extends StubTransport
+	{
+		final List<String> pages = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public CompletableFuture<HTTPResponse> sendAsync(HTTPMethod method, URL url, Map<String, String> headers,
+				byte[] body)
+		{
+			String page = page(url);
+			pages.add(page);
+
+			if (page.equals("0"))
+				return CompletableFuture.completedFuture(new HTTPResponse(200, "200", tickets(1, 3)));
+
+			int first = Integer.parseInt(page) * AcceloApi.PAGE_SIZE + 1;
+			return CompletableFuture.supplyAsync(
+					() -> new HTTPResponse(200, "200", tickets(first, first + AcceloApi.PAGE_SIZE - 1)),
+					CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS));
+		}
+
+		private String tickets(int first, int last)
+		{
+			return response(IntStream.rangeClosed(first, last).mapToObj(StubTransport::entity));
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package au.com.noojee.acceloapi;
+
+import java.io.IOException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.dao.TicketDao;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.transport.ResponseReader;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+import au.com.noojee.acceloapi.transport.StubTransport;
+
+public class RetryPolicyTest
+{
+	@Test
+	public void testOnlyRetryableCodes()
+	{
+		RetryPolicy policy = new RetryPolicy(3, Duration.ofMillis(100), Duration.ofSeconds(1));
+
+		Assert.assertEquals(-1, policy.retryDelay(1, new HTTPResponse(500, "500", "")));
+		Assert.assertEquals(-1, policy.retryDelay(1, new HTTPResponse(404, "404", "")));
+
+		long delay = policy.retryDelay(1, new HTTPResponse(502, "502", ""));
+		Assert.assertTrue(delay >= 0 && delay <= 100);
+
+		// the second retry backs off further.
+		delay = policy.retryDelay(2, new HTTPResponse(503, "503", ""));
+		Assert.assertTrue(delay >= 0 && delay <= 200);
+
+		// no more attempts.
+		Assert.assertEquals(-1, policy.retryDelay(3, new HTTPResponse(502, "502", "")));
+
+		Assert.assertEquals(2, policy.getRetryCount());
+		Assert.assertEquals(1, policy.getExhaustedCount());
+	}
+
+	@Test
+	public void testRetryAfter()
+	{
+		RetryPolicy policy = new RetryPolicy(3, Duration.ofMillis(1), Duration.ofSeconds(5));
+
+		Assert.assertTrue(policy.retryDelay(1, tooManyRequests("2")) >= 2000);
+
+		// longer than we are prepared to wait.
+		Assert.assertEquals(-1, policy.retryDelay(1, tooManyRequests("60")));
+	}
+
+	@Test
+	public void testBudget()
+	{
+		RetryPolicy policy = new RetryPolicy(2, Duration.ofMillis(1), Duration.ofMillis(1));
+
+		for (int i = 0; i < RetryPolicy.BUDGET_CAPACITY; i++)
+			Assert.assertTrue(policy.retryDelay(1, new HTTPResponse(502, "502", "")) >= 0);
+
+		Assert.assertEquals(-1, policy.retryDelay(1, new HTTPResponse(502, "502", "")));
+		Assert.assertEquals(1, policy.getBudgetDeniedCount());
+	}
+
+	/**
+	 * A 502 part way through getAll is retried without refetching the earlier pages.
+	 */
+	@Test
+	public void testGetAllResumesFromFailedPage() throws Exception
+	{
+		AcceloApi api = AcceloApi.getInstance();
+		RetryPolicy original = api.getRetryPolicy();
+		FailOnceTransport transport = new FailOnceTransport();
+
+		api.setRetryPolicy(new RetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(10)));
+		try
+		{
+			StubAccelo.run(transport, () ->
+				{
+					AcceloFilter<Ticket> filter = new AcceloFilter<>();
+					filter.noLimit();
+
+					List<Ticket> tickets = api.getAll(new URL("http://localhost/api/v0/tickets"), filter,
+							AcceloFieldList.ALL, TicketDao.ResponseList.class);
+
+					Assert.assertEquals(AcceloApi.PAGE_SIZE + 3, tickets.size());
+					Assert.assertEquals(List.of("0", "1", "1"), transport.pages);
+					Assert.assertEquals(1, api.getRetryPolicy().getRetryCount());
+				});
+		}
+		finally
+		{
+			api.setRetryPolicy(original);
+		}
+	}
+
+	private HTTPResponse tooManyRequests(String retryAfter)
+	{
+		return new HTTPResponse(429, "429",
+				Collections.singletonMap(RetryPolicy.RETRY_AFTER_HEADER, Collections.singletonList(retryAfter)), "");
+	}
+
+	/**
+	 * Serves a full first page and a short second page. The first request for the second page fails with a 502.
+	 */
+	static class FailOnceTransport extends StubTransport
+	{
+		final List<String> pages = Collections.synchronizedList(new ArrayList<>());
+
+		private boolean failed = false;
+
+		@Override
+		protected synchronized <R> R answer(HTTPMethod method, URL url, String body, ResponseReader<R> reader)
+				throws IOException
+		{
+			String page = page(url);
+			pages.add(page);
+
+			if (page.equals("1") && !failed)
+			{
+				failed = true;
+				return reply(reader, 502, "Bad Gateway");
+			}
+
+			int count = (page.equals("0") ? AcceloApi.PAGE_SIZE : 3);
+			return reply(reader, 200,
+					response(IntStream.range(0, count).mapToObj(i -> "{\"id\":\"" + page + i + "\"}")));
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package au.com.noojee.acceloapi;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonParseException;
+
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.dao.TicketDao;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.transport.ResponseReader;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+import au.com.noojee.acceloapi.transport.StubTransport;
+
+public class StreamingDecodeTest
+{
+	@Test
+	public void testDecodesSuccess() throws Exception
+	{
+		TicketDao.ResponseList list = get(200, "{\"response\":[{\"id\":\"7\",\"title\":\"a\"}]}");
+
+		Assert.assertEquals(1, list.getList().size());
+		Assert.assertEquals(7, list.getList().get(0).getId());
+	}
+
+	/**
+	 * An error response is read into a String and parsed into the AcceloErrorResponse carried by the exception.
+	 */
+	@Test
+	public void testErrorResponse() throws Exception
+	{
+		String body = "{\"meta\":{\"status\":\"invalid\",\"message\":\"bad filter\"}}";
+		try
+		{
+			get(400, body);
+			Assert.fail("expected an AcceloException");
+		}
+		catch (AcceloException e)
+		{
+			Assert.assertNotNull(e.error);
+			Assert.assertEquals("bad filter", e.error.getMessage());
+			Assert.assertTrue(e.toString(), e.toString().contains(body));
+		}
+
+		// a body that isn't json still gives an AcceloException.
+		try
+		{
+			get(500, "<html>Internal Server Error</html>");
+			Assert.fail("expected an AcceloException");
+		}
+		catch (AcceloException e)
+		{
+			Assert.assertTrue(e.toString(), e.toString().contains("Internal Server Error"));
+		}
+	}
+
+	@Test(expected = AcceloException.class)
+	public void testNotFound() throws Exception
+	{
+		get(404, "<html>Not Found</html>");
+	}
+
+	@Test(expected = JsonParseException.class)
+	public void testMalformedSuccess() throws Exception
+	{
+		get(200, "{\"response\":[{\"id\":\"7\",");
+	}
+
+	private TicketDao.ResponseList get(int responseCode, String body) throws Exception
+	{
+		List<TicketDao.ResponseList> list = new ArrayList<>();
+		StubAccelo.run(new FixedTransport(responseCode, body),
+				() -> list.add(AcceloApi.getInstance().get(new URL("http://localhost/api/v0/tickets"),
+						new AcceloFilter<Ticket>(), AcceloFieldList.ALL, TicketDao.ResponseList.class, 0)));
+		return list.get(0);
+	}
+
+	/**
+	 * Returns the same response to every request.
+	 */
+	static class FixedTransport extends StubTransport
+	{
+		private final int responseCode;
+		private final String body;
+
+		FixedTransport(int responseCode, String body)
+		{
+			this.responseCode = responseCode;
+			this.body = body;
+		}
+
+		@Override
+		protected <R> R answer(HTTPMethod method, URL url, String body, ResponseReader<R> reader) throws IOException
+		{
+			return reply(reader, responseCode, this.body);
+		}
+	}
+}
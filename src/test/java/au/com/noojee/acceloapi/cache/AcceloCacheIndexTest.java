@@ -0,0 +1,115 @@
+package au.com.noojee.acceloapi.cache;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloFieldList;
+import au.com.noojee.acceloapi.cache.AcceloCachePolicyTest.TicketTransport;
+import au.com.noojee.acceloapi.dao.TicketDao;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.entities.meta.Ticket_;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+
+public class AcceloCacheIndexTest
+{
+	private static final String BOTH = "{\"response\":[{\"id\":\"1\",\"standing\":\"open\"},"
+			+ "{\"id\":\"2\",\"standing\":\"open\"}]}";
+	private static final String SECOND = "{\"response\":[{\"id\":\"2\",\"standing\":\"open\"}]}";
+
+	/**
+	 * The reverse index follows a query's list as it is replaced and drops its entries when the query is evicted.
+	 */
+	@Test
+	public void testIndexFollowsReplaceAndEvict() throws Exception
+	{
+		AcceloCache cache = AcceloCache.getInstance();
+		TicketTransport transport = new TicketTransport(BOTH);
+
+		try
+		{
+			StubAccelo.run(transport, () ->
+				{
+					TicketDao dao = new TicketDao();
+					AcceloFilter<Ticket> filter = new AcceloFilter<>();
+					filter.where(filter.eq(Ticket_.standing, Ticket.Standing.open));
+
+					List<Ticket> tickets = dao.getByFilter(filter);
+					Assert.assertEquals(Set.of(1, 2), cache.getCachedIds(Ticket.class));
+
+					// the reload replaces the list, ticket 1 is no longer indexed by the query or its id entry.
+					transport.json = SECOND;
+					filter.refreshCache();
+					dao.getByFilter(filter);
+					Assert.assertEquals(Set.of(2), cache.getCachedIds(Ticket.class));
+
+					// updating an entity only touches the queries that hold it.
+					cache.updateEntity(tickets.get(1));
+					Assert.assertEquals(Set.of(2), cache.getCachedIds(Ticket.class));
+					Assert.assertEquals(2, transport.requests.get());
+
+					// evicting the query and the id entry leaves nothing indexed.
+					cache.flushEntity(tickets.get(1), true);
+					Assert.assertEquals(Set.of(), cache.getCachedIds(Ticket.class));
+
+					// queries dropped to stay within their policy's weight are unindexed too.
+					cache.setPolicy(Ticket.class, CachePolicy.DEFAULT.withMaxWeight(1));
+					transport.json = BOTH;
+					dao.getByFilter(filter);
+					Assert.assertEquals(Set.of(), cache.getCachedIds(Ticket.class));
+				});
+		}
+		finally
+		{
+			cache.setPolicy(Ticket.class, CachePolicy.DEFAULT);
+		}
+	}
+
+	/**
+	 * An updated entity that no longer matches a cached query is dropped from it, one that still matches replaces the
+	 * old version.
+	 */
+	@Test
+	public void testUpdateChecksMembership() throws Exception
+	{
+		AcceloCache cache = AcceloCache.getInstance();
+		TicketTransport transport = new TicketTransport(BOTH);
+
+		StubAccelo.run(transport, () ->
+			{
+				TicketDao dao = new TicketDao();
+				AcceloFilter<Ticket> filter = new AcceloFilter<>();
+				filter.where(filter.eq(Ticket_.standing, Ticket.Standing.open));
+
+				List<Ticket> tickets = dao.getByFilter(filter);
+
+				Ticket closed = tickets.get(0);
+				closed.setStanding(Ticket.Standing.closed);
+				cache.updateEntity(closed);
+
+				Ticket renamed = tickets.get(1);
+				renamed.setTitle("renamed");
+				cache.updateEntity(renamed);
+
+				tickets = dao.getByFilter(filter);
+				Assert.assertEquals(1, tickets.size());
+				Assert.assertEquals(2, tickets.get(0).getId());
+				Assert.assertEquals("renamed", tickets.get(0).getTitle());
+				Assert.assertEquals(1, transport.requests.get());
+
+				// the closed ticket is still cached by id.
+				Assert.assertEquals(Set.of(1, 2), cache.getCachedIds(Ticket.class));
+
+				// a query that didn't load the standing can't be checked so it is flushed.
+				AcceloFieldList titles = new AcceloFieldList("title");
+				dao.getByFilter(filter, titles);
+				Assert.assertEquals(2, transport.requests.get());
+				cache.updateEntity(renamed);
+				dao.getByFilter(filter, titles);
+				Assert.assertEquals(3, transport.requests.get());
+			});
+	}
+}
@@ -0,0 +1,196 @@
+package au.com.noojee.acceloapi.cache;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.dao.TicketDao;
+import au.com.noojee.acceloapi.dao.gson.GsonForAccelo;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+import au.com.noojee.acceloapi.transport.StubTransport;
+
+public class AcceloCachePolicyTest
+{
+	private static final String BOTH = "{\"response\":[{\"id\":\"1\",\"date_closed\":\"0\"},"
+			+ "{\"id\":\"2\",\"date_closed\":\"0\"}]}";
+	private static final String SECOND = "{\"response\":[{\"id\":\"2\",\"date_closed\":\"0\"}]}";
+
+	/**
+	 * A stale query is served while it is reloaded and the reload drops the id entries of entities no longer in it.
+	 */
+	@Test
+	public void testStaleWhileRevalidate() throws Exception
+	{
+		AcceloCache cache = AcceloCache.getInstance();
+		TicketTransport transport = new TicketTransport(BOTH);
+
+		cache.setPolicy(Ticket.class, CachePolicy.refreshAfterWrite(Duration.ZERO));
+		try
+		{
+			StubAccelo.run(transport, () ->
+				{
+					TicketDao dao = new TicketDao();
+					Assert.assertEquals(2, dao.getAllOpen().size());
+					Assert.assertEquals(1, transport.requests.get());
+
+					// the stale list is returned straight away and a refresh is started.
+					transport.json = SECOND;
+					Assert.assertEquals(2, dao.getAllOpen().size());
+
+					long deadline = System.currentTimeMillis() + 5000;
+					while (cache.isRefreshing() && System.currentTimeMillis() < deadline)
+						Thread.sleep(10);
+
+					Assert.assertEquals(Set.of(2), cache.getCachedIds(Ticket.class));
+					Assert.assertEquals(2, transport.requests.get());
+				});
+		}
+		finally
+		{
+			cache.setPolicy(Ticket.class, CachePolicy.DEFAULT);
+		}
+	}
+
+	@Test
+	public void testHardExpiry() throws Exception
+	{
+		AcceloCache cache = AcceloCache.getInstance();
+		TicketTransport transport = new TicketTransport(BOTH);
+
+		cache.setPolicy(Ticket.class, CachePolicy.expireAfterWrite(Duration.ofMillis(1)));
+		try
+		{
+			StubAccelo.run(transport, () ->
+				{
+					TicketDao dao = new TicketDao();
+					dao.getAllOpen();
+					Thread.sleep(5);
+
+					// the expired list isn't served, we wait on Accelo for the new one.
+					transport.json = SECOND;
+					Assert.assertEquals(1, dao.getAllOpen().size());
+					Assert.assertEquals(2, transport.requests.get());
+				});
+		}
+		finally
+		{
+			cache.setPolicy(Ticket.class, CachePolicy.DEFAULT);
+		}
+	}
+
+	/**
+	 * Queries that take a policy over its max weight are dropped, pinned queries weigh nothing against the budget.
+	 */
+	@Test
+	public void testMaxWeight() throws Exception
+	{
+		AcceloCache cache = AcceloCache.getInstance();
+		TicketTransport transport = new TicketTransport(BOTH);
+
+		cache.setPolicy(Ticket.class, CachePolicy.DEFAULT.withMaxWeight(1));
+		try
+		{
+			StubAccelo.run(transport, () ->
+				{
+					TicketDao dao = new TicketDao();
+					dao.getAllOpen();
+					dao.getAllOpen();
+					Assert.assertEquals(2, transport.requests.get());
+					Assert.assertEquals(0, cache.getEstimatedBytes());
+
+					cache.setPolicy(Ticket.class, CachePolicy.DEFAULT);
+					dao.getAllOpen();
+					Assert.assertTrue(cache.getEstimatedBytes() > 0);
+				});
+		}
+		finally
+		{
+			cache.setPolicy(Ticket.class, CachePolicy.DEFAULT);
+		}
+
+		Assert.assertTrue(cache.getPolicy(EndPoint.staff).isPinned());
+		Assert.assertTrue(cache.getPolicy(EndPoint.priority).isPinned());
+		Assert.assertFalse(cache.getPolicy(EndPoint.tickets).isPinned());
+	}
+
+	/**
+	 * A query patched by updateEntity is weighed again. Changing the heap budget keeps the cached queries and their
+	 * index.
+	 */
+	@Test
+	public void testReweighAndResize() throws Exception
+	{
+		AcceloCache cache = AcceloCache.getInstance();
+		TicketTransport transport = new TicketTransport(BOTH);
+
+		try
+		{
+			StubAccelo.run(transport, () ->
+				{
+					TicketDao dao = new TicketDao();
+					List<Ticket> tickets = dao.getAllOpen();
+					long before = cache.getEstimatedBytes();
+
+					// the ticket is held by the query and its id entry.
+					Ticket ticket = tickets.get(0);
+					ticket.setTitle("a".repeat(1000));
+					cache.updateEntity(ticket);
+					Assert.assertTrue(cache.getEstimatedBytes() > before + 1800);
+
+					cache.setHeapBudgetMB(1);
+					Assert.assertEquals(2, dao.getAllOpen().size());
+					Assert.assertEquals(1, transport.requests.get());
+					Assert.assertEquals(Set.of(1, 2), cache.getCachedIds(Ticket.class));
+				});
+		}
+		finally
+		{
+			cache.setHeapBudgetMB(AcceloCache.DEFAULT_HEAP_BUDGET_MB);
+		}
+	}
+
+	@Test
+	public void testWeigher()
+	{
+		Ticket small = GsonForAccelo.getGson().fromJson("{\"id\":\"1\",\"title\":\"a\"}", Ticket.class);
+		Ticket large = GsonForAccelo.getGson().fromJson("{\"id\":\"1\",\"title\":\"" + "a".repeat(1000) + "\"}",
+				Ticket.class);
+
+		int smallWeight = EntityWeigher.weigh(List.of(small));
+		Assert.assertTrue(smallWeight > 0);
+		Assert.assertTrue(EntityWeigher.weigh(List.of(large)) > smallWeight + 900);
+		Assert.assertTrue(EntityWeigher.weigh(List.of(small, small.copy())) > smallWeight);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRefreshMustPrecedeExpiry()
+	{
+		new CachePolicy(Duration.ofMinutes(10), Duration.ofMinutes(5));
+	}
+
+	/**
+	 * Returns the current json for every list query.
+	 */
+	static class TicketTransport extends StubTransport
+	{
+		volatile String json;
+
+		TicketTransport(String json)
+		{
+			this.json = json;
+		}
+
+		@Override
+		protected String respond(HTTPMethod method, URL url, String body)
+		{
+			return json;
+		}
+	}
+}
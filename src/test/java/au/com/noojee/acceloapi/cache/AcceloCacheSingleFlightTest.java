@@ -0,0 +1,96 @@
+package au.com.noojee.acceloapi.cache;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.AcceloFieldList;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.dao.TicketDao;
+import au.com.noojee.acceloapi.entities.AcceloEntity;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.entities.meta.Ticket_;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+import au.com.noojee.acceloapi.transport.StubTransport;
+
+public class AcceloCacheSingleFlightTest
+{
+	/**
+	 * A forced refresh and a plain miss for the same query at the same time result in a single request to Accelo.
+	 */
+	@Test
+	public void testConcurrentRequestsAreCoalesced() throws Exception
+	{
+		AcceloCache cache = AcceloCache.getInstance();
+		BlockingTransport transport = new BlockingTransport();
+
+		StubAccelo.run(transport, () ->
+			{
+				AcceloFilter<Ticket> refresh = new AcceloFilter<>();
+				refresh.where(refresh.eq(Ticket_.contract, 1));
+				refresh.refreshCache();
+
+				AcceloFilter<Ticket> plain = new AcceloFilter<>();
+				plain.where(plain.eq(Ticket_.contract, 1));
+
+				CompletableFuture<List<? extends AcceloEntity>> first = CompletableFuture
+						.supplyAsync(() -> cache.get(key(refresh)));
+
+				// wait for the first request to reach the transport before asking again.
+				transport.started.await();
+
+				CompletableFuture<List<? extends AcceloEntity>> second = CompletableFuture
+						.supplyAsync(() -> cache.get(key(plain)));
+
+				while (cache.getCoalescedCount() == 0)
+					Thread.sleep(5);
+
+				transport.release.countDown();
+
+				Assert.assertEquals(1, first.get().size());
+				Assert.assertEquals(1, second.get().size());
+				Assert.assertEquals(1, transport.requests.get());
+				Assert.assertEquals(1, cache.getCoalescedCount());
+
+				// each caller gets its own copy.
+				Assert.assertNotSame(first.get().get(0), second.get().get(0));
+			});
+	}
+
+	private CacheKey<Ticket> key(AcceloFilter<Ticket> filter)
+	{
+		return new CacheKey<>(EndPoint.tickets, filter, AcceloFieldList.ALL, TicketDao.ResponseList.class,
+				Ticket.class);
+	}
+
+	/**
+	 * Holds every query until released.
+	 */
+	static class BlockingTransport extends StubTransport
+	{
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		protected String respond(HTTPMethod method, URL url, String body) throws IOException
+		{
+			started.countDown();
+			try
+			{
+				release.await();
+			}
+			catch (InterruptedException e)
+			{
+				throw new IOException(e);
+			}
+			return "{\"response\":[{\"id\":\"1\"}]}";
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package au.com.noojee.acceloapi.cache;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloFieldList;
+import au.com.noojee.acceloapi.dao.TicketDao;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.entities.meta.Ticket_;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+import au.com.noojee.acceloapi.transport.StubTransport;
+import au.com.noojee.acceloapi.util.Constants;
+
+public class AcceloCacheSubsumptionTest
+{
+	/**
+	 * The open tickets for a contract are taken from the cached list of all open tickets.
+	 */
+	@Test
+	public void testNarrowQueryIsAnsweredFromBroaderResult() throws Exception
+	{
+		AcceloCache cache = AcceloCache.getInstance();
+		OpenTicketTransport transport = new OpenTicketTransport();
+
+		StubAccelo.run(transport, () ->
+			{
+				TicketDao dao = new TicketDao();
+				Assert.assertEquals(2, dao.getAllOpen().size());
+				Assert.assertEquals(1, transport.requests.get());
+
+				AcceloFilter<Ticket> filter = new AcceloFilter<>();
+				filter.where(filter.eq(Ticket_.contract, 20)
+						.and(filter.eq(Ticket_.date_closed, Constants.DATETIMEZERO)));
+				List<Ticket> tickets = dao.getByFilter(filter);
+				Assert.assertEquals(1, tickets.size());
+				Assert.assertEquals(2, tickets.get(0).getId());
+				Assert.assertEquals(1, transport.requests.get());
+
+				// a refresh always goes to Accelo.
+				filter.refreshCache();
+				dao.getByFilter(filter);
+				Assert.assertEquals(2, transport.requests.get());
+
+				// as does a query the broader result can't answer.
+				filter = new AcceloFilter<>();
+				filter.where(filter.eq(Ticket_.contract, 20));
+				dao.getByFilter(filter);
+				Assert.assertEquals(3, transport.requests.get());
+
+				// once the broader query has been flushed it can't answer anything.
+				cache.flushEntity(dao.getAllOpen().get(0), true);
+				filter = new AcceloFilter<>();
+				filter.where(filter.eq(Ticket_.contract, 10)
+						.and(filter.eq(Ticket_.date_closed, Constants.DATETIMEZERO)));
+				dao.getByFilter(filter);
+				Assert.assertEquals(4, transport.requests.get());
+			});
+	}
+
+	/**
+	 * A broader query can only answer a narrower one if it loaded the fields the narrower filter tests.
+	 */
+	@Test
+	public void testFilterFieldsMustBeLoaded() throws Exception
+	{
+		AcceloCache cache = AcceloCache.getInstance();
+		OpenTicketTransport transport = new OpenTicketTransport();
+
+		StubAccelo.run(transport, () ->
+			{
+				TicketDao dao = new TicketDao();
+				AcceloFieldList closed = new AcceloFieldList("date_closed");
+				dao.getByFilter(open(), closed);
+				dao.getByFilter(openOnContract(), closed);
+				Assert.assertEquals(2, transport.requests.get());
+
+				AcceloFieldList closedAndContract = new AcceloFieldList("date_closed");
+				closedAndContract.add("contract");
+				dao.getByFilter(open(), closedAndContract);
+				Assert.assertEquals(1, dao.getByFilter(openOnContract(), closedAndContract).size());
+				Assert.assertEquals(3, transport.requests.get());
+			});
+	}
+
+	private AcceloFilter<Ticket> open()
+	{
+		AcceloFilter<Ticket> filter = new AcceloFilter<>();
+		filter.where(filter.eq(Ticket_.date_closed, Constants.DATETIMEZERO));
+		return filter;
+	}
+
+	private AcceloFilter<Ticket> openOnContract()
+	{
+		AcceloFilter<Ticket> filter = new AcceloFilter<>();
+		filter.where(filter.eq(Ticket_.contract, 20).and(filter.eq(Ticket_.date_closed, Constants.DATETIMEZERO)));
+		return filter;
+	}
+
+	/**
+	 * Returns the same two open tickets for every query.
+	 */
+	static class OpenTicketTransport extends StubTransport
+	{
+		OpenTicketTransport()
+		{
+			super((method, url, body) -> "{\"response\":[{\"id\":\"1\",\"contract\":\"10\",\"date_closed\":\"0\"},"
+					+ "{\"id\":\"2\",\"contract\":\"20\",\"date_closed\":\"0\"}]}");
+		}
+	}
+}
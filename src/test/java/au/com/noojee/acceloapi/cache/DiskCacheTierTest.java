@@ -0,0 +1,257 @@
+package au.com.noojee.acceloapi.cache;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.AcceloFieldList;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.dao.TicketDao;
+import au.com.noojee.acceloapi.dao.gson.GsonForAccelo;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.entities.meta.Ticket_;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+import au.com.noojee.acceloapi.transport.StubTransport;
+
+public class DiskCacheTierTest
+{
+	/**
+	 * After a restart lookups are served from disk without going to Accelo, except for entities that were updated.
+	 */
+	@Test
+	public void testWarmRestart() throws Exception
+	{
+		AcceloCache cache = AcceloCache.getInstance();
+		TicketTransport transport = new TicketTransport();
+		Path file = Files.createTempFile("accelo", ".cache");
+
+		try
+		{
+			StubAccelo.run(transport, () ->
+				{
+					DiskCacheTier tier = new DiskCacheTier(file, Duration.ofHours(1), Ticket.class);
+					cache.setDiskTier(tier);
+
+					Assert.assertEquals("ticket 1 é", new TicketDao().getById(1).getTitle());
+					Assert.assertEquals(2, new TicketDao().getById(2).getId());
+					Assert.assertEquals(2, transport.requests.get());
+
+					Ticket updated = new TicketDao().getById(2);
+					cache.updateEntity(updated);
+					tier.close();
+
+					restart(cache, file);
+
+					// ticket 1 comes from disk but ticket 2 was updated so we go back to Accelo.
+					Assert.assertEquals("ticket 1 é", new TicketDao().getById(1).getTitle());
+					Assert.assertEquals(2, transport.requests.get());
+					Assert.assertEquals(2, new TicketDao().getById(2).getId());
+					Assert.assertEquals(3, transport.requests.get());
+
+					cache.getDiskTier().close();
+					restart(cache, file);
+
+					Assert.assertEquals(2, new TicketDao().getById(2).getId());
+					Assert.assertEquals(3, transport.requests.get());
+					cache.getDiskTier().close();
+
+					// drop the closed tier before the cache is flushed.
+					cache.setDiskTier(null);
+				});
+		}
+		finally
+		{
+			cache.setDiskTier(null);
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * A record that was only partly written when we crashed is ignored and overwritten.
+	 */
+	@Test
+	public void testTornWriteIsIgnored() throws Exception
+	{
+		Path file = Files.createTempFile("accelo", ".cache");
+		try
+		{
+			DiskCacheTier tier = new DiskCacheTier(file);
+			tier.put(key(1), tickets(1));
+			int end = (int) tier.getUsedBytes();
+			tier.put(key(2), tickets(2));
+			tier.close();
+
+			// corrupt the last byte of the second record.
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ))
+			{
+				ByteBuffer last = ByteBuffer.allocate(1);
+				channel.read(last, end + 20);
+				last.put(0, (byte) (last.get(0) ^ 0xff)).rewind();
+				channel.write(last, end + 20);
+			}
+
+			tier = new DiskCacheTier(file);
+			Assert.assertEquals(1, tier.size());
+			Assert.assertEquals(end, tier.getUsedBytes());
+			Assert.assertEquals(1, tier.get(key(1)).get(0).getId());
+			Assert.assertNull(tier.get(key(2)));
+
+			tier.put(key(3), tickets(3));
+			tier.close();
+
+			tier = new DiskCacheTier(file);
+			Assert.assertEquals(2, tier.size());
+			Assert.assertEquals(3, tier.get(key(3)).get(0).getId());
+			tier.close();
+		}
+		finally
+		{
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Compaction drops superseded and expired records but keeps the current ones.
+	 */
+	@Test
+	public void testCompaction() throws Exception
+	{
+		Path file = Files.createTempFile("accelo", ".cache");
+		try
+		{
+			DiskCacheTier tier = new DiskCacheTier(file);
+			for (int i = 0; i < 100; i++)
+				tier.put(key(1), tickets(1, 2, 3));
+			tier.put(key(2), tickets(2));
+			tier.remove(key(2));
+
+			long used = tier.getUsedBytes();
+			tier.compact();
+			Assert.assertTrue(tier.getUsedBytes() < used / 50);
+			Assert.assertEquals(1, tier.size());
+			Assert.assertEquals(3, tier.get(key(1)).size());
+			Assert.assertNull(tier.get(key(2)));
+			tier.close();
+
+			// expired records are dropped.
+			tier = new DiskCacheTier(file, Duration.ofMillis(1));
+			tier.put(key(2), tickets(2));
+			Thread.sleep(5);
+			tier.compact();
+			Assert.assertNull(tier.get(key(2)));
+			Assert.assertEquals(1, tier.size());
+			Assert.assertEquals(3, tier.get(key(1)).size());
+			tier.close();
+		}
+		finally
+		{
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * A remove or replacement that doesn't fit in a full file mustn't leave the old query to come back on a restart.
+	 */
+	@Test
+	public void testFullFileDropsOldRecord() throws Exception
+	{
+		Path file = Files.createTempFile("accelo", ".cache");
+		try
+		{
+			DiskCacheTier tier = new DiskCacheTier(file);
+			tier.setMaxBytes(DiskCacheTier.INITIAL_CAPACITY);
+			tier.put(key(1000000), tickets(1));
+			fill(tier);
+			tier.remove(key(1000000));
+			tier.close();
+
+			tier = new DiskCacheTier(file);
+			Assert.assertNull(tier.get(key(1000000)));
+
+			tier.setMaxBytes(DiskCacheTier.INITIAL_CAPACITY);
+			tier.put(key(1000000), tickets(1));
+			fill(tier);
+			tier.put(key(1000000), tickets(1, 2, 3));
+			tier.close();
+
+			tier = new DiskCacheTier(file);
+			Assert.assertNull(tier.get(key(1000000)));
+			tier.close();
+		}
+		finally
+		{
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Stores empty queries until the file is full. Their keys are no longer than key(1000000) so there is no room left
+	 * to remove it either.
+	 */
+	private void fill(DiskCacheTier tier)
+	{
+		for (int contract = 1; contract < 100000; contract++)
+		{
+			int size = tier.size();
+			tier.put(key(contract), new ArrayList<Ticket>());
+			if (tier.size() == size)
+				return;
+		}
+		Assert.fail("the file didn't fill");
+	}
+
+	private void restart(AcceloCache cache, Path file) throws IOException
+	{
+		// drop the tier before flushing the heap as flushCache also clears the tier.
+		cache.setDiskTier(null);
+		cache.flushCache();
+		cache.setDiskTier(new DiskCacheTier(file, Duration.ofHours(1), Ticket.class));
+	}
+
+	private CacheKey<Ticket> key(int contract)
+	{
+		AcceloFilter<Ticket> filter = new AcceloFilter<>();
+		filter.where(filter.eq(Ticket_.contract, contract));
+		return new CacheKey<>(EndPoint.tickets, filter, AcceloFieldList.ALL, TicketDao.ResponseList.class,
+				Ticket.class);
+	}
+
+	private List<Ticket> tickets(int... ids)
+	{
+		return Arrays.stream(ids)
+				.mapToObj(id -> GsonForAccelo.fromJson("{\"id\":\"" + id + "\",\"title\":\"ticket " + id + "\"}",
+						Ticket.class))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns a ticket for the id in an id filter.
+	 */
+	static class TicketTransport extends StubTransport
+	{
+		@Override
+		protected String respond(HTTPMethod method, URL url, String body)
+		{
+			List<Integer> ids = ids(body);
+			Assert.assertEquals(1, ids.size());
+
+			int id = ids.get(0);
+			return "{\"response\":[{\"id\":\"" + id + "\",\"title\":\"ticket " + id
+					+ " é\",\"date_opened\":\"1500000000\"}]}";
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package au.com.noojee.acceloapi.dao;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.dao.GetByIdsTest.IdTransport;
+import au.com.noojee.acceloapi.dao.gson.GsonForAccelo;
+import au.com.noojee.acceloapi.entities.Affiliation;
+import au.com.noojee.acceloapi.entities.Contact;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+
+public class AcceloBatchTest
+{
+	/**
+	 * getContact does two serial getById calls per ticket. In a batch that becomes one request per endpoint.
+	 */
+	@Test
+	public void testHelperMethodsAreBatched() throws Exception
+	{
+		IdTransport transport = new IdTransport();
+
+		// long enough that only the threads waiting will trigger a send.
+		AcceloBatch.setWindow(Duration.ofSeconds(10));
+		try
+		{
+			StubAccelo.run(transport, () ->
+				{
+					List<Ticket> tickets = IntStream.rangeClosed(1, 20)
+							.mapToObj(i -> GsonForAccelo.fromJson(
+									"{\"id\":\"" + i + "\",\"affiliation\":\"" + (i + 100) + "\"}", Ticket.class))
+							.collect(Collectors.toList());
+
+					List<Contact> contacts = AcceloBatch.run(tickets, ticket -> new TicketDao().getContact(ticket));
+
+					Assert.assertEquals(Arrays.asList("/api/v0/affiliations", "/api/v0/contacts"), transport.paths);
+					for (int i = 0; i < tickets.size(); i++)
+						Assert.assertEquals(tickets.get(i).getAffiliation() + 500, contacts.get(i).getId());
+				});
+		}
+		finally
+		{
+			AcceloBatch.setWindow(AcceloBatch.DEFAULT_WINDOW);
+		}
+	}
+
+	/**
+	 * With more items than workers each round is sent as soon as every worker is waiting, not when the window ends.
+	 */
+	@Test(timeout = 30000)
+	public void testMoreItemsThanWorkers() throws Exception
+	{
+		IdTransport transport = new IdTransport();
+
+		AcceloBatch.setWindow(Duration.ofMinutes(1));
+		try
+		{
+			StubAccelo.run(transport, () ->
+				{
+					List<Integer> ids = IntStream.rangeClosed(1, AcceloBatch.MAX_WORKERS * 2 + 10).boxed()
+							.collect(Collectors.toList());
+
+					AffiliationDao dao = new AffiliationDao();
+					List<Affiliation> affiliations = AcceloBatch.run(ids, id -> dao.getById(id));
+
+					Assert.assertEquals(ids, affiliations.stream().map(Affiliation::getId).collect(Collectors.toList()));
+					Assert.assertEquals(3, transport.requests.get());
+				});
+		}
+		finally
+		{
+			AcceloBatch.setWindow(AcceloBatch.DEFAULT_WINDOW);
+		}
+	}
+
+	/**
+	 * Async lookups queued by the workers are sent when the batch ends rather than when the window closes.
+	 */
+	@Test(timeout = 30000)
+	public void testWorkerAsyncLookupsSentAtEnd() throws Exception
+	{
+		IdTransport transport = new IdTransport();
+
+		AcceloBatch.setWindow(Duration.ofMinutes(1));
+		try
+		{
+			StubAccelo.run(transport, () ->
+				{
+					AffiliationDao dao = new AffiliationDao();
+					List<CompletableFuture<Affiliation>> affiliations = AcceloBatch.run(Arrays.asList(1, 2, 3),
+							id -> dao.getByIdAsync(id));
+
+					for (int i = 0; i < affiliations.size(); i++)
+						Assert.assertEquals(i + 1, affiliations.get(i).get(10, TimeUnit.SECONDS).getId());
+					Assert.assertEquals(1, transport.requests.get());
+				});
+		}
+		finally
+		{
+			AcceloBatch.setWindow(AcceloBatch.DEFAULT_WINDOW);
+		}
+	}
+
+	/**
+	 * Async lookups in a single threaded batch are sent together when the batch ends.
+	 */
+	@Test
+	public void testAsyncLookupsAreBatched() throws Exception
+	{
+		IdTransport transport = new IdTransport();
+
+		AcceloBatch.setWindow(Duration.ofSeconds(10));
+		try
+		{
+			StubAccelo.run(transport, () ->
+				{
+					AffiliationDao dao = new AffiliationDao();
+					List<CompletableFuture<Affiliation>> affiliations = AcceloBatch
+							.run(() -> Arrays.asList(dao.getByIdAsync(1), dao.getByIdAsync(2), dao.getByIdAsync(1),
+									dao.getByIdAsync(IdTransport.MISSING_ID)));
+
+					Assert.assertEquals(1, transport.requests.get());
+					Assert.assertEquals(1, affiliations.get(0).get().getId());
+					Assert.assertEquals(2, affiliations.get(1).get().getId());
+					Assert.assertNotSame(affiliations.get(0).get(), affiliations.get(2).get());
+					Assert.assertNull(affiliations.get(3).get());
+
+					// the batch populated the cache.
+					Assert.assertEquals(2, dao.getById(2).getId());
+					Assert.assertEquals(1, transport.requests.get());
+				});
+		}
+		finally
+		{
+			AcceloBatch.setWindow(AcceloBatch.DEFAULT_WINDOW);
+		}
+	}
+}
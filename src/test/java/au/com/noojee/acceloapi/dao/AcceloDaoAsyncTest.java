@@ -0,0 +1,88 @@
+package au.com.noojee.acceloapi.dao;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.HTTPResponse;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+import au.com.noojee.acceloapi.transport.StubTransport;
+
+public class AcceloDaoAsyncTest
+{
+	/**
+	 * The async query returns before Accelo answers, pages through the results and fills the cache.
+	 */
+	@Test
+	public void testGetByFilterAsync() throws Exception
+	{
+		PagedTransport transport = new PagedTransport(AcceloApi.PAGE_SIZE + 10);
+
+		StubAccelo.run(transport, () ->
+			{
+				AcceloFilter<Ticket> filter = new AcceloFilter<>();
+				filter.noLimit();
+
+				CompletableFuture<List<Ticket>> future = new TicketDao().getByFilterAsync(filter);
+				Assert.assertFalse(future.isDone());
+
+				List<Ticket> tickets = future.get(10, TimeUnit.SECONDS);
+				Assert.assertEquals(
+						IntStream.rangeClosed(1, AcceloApi.PAGE_SIZE + 10).boxed().collect(Collectors.toList()),
+						tickets.stream().map(Ticket::getId).collect(Collectors.toList()));
+				Assert.assertEquals(List.of("0", "1"), transport.pages);
+
+				// the per id entries were filled by the query.
+				Assert.assertEquals(42, new TicketDao().getByIdAsync(42).get(10, TimeUnit.SECONDS).getId());
+				Assert.assertEquals(2, transport.pages.size());
+			});
+	}
+
+	/**
+	 * Serves count tickets (ids from 1) a page at a time. Async responses arrive on another thread after a short
+	 * delay.
+	 */
+	static class PagedTransport extends StubTransport
+	{
+		final List<String> pages = Collections.synchronizedList(new ArrayList<>());
+
+		private final int count;
+
+		PagedTransport(int count)
+		{
+			this.count = count;
+		}
+
+		@Override
+		protected String respond(HTTPMethod method, URL url, String body)
+		{
+			String page = page(url);
+			pages.add(page);
+
+			int first = Integer.parseInt(page) * AcceloApi.PAGE_SIZE + 1;
+			return response(IntStream.rangeClosed(first, Math.min(count, first + AcceloApi.PAGE_SIZE - 1))
+					.mapToObj(StubTransport::entity));
+		}
+
+		@Override
+		public CompletableFuture<HTTPResponse> sendAsync(HTTPMethod method, URL url, Map<String, String> headers,
+				byte[] body)
+		{
+			return CompletableFuture.supplyAsync(() -> new HTTPResponse(200, "200", respond(method, url, null)),
+					CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS));
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package au.com.noojee.acceloapi.dao;
+
+import java.net.URL;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.dao.gson.GsonForAccelo;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.entities.Ticket.Standing;
+import au.com.noojee.acceloapi.entities.meta.Ticket_;
+import au.com.noojee.acceloapi.entities.meta.fieldTypes.FilterField;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+import au.com.noojee.acceloapi.transport.StubTransport;
+
+public class AcceloReplicaTest
+{
+	@Test
+	public void testQueriesAreAnsweredLocally() throws Exception
+	{
+		AcceloReplica replica = AcceloReplica.getInstance();
+		TicketTransport transport = new TicketTransport();
+
+		transport.tickets.put(1, ticket(1, 10, "open"));
+		transport.tickets.put(2, ticket(2, 10, "closed"));
+		transport.tickets.put(3, ticket(3, 20, "open"));
+
+		try (DeltaSync sync = new DeltaSync())
+		{
+			StubAccelo.run(transport, () ->
+				{
+					sync.trackByDay(new TicketDao(), Ticket_.date_last_interacted);
+					sync.addListener(replica);
+					Assert.assertEquals(3, replica.mirror(new TicketDao(), Ticket_.contract).size());
+					Assert.assertEquals(1, transport.requests.get());
+
+					Assert.assertEquals(Arrays.asList(1, 2), ids(contract(10)));
+
+					AcceloFilter<Ticket> filter = contract(10);
+					filter.and(filter.eq(Ticket_.standing, Standing.open));
+					Assert.assertEquals(Arrays.asList(1), ids(filter));
+					Assert.assertEquals(1, transport.requests.get());
+
+					// ticket 1 moves to contract 20.
+					transport.tickets.put(1, ticket(1, 20, "open"));
+					transport.changed.add(1);
+					sync.poll();
+					Assert.assertEquals(2, transport.requests.get());
+					Assert.assertEquals(Arrays.asList(1, 3), ids(contract(20)));
+					Assert.assertEquals(Arrays.asList(2), ids(contract(10)));
+					Assert.assertEquals(2, transport.requests.get());
+
+					// an or is evaluated by scanning the table.
+					filter = new AcceloFilter<>();
+					filter.where(filter.eq(Ticket_.contract, 10).or(filter.eq(Ticket_.standing, Standing.open)));
+					Assert.assertEquals(Arrays.asList(1, 2, 3), ids(filter));
+					Assert.assertEquals(2, transport.requests.get());
+
+					// a search can't be answered locally.
+					filter = new AcceloFilter<>();
+					filter.search("ticket");
+					new TicketDao().getByFilter(filter);
+					Assert.assertEquals(3, transport.requests.get());
+
+					// nor can a stale table.
+					replica.setMaxStaleness(Duration.ZERO);
+					Thread.sleep(2);
+					new TicketDao().getByFilter(contract(30));
+					Assert.assertEquals(4, transport.requests.get());
+				});
+		}
+		finally
+		{
+			replica.setMaxStaleness(AcceloReplica.DEFAULT_MAX_STALENESS);
+			replica.dropAll();
+		}
+	}
+
+	/**
+	 * A table that has been synced but not reconciled may still hold deleted entities so it isn't used.
+	 */
+	@Test
+	public void testFreshOnceReconciled() throws Exception
+	{
+		AcceloReplica replica = AcceloReplica.getInstance();
+		TicketTransport transport = new TicketTransport();
+
+		transport.tickets.put(1, ticket(1, 10, "open"));
+		transport.tickets.put(2, ticket(2, 10, "open"));
+
+		try (DeltaSync sync = new DeltaSync())
+		{
+			StubAccelo.run(transport, () ->
+				{
+					sync.track(new TicketDao(), new FilterField<Ticket, LocalDateTime>("date_modified"));
+					sync.addListener(replica);
+					replica.mirror(new TicketDao(), Ticket_.contract);
+					replica.setMaxStaleness(Duration.ofSeconds(4));
+					Thread.sleep(4100);
+
+					// ticket 2 is deleted, which the poll can't see.
+					transport.tickets.remove(2);
+					sync.poll();
+					Assert.assertEquals(2, transport.requests.get());
+					Assert.assertEquals(Arrays.asList(1), ids(contract(10)));
+					Assert.assertEquals(3, transport.requests.get());
+
+					// the reconcile checks the table's ids.
+					sync.reconcile();
+					Assert.assertEquals(4, transport.requests.get());
+					Assert.assertNull(replica.getTable(Ticket.class).get(2));
+
+					Assert.assertEquals(Arrays.asList(), ids(contract(20)));
+					Assert.assertEquals(4, transport.requests.get());
+				});
+		}
+		finally
+		{
+			replica.setMaxStaleness(AcceloReplica.DEFAULT_MAX_STALENESS);
+			replica.dropAll();
+		}
+	}
+
+	/**
+	 * Changes applied while the table is loading aren't overwritten by the older versions the load fetched.
+	 */
+	@Test
+	public void testChangesDuringLoadAreKept() throws Exception
+	{
+		AcceloReplica replica = AcceloReplica.getInstance();
+		TicketTransport transport = new TicketTransport()
+			{
+				@Override
+				protected String respond(HTTPMethod method, URL url, String body)
+				{
+					String response = super.respond(method, url, body);
+
+					// the sync sees ticket 1 move and ticket 2 deleted after the load has read them.
+					replica.onChange(new SyncEvent<>(SyncEvent.Type.CHANGED, EndPoint.tickets, Ticket.class, 1,
+							GsonForAccelo.fromJson(ticket(1, 20, "open"), Ticket.class)));
+					replica.onChange(new SyncEvent<>(SyncEvent.Type.DELETED, EndPoint.tickets, Ticket.class, 2, null));
+					return response;
+				}
+			};
+
+		transport.tickets.put(1, ticket(1, 10, "open"));
+		transport.tickets.put(2, ticket(2, 10, "open"));
+		transport.tickets.put(3, ticket(3, 10, "open"));
+
+		try
+		{
+			StubAccelo.run(transport, () ->
+				{
+					ReplicaTable<Ticket> table = replica.mirror(new TicketDao(), Ticket_.contract);
+
+					Assert.assertEquals(2, table.size());
+					Assert.assertEquals(20, table.get(1).getContractId());
+					Assert.assertNull(table.get(2));
+					Assert.assertEquals(Arrays.asList(3), table.find(Ticket_.contract, 10).stream()
+							.map(Ticket::getId).collect(Collectors.toList()));
+				});
+		}
+		finally
+		{
+			replica.dropAll();
+		}
+	}
+
+	private AcceloFilter<Ticket> contract(int contract)
+	{
+		AcceloFilter<Ticket> filter = new AcceloFilter<>();
+		filter.where(filter.eq(Ticket_.contract, contract));
+		return filter;
+	}
+
+	private List<Integer> ids(AcceloFilter<Ticket> filter)
+	{
+		return new TicketDao().getByFilter(filter).stream().map(Ticket::getId).collect(Collectors.toList());
+	}
+
+	private static String ticket(int id, int contract, String standing)
+	{
+		return "{\"id\":\"" + id + "\",\"contract\":\"" + contract + "\",\"standing\":\"" + standing + "\"}";
+	}
+
+	/**
+	 * Returns the changed tickets for a date filter, the matching tickets for an id filter and every ticket for
+	 * anything else.
+	 */
+	static class TicketTransport extends StubTransport
+	{
+		final Map<Integer, String> tickets = new ConcurrentHashMap<>();
+		final Set<Integer> changed = ConcurrentHashMap.newKeySet();
+
+		@Override
+		protected String respond(HTTPMethod method, URL url, String body)
+		{
+			Stream<Integer> ids;
+			if (!ids(body).isEmpty())
+				ids = ids(body).stream();
+			else if (body.contains("date_last_interacted") || body.contains("date_modified"))
+				ids = changed.stream();
+			else
+				ids = tickets.keySet().stream();
+
+			return response(ids.sorted().filter(tickets::containsKey).map(tickets::get));
+		}
+	}
+}
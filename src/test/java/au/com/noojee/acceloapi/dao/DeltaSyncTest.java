@@ -0,0 +1,148 @@
+package au.com.noojee.acceloapi.dao;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.cache.AcceloCache;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.entities.meta.Ticket_;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+import au.com.noojee.acceloapi.transport.StubTransport;
+
+public class DeltaSyncTest
+{
+	@Test
+	public void testDeltaSync() throws Exception
+	{
+		AcceloCache cache = AcceloCache.getInstance();
+		ChangeTransport transport = new ChangeTransport();
+		Path stateFile = Files.createTempFile("accelosync", ".properties");
+
+		try (DeltaSync sync = new DeltaSync())
+		{
+			StubAccelo.run(transport, () ->
+				{
+					transport.tickets.put(1, "one");
+					transport.tickets.put(2, "two");
+					Assert.assertEquals("one", new TicketDao().getById(1).getTitle());
+
+					List<SyncEvent<?>> received = new ArrayList<>();
+					sync.trackByDay(new TicketDao(), Ticket_.date_last_interacted);
+					sync.addListener(received::add);
+					sync.setStateFile(stateFile);
+
+					// ticket 1 changes and ticket 2 is new to us.
+					transport.tickets.put(1, "one changed");
+					transport.changed.addAll(Arrays.asList(1, 2));
+					List<SyncEvent<?>> events = sync.poll();
+					Assert.assertEquals(2, events.size());
+					Assert.assertEquals(events, received);
+					Assert.assertTrue(transport.bodies.get(1).contains("date_last_interacted"));
+
+					// the cache has been updated without another request.
+					int requests = transport.requests.get();
+					Assert.assertEquals("one changed", new TicketDao().getById(1).getTitle());
+					Assert.assertEquals(requests, transport.requests.get());
+
+					// the overlap returns the same tickets again but they haven't changed.
+					Assert.assertTrue(sync.poll().isEmpty());
+
+					transport.tickets.put(2, "two changed");
+					events = sync.poll();
+					Assert.assertEquals(1, events.size());
+					Assert.assertEquals(SyncEvent.Type.CHANGED, events.get(0).getType());
+					Assert.assertEquals("two changed", ((Ticket) events.get(0).getEntity()).getTitle());
+
+					// ticket 1 is deleted.
+					transport.tickets.remove(1);
+					transport.changed.remove(1);
+					events = sync.reconcile();
+					Assert.assertEquals(1, events.size());
+					Assert.assertEquals(SyncEvent.Type.DELETED, events.get(0).getType());
+					Assert.assertEquals(1, events.get(0).getId());
+					Assert.assertFalse(cache.getCachedIds(Ticket.class).contains(1));
+
+					// a restarted sync carries on from the saved mark.
+					LocalDateTime mark = sync.getHighWaterMark(EndPoint.tickets);
+					try (DeltaSync restarted = new DeltaSync())
+					{
+						restarted.setStateFile(stateFile);
+						restarted.trackByDay(new TicketDao(), Ticket_.date_last_interacted);
+						Assert.assertEquals(mark, restarted.getHighWaterMark(EndPoint.tickets));
+					}
+				});
+		}
+		finally
+		{
+			Files.deleteIfExists(stateFile);
+		}
+	}
+
+	/**
+	 * An entity that no poll has returned since the previous reconcile is forgotten.
+	 */
+	@Test
+	public void testFingerprintsExpire() throws Exception
+	{
+		ChangeTransport transport = new ChangeTransport();
+
+		try (DeltaSync sync = new DeltaSync())
+		{
+			StubAccelo.run(transport, () ->
+				{
+					sync.trackByDay(new TicketDao(), Ticket_.date_last_interacted);
+					transport.tickets.put(1, "one");
+					transport.changed.add(1);
+					Assert.assertEquals(SyncEvent.Type.ADDED, sync.poll().get(0).getType());
+					Thread.sleep(2);
+
+					// ticket 1 stops changing. The first reconcile still checks it, the second forgets it.
+					transport.changed.clear();
+					int requests = transport.requests.get();
+					Assert.assertTrue(sync.reconcile().isEmpty());
+					Assert.assertTrue(sync.reconcile().isEmpty());
+					Assert.assertEquals(requests + 2, transport.requests.get());
+					Assert.assertTrue(sync.reconcile().isEmpty());
+					Assert.assertEquals(requests + 2, transport.requests.get());
+
+					// so it is new to the sync when it next turns up.
+					transport.changed.add(1);
+					Assert.assertEquals(SyncEvent.Type.ADDED, sync.poll().get(0).getType());
+				});
+		}
+	}
+
+	/**
+	 * Returns the changed tickets for a date filter and the existing tickets for an id filter.
+	 */
+	static class ChangeTransport extends StubTransport
+	{
+		final Map<Integer, String> tickets = new ConcurrentHashMap<>();
+		final Set<Integer> changed = ConcurrentHashMap.newKeySet();
+		final List<String> bodies = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		protected String respond(HTTPMethod method, URL url, String body)
+		{
+			bodies.add(body);
+
+			List<Integer> ids = ids(body);
+			return response((ids.isEmpty() ? changed.stream().sorted() : ids.stream()).filter(tickets::containsKey)
+					.map(id -> "{\"id\":\"" + id + "\",\"title\":\"" + tickets.get(id) + "\"}"));
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package au.com.noojee.acceloapi.dao;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+import au.com.noojee.acceloapi.transport.StubTransport;
+
+public class GetByIdsTest
+{
+	@Test
+	public void testGetByIds() throws Exception
+	{
+		IdTransport transport = new IdTransport();
+
+		StubAccelo.run(transport, () ->
+			{
+				List<Integer> ids = IntStream.rangeClosed(1, 60).boxed().collect(Collectors.toList());
+				// ticket 999 doesn't exist.
+				ids.add(IdTransport.MISSING_ID);
+
+				Map<Integer, Ticket> tickets = new TicketDao().getByIds(ids);
+
+				// 60 ids need two requests.
+				Assert.assertEquals(2, transport.requests.get());
+				Assert.assertEquals(60, tickets.size());
+				Assert.assertEquals(ids.subList(0, 60), new ArrayList<>(tickets.keySet()));
+				tickets.forEach((id, ticket) -> Assert.assertEquals((int) id, ticket.getId()));
+
+				// now everything comes from the cache.
+				tickets = new TicketDao().getByIds(Arrays.asList(5, 1, 42, 0, null, 5));
+				Assert.assertEquals(2, transport.requests.get());
+				Assert.assertEquals(Arrays.asList(5, 1, 42), new ArrayList<>(tickets.keySet()));
+			});
+	}
+
+	/**
+	 * Returns an entity for each id (except MISSING_ID) in the id filter. Each entity's contact is its id + 500.
+	 */
+	static class IdTransport extends StubTransport
+	{
+		static final int MISSING_ID = 999;
+
+		@Override
+		protected String respond(HTTPMethod method, URL url, String body)
+		{
+			List<Integer> ids = ids(body);
+			Assert.assertFalse(ids.isEmpty());
+
+			return response(ids.stream().filter(id -> id != MISSING_ID)
+					.map(id -> "{\"id\":\"" + id + "\",\"contact\":\"" + (id + 500) + "\"}"));
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package au.com.noojee.acceloapi.dao;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.HTTPResponse;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.filter.AcceloFilter;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+import au.com.noojee.acceloapi.transport.StubTransport;
+
+public class PriorityLaneTest
+{
+	/**
+	 * A getById made while the pages of an unlimited query are waiting on the rate limiter is sent before them.
+	 */
+	@Test(timeout = 60000)
+	public void testGetByIdServedBeforeQueuedExtract() throws Exception
+	{
+		AcceloApi api = AcceloApi.getInstance();
+		LaneTransport transport = new LaneTransport();
+
+		api.setMaxPagesInFlight(4);
+		try
+		{
+			StubAccelo.run(transport, () ->
+				{
+					AcceloFilter<Ticket> filter = new AcceloFilter<>();
+					filter.noLimit();
+
+					// pages 1 - 3 queue behind page 0 in the batch lane.
+					CompletableFuture<List<Ticket>> extract = new TicketDao().getByFilterAsync(filter);
+					while (transport.order.isEmpty())
+						Thread.sleep(5);
+
+					Ticket ticket = CompletableFuture.supplyAsync(() -> new TicketDao().getById(1000)).get(30,
+							TimeUnit.SECONDS);
+					Assert.assertEquals(1000, ticket.getId());
+
+					Assert.assertEquals(3 * AcceloApi.PAGE_SIZE - 1, extract.get(30, TimeUnit.SECONDS).size());
+					// the id lookup went straight after the page that was already granted a permit.
+					Assert.assertEquals(List.of("page 0", "id"), transport.order.subList(0, 2));
+					Assert.assertTrue(transport.order.size() > 4);
+				});
+		}
+		finally
+		{
+			api.setMaxPagesInFlight(1);
+		}
+	}
+
+	/**
+	 * Serves two full pages of tickets then a short one, and a ticket for an id query. Records the order the
+	 * requests were sent in.
+	 */
+	static class LaneTransport extends StubTransport
+	{
+		final List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public CompletableFuture<HTTPResponse> sendAsync(HTTPMethod method, URL url, Map<String, String> headers,
+				byte[] body)
+		{
+			return CompletableFuture.completedFuture(
+					new HTTPResponse(200, "200", respond(method, url, new String(body, StandardCharsets.UTF_8))));
+		}
+
+		@Override
+		protected String respond(HTTPMethod method, URL url, String body)
+		{
+			if (body.contains("\"id\""))
+			{
+				order.add("id");
+				return response(IntStream.of(1000).mapToObj(StubTransport::entity));
+			}
+
+			int page = Integer.parseInt(page(url));
+			order.add("page " + page);
+
+			int count = (page < 2 ? AcceloApi.PAGE_SIZE : page == 2 ? AcceloApi.PAGE_SIZE - 1 : 0);
+			int first = page * AcceloApi.PAGE_SIZE + 1;
+			return response(IntStream.range(first, first + count).mapToObj(StubTransport::entity));
+		}
+	}
+}
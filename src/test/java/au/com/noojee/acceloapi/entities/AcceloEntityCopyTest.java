@@ -0,0 +1,40 @@
+package au.com.noojee.acceloapi.entities;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.dao.gson.GsonForAccelo;
+
+public class AcceloEntityCopyTest
+{
+
+	@Test
+	public void testCopyIsEqual()
+	{
+		String json = "{\"id\":\"17875\",\"title\":\"After hours support\",\"contract\":\"33\",\"standing\":\"closed\""
+				+ ",\"date_opened\":\"1512003115\",\"status\":{\"id\":\"4\",\"title\":\"Closed\",\"standing\":\"closed\"}}";
+
+		Ticket ticket = GsonForAccelo.fromJson(json, Ticket.class);
+		Ticket copy = ticket.copy();
+
+		Assert.assertNotSame(ticket, copy);
+		Assert.assertEquals(ticket, copy);
+		Assert.assertEquals(GsonForAccelo.toJson(ticket), GsonForAccelo.toJson(copy));
+	}
+
+	@Test
+	public void testMutableFieldsAreNotShared()
+	{
+		Activity activity = new Activity();
+		activity.setSubject("subject");
+		activity.addTo("first@noojee.com.au");
+
+		Activity copy = activity.copy();
+		copy.addTo("second@noojee.com.au");
+		copy.setSubject("changed");
+
+		Assert.assertEquals(1, activity.to.emails.size());
+		Assert.assertEquals(2, copy.to.emails.size());
+		Assert.assertEquals("subject", activity.getSubject());
+	}
+}
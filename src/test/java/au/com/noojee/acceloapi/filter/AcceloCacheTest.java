@@ -22,6 +22,7 @@ import au.com.noojee.acceloapi.entities.AcceloEntity;
 import au.com.noojee.acceloapi.entities.Ticket;
 import au.com.noojee.acceloapi.entities.meta.Ticket_;
 import au.com.noojee.acceloapi.entities.meta.fieldTypes.OrderByField.Order;
+import au.com.noojee.acceloapi.entities.types.AgainstType;
 
 public class AcceloCacheTest
 {
@@ -73,6 +74,84 @@ public class AcceloCacheTest
 
 	}
 
+	@Test
+	public void testCanonicalForm()
+	{
+		AcceloFilter<Ticket> filter = new AcceloFilter<>();
+		filter.where(filter.eq(Ticket_.contract, 1).and(filter.eq(Ticket_.standing, Ticket.Standing.open))
+				.and(filter.against(AgainstType.company, 3, 2)));
+
+		AcceloFilter<Ticket> filter2 = new AcceloFilter<>();
+		filter2.where(filter2.against(AgainstType.company, 2, 3, 2)
+				.and(filter2.eq(Ticket_.standing, Ticket.Standing.open).and(filter2.eq(Ticket_.contract, 1))));
+
+		Assert.assertEquals(filter.toCanonicalString(), filter2.toCanonicalString());
+		Assert.assertEquals(filter.fingerprint(), filter2.fingerprint());
+		Assert.assertEquals(filter, filter2);
+		Assert.assertEquals(new CacheKey<>(EndPoint.tickets, filter, AcceloFieldList.ALL,
+				TicketDao.ResponseList.class, Ticket.class).fingerprint(), new CacheKey<>(EndPoint.tickets, filter2,
+						AcceloFieldList.ALL, TicketDao.ResponseList.class, Ticket.class).fingerprint());
+
+		// a refresh shares the entry it replaces.
+		filter2.refreshCache();
+		Assert.assertEquals(filter, filter2);
+
+		// the fingerprint follows changes to the filter.
+		filter2.limit(2);
+		Assert.assertNotEquals(filter.fingerprint(), filter2.fingerprint());
+		Assert.assertNotEquals(filter, filter2);
+
+		AcceloFilter<Ticket> either = new AcceloFilter<>();
+		either.where(either.eq(Ticket_.contract, 1).or(either.eq(Ticket_.contract, 2)));
+		AcceloFilter<Ticket> either2 = new AcceloFilter<>();
+		either2.where(either2.eq(Ticket_.contract, 2).or(either2.eq(Ticket_.contract, 1))
+				.or(either2.eq(Ticket_.contract, 2)));
+		Assert.assertEquals(either, either2);
+		Assert.assertNotEquals(filter, either);
+	}
+
+	@Test
+	public void testFrozenFilter()
+	{
+		AcceloFilter<Ticket> filter = new AcceloFilter<>();
+		filter.where(filter.eq(Ticket_.contract, 1).and(filter.eq(Ticket_.standing, Ticket.Standing.open)));
+
+		FrozenFilter<Ticket> frozen = filter.freeze();
+		FrozenFilter<Ticket> limited = frozen.limit(2);
+		Assert.assertNotSame(frozen, limited);
+		Assert.assertEquals(1, frozen.getLimit());
+		Assert.assertEquals(2, limited.getLimit());
+
+		// a copy shares the frozen state and changing it leaves the original alone.
+		AcceloFilter<Ticket> copy = filter.copy();
+		Assert.assertSame(frozen, copy.freeze());
+		copy.offset(3);
+		Assert.assertEquals(0, filter.getOffset());
+		Assert.assertSame(frozen, filter.freeze());
+
+		// a key keeps the filter it was created with.
+		CacheKey<Ticket> key = new CacheKey<>(EndPoint.tickets, filter, AcceloFieldList.ALL,
+				TicketDao.ResponseList.class, Ticket.class);
+		String canonical = key.toCanonicalString();
+		filter.where(filter.eq(Ticket_.contract, 2));
+		filter.limit(5);
+		Assert.assertEquals(canonical, key.toCanonicalString());
+		Assert.assertEquals(frozen, key.getFrozenFilter());
+		Assert.assertSame(key.getFrozenFilter(), key.copy().getFrozenFilter());
+
+		// an id filter built from the template is the same as one built by hand.
+		AcceloFilter<Ticket> byId = new AcceloFilter<>();
+		byId.where(byId.eq(Ticket_.id, 7));
+		CacheKey<Ticket> idKey = new CacheKey<>(EndPoint.tickets, FrozenFilter.forId(7), AcceloFieldList.ALL,
+				TicketDao.ResponseList.class, Ticket.class);
+		CacheKey<Ticket> handKey = new CacheKey<>(EndPoint.tickets, byId, AcceloFieldList.ALL,
+				TicketDao.ResponseList.class, Ticket.class);
+		Assert.assertEquals(handKey, idKey);
+		Assert.assertEquals(handKey.hashCode(), idKey.hashCode());
+		Assert.assertEquals(handKey.fingerprint(), idKey.fingerprint());
+		Assert.assertTrue(idKey.getFrozenFilter().isIDFilter());
+	}
+
 	@Test
 	public void testCacheMatch() throws FileNotFoundException
 	{
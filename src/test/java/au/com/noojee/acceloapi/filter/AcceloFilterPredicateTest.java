@@ -0,0 +1,92 @@
+package au.com.noojee.acceloapi.filter;
+
+import java.time.LocalDateTime;
+import java.util.function.Predicate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.dao.gson.GsonForAccelo;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.entities.Ticket.Standing;
+import au.com.noojee.acceloapi.entities.meta.Ticket_;
+import au.com.noojee.acceloapi.entities.types.AgainstType;
+import au.com.noojee.acceloapi.util.Constants;
+import au.com.noojee.acceloapi.util.Conversions;
+
+public class AcceloFilterPredicateTest
+{
+	private static final LocalDateTime CLOSED = LocalDateTime.of(2018, 3, 1, 10, 0);
+
+	private final Ticket open = ticket(1, 10, "open", 0);
+	private final Ticket closed = ticket(2, 20, "closed", Conversions.toLong(CLOSED));
+
+	@Test
+	public void testPredicate()
+	{
+		AcceloFilter<Ticket> filter = new AcceloFilter<>();
+		filter.where(filter.eq(Ticket_.contract, 10).or(filter.eq(Ticket_.standing, Standing.closed)));
+		assertMatches(filter, true, true);
+
+		filter.where(filter.eq(Ticket_.date_closed, Constants.DATETIMEZERO));
+		assertMatches(filter, true, false);
+
+		filter.where(filter.after(Ticket_.date_closed, CLOSED.minusDays(1))
+				.and(filter.before(Ticket_.date_closed, CLOSED.plusDays(1))));
+		assertMatches(filter, false, true);
+
+		filter.where(filter.afterOrEq(Ticket_.date_closed, CLOSED));
+		assertMatches(filter, false, true);
+
+		filter.where(filter.greaterThan(Ticket_.contract, 15));
+		assertMatches(filter, false, true);
+
+		filter.where(filter.against(AgainstType.company, 5));
+		assertMatches(filter, true, true);
+
+		filter = new AcceloFilter<>();
+		filter.search("ticket");
+		Assert.assertFalse(filter.toPredicate(Ticket.class).isPresent());
+	}
+
+	@Test
+	public void testSubsumption()
+	{
+		AcceloFilter<Ticket> allOpen = new AcceloFilter<>();
+		allOpen.where(allOpen.eq(Ticket_.date_closed, Constants.DATETIMEZERO));
+
+		AcceloFilter<Ticket> openForContract = new AcceloFilter<>();
+		openForContract.where(openForContract.eq(Ticket_.contract, 10)
+				.and(openForContract.eq(Ticket_.date_closed, Constants.DATETIMEZERO)));
+
+		Assert.assertTrue(openForContract.isSubsumedBy(allOpen));
+		Assert.assertFalse(allOpen.isSubsumedBy(openForContract));
+		Assert.assertTrue(openForContract.isSubsumedBy(new AcceloFilter<>()));
+
+		AcceloFilter<Ticket> recent = new AcceloFilter<>();
+		recent.where(recent.after(Ticket_.date_closed, CLOSED));
+		AcceloFilter<Ticket> older = new AcceloFilter<>();
+		older.where(older.after(Ticket_.date_closed, CLOSED.minusDays(1)));
+		Assert.assertTrue(recent.isSubsumedBy(older));
+		Assert.assertFalse(older.isSubsumedBy(recent));
+
+		AcceloFilter<Ticket> either = new AcceloFilter<>();
+		either.where(either.eq(Ticket_.contract, 10).or(either.eq(Ticket_.contract, 20)));
+		Assert.assertTrue(openForContract.isSubsumedBy(either));
+		Assert.assertFalse(allOpen.isSubsumedBy(either));
+	}
+
+	private void assertMatches(AcceloFilter<Ticket> filter, boolean matchesOpen, boolean matchesClosed)
+	{
+		Predicate<Ticket> predicate = filter.toPredicate(Ticket.class).get();
+		Assert.assertEquals(filter.toJson(), matchesOpen, predicate.test(open));
+		Assert.assertEquals(filter.toJson(), matchesClosed, predicate.test(closed));
+	}
+
+	private static Ticket ticket(int id, int contract, String standing, long dateClosed)
+	{
+		return GsonForAccelo.getGson().fromJson("{\"id\":\"" + id + "\",\"contract\":\"" + contract
+				+ "\",\"standing\":\"" + standing + "\",\"date_closed\":\"" + dateClosed
+				+ "\",\"against_type\":\"company\",\"against_id\":\"5\"}", Ticket.class);
+	}
+}
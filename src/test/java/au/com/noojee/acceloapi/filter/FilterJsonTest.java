@@ -0,0 +1,23 @@
+package au.com.noojee.acceloapi.filter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.entities.meta.Ticket_;
+
+public class FilterJsonTest
+{
+	@Test
+	public void testComparisons()
+	{
+		AcceloFilter<Ticket> filter = new AcceloFilter<>();
+		filter.where(filter.lessThan(Ticket_.assignee, 10));
+		Assert.assertTrue(filter.toJson(), filter.toJson().contains("\"assignee_less_than\" : [10]"));
+
+		filter = new AcceloFilter<>();
+		filter.where(filter.lessThanOrEq(Ticket_.assignee, 10).and(filter.greaterThan(Ticket_.contract, 2)));
+		Assert.assertTrue(filter.toJson(), filter.toJson().contains("\"assignee_less_than_or_equal\" : [10]"));
+		Assert.assertTrue(filter.toJson(), filter.toJson().contains("\"contract_greater_than\" : [2]"));
+	}
+}
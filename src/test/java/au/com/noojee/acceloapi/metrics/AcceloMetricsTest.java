@@ -0,0 +1,129 @@
+package au.com.noojee.acceloapi.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.AcceloException;
+import au.com.noojee.acceloapi.EndPoint;
+import au.com.noojee.acceloapi.RetryPolicy;
+import au.com.noojee.acceloapi.dao.TicketDao;
+import au.com.noojee.acceloapi.entities.Ticket;
+import au.com.noojee.acceloapi.transport.ResponseReader;
+import au.com.noojee.acceloapi.transport.StubAccelo;
+import au.com.noojee.acceloapi.transport.StubTransport;
+
+public class AcceloMetricsTest
+{
+	private static final String TICKET = "{\"response\":[{\"id\":\"1\",\"title\":\"a ticket\"}]}";
+
+	@Test
+	public void testPercentiles()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		// 1 to 10,000 micro seconds.
+		for (long micros = 1; micros <= 10_000; micros++)
+			histogram.record(micros * 1000);
+
+		LatencySnapshot snapshot = histogram.snapshot();
+
+		Assert.assertEquals(10_000, snapshot.getCount());
+		Assert.assertEquals(5.0, snapshot.getMeanMillis(), 0.01);
+		Assert.assertEquals(5.0, snapshot.getP50Millis(), 5.0 / 16);
+		Assert.assertEquals(9.9, snapshot.getP99Millis(), 9.9 / 16);
+		Assert.assertEquals(10.0, snapshot.getMaxMillis(), 0);
+		Assert.assertTrue(snapshot.getP50Millis() <= snapshot.getP90Millis());
+		Assert.assertTrue(snapshot.getP999Millis() <= snapshot.getMaxMillis());
+
+		for (long value : new long[] { 0, 15, 16, 17, 1000, 123_456_789, Long.MAX_VALUE })
+		{
+			int index = LatencyHistogram.index(value);
+			Assert.assertTrue(LatencyHistogram.lowestValue(index) <= value);
+			Assert.assertTrue(LatencyHistogram.highestValue(index) >= value);
+		}
+	}
+
+	@Test
+	public void testRequestsAndCacheAreRecorded() throws Exception
+	{
+		AcceloApi api = AcceloApi.getInstance();
+		AcceloMetrics metrics = AcceloMetrics.getInstance();
+		RetryPolicy retryPolicy = api.getRetryPolicy();
+
+		api.setRetryPolicy(RetryPolicy.none());
+		try
+		{
+			StubAccelo.run(new TicketTransport(), () ->
+				{
+					metrics.reset();
+
+					Assert.assertEquals(1, new TicketDao().getById(1).getId());
+					Assert.assertEquals(1, new TicketDao().getById(1).getId());
+
+					try
+					{
+						new TicketDao().getById(2);
+					}
+					catch (AcceloException e)
+					{
+						// expected as ticket 2 fails.
+					}
+
+					EndPointMetrics tickets = metrics.getEndPoint(EndPoint.tickets);
+					Assert.assertEquals(2, tickets.getRequestCount());
+					Assert.assertEquals(1, tickets.getErrorCount());
+					Assert.assertTrue(tickets.getBytesRead() >= TICKET.length());
+					Assert.assertEquals(2, tickets.getLatency().getCount());
+					Assert.assertEquals(2, metrics.getRateLimiterWait().getCount());
+
+					CacheMetrics cache = metrics.getCache(Ticket.class);
+					Assert.assertEquals(1, cache.getHitCount());
+					Assert.assertEquals(2, cache.getMissCount());
+					Assert.assertEquals(2, cache.getLoadCount());
+					Assert.assertEquals(1.0 / 3, cache.getHitRatio(), 0.001);
+
+					// and the same via jmx.
+					MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+					ObjectName name = new ObjectName(AcceloMetrics.OBJECT_NAME);
+					Assert.assertEquals(2L, server.getAttribute(name, "RequestCount"));
+
+					CompositeData[] endPoints = (CompositeData[]) server.getAttribute(name, "EndPoints");
+					Assert.assertEquals("tickets", endPoints[0].get("endPoint"));
+					Assert.assertEquals(1L, endPoints[0].get("errorCount"));
+					Assert.assertEquals(2L, ((CompositeData) endPoints[0].get("latency")).get("count"));
+
+					CompositeData[] caches = (CompositeData[]) server.getAttribute(name, "Caches");
+					Assert.assertEquals("Ticket", caches[0].get("entityName"));
+				});
+		}
+		finally
+		{
+			api.setRetryPolicy(retryPolicy);
+		}
+	}
+
+	/**
+	 * Returns ticket 1 for any request for ticket 1 and a 400 for anything else.
+	 */
+	static class TicketTransport extends StubTransport
+	{
+		@Override
+		protected <R> R answer(HTTPMethod method, URL url, String body, ResponseReader<R> reader) throws IOException
+		{
+			if (body.contains("\"id\":[\"1\"]"))
+				return reply(reader, 200, TICKET);
+
+			return reply(reader, 400, "{\"meta\":{\"status\":\"invalid_request\",\"message\":\"bad ticket\"}}");
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package au.com.noojee.acceloapi.ratelimit;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AcceloRateLimiterTest
+{
+	private static final Instant NOW = Instant.ofEpochSecond(1_600_000_000L);
+
+	@Test
+	public void testDefaultRate()
+	{
+		AcceloRateLimiter limiter = new AcceloRateLimiter();
+
+		// 4900 calls an hour, not the 1 per second the old integer division gave us.
+		Assert.assertEquals(4900 / 3600.0, limiter.getRate(), 0.001);
+	}
+
+	@Test
+	public void testAdaptsToHeaders()
+	{
+		AcceloRateLimiter limiter = new AcceloRateLimiter(10, Clock.fixed(NOW, ZoneOffset.UTC));
+
+		Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		headers.put("x-ratelimit-limit", Arrays.asList("5000"));
+		headers.put("x-ratelimit-remaining", Arrays.asList("1900"));
+		headers.put("x-ratelimit-reset", Arrays.asList("" + NOW.plusSeconds(1800).getEpochSecond()));
+
+		limiter.update(headers);
+
+		// 1900 less the 100 call reserve spread over the 1800 seconds left.
+		Assert.assertEquals(1.0, limiter.getRate(), 0.001);
+		Assert.assertEquals(1900, limiter.getBudget().getRemaining());
+
+		// a late response reporting more budget is ignored.
+		limiter.update(5000, 2500, NOW.plusSeconds(1800));
+		Assert.assertEquals(1900, limiter.getBudget().getRemaining());
+
+		// lots of budget left just before the reset is capped at the max rate.
+		limiter.update(5000, 4000, NOW.plusSeconds(60));
+		Assert.assertEquals(10, limiter.getRate(), 0.001);
+	}
+
+	@Test
+	public void testInteractiveServedFirst()
+	{
+		AcceloRateLimiter limiter = new AcceloRateLimiter(20, Clock.fixed(NOW, ZoneOffset.UTC));
+		limiter.update(5000, 4000, NOW.plusSeconds(60));
+
+		// uses the free permit so everything after this has to queue.
+		limiter.acquire(Priority.BATCH);
+
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+		CompletableFuture<Void> batch1 = limiter.acquireAsync(Priority.BATCH).thenRun(() -> order.add("batch1"));
+		CompletableFuture<Void> batch2 = limiter.acquireAsync(Priority.BATCH).thenRun(() -> order.add("batch2"));
+		CompletableFuture<Void> interactive = limiter.acquireAsync(Priority.INTERACTIVE)
+				.thenRun(() -> order.add("interactive"));
+
+		CompletableFuture.allOf(batch1, batch2, interactive).join();
+
+		Assert.assertEquals(Arrays.asList("interactive", "batch1", "batch2"), order);
+	}
+}
@@ -0,0 +1,191 @@
+package au.com.noojee.acceloapi.transport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.AcceloException;
+import au.com.noojee.acceloapi.HTTPResponse;
+
+public class HttpClientTransportTest
+{
+	/**
+	 * Requests go through whichever transport is set on the AcceloApi.
+	 */
+	@Test
+	public void testSetTransport() throws Exception
+	{
+		AcceloApi api = AcceloApi.getInstance();
+		StubTransport transport = new StubTransport((method, url, body) -> "{}");
+
+		api.setTransport(transport);
+		try
+		{
+			HTTPResponse response = api._request(HTTPMethod.POST, new URL("http://localhost/api/v0/tickets"), "{}");
+
+			Assert.assertEquals(200, response.getResponseCode());
+			Assert.assertEquals(Collections.singletonList("/api/v0/tickets"), transport.paths);
+		}
+		finally
+		{
+			api.setTransport(new HttpClientTransport());
+		}
+	}
+
+	/**
+	 * A rejected oauth request fails the connect rather than leaving the api without a token.
+	 */
+	@Test
+	public void testConnectRejected() throws Exception
+	{
+		AcceloApi api = AcceloApi.getInstance();
+
+		api.setTransport(new StubTransport()
+			{
+				@Override
+				public <R> R send(HTTPMethod method, URL url, Map<String, String> headers, byte[] body,
+						ResponseReader<R> reader) throws IOException
+				{
+					return reply(reader, 401, "{\"error\":\"invalid_client\"}");
+				}
+			});
+		try
+		{
+			api.connect(StubAccelo.secret(), "http://localhost");
+			Assert.fail("connect should have thrown");
+		}
+		catch (AcceloException e)
+		{
+			Assert.assertTrue(e.toString(), e.toString().contains("401"));
+			Assert.assertTrue(e.toString(), e.toString().contains("invalid_client"));
+		}
+		finally
+		{
+			api.setTransport(new HttpClientTransport());
+		}
+	}
+
+	/**
+	 * Requests beyond maxConnections wait for a connection rather than opening another one.
+	 */
+	@Test(timeout = 30000)
+	public void testMaxConnections() throws Exception
+	{
+		try (SlowServer server = new SlowServer())
+		{
+			HttpClientTransport transport = new HttpClientTransport(2);
+			try
+			{
+				List<CompletableFuture<HTTPResponse>> responses = new ArrayList<>();
+				for (int i = 0; i < 6; i++)
+					responses.add(transport.sendAsync(HTTPMethod.GET, server.url(), Collections.emptyMap(), null));
+
+				for (CompletableFuture<HTTPResponse> response : responses)
+					Assert.assertEquals(200, response.get(20, TimeUnit.SECONDS).getResponseCode());
+
+				Assert.assertEquals(6, server.requests.get());
+				Assert.assertEquals(2, server.maxActive.get());
+			}
+			finally
+			{
+				transport.close();
+			}
+		}
+	}
+
+	/**
+	 * Answers each request after a short delay on a connection of its own and tracks how many are open at once.
+	 */
+	static class SlowServer implements AutoCloseable
+	{
+		final AtomicInteger requests = new AtomicInteger();
+		final AtomicInteger maxActive = new AtomicInteger();
+
+		private final AtomicInteger active = new AtomicInteger();
+		private final ServerSocket socket;
+
+		SlowServer() throws IOException
+		{
+			socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+			Thread acceptor = new Thread(this::accept, "slow-server");
+			acceptor.setDaemon(true);
+			acceptor.start();
+		}
+
+		URL url() throws IOException
+		{
+			return new URL("http://localhost:" + socket.getLocalPort() + "/api/v0/tickets");
+		}
+
+		private void accept()
+		{
+			while (!socket.isClosed())
+			{
+				try
+				{
+					Socket connection = socket.accept();
+					Thread handler = new Thread(() -> answer(connection), "slow-server-connection");
+					handler.setDaemon(true);
+					handler.start();
+				}
+				catch (IOException e)
+				{
+					// closed.
+				}
+			}
+		}
+
+		private void answer(Socket connection)
+		{
+			try (Socket c = connection)
+			{
+				BufferedReader in = new BufferedReader(
+						new InputStreamReader(c.getInputStream(), StandardCharsets.ISO_8859_1));
+
+				// the request line and headers.
+				String line;
+				while ((line = in.readLine()) != null && !line.isEmpty())
+					;
+
+				requests.incrementAndGet();
+				maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+				Thread.sleep(100);
+				active.decrementAndGet();
+
+				OutputStream out = c.getOutputStream();
+				out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: 2\r\n"
+						+ "Connection: close\r\n\r\n{}").getBytes(StandardCharsets.ISO_8859_1));
+				out.flush();
+			}
+			catch (IOException | InterruptedException e)
+			{
+				// the client went away.
+			}
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package au.com.noojee.acceloapi.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import au.com.noojee.acceloapi.AcceloApi;
+import au.com.noojee.acceloapi.AcceloSecret;
+import au.com.noojee.acceloapi.cache.AcceloCache;
+
+/**
+ * Runs a test against a stub Accelo. The api is connected through the transport and the cache is flushed before the
+ * test. Afterwards the cache is flushed again and the default transport restored:
+ *
+ * <pre>
+ * StubTransport transport = new StubTransport((method, url, body) -&gt; "{\"response\":[]}");
+ * StubAccelo.run(transport, () -&gt; Assert.assertTrue(new TicketDao().getAllOpen().isEmpty()));
+ * </pre>
+ */
+public final class StubAccelo
+{
+	/**
+	 * The body of a test.
+	 */
+	@FunctionalInterface
+	public interface Body
+	{
+		void run() throws Exception;
+	}
+
+	private StubAccelo()
+	{
+	}
+
+	public static void run(AcceloTransport transport, Body body) throws Exception
+	{
+		AcceloApi api = AcceloApi.getInstance();
+		AcceloCache cache = AcceloCache.getInstance();
+
+		api.setTransport(transport);
+		try
+		{
+			api.connect(secret(), "http://localhost");
+			cache.flushCache();
+
+			body.run();
+		}
+		finally
+		{
+			cache.flushCache();
+			api.setTransport(new HttpClientTransport());
+		}
+	}
+
+	/**
+	 * @return a secret for the stub, the real one isn't needed.
+	 */
+	public static AcceloSecret secret() throws IOException
+	{
+		File file = File.createTempFile("accelosecrets", ".json");
+		file.deleteOnExit();
+		Files.write(file.toPath(), "{\"fqdn\":\"localhost\", \"client_id\":\"id\", \"client_secret\":\"secret\"}"
+				.getBytes(StandardCharsets.UTF_8));
+		return AcceloSecret.load(file);
+	}
+}
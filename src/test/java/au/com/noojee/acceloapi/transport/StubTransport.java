@@ -0,0 +1,139 @@
+package au.com.noojee.acceloapi.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import au.com.noojee.acceloapi.AcceloApi.HTTPMethod;
+import au.com.noojee.acceloapi.HTTPResponse;
+
+/**
+ * A transport for tests. The oauth request is answered with a token and every other request with the json returned by
+ * respond. The requests to Accelo (not the oauth request) are counted and their paths recorded.
+ *
+ * Pass a Responder or override respond for a 200 response. Override answer to choose the response code. sendAsync is
+ * only supported by subclasses that override it.
+ */
+public class StubTransport implements AcceloTransport
+{
+	public static final String TOKEN = "{\"access_token\":\"token\"}";
+
+	private static final Pattern IDS = Pattern.compile("\"id\":\\[([^\\]]*)\\]");
+
+	public final AtomicInteger requests = new AtomicInteger();
+	public final List<String> paths = Collections.synchronizedList(new ArrayList<>());
+
+	private final Responder responder;
+
+	/**
+	 * Returns the json body of the response to a request.
+	 */
+	@FunctionalInterface
+	public interface Responder
+	{
+		String respond(HTTPMethod method, URL url, String body) throws IOException;
+	}
+
+	public StubTransport(Responder responder)
+	{
+		this.responder = responder;
+	}
+
+	/**
+	 * For subclasses that override respond or answer.
+	 */
+	protected StubTransport()
+	{
+		this.responder = null;
+	}
+
+	@Override
+	public <R> R send(HTTPMethod method, URL url, Map<String, String> headers, byte[] body, ResponseReader<R> reader)
+			throws IOException
+	{
+		if (url.getPath().startsWith("/oauth2"))
+			return reply(reader, 200, TOKEN);
+
+		requests.incrementAndGet();
+		paths.add(url.getPath());
+		return answer(method, url, (body == null ? "" : new String(body, StandardCharsets.UTF_8)), reader);
+	}
+
+	/**
+	 * Answers a request to Accelo with a 200 and the json from respond.
+	 */
+	protected <R> R answer(HTTPMethod method, URL url, String body, ResponseReader<R> reader) throws IOException
+	{
+		return reply(reader, 200, respond(method, url, body));
+	}
+
+	protected String respond(HTTPMethod method, URL url, String body) throws IOException
+	{
+		return responder.respond(method, url, body);
+	}
+
+	@Override
+	public CompletableFuture<HTTPResponse> sendAsync(HTTPMethod method, URL url, Map<String, String> headers,
+			byte[] body)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Passes the body to the reader as the response.
+	 */
+	public static <R> R reply(ResponseReader<R> reader, int responseCode, String body) throws IOException
+	{
+		return reader.read(responseCode, String.valueOf(responseCode), Collections.emptyMap(),
+				new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * @return the page a url asks for e.g. "1" for _page=1.
+	 */
+	public static String page(URL url)
+	{
+		return url.getQuery().replaceAll(".*_page=(\\d+).*", "$1");
+	}
+
+	/**
+	 * @return the ids in the id filter of a request body or an empty list if it doesn't filter by id.
+	 */
+	public static List<Integer> ids(String body)
+	{
+		Matcher matcher = IDS.matcher(body);
+		if (!matcher.find())
+			return Collections.emptyList();
+
+		return Arrays.stream(matcher.group(1).split(",")).map(id -> Integer.parseInt(id.replaceAll("\\D", "")))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @return a response holding the entities.
+	 */
+	public static String response(Stream<String> entities)
+	{
+		return entities.collect(Collectors.joining(",", "{\"response\":[", "]}"));
+	}
+
+	/**
+	 * @return an entity with just an id.
+	 */
+	public static String entity(int id)
+	{
+		return "{\"id\":\"" + id + "\"}";
+	}
+}